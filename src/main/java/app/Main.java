@@ -7,9 +7,11 @@ import javafx.stage.Stage;
 
 public class Main extends Application {
 
+    private MainController controller;
+
     @Override
     public void start(Stage stage) {
-        MainController controller = new MainController(stage);
+        controller = new MainController(stage);
         Scene scene = new Scene(controller.getRoot(), 1200, 860);
         controller.bindScene(scene);
 
@@ -20,6 +22,11 @@ public class Main extends Application {
         controller.afterShown();
     }
 
+    @Override
+    public void stop() {
+        if (controller != null) controller.shutdown();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -0,0 +1,179 @@
+package app.bench;
+
+import app.engine.GenerationReport;
+import app.engine.HeatmapGenerator;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 합성 건물로 히트맵 엔진(계산 단계)의 스케일링을 측정해 CSV로 기록.
+ *
+ * 사용 예:
+ *   gradle benchmark --args="--kinds=office,campus --sizes=1,2,3 --threads=1,4,8 --grid=8"
+ *
+ * 옵션(key=value):
+ *   --kinds    office,openplan,warehouse,campus
+ *   --sizes    크기 배율 목록(CAMPUS는 n x n 동)
+ *   --threads  스레드 수 목록
+ *   --grid     gridStep(px)
+ *   --runs     측정 반복 수 / --warmup 워밍업 반복 수
+ *   --seed     생성 seed
+ *   --out      CSV 경로
+ *   --floor    AP 영향 반경 하한(dBm, 예: -96 = 범례 최솟값). 없으면 끔
+ *   --report   true면 마지막 측정 리포트(단계별 시간/카운터)를 출력
+ *   --culling  AP 컬링(true/false, 기본 true)
+ *   --prune-db 반사/회절 경로 가지치기 허용 오차(dB, 0이면 끔)
+ *   --adaptive 적응 샘플링(true/false, 기본 true)
+ *   --spread-db 적응 샘플링에서 모서리 보간을 허용할 최대 편차(dB)
+ *   --coarse   벽 인식 거친 격자 칸 크기(블록 수, 1이면 끔)
+ *
+ * samples/ap_evals 열은 GenerationReport의 실제 계산 수(적응 샘플링/컬링 반영). 계측은 항상 켬.
+ * culling/prune_db/adaptive/spread_db/coarse 열은 해당 측정의 엔진 설정(옵션 간 비교용)
+ */
+public final class ScalingBenchmark {
+
+    private ScalingBenchmark() {}
+
+    private static final String CSV_HEADER =
+            "scenario,kind,size,walls,aps,width_px,height_px,grid_px,threads,run,"
+                    + "culling,prune_db,adaptive,spread_db,coarse,wall_ms,samples,ap_evals,samples_per_sec,peak_heap_mb";
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> opt = parseArgs(args);
+
+        List<SyntheticBuildings.Kind> kinds = new ArrayList<>();
+        for (String k : opt.getOrDefault("kinds", "office,openplan,warehouse,campus").split(",")) {
+            kinds.add(SyntheticBuildings.Kind.parse(k));
+        }
+        int[] sizes = parseInts(opt.getOrDefault("sizes", "1,2"));
+        int[] threads = parseInts(opt.getOrDefault("threads",
+                "1," + Runtime.getRuntime().availableProcessors()));
+        int grid = Integer.parseInt(opt.getOrDefault("grid", "16"));
+        int runs = Integer.parseInt(opt.getOrDefault("runs", "3"));
+        int warmup = Integer.parseInt(opt.getOrDefault("warmup", "1"));
+        long seed = Long.parseLong(opt.getOrDefault("seed", "42"));
+        Path out = Path.of(opt.getOrDefault("out", "build/bench/scaling.csv"));
+        boolean withReport = Boolean.parseBoolean(opt.getOrDefault("report", "false"));
+        double floorDbm = opt.containsKey("floor") ? Double.parseDouble(opt.get("floor")) : Double.NaN;
+        boolean culling = Boolean.parseBoolean(opt.getOrDefault("culling", "true"));
+        boolean adaptive = Boolean.parseBoolean(opt.getOrDefault("adaptive", "true"));
+        double pruneDb = opt.containsKey("prune-db") ? Double.parseDouble(opt.get("prune-db")) : Double.NaN;
+        double spreadDb = opt.containsKey("spread-db") ? Double.parseDouble(opt.get("spread-db")) : Double.NaN;
+        int coarse = Integer.parseInt(opt.getOrDefault("coarse", "1"));
+
+        if (out.getParent() != null) Files.createDirectories(out.getParent());
+
+        try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(out, StandardCharsets.UTF_8))) {
+            csv.println(CSV_HEADER);
+
+            for (SyntheticBuildings.Kind kind : kinds) {
+                for (int size : sizes) {
+                    SyntheticBuildings.Scenario b = SyntheticBuildings.generate(kind, seed, size);
+                    System.out.println("== " + b);
+
+                    for (int t : threads) {
+                        try (HeatmapGenerator gen = new HeatmapGenerator(b.env)) {
+                            gen.setParallelism(t);
+                            gen.setInfluenceFloorDbm(floorDbm);
+                            gen.setApCulling(culling);
+                            gen.setAdaptiveSampling(adaptive);
+                            if (!Double.isNaN(pruneDb)) gen.setPruneToleranceDb(pruneDb);
+                            if (!Double.isNaN(spreadDb)) gen.setAdaptiveSpreadDb(spreadDb);
+                            gen.setCoarseLatticeBlocks(coarse);
+
+                            for (int i = 0; i < warmup; i++) {
+                                gen.getLayerCache().clear();
+                                gen.generate(new HeatmapGenerator.Request(b.widthPx, b.heightPx, grid));
+                            }
+
+                            GenerationReport report = null;
+                            for (int run = 1; run <= runs; run++) {
+                                System.gc();
+                                resetPeakHeap();
+                                gen.getLayerCache().clear(); // 매 측정마다 전체 계산
+
+                                report = new GenerationReport();
+                                long t0 = System.nanoTime();
+                                gen.generate(new HeatmapGenerator.Request(b.widthPx, b.heightPx, grid).report(report));
+                                long elapsed = System.nanoTime() - t0;
+                                report.setTotalNanos(elapsed);
+
+                                double peakMb = peakHeapBytes() / (1024.0 * 1024.0);
+                                long samples = report.getSamples();
+                                double ms = elapsed / 1e6;
+                                double sps = samples / (elapsed / 1e9);
+
+                                csv.println(String.format(Locale.ROOT,
+                                        "%s,%s,%d,%d,%d,%d,%d,%d,%d,%d,%b,%.3f,%b,%.3f,%d,%.3f,%d,%d,%.1f,%.1f",
+                                        b.name, kind.id, size,
+                                        b.env.getWalls().size(), b.env.getAps().size(),
+                                        b.widthPx, b.heightPx, grid, t, run,
+                                        gen.isApCulling(), gen.getPruneToleranceDb(),
+                                        gen.isAdaptiveSampling(), gen.getAdaptiveSpreadDb(), gen.getCoarseLatticeBlocks(),
+                                        ms, samples, report.getApEvaluations(), sps, peakMb));
+                                csv.flush();
+
+                                System.out.printf(Locale.ROOT,
+                                        "  threads=%-3d run=%d  %10.1f ms  %12.0f samples/s  peak %.1f MB%n",
+                                        t, run, ms, sps, peakMb);
+                            }
+                            if (withReport && report != null) System.out.println(report.format());
+                        }
+                    }
+                }
+            }
+        }
+
+        System.out.println("CSV: " + out.toAbsolutePath());
+    }
+
+    // ===== 힙 피크 =====
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    private static long peakHeapBytes() {
+        long sum = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                sum += pool.getPeakUsage().getUsed();
+            }
+        }
+        return sum;
+    }
+
+    // ===== 인자 파싱 =====
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> m = new HashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--")) throw new IllegalArgumentException("옵션은 --key=value 형식: " + a);
+            int eq = a.indexOf('=');
+            if (eq < 0) m.put(a.substring(2), "true");
+            else m.put(a.substring(2, eq), a.substring(eq + 1));
+        }
+        return m;
+    }
+
+    private static int[] parseInts(String csv) {
+        String[] parts = csv.split(",");
+        int[] v = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) v[i] = Integer.parseInt(parts[i].trim());
+        return v;
+    }
+}
@@ -0,0 +1,345 @@
+package app.bench;
+
+import app.model.AP;
+import app.model.Band;
+import app.model.RadioConfig;
+import app.model.Wall;
+import app.model.WallMaterial;
+import app.model.WifiEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 스케일링 측정용 합성 건물 생성기.
+ * - 같은 (종류, seed, size) → 항상 같은 WifiEnvironment (재현 가능)
+ * - 벽은 WallMaterial 프리셋, AP는 복도/천장 격자 위주로 배치
+ * - 좌표는 미터로 설계 후 scaleMPerPx로 px 변환
+ */
+public final class SyntheticBuildings {
+
+    private SyntheticBuildings() {
+        // 유틸 클래스
+    }
+
+    /** 20 px = 1 m */
+    public static final double DEFAULT_SCALE_M_PER_PX = 0.05;
+
+    public enum Kind {
+        OFFICE("office"),
+        OPEN_PLAN("openplan"),
+        WAREHOUSE("warehouse"),
+        CAMPUS("campus");
+
+        public final String id;
+
+        Kind(String id) { this.id = id; }
+
+        public static Kind parse(String s) {
+            String k = s.trim().toLowerCase(Locale.ROOT);
+            for (Kind kind : values()) {
+                if (kind.id.equals(k) || kind.name().equalsIgnoreCase(k)) return kind;
+            }
+            throw new IllegalArgumentException("알 수 없는 건물 종류: " + s);
+        }
+    }
+
+    /** 생성 결과: 환경 + 캔버스 크기(px) */
+    public static final class Scenario {
+        public final String name;
+        public final WifiEnvironment env;
+        public final int widthPx;
+        public final int heightPx;
+
+        Scenario(String name, WifiEnvironment env, int widthPx, int heightPx) {
+            this.name = name;
+            this.env = env;
+            this.widthPx = widthPx;
+            this.heightPx = heightPx;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %dx%dpx walls=%d aps=%d",
+                    name, widthPx, heightPx, env.getWalls().size(), env.getAps().size());
+        }
+    }
+
+    /**
+     * 종류별 생성 진입점.
+     * @param size 크기 배율(1 이상). CAMPUS는 size x size 동 배치
+     */
+    public static Scenario generate(Kind kind, long seed, int size) {
+        int s = Math.max(1, size);
+        return switch (kind) {
+            case OFFICE -> office(seed, 40.0 * s, 18.0 + 6.0 * s);
+            case OPEN_PLAN -> openPlan(seed, 36.0 * s, 24.0 * s);
+            case WAREHOUSE -> warehouse(seed, 60.0 * s, 40.0 * s);
+            case CAMPUS -> campus(seed, s, s);
+        };
+    }
+
+    /** 중앙 복도 + 양쪽 방(석고보드 칸막이/문) + 창문 외벽 사무실 */
+    public static Scenario office(long seed, double widthM, double depthM) {
+        Plan p = new Plan(seed, DEFAULT_SCALE_M_PER_PX);
+        p.office(0, 0, widthM, depthM);
+        return p.build(String.format(Locale.ROOT, "office-%.0fx%.0fm", widthM, depthM),
+                widthM, depthM);
+    }
+
+    /** 칸막이(큐비클) 군집 + 회의실/코어가 있는 오픈 오피스 */
+    public static Scenario openPlan(long seed, double widthM, double depthM) {
+        Plan p = new Plan(seed, DEFAULT_SCALE_M_PER_PX);
+        p.openPlan(0, 0, widthM, depthM);
+        return p.build(String.format(Locale.ROOT, "openplan-%.0fx%.0fm", widthM, depthM),
+                widthM, depthM);
+    }
+
+    /** 선반 랙 열 + 모서리 사무동이 있는 물류창고 */
+    public static Scenario warehouse(long seed, double widthM, double depthM) {
+        Plan p = new Plan(seed, DEFAULT_SCALE_M_PER_PX);
+        p.warehouse(0, 0, widthM, depthM);
+        return p.build(String.format(Locale.ROOT, "warehouse-%.0fx%.0fm", widthM, depthM),
+                widthM, depthM);
+    }
+
+    /** cols x rows 동(사무실/오픈오피스 혼합)을 도로 간격으로 배치한 캠퍼스 */
+    public static Scenario campus(long seed, int cols, int rows) {
+        final double bw = 60.0, bd = 24.0, gap = 20.0;
+        Plan p = new Plan(seed, DEFAULT_SCALE_M_PER_PX);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                double ox = gap + c * (bw + gap);
+                double oy = gap + r * (bd + gap);
+                if (p.rnd.nextInt(3) == 0) p.openPlan(ox, oy, bw, bd);
+                else p.office(ox, oy, bw, bd);
+            }
+        }
+        double totalW = gap + cols * (bw + gap);
+        double totalD = gap + rows * (bd + gap);
+        return p.build(String.format(Locale.ROOT, "campus-%dx%d", cols, rows), totalW, totalD);
+    }
+
+    // ===== 내부: 미터 좌표 설계 도우미 =====
+
+    private static final class Plan {
+        final Random rnd;
+        final double scale;
+        final List<Wall> walls = new ArrayList<>();
+        final List<AP> aps = new ArrayList<>();
+
+        Plan(long seed, double scale) {
+            this.rnd = new Random(seed);
+            this.scale = scale;
+        }
+
+        Scenario build(String name, double widthM, double depthM) {
+            WifiEnvironment env = new WifiEnvironment();
+            env.setScaleMPerPx(scale);
+            env.getWalls().setAll(walls);
+            env.getAps().setAll(aps);
+            int w = (int) Math.ceil(widthM / scale);
+            int h = (int) Math.ceil(depthM / scale);
+            return new Scenario(name, env, w, h);
+        }
+
+        void wall(double x1, double y1, double x2, double y2, WallMaterial mat) {
+            if (Math.hypot(x2 - x1, y2 - y1) < 0.05) return;
+            walls.add(new Wall(x1 / scale, y1 / scale, x2 / scale, y2 / scale, mat));
+        }
+
+        /** 축 정렬 벽에 문(0.9m) 하나를 낸 벽 */
+        void wallWithDoor(double x1, double y1, double x2, double y2, WallMaterial mat) {
+            double len = Math.hypot(x2 - x1, y2 - y1);
+            if (len < 2.0) {
+                wall(x1, y1, x2, y2, mat);
+                return;
+            }
+            double door = 0.9;
+            double at = 0.3 + rnd.nextDouble() * (len - door - 0.6);
+            double ux = (x2 - x1) / len, uy = (y2 - y1) / len;
+            double dx0 = x1 + ux * at, dy0 = y1 + uy * at;
+            double dx1 = dx0 + ux * door, dy1 = dy0 + uy * door;
+            wall(x1, y1, dx0, dy0, mat);
+            wall(dx0, dy0, dx1, dy1, WallMaterial.DOOR);
+            wall(dx1, dy1, x2, y2, mat);
+        }
+
+        /** 외벽: 3m 모듈마다 창문/벽 교대 */
+        void facade(double x1, double y1, double x2, double y2, WallMaterial solid) {
+            double len = Math.hypot(x2 - x1, y2 - y1);
+            int modules = Math.max(1, (int) Math.round(len / 3.0));
+            double ux = (x2 - x1) / modules, uy = (y2 - y1) / modules;
+            for (int i = 0; i < modules; i++) {
+                WallMaterial m = (i % 2 == 1) ? WallMaterial.WINDOW : solid;
+                wall(x1 + ux * i, y1 + uy * i, x1 + ux * (i + 1), y1 + uy * (i + 1), m);
+            }
+        }
+
+        void box(double x, double y, double w, double h, WallMaterial mat) {
+            wall(x, y, x + w, y, mat);
+            wall(x + w, y, x + w, y + h, mat);
+            wall(x + w, y + h, x, y + h, mat);
+            wall(x, y + h, x, y, mat);
+        }
+
+        void shell(double ox, double oy, double w, double d, WallMaterial solid) {
+            facade(ox, oy, ox + w, oy, solid);
+            facade(ox + w, oy, ox + w, oy + d, solid);
+            facade(ox + w, oy + d, ox, oy + d, solid);
+            facade(ox, oy + d, ox, oy, solid);
+        }
+
+        void ap(double xM, double yM) {
+            AP ap = new AP();
+            ap.name = "AP-" + (aps.size() + 1);
+            ap.x = xM / scale;
+            ap.y = yM / scale;
+
+            RadioConfig r24 = ap.radios.get(Band.GHZ_24);
+            RadioConfig r5 = ap.radios.get(Band.GHZ_5);
+            RadioConfig r6 = ap.radios.get(Band.GHZ_6);
+            r24.ssid = ap.name + "_24G";
+            r5.ssid = ap.name + "_5G";
+            r6.ssid = ap.name + "_6G";
+
+            // 현장 설정처럼 2.4GHz는 낮게, 5/6GHz는 높게 + 약간의 편차
+            r24.txPowerDbm = 12 + rnd.nextInt(5);
+            r5.txPowerDbm = 17 + rnd.nextInt(4);
+            r6.txPowerDbm = 17 + rnd.nextInt(4);
+            r6.enabled = rnd.nextInt(4) != 0;
+
+            aps.add(ap);
+        }
+
+        /** 천장 격자 배치(spacing m) + 지터 */
+        void apGrid(double ox, double oy, double w, double d, double spacing) {
+            int nx = Math.max(1, (int) Math.round(w / spacing));
+            int ny = Math.max(1, (int) Math.round(d / spacing));
+            for (int j = 0; j < ny; j++) {
+                for (int i = 0; i < nx; i++) {
+                    double jx = (rnd.nextDouble() - 0.5) * spacing * 0.2;
+                    double jy = (rnd.nextDouble() - 0.5) * spacing * 0.2;
+                    ap(ox + (i + 0.5) * w / nx + jx, oy + (j + 0.5) * d / ny + jy);
+                }
+            }
+        }
+
+        void office(double ox, double oy, double w, double d) {
+            shell(ox, oy, w, d, WallMaterial.BRICK_WALL);
+
+            double corridor = 2.0;
+            double cy0 = oy + d / 2.0 - corridor / 2.0;
+            double cy1 = cy0 + corridor;
+
+            // 코어(엘리베이터 샤프트 + 계단)는 한쪽 끝
+            double coreW = 3.0;
+            box(ox + 1.0, cy1 + 0.5, coreW, Math.min(3.0, oy + d - cy1 - 1.0), WallMaterial.ELEVATOR_SHAFT);
+
+            // 복도 양쪽 방
+            rooms(ox, oy, w, cy0, cy0);
+            rooms(ox, cy1, w, oy + d, cy1);
+
+            // 복도를 따라 12~16m 간격 AP
+            double spacing = 12.0 + rnd.nextDouble() * 4.0;
+            int n = Math.max(1, (int) Math.round(w / spacing));
+            for (int i = 0; i < n; i++) {
+                ap(ox + (i + 0.5) * w / n, oy + d / 2.0);
+            }
+            // 깊은 건물이면 방 쪽에도 추가
+            if (d > 24.0) {
+                for (int i = 0; i < n; i++) {
+                    double x = ox + (i + 0.5) * w / n;
+                    ap(x, (oy + cy0) / 2.0);
+                    ap(x, (cy1 + oy + d) / 2.0);
+                }
+            }
+        }
+
+        /** x 방향 [ox, ox+w], y 방향 [y0, y1] 띠를 방으로 분할. corridorSideY 쪽 벽에 문을 냄 */
+        private void rooms(double ox, double y0, double w, double y1, double corridorSideY) {
+            double x = ox;
+            double end = ox + w;
+            while (x < end - 0.5) {
+                double roomW = 3.0 + rnd.nextDouble() * 3.0;
+                double x2 = Math.min(end, x + roomW);
+                if (end - x2 < 2.0) x2 = end;
+                // 복도 쪽 벽(문 포함)
+                wallWithDoor(x, corridorSideY, x2, corridorSideY, WallMaterial.DRY_WALL);
+                // 칸막이
+                if (x2 < end) wall(x2, y0, x2, y1, WallMaterial.DRY_WALL);
+                // 일부 방엔 책장
+                if (rnd.nextInt(4) == 0) {
+                    double by = (y0 + y1) / 2.0;
+                    wall(x + 0.3, by, Math.min(x2 - 0.3, x + 2.0), by, WallMaterial.BOOKSHELF);
+                }
+                x = x2;
+            }
+        }
+
+        void openPlan(double ox, double oy, double w, double d) {
+            shell(ox, oy, w, d, WallMaterial.CONCRETE_WALL);
+
+            // 코어: 엘리베이터 + 회의실 2개(유리/문)
+            double coreX = ox + w / 2.0 - 4.0;
+            double coreY = oy + d / 2.0 - 3.0;
+            box(coreX, coreY, 3.0, 3.0, WallMaterial.ELEVATOR_SHAFT);
+            double mx = coreX + 3.5;
+            wall(mx, coreY, mx + 4.5, coreY, WallMaterial.WINDOW);
+            wallWithDoor(mx, coreY + 3.0, mx + 4.5, coreY + 3.0, WallMaterial.DRY_WALL);
+            wall(mx, coreY, mx, coreY + 3.0, WallMaterial.DRY_WALL);
+            wall(mx + 4.5, coreY, mx + 4.5, coreY + 3.0, WallMaterial.WINDOW);
+
+            // 큐비클 군집: 2.5m 셀을 2x3으로 묶고 1.5m 통로
+            double cell = 2.5, aisle = 1.5;
+            double podW = 3 * cell, podH = 2 * cell;
+            for (double py = oy + aisle; py + podH <= oy + d - aisle; py += podH + aisle) {
+                for (double px = ox + aisle; px + podW <= ox + w - aisle; px += podW + aisle) {
+                    // 코어 영역은 비움
+                    if (px + podW > coreX - 1.0 && px < mx + 5.5 && py + podH > coreY - 1.0 && py < coreY + 4.0) {
+                        continue;
+                    }
+                    // 가운데 등판 + 셀 구분 칸막이
+                    wall(px, py + cell, px + podW, py + cell, WallMaterial.CUBICLE);
+                    for (int i = 1; i < 3; i++) {
+                        double x = px + i * cell;
+                        wall(x, py + 0.4, x, py + podH - 0.4, WallMaterial.CUBICLE);
+                    }
+                    if (rnd.nextInt(5) == 0) {
+                        wall(px, py - 0.3, px + podW, py - 0.3, WallMaterial.BOOKSHELF);
+                    }
+                }
+            }
+
+            apGrid(ox, oy, w, d, 11.0 + rnd.nextDouble() * 3.0);
+        }
+
+        void warehouse(double ox, double oy, double w, double d) {
+            shell(ox, oy, w, d, WallMaterial.CONCRETE_WALL);
+
+            // 모서리 사무동
+            double offW = Math.min(12.0, w * 0.25), offD = Math.min(8.0, d * 0.25);
+            wallWithDoor(ox + offW, oy, ox + offW, oy + offD, WallMaterial.DRY_WALL);
+            wall(ox, oy + offD, ox + offW * 0.5, oy + offD, WallMaterial.WINDOW);
+            wallWithDoor(ox + offW * 0.5, oy + offD, ox + offW, oy + offD, WallMaterial.DRY_WALL);
+
+            // 랙 열: 백투백 선반 2줄, 20m마다 교차 통로 3m
+            double rackDepth = 1.2, aisle = 3.2;
+            for (double ry = oy + offD + aisle; ry + 2 * rackDepth <= oy + d - aisle; ry += 2 * rackDepth + aisle) {
+                double x = ox + aisle;
+                while (x < ox + w - aisle) {
+                    double x2 = Math.min(ox + w - aisle, x + 20.0);
+                    wall(x, ry, x2, ry, WallMaterial.BOOKSHELF);
+                    wall(x, ry + 2 * rackDepth, x2, ry + 2 * rackDepth, WallMaterial.BOOKSHELF);
+                    wall(x, ry, x, ry + 2 * rackDepth, WallMaterial.BOOKSHELF);
+                    wall(x2, ry, x2, ry + 2 * rackDepth, WallMaterial.BOOKSHELF);
+                    x = x2 + 3.0;
+                }
+            }
+
+            apGrid(ox, oy, w, d, 18.0 + rnd.nextDouble() * 4.0);
+        }
+    }
+}
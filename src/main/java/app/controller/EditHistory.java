@@ -0,0 +1,183 @@
+package app.controller;
+
+import app.engine.LayerCache;
+import app.engine.RssiField;
+import app.model.EnvironmentEdit;
+import app.model.WifiEnvironment;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 편집 기록(실행 취소/다시 실행). FX 스레드에서만 사용.
+ * - 항목마다 편집 전/후 시점의 레이어 캐시 내용(LayerCache.Retained, 레이어 참조)을 함께 보관
+ *   → 되돌린 뒤 다시 생성하면 전파 계산 없이 합성만 수행
+ *   · before: 편집 직전 캐시(실행/다시 실행 시점에 잡음)
+ *   · after: 실행 취소 직전 캐시(그 사이 생성된 편집 후 결과)
+ * - 보관 레이어 메모리(서로 다른 RssiField 기준, 여러 항목이 공유하면 1번만 계산)가
+ *   budgetBytes를 넘으면 현재 위치에서 먼 항목부터 보관 결과를 버림(편집 자체는 계속 되돌릴 수 있음)
+ */
+public final class EditHistory {
+
+    /** 보관 레이어 기본 예산(256 MB) */
+    public static final long DEFAULT_BUDGET_BYTES = 256L << 20;
+
+    /** 기록 최대 항목 수 */
+    public static final int MAX_ENTRIES = 200;
+
+    private final WifiEnvironment env;
+    private final LayerCache cache;
+
+    private final Deque<Entry> undo = new ArrayDeque<>(); // 앞 = 가장 최근
+    private final Deque<Entry> redo = new ArrayDeque<>();
+
+    private final Map<RssiField, Integer> refs = new IdentityHashMap<>();
+    private long retainedBytes;
+    private long budgetBytes = DEFAULT_BUDGET_BYTES;
+
+    private static final class Entry {
+        final EnvironmentEdit edit;
+        LayerCache.Retained before;
+        LayerCache.Retained after;
+
+        Entry(EnvironmentEdit edit) { this.edit = edit; }
+    }
+
+    public EditHistory(WifiEnvironment env, LayerCache cache) {
+        this.env = env;
+        this.cache = cache;
+    }
+
+    public long getBudgetBytes() { return budgetBytes; }
+
+    /** 보관 레이어 예산(바이트). 0이면 결과를 보관하지 않음 */
+    public void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = Math.max(0L, budgetBytes);
+        enforceBudget();
+    }
+
+    /** 현재 보관 중인 레이어 메모리(바이트, 서로 다른 레이어 기준) */
+    public long getRetainedBytes() { return retainedBytes; }
+
+    public boolean canUndo() { return !undo.isEmpty(); }
+    public boolean canRedo() { return !redo.isEmpty(); }
+
+    public String undoLabel() { return undo.isEmpty() ? null : undo.peekFirst().edit.label(); }
+    public String redoLabel() { return redo.isEmpty() ? null : redo.peekFirst().edit.label(); }
+
+    /** 편집 실행 + 기록. 다시 실행 목록은 비움 */
+    public void execute(EnvironmentEdit edit) {
+        Entry e = new Entry(edit);
+        e.before = hold(cache.retain());
+        edit.apply(env);
+        push(e);
+    }
+
+    /** 이미 적용된 편집 기록(대화상자 등에서 직접 수정한 경우) */
+    public void record(EnvironmentEdit edit) {
+        Entry e = new Entry(edit);
+        // 수정 전 결과는 캐시에 아직 남아 있음(다음 생성 전까지)
+        e.before = hold(cache.retain());
+        push(e);
+    }
+
+    /** 마지막 편집을 되돌림. 되돌릴 게 없으면 false */
+    public boolean undo() {
+        Entry e = undo.pollFirst();
+        if (e == null) return false;
+
+        release(e.after);
+        e.after = hold(cache.retain());
+        e.edit.revert(env);
+        cache.adopt(e.before);
+
+        redo.addFirst(e);
+        enforceBudget();
+        return true;
+    }
+
+    /** 되돌린 편집을 다시 적용. 없으면 false */
+    public boolean redo() {
+        Entry e = redo.pollFirst();
+        if (e == null) return false;
+
+        release(e.before);
+        e.before = hold(cache.retain());
+        e.edit.apply(env);
+        cache.adopt(e.after);
+
+        undo.addFirst(e);
+        enforceBudget();
+        return true;
+    }
+
+    /** 기록 전체 삭제(프로젝트 열기 등) */
+    public void clear() {
+        undo.clear();
+        redo.clear();
+        refs.clear();
+        retainedBytes = 0;
+    }
+
+    // ===== 내부 =====
+
+    private void push(Entry e) {
+        for (Entry r : redo) {
+            release(r.before);
+            release(r.after);
+        }
+        redo.clear();
+
+        undo.addFirst(e);
+        while (undo.size() > MAX_ENTRIES) {
+            Entry old = undo.pollLast();
+            release(old.before);
+            release(old.after);
+        }
+        enforceBudget();
+    }
+
+    /** 예산 초과 시 가장 오래된 실행 취소 항목 → 가장 먼 다시 실행 항목 순으로 결과를 버림 */
+    private void enforceBudget() {
+        Iterator<Entry> oldest = undo.descendingIterator();
+        while (retainedBytes > budgetBytes && oldest.hasNext()) dropResults(oldest.next());
+        Iterator<Entry> farthest = redo.descendingIterator();
+        while (retainedBytes > budgetBytes && farthest.hasNext()) dropResults(farthest.next());
+    }
+
+    private void dropResults(Entry e) {
+        release(e.before);
+        release(e.after);
+        e.before = null;
+        e.after = null;
+    }
+
+    private LayerCache.Retained hold(LayerCache.Retained r) {
+        if (r == null || r.isEmpty()) return null;
+        for (RssiField f : r.layers.values()) {
+            if (refs.merge(f, 1, Integer::sum) == 1) retainedBytes += bytes(f);
+        }
+        return r;
+    }
+
+    private void release(LayerCache.Retained r) {
+        if (r == null) return;
+        for (RssiField f : r.layers.values()) {
+            Integer n = refs.get(f);
+            if (n == null) continue;
+            if (n == 1) {
+                refs.remove(f);
+                retainedBytes -= bytes(f);
+            } else {
+                refs.put(f, n - 1);
+            }
+        }
+    }
+
+    private static long bytes(RssiField f) {
+        return 4L * f.blockCount();
+    }
+}
@@ -0,0 +1,325 @@
+package app.controller;
+
+import app.engine.ApDragPreview;
+import app.engine.HeatmapGenerator;
+import app.engine.LayerCache;
+import app.engine.RssiField;
+import app.engine.TileBoard;
+import app.engine.TileFocus;
+import app.engine.WifiMath;
+import app.model.AP;
+import app.model.AppState;
+import app.model.EnvironmentSnapshot;
+import app.model.WifiEnvironment;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.scene.image.WritableImage;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * 히트맵 생성을 백그라운드 스레드에서 실행.
+ * - 생성 직전 AppState의 스케일/경로손실 지수를 WifiEnvironment에 반영
+ * - 완료/실패 콜백은 FX 스레드에서 호출
+ * - 자동 갱신(enableAutoUpdate): 환경 변경을 RecomputePipeline으로 디바운스/병합해서
+ *   미리보기(거친 격자, 별도 캐시) → 전체 품질 순으로 다시 계산. 새 변경이 오면 진행 중인 계산은 타일 단위로 중단
+ */
+public class HeatmapController {
+
+    private final WifiEnvironment env;
+    private final AppState state;
+    private final HeatmapGenerator generator;
+
+    /** 미리보기 격자 배율(전체 격자 x PREVIEW_GRID_FACTOR) */
+    public static final int PREVIEW_GRID_FACTOR = 4;
+    /** 미리보기 전용 생성기(격자가 달라 전체 품질 레이어 캐시를 밀어내지 않도록 캐시 분리) */
+    private final HeatmapGenerator previewGenerator;
+    private final RecomputePipeline pipeline;
+
+    // ===== AP 드래그 미리보기 =====
+    /** 드래그 미리보기 격자 배율(LOS만, 블록 중심 1샘플) */
+    public static final int DRAG_GRID_FACTOR = 4;
+
+    /** 프레임 계산 전용 스레드(자동 갱신 작업과 별개로 바로 응답) */
+    private final ExecutorService dragWorker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "heatmap-drag");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile DragSession drag; // FX 스레드에서만 교체
+
+    /** 전체 품질 계산이 시작될 때(FX 스레드) 타일 게시판을 받음 → 완성된 타일부터 화면에 표시 */
+    private Consumer<TileBoard> onTileBoard;
+
+    // ===== 자동 갱신(FX 스레드에서만 접근) =====
+    private IntSupplier autoWidth, autoHeight;
+    private Consumer<WritableImage> autoOnImage;
+    private Consumer<Throwable> autoOnError;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "heatmap-job");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private Task<HeatmapGenerator.Result> running;
+
+    /** 마지막으로 완료된 히트맵 격자(내보내기용, FX 스레드에서만 접근) */
+    private RssiField lastField;
+
+    public HeatmapController(WifiEnvironment env, AppState state) {
+        this.env = env;
+        this.state = state;
+        this.generator = new HeatmapGenerator(env);
+        this.previewGenerator = new HeatmapGenerator(env);
+        this.pipeline = new RecomputePipeline(env, Platform::runLater, this::onAutoRequest,
+                RecomputePipeline.DEFAULT_DEBOUNCE_MS);
+    }
+
+    public HeatmapGenerator getGenerator() { return generator; }
+
+    public boolean isAutoUpdate() { return pipeline.isEnabled(); }
+
+    public void setOnTileBoard(Consumer<TileBoard> onTileBoard) { this.onTileBoard = onTileBoard; }
+
+    /** 보이는 영역/마우스 근처 타일부터 계산(미리보기/전체 품질 모두) */
+    public void setTileFocus(TileFocus focus) {
+        generator.setTileFocus(focus);
+        previewGenerator.setTileFocus(focus);
+    }
+
+    /**
+     * 환경이 바뀔 때마다 자동으로 다시 생성. onImage는 미리보기/전체 결과마다(FX 스레드) 호출.
+     * 크기는 요청 시점에 width/height에서 읽음
+     */
+    public void enableAutoUpdate(IntSupplier width,
+                                 IntSupplier height,
+                                 Consumer<WritableImage> onImage,
+                                 Consumer<Throwable> onError) {
+        this.autoWidth = width;
+        this.autoHeight = height;
+        this.autoOnImage = onImage;
+        this.autoOnError = onError;
+        if (!pipeline.isEnabled()) pipeline.setEnabled(true);
+    }
+
+    /** 자동 갱신 끄기(진행 중인 자동 계산은 다음 타일에서 중단) */
+    public void disableAutoUpdate() {
+        autoOnImage = null;
+        autoOnError = null;
+        if (pipeline.isEnabled()) pipeline.setEnabled(false);
+    }
+
+    public RssiField getLastField() { return lastField; }
+
+    /** 앱 종료 시: 파이프라인/작업 스레드/엔진 스레드 풀 종료 */
+    public void close() {
+        pipeline.close();
+        if (running != null) running.cancel();
+        worker.shutdownNow();
+        generator.close();
+        previewGenerator.close();
+    }
+
+    /** 히트맵 클리어/평면도 교체 시 호출 */
+    public void clearLastField() { lastField = null; }
+
+    public boolean isRunning() {
+        return running != null && !running.isDone();
+    }
+
+    /**
+     * (width x height) 캔버스 크기로 히트맵 생성.
+     * 이미 실행 중이면 무시.
+     */
+    public void generateAsync(int width,
+                              int height,
+                              Consumer<WritableImage> onDone,
+                              Consumer<Throwable> onError) {
+        if (isRunning()) return;
+
+        applySettings();
+        // 대기/진행 중인 자동 계산보다 이 요청이 최신
+        pipeline.supersede();
+
+        int grid = state.getGridStepPx();
+        double vmin = state.legendMinProperty().get();
+        double vmax = state.legendMaxProperty().get();
+        int smooth = state.getSmoothRadiusPx();
+
+        // FX 스레드에서 스냅샷 → 계산 중 AP/벽 편집과 경합하지 않음
+        EnvironmentSnapshot snap = env.snapshot();
+
+        TileBoard board = new TileBoard(width, height, grid);
+        if (onTileBoard != null) onTileBoard.accept(board);
+
+        Task<HeatmapGenerator.Result> task = new Task<>() {
+            @Override
+            protected HeatmapGenerator.Result call() {
+                return generator.generate(new HeatmapGenerator.Request(width, height, grid)
+                        .snapshot(snap).image(vmin, vmax, smooth).board(board));
+            }
+        };
+        task.setOnSucceeded(e -> {
+            lastField = task.getValue().field;
+            if (onDone != null) onDone.accept(task.getValue().image);
+        });
+        task.setOnFailed(e -> {
+            if (onError != null) onError.accept(task.getException());
+        });
+
+        running = task;
+        worker.submit(task);
+    }
+
+    // ===== AP 드래그 =====
+
+    /**
+     * 히트맵을 보고 있을 때 AP 드래그 시작(FX 스레드). 환경은 바꾸지 않고,
+     * dragApTo 위치마다 그 AP만 LOS/거친 격자로 계산해 캐시된 나머지 레이어 위에 합성한 이미지를 onFrame으로 보냄.
+     * 놓을 때 endApDrag 후 실제 이동을 편집으로 적용하면 자동 갱신이 그 AP만 전체 품질로 다시 계산
+     */
+    public void beginApDrag(AP ap, int width, int height, Consumer<WritableImage> onFrame) {
+        endApDrag();
+        int index = env.getAps().indexOf(ap);
+        if (index < 0 || width <= 0 || height <= 0 || Double.isNaN(state.getScaleMPerPx())) return;
+
+        applySettings();
+        EnvironmentSnapshot snap = env.snapshot();
+        int grid = state.getGridStepPx();
+        double vmin = state.legendMinProperty().get();
+        double vmax = state.legendMaxProperty().get();
+
+        DragSession session = new DragSession(onFrame, vmin, vmax);
+        drag = session;
+        // base 합성(캐시 레이어 수 x 블록)도 드래그 스레드에서
+        dragWorker.execute(() -> session.preview = generator.beginApDrag(snap, index, width, height, grid, DRAG_GRID_FACTOR));
+    }
+
+    /** 드래그 위치 갱신(FX 스레드). 계산이 밀리면 가장 최근 위치만 계산 */
+    public void dragApTo(double x, double y) {
+        DragSession session = drag;
+        if (session == null) return;
+        session.target.set(new double[]{x, y});
+        if (session.scheduled.compareAndSet(false, true)) dragWorker.execute(session::renderLatest);
+    }
+
+    /** 드래그 종료(FX 스레드). 아직 도착하지 않은 프레임은 버림 */
+    public void endApDrag() {
+        drag = null;
+    }
+
+    /** 드래그 1회분 상태. 프레임 계산은 dragWorker, 표시는 FX 스레드 */
+    private final class DragSession {
+        final Consumer<WritableImage> onFrame;
+        final double vmin, vmax;
+        final AtomicReference<double[]> target = new AtomicReference<>();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        /** FX에 넘겼지만 아직 그려지지 않은 프레임(있으면 runLater를 더 쌓지 않고 교체만) */
+        final AtomicReference<WritableImage> pendingFrame = new AtomicReference<>();
+        ApDragPreview preview; // dragWorker 스레드에서만
+
+        DragSession(Consumer<WritableImage> onFrame, double vmin, double vmax) {
+            this.onFrame = onFrame;
+            this.vmin = vmin;
+            this.vmax = vmax;
+        }
+
+        void renderLatest() {
+            scheduled.set(false);
+            double[] p = target.getAndSet(null);
+            if (p == null || drag != this || preview == null) return;
+
+            WritableImage img = WifiMath.toImage(preview.render(p[0], p[1]), vmin, vmax);
+            if (pendingFrame.getAndSet(img) != null) return; // 앞 프레임이 아직 대기 중 → 교체만
+            Platform.runLater(() -> {
+                WritableImage frame = pendingFrame.getAndSet(null);
+                if (frame != null && drag == this) onFrame.accept(frame);
+            });
+        }
+    }
+
+    /**
+     * AppState의 스케일/경로손실 지수를 환경에 반영(값이 바뀌면 변경 이벤트 발생),
+     * 범례 최솟값을 AP 영향 반경 하한으로(그 아래는 같은 색이라 먼 AP는 계산하지 않음)
+     */
+    private void applySettings() {
+        env.setScaleMPerPx(state.getScaleMPerPx());
+        env.setPathLossN(state.getPathLossN());
+        double floor = state.legendMinProperty().get();
+        generator.setInfluenceFloorDbm(floor);
+        previewGenerator.setInfluenceFloorDbm(floor);
+    }
+
+    /** 디바운스가 끝난 자동 요청(FX 스레드): 스냅샷을 찍고 미리보기 → 전체 품질 순으로 계산 */
+    private void onAutoRequest(RecomputePipeline.Request req) {
+        Consumer<WritableImage> onImage = autoOnImage;
+        if (onImage == null || Double.isNaN(state.getScaleMPerPx())) return;
+
+        applySettings();
+        if (!req.isCurrent()) return; // 설정이 바뀌었으면 그 변경의 요청이 뒤따라 옴
+
+        int width = autoWidth.getAsInt();
+        int height = autoHeight.getAsInt();
+        if (width <= 0 || height <= 0) return;
+        int grid = state.getGridStepPx();
+        double vmin = state.legendMinProperty().get();
+        double vmax = state.legendMaxProperty().get();
+        int smooth = state.getSmoothRadiusPx();
+        EnvironmentSnapshot snap = env.snapshot();
+
+        // 캐시로 합성만 하면 되는 경우(되돌리기, 이름/출력 변경 등)는 미리보기 생략.
+        // 벽/설정이 안 바뀌었으면 바뀐 AP의 레이어(와 그 AP에 기댄 컬링 셀)만 확인
+        RecomputePipeline.Invalidation inv = req.invalidation;
+        Set<Long> changedKeys = null;
+        if (!inv.isGeometry()) {
+            changedKeys = new HashSet<>();
+            for (AP ap : inv.aps) changedKeys.add(LayerCache.apGainKey(ap));
+        }
+        boolean preview = generator.countStaleLayers(snap, width, height, grid, changedKeys) > 0;
+        int previewGrid = grid * PREVIEW_GRID_FACTOR;
+
+        worker.submit(() -> {
+            if (!req.isCurrent()) return; // 큐에서 기다리는 동안 낡음
+            try {
+                if (preview) {
+                    HeatmapGenerator.Result p = previewGenerator.generate(
+                            new HeatmapGenerator.Request(width, height, previewGrid).snapshot(snap)
+                                    .image(vmin, vmax, smooth).cancelled(() -> !req.isCurrent()));
+                    deliver(req, onImage, p, false);
+                }
+                TileBoard board = new TileBoard(width, height, grid);
+                Platform.runLater(() -> {
+                    if (req.isCurrent() && autoOnImage == onImage && onTileBoard != null) onTileBoard.accept(board);
+                });
+                HeatmapGenerator.Result r = generator.generate(
+                        new HeatmapGenerator.Request(width, height, grid).snapshot(snap)
+                                .image(vmin, vmax, smooth).cancelled(() -> !req.isCurrent()).board(board));
+                deliver(req, onImage, r, true);
+            } catch (CancellationException superseded) {
+                // 더 새 요청이 처리함
+            } catch (Throwable t) {
+                Platform.runLater(() -> {
+                    if (req.isCurrent() && autoOnError != null) autoOnError.accept(t);
+                });
+            }
+        });
+    }
+
+    private void deliver(RecomputePipeline.Request req, Consumer<WritableImage> onImage,
+                         HeatmapGenerator.Result r, boolean full) {
+        Platform.runLater(() -> {
+            if (!req.isCurrent() || autoOnImage != onImage) return;
+            if (full) lastField = r.field; // 내보내기는 전체 품질 격자만
+            onImage.accept(r.image);
+        });
+    }
+}
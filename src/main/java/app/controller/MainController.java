@@ -1,8 +1,18 @@
 package app.controller;
 
+import app.engine.TileFocus;
+import app.io.HeatmapPngExporter;
+import app.io.ProjectFile;
+import app.io.ProjectSnapshot;
+import app.jfr.FlightRecording;
+import app.jfr.FloorplanLoadEvent;
 import app.model.AppState;
+import app.model.EnvironmentEdit;
+import app.model.EnvironmentSnapshot;
 import app.model.WifiEnvironment;
 import app.ui.MainWindow;
+import app.vision.WallExtractor;
+import javafx.concurrent.Task;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Bounds;
 import javafx.geometry.Point2D;
@@ -21,6 +31,8 @@ import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
 
 public class MainController {
 
@@ -33,9 +45,17 @@ public class MainController {
 
     private final ViewportController viewportController;
     private final ToolsController toolsController;
+    private final HeatmapController heatmapController;
+    private final EditHistory history;
+
+    private final FlightRecording flightRecording = new FlightRecording();
+    private final TileFocus tileFocus = new TileFocus();
 
     private BufferedImage floorplanBI;
+    private File floorplanFile;
+    private File projectFile;
     private WritableImage heatmapImage;
+    private WritableImage preDragImage; // AP 드래그 시작 전 히트맵(옮기지 않고 놓으면 되돌림)
 
     // ===== VIEW Pan 상태 =====
     private boolean spaceDown = false;
@@ -56,7 +76,21 @@ public class MainController {
                 window.getCanvasView().getFloorGroup()
         );
 
-        this.toolsController = new ToolsController(env, state);
+        this.heatmapController = new HeatmapController(env, state);
+        this.history = new EditHistory(env, heatmapController.getGenerator().getLayerCache());
+        this.toolsController = new ToolsController(env, state, history);
+
+        // 보이는 영역/마우스 근처 타일부터 계산
+        heatmapController.setTileFocus(tileFocus);
+        viewportController.addViewChangeListener(this::updateTileFocusViewport);
+
+        // 계산 중 완성된 타일부터 표시(최종 이미지가 오면 교체)
+        heatmapController.setOnTileBoard(board -> window.getCanvasView().streamTiles(
+                board, state.legendMinProperty().get(), state.legendMaxProperty().get(), heatmapImage,
+                img -> {
+                    heatmapImage = img;
+                    render();
+                }));
 
         // 시작은 VIEW
         state.setTool(AppState.Tool.VIEW);
@@ -74,19 +108,39 @@ public class MainController {
         viewportController.centerViewport();
     }
 
+    /** 앱 종료 시: 자동 갱신 파이프라인/계산 스레드 정리 */
+    public void shutdown() {
+        window.getCanvasView().stopTileStream();
+        heatmapController.close();
+    }
+
     private void wireUi() {
         // ===== TopToolbar 기본 =====
         window.getTopToolbar().setOnOpenFloorplan(this::openFloorplan);
+        window.getTopToolbar().setOnOpenProject(this::openProject);
+        window.getTopToolbar().setOnSaveProject(this::saveProject);
 
-        window.getTopToolbar().setOnGenerateHeatmap(() ->
-                showInfo("아직 HeatmapController 연결 전입니다.\n다음 단계에서 generateAsync로 붙입니다.")
-        );
+        window.getTopToolbar().setOnExtractWalls(this::extractWalls);
+        window.getTopToolbar().setOnGenerateHeatmap(this::generateHeatmap);
 
         window.getTopToolbar().setOnClearHeatmap(() -> {
             heatmapImage = null;
+            window.getCanvasView().stopTileStream();
+            heatmapController.disableAutoUpdate();
+            heatmapController.clearLastField();
             render();
         });
 
+        window.getTopToolbar().setOnExportPng(this::exportPng);
+        window.getTopToolbar().setOnUndo(this::undo);
+        window.getTopToolbar().setOnRedo(this::redo);
+        window.getTopToolbar().setOnAutoRoi(() -> {
+            if (!toolsController.autoRoiFromWalls(this::render)) showInfo("벽이 없어 외벽 영역을 만들 수 없습니다.");
+        });
+        window.getTopToolbar().setOnClearRoi(() -> toolsController.clearRoi(this::render));
+
+        window.getTopToolbar().setOnRecordToggled(this::toggleRecording);
+
         window.getTopToolbar().setOnToolChanged(tool -> {
             state.setTool(tool);
 
@@ -177,6 +231,14 @@ public class MainController {
         viewportController.zoomAt(factor, cx, cy);
     }
 
+    private void updateTileFocusViewport() {
+        Bounds b = viewportController.visibleContentBounds();
+        if (b == null) return;
+        tileFocus.setViewport(b.getMinX(), b.getMinY(), b.getMaxX(), b.getMaxY());
+        // 보이는 AP만 그리므로 그려 둔 영역을 벗어나면 다시 그림
+        if (window.getCanvasView().setVisibleRegion(b.getMinX(), b.getMinY(), b.getMaxX(), b.getMaxY())) render();
+    }
+
     private void render() {
         window.getCanvasView().render(
                 env,
@@ -184,13 +246,28 @@ public class MainController {
                 heatmapImage,
                 toolsController.getCalibPts(),
                 toolsController.getFirstPoint(),
-                toolsController.getHoverPoint()
+                toolsController.getHoverPoint(),
+                toolsController.getDragAp(),
+                toolsController.getDragPos(),
+                toolsController.getRoiPts()
         );
     }
 
     // ====== Scene shortcuts ======
     private void installSceneShortcuts(Scene scene) {
         scene.setOnKeyPressed(e -> {
+            // Ctrl/Cmd+Z = 실행 취소, Ctrl/Cmd+Y 또는 Ctrl/Cmd+Shift+Z = 다시 실행
+            if (e.isShortcutDown() && e.getCode() == KeyCode.Z) {
+                if (e.isShiftDown()) redo();
+                else undo();
+                e.consume();
+                return;
+            }
+            if (e.isShortcutDown() && e.getCode() == KeyCode.Y) {
+                redo();
+                e.consume();
+                return;
+            }
             if (e.getCode() == KeyCode.SPACE) {
                 spaceDown = true;
                 updateCursorByMode();
@@ -207,6 +284,166 @@ public class MainController {
         });
     }
 
+    // ====== 실행 취소/다시 실행 ======
+    private void undo() {
+        if (!history.undo()) return;
+        afterHistoryChanged();
+    }
+
+    private void redo() {
+        if (!history.redo()) return;
+        afterHistoryChanged();
+    }
+
+    /**
+     * 그리던 프리뷰 정리 후 다시 그림.
+     * 히트맵을 보고 있으면 자동 갱신이 되돌린 캐시로 다시 합성(변경 이벤트 → RecomputePipeline)
+     */
+    private void afterHistoryChanged() {
+        toolsController.onToolChanged(state.getTool());
+        render();
+    }
+
+    // ====== Heatmap ======
+    private void generateHeatmap() {
+        if (Double.isNaN(state.getScaleMPerPx())) {
+            showInfo("먼저 스케일을 보정해주세요.");
+            return;
+        }
+        if (env.getAps().isEmpty()) {
+            showInfo("먼저 AP를 배치해주세요.");
+            return;
+        }
+
+        var canvas = window.getCanvasView().getDrawCanvas();
+        heatmapController.generateAsync(
+                (int) canvas.getWidth(),
+                (int) canvas.getHeight(),
+                img -> {
+                    window.getCanvasView().stopTileStream();
+                    heatmapImage = img;
+                    render();
+                    // 이후 편집은 자동으로 반영(디바운스 → 미리보기 → 전체 품질)
+                    heatmapController.enableAutoUpdate(
+                            () -> (int) canvas.getWidth(),
+                            () -> (int) canvas.getHeight(),
+                            this::onAutoHeatmap,
+                            ex -> showError("히트맵 갱신 실패: " + ex.getMessage()));
+                },
+                ex -> showError("히트맵 생성 실패: " + ex.getMessage())
+        );
+    }
+
+    private void onAutoHeatmap(WritableImage img) {
+        if (heatmapImage == null) return; // 그 사이 클리어됨
+        window.getCanvasView().stopTileStream();
+        heatmapImage = img;
+        render();
+    }
+
+    // ====== PNG 내보내기 ======
+    private void exportPng() {
+        var canvas = window.getCanvasView().getDrawCanvas();
+        int baseW = (int) canvas.getWidth();
+        int baseH = (int) canvas.getHeight();
+
+        javafx.scene.control.ChoiceDialog<Integer> scaleDialog =
+                new javafx.scene.control.ChoiceDialog<>(3, List.of(1, 2, 3, 4, 6));
+        scaleDialog.setHeaderText(null);
+        scaleDialog.setContentText("출력 배율(" + baseW + "x" + baseH + " 기준)");
+        Integer scale = scaleDialog.showAndWait().orElse(null);
+        if (scale == null) return;
+
+        FileChooser fc = new FileChooser();
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("PNG", "*.png"));
+        fc.setInitialFileName("heatmap.png");
+        if (projectFile != null) fc.setInitialDirectory(projectFile.getParentFile());
+        File f = fc.showSaveDialog(stage);
+        if (f == null) return;
+
+        HeatmapPngExporter.Options opt = new HeatmapPngExporter.Options();
+        opt.scale = scale;
+        opt.legendMinDbm = state.legendMinProperty().get();
+        opt.legendMaxDbm = state.legendMaxProperty().get();
+        opt.smoothRadiusPx = state.getSmoothRadiusPx();
+
+        // FX 스레드에서 입력 고정(계산 중 편집과 경합하지 않음)
+        EnvironmentSnapshot snap = env.snapshot();
+        var field = (heatmapImage != null) ? heatmapController.getLastField() : null;
+        BufferedImage plan = floorplanBI;
+
+        Task<HeatmapPngExporter.Result> task = new Task<>() {
+            @Override
+            protected HeatmapPngExporter.Result call() throws IOException {
+                return HeatmapPngExporter.export(f.toPath(), baseW, baseH, plan, field, snap, opt);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            HeatmapPngExporter.Result r = task.getValue();
+            showInfo(String.format(Locale.ROOT, "PNG 저장: %s (%dx%d, %.1f MB, %d ms)",
+                    f.getAbsolutePath(), r.width, r.height, r.bytes / 1e6, r.millis));
+        });
+        task.setOnFailed(e -> showError("PNG 내보내기 실패: " + task.getException().getMessage()));
+
+        Thread t = new Thread(task, "png-export");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // ====== 벽 자동 추출 ======
+    private void extractWalls() {
+        if (floorplanBI == null) {
+            showInfo("먼저 평면도를 열어주세요.");
+            return;
+        }
+
+        BufferedImage src = floorplanBI;
+        Task<WallExtractor.Result> task = new Task<>() {
+            @Override
+            protected WallExtractor.Result call() {
+                return new WallExtractor().extract(src);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            WallExtractor.Result res = task.getValue();
+            history.execute(EnvironmentEdit.addWalls(res.walls));
+            render();
+            showInfo("벽 " + res.walls.size() + "개 추출 (검출 선분 " + res.rawSegments + "개, "
+                    + res.millis + " ms)");
+        });
+        task.setOnFailed(e -> showError("벽 추출 실패: " + task.getException().getMessage()));
+
+        Thread t = new Thread(task, "wall-extract");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // ====== JFR 기록 ======
+    private void toggleRecording(boolean on) {
+        try {
+            if (on) {
+                flightRecording.start();
+                return;
+            }
+
+            FileChooser fc = new FileChooser();
+            fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("JFR", "*.jfr"));
+            fc.setInitialFileName("wifi-heatmap.jfr");
+            File f = fc.showSaveDialog(stage);
+            if (f == null) {
+                // 저장 취소: 기록은 계속
+                window.getTopToolbar().setRecordSelected(true);
+                return;
+            }
+
+            flightRecording.stopAndDump(f.toPath());
+            showInfo("JFR 기록 저장: " + f.getAbsolutePath());
+        } catch (Exception ex) {
+            window.getTopToolbar().setRecordSelected(flightRecording.isRecording());
+            showError("JFR 기록 실패: " + ex.getMessage());
+        }
+    }
+
     // ====== Floorplan open ======
     private void openFloorplan() {
         FileChooser fc = new FileChooser();
@@ -215,17 +452,38 @@ public class MainController {
         File f = fc.showOpenDialog(stage);
         if (f == null) return;
 
+        loadFloorplan(f);
+    }
+
+    private void loadFloorplan(File f) {
         try {
+            FloorplanLoadEvent loadEvent = new FloorplanLoadEvent();
+            loadEvent.begin();
+
             floorplanBI = ImageIO.read(f);
             if (floorplanBI == null) throw new IOException("이미지 로드 실패");
 
             Image fx = SwingFXUtils.toFXImage(floorplanBI, null);
+
+            loadEvent.end();
+            if (loadEvent.shouldCommit()) {
+                loadEvent.path = f.getAbsolutePath();
+                loadEvent.fileBytes = f.length();
+                loadEvent.width = floorplanBI.getWidth();
+                loadEvent.height = floorplanBI.getHeight();
+                loadEvent.commit();
+            }
+
+            floorplanFile = f;
             window.getCanvasView().getBaseImageView().setImage(fx);
 
             window.getCanvasView().getDrawCanvas().setWidth(fx.getWidth());
             window.getCanvasView().getDrawCanvas().setHeight(fx.getHeight());
 
             heatmapImage = null;
+            window.getCanvasView().stopTileStream();
+            heatmapController.disableAutoUpdate();
+            heatmapController.clearLastField();
 
             // viewport 갱신 + 중앙정렬
             viewportController.setBaseContentSize(fx.getWidth(), fx.getHeight());
@@ -247,6 +505,98 @@ public class MainController {
         }
     }
 
+    // ====== Project open/save ======
+    private void openProject() {
+        FileChooser fc = new FileChooser();
+        fc.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Wi-Fi Heatmap 프로젝트", ProjectFile.EXTENSION, ProjectSnapshot.EXTENSION),
+                new FileChooser.ExtensionFilter("스냅샷(히트맵 포함)", ProjectSnapshot.EXTENSION));
+        if (projectFile != null) fc.setInitialDirectory(projectFile.getParentFile());
+
+        File f = fc.showOpenDialog(stage);
+        if (f == null) return;
+
+        try {
+            ProjectFile.Loaded loaded;
+            int restoredLayers = 0;
+            if (isSnapshot(f)) {
+                ProjectSnapshot.Loaded snap = ProjectSnapshot.load(f.toPath(), env, state,
+                        heatmapController.getGenerator().getLayerCache());
+                loaded = snap.project;
+                restoredLayers = snap.layers;
+            } else {
+                loaded = ProjectFile.load(f.toPath(), env, state);
+            }
+            projectFile = f;
+            heatmapImage = null;
+            window.getCanvasView().stopTileStream();
+            heatmapController.disableAutoUpdate();
+            history.clear();
+
+            if (loaded.floorplan != null) {
+                File plan = new File(loaded.floorplan);
+                if (!plan.isAbsolute()) plan = new File(f.getParentFile(), loaded.floorplan);
+                if (plan.isFile()) loadFloorplan(plan);
+                else showInfo("평면도 파일을 찾을 수 없습니다: " + plan.getPath());
+            }
+
+            updateCursorByMode();
+            render();
+
+            // 캐시된 레이어가 있으면 바로 합성(바뀐 AP만 재계산)
+            if (restoredLayers > 0 && !Double.isNaN(state.getScaleMPerPx()) && !env.getAps().isEmpty()) {
+                generateHeatmap();
+            }
+        } catch (Exception ex) {
+            showError("프로젝트 열기 실패: " + ex.getMessage());
+        }
+    }
+
+    private void saveProject() {
+        FileChooser fc = new FileChooser();
+        fc.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Wi-Fi Heatmap 프로젝트", ProjectFile.EXTENSION),
+                new FileChooser.ExtensionFilter("스냅샷(히트맵 포함)", ProjectSnapshot.EXTENSION));
+        if (projectFile != null) {
+            fc.setInitialDirectory(projectFile.getParentFile());
+            fc.setInitialFileName(projectFile.getName());
+        } else {
+            fc.setInitialFileName("project.json");
+        }
+
+        File f = fc.showSaveDialog(stage);
+        if (f == null) return;
+
+        try {
+            // 도면은 프로젝트 파일 기준 상대 경로로(가능할 때)
+            String plan = null;
+            if (floorplanFile != null) {
+                try {
+                    plan = f.getAbsoluteFile().getParentFile().toPath()
+                            .relativize(floorplanFile.getAbsoluteFile().toPath()).toString();
+                } catch (IllegalArgumentException differentRoot) {
+                    plan = floorplanFile.getAbsolutePath();
+                }
+            }
+
+            env.setScaleMPerPx(state.getScaleMPerPx());
+            env.setPathLossN(state.getPathLossN());
+            if (isSnapshot(f)) {
+                ProjectSnapshot.save(f.toPath(), env, state, plan,
+                        heatmapController.getGenerator().getLayerCache());
+            } else {
+                ProjectFile.save(f.toPath(), env, state, plan);
+            }
+            projectFile = f;
+        } catch (Exception ex) {
+            showError("프로젝트 저장 실패: " + ex.getMessage());
+        }
+    }
+
+    private static boolean isSnapshot(File f) {
+        return f.getName().toLowerCase(Locale.ROOT).endsWith(".whms");
+    }
+
     // ====== Canvas handlers ======
     private void installCanvasHandlers() {
         var canvas = window.getCanvasView().getDrawCanvas();
@@ -254,6 +604,22 @@ public class MainController {
 
         // ===== VIEW Pan (우클릭 드래그 or Space+좌클릭 드래그) =====
         canvas.setOnMousePressed(e -> {
+            // AP 툴: 기존 AP 위를 누르면 드래그(히트맵을 보고 있으면 실시간 미리보기)
+            if (state.getTool() == AppState.Tool.AP) {
+                var ap = toolsController.beginApDrag(e.getX(), e.getY(), e.getButton());
+                if (ap != null) {
+                    if (heatmapImage != null && heatmapController.isAutoUpdate()) {
+                        preDragImage = heatmapImage;
+                        heatmapController.beginApDrag(ap, (int) canvas.getWidth(), (int) canvas.getHeight(), img -> {
+                            if (heatmapImage == null) return;
+                            heatmapImage = img;
+                            render();
+                        });
+                    }
+                    e.consume();
+                }
+                return;
+            }
             if (state.getTool() != AppState.Tool.VIEW) return;
 
             boolean startPan =
@@ -279,6 +645,12 @@ public class MainController {
         });
 
         canvas.setOnMouseDragged(e -> {
+            if (toolsController.dragApTo(e.getX(), e.getY())) {
+                heatmapController.dragApTo(e.getX(), e.getY());
+                render();
+                e.consume();
+                return;
+            }
             if (!panning) return;
 
             viewportController.panBy(
@@ -293,6 +665,17 @@ public class MainController {
         });
 
         canvas.setOnMouseReleased(e -> {
+            if (toolsController.getDragAp() != null) {
+                // 미리보기 종료 → 이동 편집 적용(자동 갱신이 옮긴 AP만 전체 품질로 다시 계산).
+                // 제자리에 놓으면 편집/재계산이 없으므로 드래그 전 이미지로 되돌림(거친 미리보기가 남지 않게)
+                heatmapController.endApDrag();
+                boolean moved = toolsController.endApDrag();
+                if (!moved && preDragImage != null && heatmapImage != null) heatmapImage = preDragImage;
+                preDragImage = null;
+                render();
+                e.consume();
+                return;
+            }
             if (!panning) return;
             panning = false;
             updateCursorByMode();
@@ -311,6 +694,13 @@ public class MainController {
             // VIEW는 툴 입력 없음
             if (state.getTool() == AppState.Tool.VIEW) return;
 
+            // AP 툴: 기존 AP 더블클릭 = 편집(라디오 값은 히트맵에 실시간 반영)
+            if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2
+                    && toolsController.editApAt(e.getX(), e.getY(), stage, this::render)) {
+                e.consume();
+                return;
+            }
+
             toolsController.onMouseClicked(
                     e.getX(), e.getY(),
                     e.getButton(),
@@ -322,7 +712,11 @@ public class MainController {
             );
         });
 
-        canvas.setOnMouseMoved(e -> toolsController.onMouseMoved(e.getX(), e.getY(), this::render));
+        canvas.setOnMouseMoved(e -> {
+            tileFocus.setPointer(e.getX(), e.getY());
+            toolsController.onMouseMoved(e.getX(), e.getY(), this::render);
+        });
+        canvas.setOnMouseExited(e -> tileFocus.clearPointer());
 
         // Ctrl/Cmd + 휠 = 줌
         sp.addEventFilter(ScrollEvent.SCROLL, e -> {
@@ -0,0 +1,272 @@
+package app.controller;
+
+import app.model.AP;
+import app.model.EnvironmentChange;
+import app.model.WifiEnvironment;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 환경 변경 이벤트 → (디바운스/병합) → 재계산 요청 파이프라인.
+ * - WifiEnvironment 변경 이벤트를 SubmissionPublisher(버퍼 제한)로 발행, 구독자가 1건씩 request
+ *   · 버퍼가 차면 이벤트를 버리고 "전체 무효화"로 처리(편집 스레드는 막히지 않음)
+ * - 구독자는 변경을 Invalidation 1개로 모으고, debounceMs 동안 조용하면 요청 1건을 내보냄
+ * - 변경이 들어올 때마다 세대 번호가 올라가므로 진행 중인 계산은 Request.isCurrent()로
+ *   자기가 낡았는지 알 수 있음 → 최신 상태만 끝까지 계산
+ * - 이벤트/타이머는 전용 스레드 1개("heatmap-events")에서 처리, 요청 콜백은 target 실행기(FX)에서 호출
+ */
+public final class RecomputePipeline implements AutoCloseable {
+
+    /** 기본 디바운스(ms): 드래그/스피너 연속 입력이 끝날 때까지 기다림 */
+    public static final long DEFAULT_DEBOUNCE_MS = 150;
+
+    /** 발행 버퍼(구독자가 못 따라오면 초과분은 전체 무효화로 합침) */
+    private static final int BUFFER_CAPACITY = 256;
+
+    /** 모인 변경 내용(요청 1건 = 무효화 1개) */
+    public static final class Invalidation {
+        /** 추가/삭제/이동/설정이 바뀐 AP(동일 객체 기준) */
+        public final Set<AP> aps;
+        public final boolean walls;
+        /** 스케일/경로손실 등 전역 설정 */
+        public final boolean settings;
+        /** 이벤트 유실 또는 수동 요청 → 전부 다시 */
+        public final boolean all;
+        /** 합쳐진 이벤트 수 */
+        public final int changes;
+        /** 마지막으로 합쳐진 이벤트의 환경 버전 */
+        public final long version;
+
+        Invalidation(Set<AP> aps, boolean walls, boolean settings, boolean all, int changes, long version) {
+            this.aps = aps;
+            this.walls = walls;
+            this.settings = settings;
+            this.all = all;
+            this.changes = changes;
+            this.version = version;
+        }
+
+        /** 전체 격자가 바뀌는 변경인지(벽/설정/전체) - 레이어 캐시를 거의 못 씀 */
+        public boolean isGeometry() { return all || walls || settings; }
+
+        @Override
+        public String toString() {
+            if (all) return "all (" + changes + " changes)";
+            return "aps=" + aps.size() + (walls ? " walls" : "") + (settings ? " settings" : "")
+                    + " (" + changes + " changes, v" + version + ")";
+        }
+    }
+
+    /** 재계산 요청. 새 변경이 들어오면 isCurrent()가 false가 됨 */
+    public final class Request {
+        public final Invalidation invalidation;
+        private final long generation;
+
+        Request(Invalidation invalidation, long generation) {
+            this.invalidation = invalidation;
+            this.generation = generation;
+        }
+
+        /** 이 요청 이후 변경/요청이 없었는지(어느 스레드에서나 호출 가능) */
+        public boolean isCurrent() {
+            return !closed && generation == RecomputePipeline.this.generation.get();
+        }
+    }
+
+    private final WifiEnvironment env;
+    private final Executor target;
+    private final Consumer<Request> onRequest;
+    private final long debounceMs;
+
+    private final ScheduledThreadPoolExecutor events = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "heatmap-events");
+        t.setDaemon(true);
+        return t;
+    });
+    private final SubmissionPublisher<EnvironmentChange> publisher;
+    private final Consumer<EnvironmentChange> listener = this::publish;
+
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean enabled;
+    private volatile boolean closed;
+    private volatile boolean dropped;
+
+    // ===== 병합 중인 변경(events 스레드에서만 접근) =====
+    private Set<AP> pendingAps = newApSet();
+    private boolean pendingWalls;
+    private boolean pendingSettings;
+    private boolean pendingAll;
+    private int pendingChanges;
+    private long pendingVersion;
+    private ScheduledFuture<?> timer;
+
+    /**
+     * @param target    onRequest를 실행할 곳(FX 앱이면 Platform::runLater)
+     * @param onRequest 디바운스가 끝난 요청 처리(스냅샷을 찍고 계산을 시작)
+     */
+    public RecomputePipeline(WifiEnvironment env, Executor target, Consumer<Request> onRequest, long debounceMs) {
+        this.env = env;
+        this.target = target;
+        this.onRequest = onRequest;
+        this.debounceMs = Math.max(0L, debounceMs);
+
+        events.setRemoveOnCancelPolicy(true);
+        this.publisher = new SubmissionPublisher<>(events, BUFFER_CAPACITY);
+        publisher.subscribe(new Coalescer());
+        env.addChangeListener(listener);
+    }
+
+    public long getDebounceMs() { return debounceMs; }
+
+    public boolean isEnabled() { return enabled; }
+
+    /**
+     * 자동 재계산 on/off. 끄면 모이던 변경을 버리고 진행 중인 요청도 낡은 것으로 만듦.
+     * 켜는 동안 들어온 변경만 요청으로 이어짐
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        generation.incrementAndGet();
+        events.execute(this::discardPending);
+    }
+
+    /**
+     * 진행 중인 요청을 모두 낡은 것으로 만들고 새 세대 번호를 받음(수동 생성이 자동 요청을 앞지를 때).
+     * 반환값은 supersede 이후 변경이 없는 동안 isCurrent(token)가 true
+     */
+    public long supersede() {
+        return generation.incrementAndGet();
+    }
+
+    /** supersede()로 받은 세대가 아직 최신인지 */
+    public boolean isCurrent(long token) {
+        return !closed && token == generation.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        env.removeChangeListener(listener);
+        publisher.close();
+        events.shutdownNow();
+    }
+
+    // ===== 발행 =====
+
+    /** 환경 리스너(편집 스레드): 막히지 않게 offer, 넘치면 버리고 전체 무효화 표시 */
+    private void publish(EnvironmentChange change) {
+        if (!enabled || closed || !affectsField(change)) return;
+        generation.incrementAndGet(); // 진행 중인 계산은 즉시 낡음
+        publisher.offer(change, (sub, dropped) -> {
+            this.dropped = true;
+            return false;
+        });
+    }
+
+    // ===== 구독(events 스레드) =====
+
+    private final class Coalescer implements Flow.Subscriber<EnvironmentChange> {
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(EnvironmentChange change) {
+            if (enabled) {
+                merge(change);
+                schedule();
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // 발행 쪽 예외는 없음(offer만 사용). 모인 변경은 버림
+            discardPending();
+        }
+
+        @Override
+        public void onComplete() {
+            discardPending();
+        }
+    }
+
+    private void merge(EnvironmentChange c) {
+        pendingChanges++;
+        pendingVersion = Math.max(pendingVersion, c.globalVersion);
+        switch (c.kind) {
+            case SCALE_CHANGED, PATH_LOSS_CHANGED, MASK_CHANGED -> pendingSettings = true;
+            default -> {
+                if (c.affectsWalls()) pendingWalls = true;
+                else if (c.ap != null) pendingAps.add(c.ap);
+            }
+        }
+    }
+
+    /** 목록 순서만 바뀐 건 결과와 무관 → 진행 중인 계산을 낡게 만들지도, 요청을 만들지도 않음 */
+    static boolean affectsField(EnvironmentChange c) {
+        return c.kind != EnvironmentChange.Kind.APS_REORDERED && c.kind != EnvironmentChange.Kind.WALLS_REORDERED;
+    }
+
+    /** 마지막 변경 후 debounceMs 뒤에 한 번 발사(타이머 재설정) */
+    private void schedule() {
+        if (timer != null) timer.cancel(false);
+        timer = events.schedule(this::fire, debounceMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void fire() {
+        timer = null;
+        if (dropped) {
+            dropped = false;
+            pendingAll = true;
+        }
+        if (!enabled || closed) {
+            discardPending();
+            return;
+        }
+        Invalidation inv = new Invalidation(Collections.unmodifiableSet(pendingAps),
+                pendingWalls, pendingSettings, pendingAll, pendingChanges, pendingVersion);
+        resetPending();
+
+        Request req = new Request(inv, generation.get());
+        target.execute(() -> {
+            if (req.isCurrent()) onRequest.accept(req);
+        });
+    }
+
+    private void discardPending() {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+        dropped = false;
+        resetPending();
+    }
+
+    private void resetPending() {
+        pendingAps = newApSet();
+        pendingWalls = false;
+        pendingSettings = false;
+        pendingAll = false;
+        pendingChanges = 0;
+        pendingVersion = 0;
+    }
+
+    private static Set<AP> newApSet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+}
@@ -1,14 +1,16 @@
 package app.controller;
 
+import app.dialog.ApEditorDialog;
 import app.model.*;
 import javafx.geometry.Point2D;
 import javafx.scene.input.MouseButton;
+import javafx.stage.Window;
 
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * SCALE / WALL / AP 툴 입력을 한 군데로 모은 컨트롤러.
+ * SCALE / WALL / AP / ROI 툴 입력을 한 군데로 모은 컨트롤러.
  * - MainController는 여기로 이벤트를 라우팅만 함.
  * - 렌더링은 MainController가 "현재 상태"를 받아서 CanvasView.render(...) 호출.
  */
@@ -16,6 +18,7 @@ public class ToolsController {
 
     private final WifiEnvironment env;
     private final AppState state;
+    private final EditHistory history;
 
     // SCALE 확정 선분(2점)
     private final List<Point2D> calibPts = new ArrayList<>();
@@ -24,21 +27,43 @@ public class ToolsController {
     private Point2D firstPoint = null;
     private Point2D hoverPoint = null;
 
-    public ToolsController(WifiEnvironment env, AppState state) {
+    // AP 드래그(AP 툴에서 기존 AP를 끌기): 놓을 때까지 환경은 그대로, 표시 위치만 dragPos
+    private static final double AP_PICK_RADIUS_PX = 10.0;
+    private AP dragAp = null;
+    private Point2D dragPos = null;
+    private boolean dragMoved = false;
+    private boolean suppressClick = false;
+
+    // ROI(관심 영역) 다각형 그리기: 클릭마다 꼭짓점, 첫 점 근처를 누르면 닫고 마스크에 추가
+    private static final double ROI_CLOSE_RADIUS_PX = 10.0;
+    /** 벽 기준 자동 영역의 바깥 여유(px) */
+    private static final double ROI_AUTO_MARGIN_PX = 12.0;
+    private final List<Point2D> roiPts = new ArrayList<>();
+
+    public ToolsController(WifiEnvironment env, AppState state, EditHistory history) {
         this.env = env;
         this.state = state;
+        this.history = history;
     }
 
     // ===== getters (MainController가 render에 넘김) =====
     public List<Point2D> getCalibPts() { return calibPts; }
     public Point2D getFirstPoint() { return firstPoint; }
     public Point2D getHoverPoint() { return hoverPoint; }
+    public AP getDragAp() { return dragAp; }
+    public Point2D getDragPos() { return dragPos; }
+    /** 그리는 중인 관심 영역 꼭짓점(아직 닫히지 않음) */
+    public List<Point2D> getRoiPts() { return roiPts; }
 
     // ===== tool change hook =====
     public void onToolChanged(AppState.Tool tool) {
         // 모드 바뀔 때 프리뷰 정리
         firstPoint = null;
         hoverPoint = null;
+        dragAp = null;
+        dragPos = null;
+        dragMoved = false;
+        roiPts.clear();
 
         // SCALE로 들어오면 이전 선분 제거(혼동 방지)
         if (tool == AppState.Tool.SCALE) {
@@ -80,9 +105,16 @@ public class ToolsController {
         // 우클릭은 팬 전용(MainController에서 처리)
         if (button == MouseButton.SECONDARY) return;
 
+        // AP를 끌어서 옮긴 직후의 클릭은 무시(새 AP 추가 방지)
+        if (suppressClick) {
+            suppressClick = false;
+            return;
+        }
+
         switch (state.getTool()) {
             case SCALE -> handleScaleClick(x, y, requestRender, requestReturnToViewAndClearToggle);
             case WALL  -> handleWallClick(x, y, requestRender);
+            case ROI   -> handleRoiClick(x, y, requestRender);
             case AP    -> {
                 addApAt(x, y);
                 if (requestRender != null) requestRender.run();
@@ -99,6 +131,110 @@ public class ToolsController {
             hoverPoint = new Point2D(x, y);
             if (requestRender != null) requestRender.run();
         }
+        if (state.getTool() == AppState.Tool.ROI && !roiPts.isEmpty()) {
+            hoverPoint = new Point2D(x, y);
+            if (requestRender != null) requestRender.run();
+        }
+    }
+
+    // ===== ROI =====
+
+    /** 외벽(벽 끝점의 볼록 껍질 + 여유)으로 관심 영역을 교체. 벽이 없으면 false */
+    public boolean autoRoiFromWalls(Runnable requestRender) {
+        RoiMask mask = RoiMask.fromWalls(env.getWalls(), ROI_AUTO_MARGIN_PX);
+        if (mask.isEmpty()) return false;
+        roiPts.clear();
+        history.execute(EnvironmentEdit.setRoiMask(env, mask, "관심 영역: 외벽 기준"));
+        if (requestRender != null) requestRender.run();
+        return true;
+    }
+
+    /** 관심 영역을 지움(캔버스 전체 계산으로 돌아감) */
+    public void clearRoi(Runnable requestRender) {
+        roiPts.clear();
+        hoverPoint = null;
+        if (!env.getRoiMask().isEmpty()) {
+            history.execute(EnvironmentEdit.setRoiMask(env, RoiMask.EMPTY, "관심 영역 지우기"));
+        }
+        if (requestRender != null) requestRender.run();
+    }
+
+    // ===== AP drag =====
+
+    /** AP 툴에서 기존 AP 위를 누르면 드래그 시작. 잡은 AP(없으면 null) */
+    public AP beginApDrag(double x, double y, MouseButton button) {
+        suppressClick = false;
+        if (state.getTool() != AppState.Tool.AP || button != MouseButton.PRIMARY) return null;
+        AP hit = findApNear(x, y);
+        if (hit == null) return null;
+        dragAp = hit;
+        dragPos = new Point2D(hit.x, hit.y);
+        dragMoved = false;
+        return hit;
+    }
+
+    /** 드래그 중 위치 갱신. 드래그 중이 아니면 false */
+    public boolean dragApTo(double x, double y) {
+        if (dragAp == null) return false;
+        dragPos = new Point2D(x, y);
+        dragMoved = true;
+        return true;
+    }
+
+    /**
+     * 놓을 때 실제 이동을 편집 기록으로 적용. 움직였으면 true.
+     * 뒤따르는 클릭은 무시(기존 AP를 누른 것이므로 그 자리에 AP를 겹쳐 추가하지 않음)
+     */
+    public boolean endApDrag() {
+        if (dragAp == null) return false;
+        boolean moved = dragMoved && (dragPos.getX() != dragAp.x || dragPos.getY() != dragAp.y);
+        if (moved) history.execute(EnvironmentEdit.moveAp(dragAp, dragPos.getX(), dragPos.getY()));
+        suppressClick = true;
+        dragAp = null;
+        dragPos = null;
+        dragMoved = false;
+        return moved;
+    }
+
+    // ===== AP edit =====
+
+    /**
+     * AP 툴에서 (x, y) 근처 AP를 편집 대화상자로 엶(더블클릭). AP가 없으면 false.
+     * 대화상자에서 바꾸는 라디오 값은 바로 환경에 반영되고(히트맵 실시간 갱신),
+     * OK면 바뀐 내용을 편집 기록 1건으로, 취소면 원래대로, 삭제면 원래대로 돌린 뒤 삭제를 기록
+     */
+    public boolean editApAt(double x, double y, Window owner, Runnable requestRender) {
+        if (state.getTool() != AppState.Tool.AP) return false;
+        AP ap = findApNear(x, y);
+        if (ap == null) return false;
+
+        EnvironmentEdit.ApState before = EnvironmentEdit.ApState.of(ap);
+        ApEditorDialog.Result result = ApEditorDialog.show(owner, env, ap, requestRender);
+        switch (result) {
+            case OK -> {
+                if (!before.matches(ap)) history.record(EnvironmentEdit.apEdited(ap, before));
+            }
+            case DELETE -> {
+                EnvironmentEdit.apEdited(ap, before).revert(env);
+                history.execute(EnvironmentEdit.removeAp(env, ap));
+            }
+            default -> EnvironmentEdit.apEdited(ap, before).revert(env);
+        }
+        if (requestRender != null) requestRender.run();
+        return true;
+    }
+
+    private AP findApNear(double x, double y) {
+        AP best = null;
+        double bestD = AP_PICK_RADIUS_PX;
+        for (AP ap : env.getAps()) {
+            double d = Math.hypot(ap.x - x, ap.y - y);
+            if (d <= bestD) {
+                best = ap;
+                bestD = d;
+            }
+        }
+        return best;
     }
 
     // ===== internals =====
@@ -158,7 +294,7 @@ public class ToolsController {
             // TODO: 나중에 LeftPanel 선택값(AppState)에 따라 material/db 반영
             w.setMaterial(WallMaterial.CONCRETE_WALL);
 
-            env.getWalls().add(w);
+            history.execute(EnvironmentEdit.addWall(w));
         }
 
         firstPoint = null;
@@ -167,6 +303,24 @@ public class ToolsController {
         if (requestRender != null) requestRender.run();
     }
 
+    private void handleRoiClick(double x, double y, Runnable requestRender) {
+        Point2D p = new Point2D(x, y);
+        if (roiPts.size() >= 3 && roiPts.get(0).distance(p) <= ROI_CLOSE_RADIUS_PX) {
+            double[] poly = new double[roiPts.size() * 2];
+            for (int i = 0; i < roiPts.size(); i++) {
+                poly[i * 2] = roiPts.get(i).getX();
+                poly[i * 2 + 1] = roiPts.get(i).getY();
+            }
+            history.execute(EnvironmentEdit.setRoiMask(env, env.getRoiMask().withPolygon(poly), "관심 영역 추가"));
+            roiPts.clear();
+            hoverPoint = null;
+        } else if (roiPts.isEmpty() || roiPts.get(roiPts.size() - 1).distance(p) >= 3.0) {
+            roiPts.add(p);
+            hoverPoint = p;
+        }
+        if (requestRender != null) requestRender.run();
+    }
+
     private void addApAt(double x, double y) {
         AP ap = new AP();
         ap.name = "AP-" + (env.getAps().size() + 1);
@@ -181,7 +335,7 @@ public class ToolsController {
             ap.radios.get(Band.GHZ_6).ssid  = ap.name + "_6G";
         } catch (Exception ignored) {}
 
-        env.getAps().add(ap);
+        history.execute(EnvironmentEdit.addAp(ap));
     }
 
     private double safeGetCalibRealMeters() {
@@ -3,6 +3,7 @@ package app.controller;
 import javafx.application.Platform;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import javafx.geometry.BoundingBox;
 import javafx.geometry.Bounds;
 import javafx.geometry.Point2D;
 import javafx.scene.Group;
@@ -218,6 +219,27 @@ public class ViewportController {
         });
     }
 
+    /**
+     * 화면에 보이는 영역을 평면도(캔버스) 좌표로. viewport가 아직 없으면 null
+     */
+    public Bounds visibleContentBounds() {
+        Bounds vp = canvasSP.getViewportBounds();
+        if (vp == null || vp.getWidth() <= 0 || vp.getHeight() <= 0) return null;
+        Point2D topLeftScene = canvasSP.localToScene(0, 0);
+        Bounds sceneVp = new BoundingBox(topLeftScene.getX(), topLeftScene.getY(), vp.getWidth(), vp.getHeight());
+        return floorGroup.sceneToLocal(sceneVp);
+    }
+
+    /** 팬/줌/스크롤/창 크기로 보이는 영역이 바뀔 때마다 호출 */
+    public void addViewChangeListener(Runnable r) {
+        zoomScale.addListener((o, ov, nv) -> r.run());
+        panTx.addListener((o, ov, nv) -> r.run());
+        panTy.addListener((o, ov, nv) -> r.run());
+        canvasSP.hvalueProperty().addListener((o, ov, nv) -> r.run());
+        canvasSP.vvalueProperty().addListener((o, ov, nv) -> r.run());
+        canvasSP.viewportBoundsProperty().addListener((o, ov, nv) -> r.run());
+    }
+
     // ✅ Fit(맞춤): viewport에 컨텐츠가 들어오도록 줌 자동 설정
     public void fitToViewport(int paddingPx, double contentW, double contentH) {
         Platform.runLater(() -> {
@@ -3,20 +3,29 @@ package app.dialog;
 import app.model.RadioConfig;
 import app.model.AP;
 import app.model.Band;
+import app.model.WifiEnvironment;
 import javafx.geometry.Insets;
 import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Window;
 
+/**
+ * AP 편집 대화상자.
+ * - 라디오(활성/출력/이득/SSID 등)와 AP 활성은 바꾸는 즉시 env에 쓰고 변경 이벤트를 냄
+ *   → 자동 갱신 중이면 히트맵이 실시간으로 따라옴(출력/활성 변경은 캐시 레이어 재합성만)
+ * - 이름/위치는 OK를 눌렀을 때 반영
+ * - 취소/삭제 시 되돌리기와 편집 기록은 호출 측 몫(열기 전에 EnvironmentEdit.ApState.of(ap)를 찍어 둘 것)
+ */
 public class ApEditorDialog {
 
     /** 결과 타입: OK / DELETE / CANCEL */
     public enum Result { OK, DELETE, CANCEL }
 
     public static Result show(Window owner,
+                              WifiEnvironment env,
                               AP ap,
-                              Runnable onChanged // 값 바뀌었을 때(OK/DELETE) 호출
+                              Runnable onChanged // 값이 바뀔 때마다(실시간 + OK/DELETE) 호출
     ) {
         Dialog<Result> dlg = new Dialog<>();
         dlg.setTitle("AP 편집: " + ap.name);
@@ -33,6 +42,11 @@ public class ApEditorDialog {
         TextField apName = new TextField(ap.name);
         CheckBox apEnabled = new CheckBox("AP 활성화");
         apEnabled.setSelected(ap.enabled);
+        apEnabled.selectedProperty().addListener((o, ov, nv) -> {
+            ap.enabled = nv;
+            env.updateAp(ap);
+            if (onChanged != null) onChanged.run();
+        });
 
         Spinner<Double> sx = new Spinner<>(0.0, 100000.0, ap.x, 1.0);
         Spinner<Double> sy = new Spinner<>(0.0, 100000.0, ap.y, 1.0);
@@ -59,7 +73,7 @@ public class ApEditorDialog {
             if (rc == null) continue;
 
             Tab tab = new Tab(band.label);
-            tab.setContent(buildRadioEditor(ap, rc, onChanged)); // 실시간 반영 포함
+            tab.setContent(buildRadioEditor(env, ap, rc, onChanged)); // 실시간 반영 포함
             tabs.getTabs().add(tab);
         }
 
@@ -78,10 +92,12 @@ public class ApEditorDialog {
                 commitSpinner(sx);
                 commitSpinner(sy);
 
-                ap.name = apName.getText().trim().isEmpty() ? ap.name : apName.getText().trim();
-                ap.enabled = apEnabled.isSelected();
-                ap.x = sx.getValue();
-                ap.y = sy.getValue();
+                String name = apName.getText().trim().isEmpty() ? ap.name : apName.getText().trim();
+                if (!name.equals(ap.name)) {
+                    ap.name = name;
+                    env.updateAp(ap);
+                }
+                env.moveAp(ap, sx.getValue(), sy.getValue());
 
                 if (onChanged != null) onChanged.run();
                 return Result.OK;
@@ -108,8 +124,8 @@ public class ApEditorDialog {
         } catch (NumberFormatException ignored) { }
     }
 
-    /** 밴드별 설정 UI 한 장 */
-    private static Node buildRadioEditor(AP ap, RadioConfig rc, Runnable onChanged) {
+    /** 밴드별 설정 UI 한 장. 값이 바뀌면 rc에 쓰고 env.updateRadio */
+    private static Node buildRadioEditor(WifiEnvironment env, AP ap, RadioConfig rc, Runnable onChanged) {
         GridPane gp = new GridPane();
         gp.setHgap(10);
         gp.setVgap(10);
@@ -157,42 +173,52 @@ public class ApEditorDialog {
         selectOrFirstInt(width, rc.channelWidth);
         security.getSelectionModel().select(rc.security == null ? "WPA2" : rc.security);
 
-        // 실시간 반영
+        // 실시간 반영(값이 실제로 바뀔 때만 이벤트)
+        Runnable changed = () -> {
+            env.updateRadio(ap, rc.band);
+            if (onChanged != null) onChanged.run();
+        };
+
         radioEnabled.selectedProperty().addListener((o, ov, nv) -> {
             rc.enabled = nv;
-            if (onChanged != null) onChanged.run();
+            changed.run();
         });
 
-        ssid.textProperty().addListener((o, ov, nv) -> rc.ssid = nv);
+        ssid.textProperty().addListener((o, ov, nv) -> {
+            rc.ssid = nv;
+            changed.run();
+        });
 
         txSlider.valueProperty().addListener((o, ov, nv) -> {
-            rc.txPowerDbm = Math.round(nv.doubleValue());
-            if (onChanged != null) onChanged.run();
+            double tx = Math.round(nv.doubleValue());
+            if (tx == rc.txPowerDbm) return; // 슬라이더는 1 dBm 안에서도 계속 움직임
+            rc.txPowerDbm = tx;
+            changed.run();
         });
 
         gain.valueProperty().addListener((o, ov, nv) -> {
             rc.antennaGain = nv;
-            if (onChanged != null) onChanged.run();
+            changed.run();
         });
 
         mode.valueProperty().addListener((o, ov, nv) -> {
             rc.mode = nv;
-            if (onChanged != null) onChanged.run();
+            changed.run();
         });
 
         channel.valueProperty().addListener((o, ov, nv) -> {
             if (nv != null) rc.channel = nv;
-            if (onChanged != null) onChanged.run();
+            changed.run();
         });
 
         width.valueProperty().addListener((o, ov, nv) -> {
             if (nv != null) rc.channelWidth = nv;
-            if (onChanged != null) onChanged.run();
+            changed.run();
         });
 
         security.valueProperty().addListener((o, ov, nv) -> {
             rc.security = nv;
-            if (onChanged != null) onChanged.run();
+            changed.run();
         });
 
         int r = 0;
@@ -0,0 +1,128 @@
+package app.engine;
+
+import app.model.Band;
+import app.model.Wall;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * AP 드래그 중 빠른 미리보기(HeatmapGenerator.beginApDrag로 생성).
+ * - 시작할 때 나머지 AP의 캐시 레이어를 블록별 최댓값으로 합쳐 base로 둠
+ *   · 드래그 중인 AP가 컬링 증인이라 비어 있던 셀은 그 레이어 AP의 LOS 값으로 채움
+ * - 프레임마다 드래그 AP 레이어만 거친 격자(gridStep x coarseFactor, 블록 중심 1샘플)에서
+ *   LOS(거리 손실 + 직선상 벽 감쇠)로 계산해 base 위에 최댓값 합성
+ * - 관심 영역(BlockMask)이 있으면 영역 밖 블록은 건너뜀(base도 NaN)
+ * - 반사/회절/슈퍼샘플링은 생략하므로 값은 전체 품질보다 약간 낮음. 놓으면 전체 품질로 다시 계산할 것
+ *
+ * render는 한 스레드에서만 호출(결과 격자는 다음 render 호출 때 덮어씀)
+ */
+public final class ApDragPreview {
+
+    private static final Band[] BANDS = Band.values();
+
+    private final RssiField base;
+    private final RssiField out;
+    private final int coarseFactor;
+    private final BlockMask mask; // null = 캔버스 전체
+
+    private final double[] bandConst;
+    private final double scaleMPerPx;
+    private final double pathLossN;
+    private final double minDistanceM;
+
+    // 벽(x1,y1,x2,y2 연속) + 밴드별 감쇠
+    private final double[] seg;
+    private final double[][] att;
+
+    ApDragPreview(int width, int height, int gridStepPx, int coarseFactor, double[] bandConst, List<Wall> walls,
+                  double scaleMPerPx, double pathLossN, double minDistanceM, BlockMask mask) {
+        this.base = new RssiField(width, height, gridStepPx);
+        this.out = new RssiField(width, height, gridStepPx);
+        this.coarseFactor = Math.max(1, coarseFactor);
+        this.mask = mask;
+        this.bandConst = bandConst;
+        this.scaleMPerPx = scaleMPerPx;
+        this.pathLossN = pathLossN;
+        this.minDistanceM = minDistanceM;
+
+        int n = walls.size();
+        this.seg = new double[n * 4];
+        this.att = new double[BANDS.length][n];
+        for (int i = 0; i < n; i++) {
+            Wall w = walls.get(i);
+            seg[i * 4] = w.x1;
+            seg[i * 4 + 1] = w.y1;
+            seg[i * 4 + 2] = w.x2;
+            seg[i * 4 + 3] = w.y2;
+            for (Band b : BANDS) att[b.ordinal()][i] = w.attenuationDb(b);
+        }
+    }
+
+    /** 생성기가 나머지 AP 레이어를 합성해 넣는 곳 */
+    RssiField base() { return base; }
+
+    /** 드래그 AP가 (x, y)에 있을 때의 합성 격자(전체 품질과 같은 격자 크기). 거친 행은 공용 풀에서 병렬 */
+    public RssiField render(double x, double y) {
+        float[] dst = out.values();
+        System.arraycopy(base.values(), 0, dst, 0, dst.length);
+
+        int cf = coarseFactor;
+        int coarseRows = (base.rows + cf - 1) / cf;
+        IntStream.range(0, coarseRows).parallel().forEach(r -> renderRow(x, y, r * cf, dst, new double[BANDS.length]));
+        return out;
+    }
+
+    /** 거친 행 1개(블록 행 cy..cy+coarseFactor). 행끼리 블록이 겹치지 않음 */
+    private void renderRow(double x, double y, int cy, float[] dst, double[] loss) {
+        int step = base.gridStepPx;
+        int cf = coarseFactor;
+        int by1 = Math.min(base.rows, cy + cf);
+        int py = Math.min(base.height - 1, (cy * step + by1 * step) / 2);
+        for (int cx = 0; cx < base.cols; cx += cf) {
+            int bx1 = Math.min(base.cols, cx + cf);
+            if (mask != null && !mask.anyIn(cx, cy, bx1, by1)) continue;
+            int px = Math.min(base.width - 1, (cx * step + bx1 * step) / 2);
+            float v = (float) losDbm(bandConst, x, y, px, py, loss);
+            if (Float.isNaN(v)) continue;
+            for (int by = cy; by < by1; by++) {
+                int row = by * base.cols;
+                for (int i = row + cx; i < row + bx1; i++) {
+                    if (mask != null && !mask.get(i - row, by)) continue;
+                    if (Float.isNaN(dst[i]) || v > dst[i]) dst[i] = v;
+                }
+            }
+        }
+    }
+
+    /** LOS RSSI(dBm, 밴드 중 최대). 활성 밴드가 없으면 NaN. loss는 밴드 수 크기의 작업 배열 */
+    double losDbm(double[] bandConst, double ax, double ay, double px, double py, double[] loss) {
+        double dM = Math.max(Math.hypot(px - ax, py - ay) * scaleMPerPx, minDistanceM);
+        double distLoss = WifiMath.pathLossDistanceDb(dM, pathLossN);
+
+        double best = Double.NaN;
+        boolean walled = false;
+        for (int b = 0; b < BANDS.length; b++) {
+            if (Double.isNaN(bandConst[b])) continue;
+            if (!walled) {
+                wallLossAlong(ax, ay, px, py, loss);
+                walled = true;
+            }
+            double v = bandConst[b] - distLoss - loss[b];
+            if (Double.isNaN(best) || v > best) best = v;
+        }
+        return best;
+    }
+
+    /** 직선 (a→p)가 지나는 벽의 밴드별 감쇠 합을 loss에(WifiMath.segmentsIntersect 좌표 버전, 할당 없음) */
+    private void wallLossAlong(double ax, double ay, double px, double py, double[] loss) {
+        Arrays.fill(loss, 0.0);
+        int n = seg.length / 4;
+        for (int i = 0; i < n; i++) {
+            double cx = seg[i * 4], cy = seg[i * 4 + 1], dx = seg[i * 4 + 2], dy = seg[i * 4 + 3];
+            if (!WifiMath.segmentsIntersect(ax, ay, px, py, cx, cy, dx, dy)) continue;
+            for (int b = 0; b < loss.length; b++) loss[b] += att[b][i];
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package app.engine;
+
+import java.util.Arrays;
+
+/**
+ * AP 공간 색인(불변): 균일 격자 버킷에 AP 중심을 넣고, 사각형과 영향 원(중심 + 반경)이 겹치는 AP만 찾음.
+ * - 반경 0이면 위치 색인(화면에 보이는 AP 찾기)
+ * - 영향 반경은 influenceRadiusM: 벽 없는 직선 경로 상한이 하한(범례 최솟값 등) 아래로 내려가는 거리.
+ *   그 밖의 수신점에서 이 AP는 하한을 넘을 수 없음(벽은 감쇠만 더함)
+ * - 조회는 사각형을 최대 반경만큼 넓힌 버킷만 훑으므로 비용이 주변 AP 수에만 비례
+ */
+public final class ApIndex {
+
+    private static final double MIN_CELL_PX = 64.0;
+
+    private final double[] x, y, r;
+    private final double maxRadius;
+    private final double cell;
+    private final double originX, originY;
+    private final int cols, rows;
+    private final int[] start; // 버킷별 시작 위치(cols * rows + 1)
+    private final int[] items; // 버킷 순서로 정렬한 항목 인덱스
+
+    private ApIndex(double[] x, double[] y, double[] r) {
+        this.x = x;
+        this.y = y;
+        this.r = r;
+        int n = x.length;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxR = 0.0;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+            maxR = Math.max(maxR, r[i]);
+        }
+        this.maxRadius = maxR;
+        if (n == 0) {
+            minX = minY = maxX = maxY = 0.0;
+        }
+        // 버킷 한 변: 반경 정도(조회가 3x3 버킷 안팎), AP가 고르게 퍼졌을 때 버킷당 1~2대 이상
+        double area = Math.max(1.0, (maxX - minX) * (maxY - minY));
+        this.cell = Math.max(MIN_CELL_PX, Math.max(Math.min(maxR, 4096.0), Math.sqrt(area / Math.max(1, n))));
+        this.originX = minX;
+        this.originY = minY;
+        this.cols = (int) Math.min(4096, Math.floor((maxX - minX) / cell) + 1);
+        this.rows = (int) Math.min(4096, Math.floor((maxY - minY) / cell) + 1);
+
+        int[] bucket = new int[n];
+        this.start = new int[cols * rows + 1];
+        for (int i = 0; i < n; i++) {
+            bucket[i] = bucketOf(x[i], y[i]);
+            start[bucket[i] + 1]++;
+        }
+        for (int b = 0; b < cols * rows; b++) start[b + 1] += start[b];
+        int[] fill = Arrays.copyOf(start, cols * rows);
+        this.items = new int[n];
+        for (int i = 0; i < n; i++) items[fill[bucket[i]]++] = i;
+    }
+
+    /** 좌표(px)와 영향 반경(px, null이면 모두 0)으로 색인. 배열은 복사하지 않으므로 이후 고치지 말 것 */
+    public static ApIndex of(double[] x, double[] y, double[] radiusPx) {
+        if (x.length != y.length || (radiusPx != null && radiusPx.length != x.length)) {
+            throw new IllegalArgumentException("length mismatch");
+        }
+        return new ApIndex(x, y, (radiusPx != null) ? radiusPx : new double[x.length]);
+    }
+
+    /**
+     * 벽 없는 직선 경로 RSSI 상한(bandConst + marginDb - 10 n log10 d)이 floorDbm - slackDb가 되는 거리(m).
+     * bandConst = EIRP - 1m 기준 손실, 밴드별 최댓값. 상한이 처음부터 그 아래면 minDistanceM
+     */
+    public static double influenceRadiusM(double bandConst, double marginDb, double floorDbm, double slackDb,
+                                          double pathLossN, double minDistanceM) {
+        double excess = bandConst + marginDb - (floorDbm - slackDb);
+        if (Double.isNaN(excess) || excess <= 0.0) return minDistanceM;
+        return Math.max(minDistanceM, Math.pow(10.0, excess / (10.0 * Math.max(1e-6, pathLossN))));
+    }
+
+    public int size() { return x.length; }
+
+    public double x(int i) { return x[i]; }
+
+    public double y(int i) { return y[i]; }
+
+    public double radius(int i) { return r[i]; }
+
+    /**
+     * 영향 원이 사각형 [x0,x1]x[y0,y1]과 겹치는 항목 인덱스를 out에 쓰고 개수를 반환(순서 없음).
+     * out 길이는 size() 이상
+     */
+    public int query(double x0, double y0, double x1, double y1, int[] out) {
+        if (x.length == 0) return 0;
+        int cx0 = clampCol(x0 - maxRadius), cx1 = clampCol(x1 + maxRadius);
+        int cy0 = clampRow(y0 - maxRadius), cy1 = clampRow(y1 + maxRadius);
+        int count = 0;
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                int b = cy * cols + cx;
+                for (int k = start[b]; k < start[b + 1]; k++) {
+                    int i = items[k];
+                    if (ApTileBounds.minDistance(x[i], y[i], x0, y0, x1, y1) <= r[i]) out[count++] = i;
+                }
+            }
+        }
+        return count;
+    }
+
+    private int bucketOf(double px, double py) {
+        return clampRow(py) * cols + clampCol(px);
+    }
+
+    private int clampCol(double px) {
+        return (int) Math.max(0, Math.min(cols - 1, Math.floor((px - originX) / cell)));
+    }
+
+    private int clampRow(double py) {
+        return (int) Math.max(0, Math.min(rows - 1, Math.floor((py - originY) / cell)));
+    }
+}
@@ -0,0 +1,203 @@
+package app.engine;
+
+import app.model.Band;
+import app.model.Wall;
+import app.model.WallMaterial;
+import javafx.geometry.Point2D;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 수신 영역(컬링 셀/타일 사각형) 단위 AP RSSI 상한/하한(AP 컬링용).
+ * - 상한: 최단 거리 기준 mW 합 = LOS(그림자 벽 감쇠 적용) + 반사/회절 항(벽 감쇠 0).
+ *   반사/회절 경로는 그림자 벽을 돌아갈 수 있으므로 그 항에는 벽 감쇠를 빼지 않음
+ * - 하한: 최장 거리 + "AP~영역 볼록껍질에 걸친 벽 전부"의 감쇠(LOS만, 반사/회절은 더해질 뿐)
+ * 두 값 모두 샘플 1개 값의 경계이므로 mW 평균한 블록 값에도 그대로 성립.
+ */
+final class ApTileBounds {
+
+    private ApTileBounds() {}
+
+    /**
+     * 다중경로 여유(dB): LOS 1 + 반사 최대 개수 x 최소 반사 손실 + 회절 최대 개수 x 최소 회절 손실(6 dB).
+     * 반사/회절 경로 길이는 항상 직선 거리 이상이라 같은 거리 손실로 묶을 수 있음.
+     * 최소 반사 손실은 실제 벽 재질 중에서만 찾음.
+     */
+    static double multipathMarginDb(List<Wall> walls, int maxReflections, int maxDiffractions) {
+        double minRefl = Double.POSITIVE_INFINITY;
+        for (Wall w : walls) {
+            if (w == null) continue;
+            WallMaterial m = w.getMaterial();
+            minRefl = Math.min(minRefl, (m == null) ? 8.0 : m.reflectionLossDb()); // 재질 없으면 엔진 기본값
+        }
+        if (Double.isInfinite(minRefl)) maxReflections = 0;
+        double sum = 1.0
+                + maxReflections * Math.pow(10.0, -minRefl / 10.0)
+                + maxDiffractions * Math.pow(10.0, -6.0 / 10.0);
+        return 10.0 * Math.log10(sum);
+    }
+
+    /** 점 (px,py)에서 사각형 [x0,x1]x[y0,y1]까지 최단 거리 */
+    static double minDistance(double px, double py, double x0, double y0, double x1, double y1) {
+        double dx = Math.max(0.0, Math.max(x0 - px, px - x1));
+        double dy = Math.max(0.0, Math.max(y0 - py, py - y1));
+        return Math.hypot(dx, dy);
+    }
+
+    /** 점 (px,py)에서 사각형 [x0,x1]x[y0,y1]까지 최장 거리(가장 먼 꼭짓점) */
+    static double maxDistance(double px, double py, double x0, double y0, double x1, double y1) {
+        double dx = Math.max(Math.abs(px - x0), Math.abs(px - x1));
+        double dy = Math.max(Math.abs(py - y0), Math.abs(py - y1));
+        return Math.hypot(dx, dy);
+    }
+
+    /**
+     * 밴드 중 최대 상한(dBm). bandConst = EIRP - 1m 기준 손실(비활성 밴드 NaN),
+     * wallLossDb = shadowWallLoss() 결과(null이면 벽 감쇠 0), marginDb = multipathMarginDb() 결과.
+     * 벽 감쇠는 LOS 항(여유의 1)에만 적용: c - d + 10 log10(10^(-wl/10) + 다중경로 항)
+     */
+    static double upperDbm(double[] bandConst, double distanceLossDb, double[] wallLossDb, double marginDb) {
+        double multipath = Math.max(0.0, Math.pow(10.0, marginDb / 10.0) - 1.0);
+        double best = Double.NEGATIVE_INFINITY;
+        for (int b = 0; b < bandConst.length; b++) {
+            double c = bandConst[b];
+            if (Double.isNaN(c)) continue;
+            double wl = (wallLossDb == null) ? 0.0 : wallLossDb[b];
+            double margin = (wl == 0.0) ? marginDb : 10.0 * Math.log10(Math.pow(10.0, -wl / 10.0) + multipath);
+            best = Math.max(best, c - distanceLossDb + margin);
+        }
+        return best;
+    }
+
+    /**
+     * AP에서 영역 안 모든 점으로 가는 직선이 반드시 지나는 벽(= 네 꼭짓점으로 가는 선분을 모두 가로지르는 벽,
+     * 벽 너머 그림자가 볼록이라 꼭짓점 4개로 충분)의 밴드별 감쇠 합을 out에 더함.
+     */
+    static void shadowWallLoss(double apX, double apY, double x0, double y0, double x1, double y1,
+                               List<Wall> walls, double[] out) {
+        Point2D ap = new Point2D(apX, apY);
+        Point2D[] corners = {
+                new Point2D(x0, y0), new Point2D(x1, y0), new Point2D(x1, y1), new Point2D(x0, y1)};
+
+        double bx0 = Math.min(apX, x0), by0 = Math.min(apY, y0);
+        double bx1 = Math.max(apX, x1), by1 = Math.max(apY, y1);
+        for (Wall w : walls) {
+            if (w == null) continue;
+            if (Math.max(w.x1, w.x2) < bx0 || Math.min(w.x1, w.x2) > bx1
+                    || Math.max(w.y1, w.y2) < by0 || Math.min(w.y1, w.y2) > by1) continue;
+            Point2D a = new Point2D(w.x1, w.y1);
+            Point2D b = new Point2D(w.x2, w.y2);
+            boolean all = true;
+            for (Point2D c : corners) {
+                if (!WifiMath.segmentsIntersect(ap, c, a, b)) { all = false; break; }
+            }
+            if (all) {
+                for (Band band : Band.values()) out[band.ordinal()] += w.attenuationDb(band);
+            }
+        }
+    }
+
+    /**
+     * AP에서 영역으로 가는 LOS의 벽 집합이 영역 전체에서 같은지(= 볼록껍질에 닿는 벽이 모두 그림자 벽).
+     * false면 영역 안에 벽 그림자 경계가 지나갈 수 있음(거친 격자 보간 금지)
+     */
+    static boolean uniformShadow(double apX, double apY, double x0, double y0, double x1, double y1,
+                                 List<Wall> walls) {
+        Point2D ap = new Point2D(apX, apY);
+        Point2D[] corners = {
+                new Point2D(x0, y0), new Point2D(x1, y0), new Point2D(x1, y1), new Point2D(x0, y1)};
+        Point2D[] hull = hull(new Point2D[]{ap, corners[0], corners[1], corners[2], corners[3]});
+
+        double bx0 = Math.min(apX, x0), by0 = Math.min(apY, y0);
+        double bx1 = Math.max(apX, x1), by1 = Math.max(apY, y1);
+        for (Wall w : walls) {
+            if (w == null) continue;
+            if (Math.max(w.x1, w.x2) < bx0 || Math.min(w.x1, w.x2) > bx1
+                    || Math.max(w.y1, w.y2) < by0 || Math.min(w.y1, w.y2) > by1) continue;
+            if (!touches(hull, w)) continue;
+            Point2D a = new Point2D(w.x1, w.y1);
+            Point2D b = new Point2D(w.x2, w.y2);
+            for (Point2D c : corners) {
+                if (!WifiMath.segmentsIntersect(ap, c, a, b)) return false;
+            }
+        }
+        return true;
+    }
+
+    /** 밴드 중 최대 하한(dBm). wallLossDb = hullWallLoss() 결과 */
+    static double lowerDbm(double[] bandConst, double distanceLossDb, double[] wallLossDb) {
+        double best = Double.NEGATIVE_INFINITY;
+        for (int b = 0; b < bandConst.length; b++) {
+            double c = bandConst[b];
+            if (Double.isNaN(c)) continue;
+            best = Math.max(best, c - distanceLossDb - wallLossDb[b]);
+        }
+        return best;
+    }
+
+    /**
+     * AP와 영역 사각형의 볼록껍질(= AP에서 영역 안 모든 점으로 가는 선분의 합집합)에
+     * 닿는 벽의 밴드별 감쇠 합을 out에 더함. 어떤 LOS 경로의 벽 감쇠도 이 값 이하.
+     */
+    static void hullWallLoss(double apX, double apY, double x0, double y0, double x1, double y1,
+                             List<Wall> walls, double[] out) {
+        Point2D[] hull = hull(new Point2D[]{
+                new Point2D(apX, apY),
+                new Point2D(x0, y0), new Point2D(x1, y0), new Point2D(x1, y1), new Point2D(x0, y1)});
+
+        double bx0 = Math.min(apX, x0), by0 = Math.min(apY, y0);
+        double bx1 = Math.max(apX, x1), by1 = Math.max(apY, y1);
+        for (Wall w : walls) {
+            if (w == null) continue;
+            // 경계상자 밖이면 제외
+            if (Math.max(w.x1, w.x2) < bx0 || Math.min(w.x1, w.x2) > bx1
+                    || Math.max(w.y1, w.y2) < by0 || Math.min(w.y1, w.y2) > by1) continue;
+            if (touches(hull, w)) {
+                for (Band band : Band.values()) out[band.ordinal()] += w.attenuationDb(band);
+            }
+        }
+    }
+
+    private static boolean touches(Point2D[] hull, Wall w) {
+        Point2D a = new Point2D(w.x1, w.y1);
+        Point2D b = new Point2D(w.x2, w.y2);
+        if (inside(hull, a) || inside(hull, b)) return true;
+        for (int i = 0; i < hull.length; i++) {
+            if (WifiMath.segmentsIntersect(a, b, hull[i], hull[(i + 1) % hull.length])) return true;
+        }
+        return false;
+    }
+
+    /** 반시계 볼록다각형 내부(경계 포함) */
+    private static boolean inside(Point2D[] hull, Point2D p) {
+        for (int i = 0; i < hull.length; i++) {
+            Point2D u = hull[i], v = hull[(i + 1) % hull.length];
+            double cr = (v.getX() - u.getX()) * (p.getY() - u.getY()) - (v.getY() - u.getY()) * (p.getX() - u.getX());
+            if (cr < -1e-9) return false;
+        }
+        return true;
+    }
+
+    /** 모노톤 체인 볼록껍질(반시계) */
+    private static Point2D[] hull(Point2D[] pts) {
+        Point2D[] p = pts.clone();
+        Arrays.sort(p, (a, b) -> a.getX() != b.getX()
+                ? Double.compare(a.getX(), b.getX()) : Double.compare(a.getY(), b.getY()));
+        Point2D[] h = new Point2D[p.length * 2];
+        int k = 0;
+        for (Point2D q : p) {
+            while (k >= 2 && cross(h[k - 2], h[k - 1], q) <= 0) k--;
+            h[k++] = q;
+        }
+        for (int i = p.length - 2, t = k + 1; i >= 0; i--) {
+            while (k >= t && cross(h[k - 2], h[k - 1], p[i]) <= 0) k--;
+            h[k++] = p[i];
+        }
+        return Arrays.copyOf(h, Math.max(1, k - 1));
+    }
+
+    private static double cross(Point2D o, Point2D a, Point2D b) {
+        return (a.getX() - o.getX()) * (b.getY() - o.getY()) - (a.getY() - o.getY()) * (b.getX() - o.getX());
+    }
+}
@@ -0,0 +1,147 @@
+package app.engine;
+
+import app.model.RoiMask;
+import app.model.Wall;
+
+import java.util.List;
+
+/**
+ * 블록(gridStep px) 격자 비트마스크(불변).
+ * - of: RoiMask 래스터화. 블록 중심이나 네 모서리 중 하나라도 다각형 안이면 안쪽(경계에 걸친 블록은 계산)
+ * - ofWalls: 벽 선분이 지나는(닿는) 블록. 적응 샘플링에서 모서리 보간을 쓰지 않을 블록
+ * - 누적합 표로 사각형 블록 범위에 안쪽 블록이 있는지 O(1) 판정(타일/컬링 셀 건너뛰기)
+ */
+public final class BlockMask {
+
+    public final int width;
+    public final int height;
+    public final int gridStepPx;
+    public final int cols;
+    public final int rows;
+
+    private final boolean[] inside;
+    private final int[] sat; // (cols+1) x (rows+1) 누적합
+    private final int insideCount;
+
+    private BlockMask(int width, int height, int gridStepPx, boolean[] inside) {
+        this.width = width;
+        this.height = height;
+        this.gridStepPx = gridStepPx;
+        this.cols = (width + gridStepPx - 1) / gridStepPx;
+        this.rows = (height + gridStepPx - 1) / gridStepPx;
+        this.inside = inside;
+        this.sat = new int[(cols + 1) * (rows + 1)];
+        int stride = cols + 1;
+        for (int by = 0; by < rows; by++) {
+            int rowSum = 0;
+            for (int bx = 0; bx < cols; bx++) {
+                if (inside[by * cols + bx]) rowSum++;
+                sat[(by + 1) * stride + bx + 1] = sat[by * stride + bx + 1] + rowSum;
+            }
+        }
+        this.insideCount = sat[rows * stride + cols];
+    }
+
+    /** 빈 마스크(캔버스 전체 계산)면 null */
+    public static BlockMask of(RoiMask mask, int width, int height, int gridStepPx) {
+        if (mask == null || mask.isEmpty()) return null;
+        int step = Math.max(1, gridStepPx);
+        int cols = (width + step - 1) / step;
+        int rows = (height + step - 1) / step;
+        boolean[] in = new boolean[cols * rows];
+        for (int by = 0; by < rows; by++) {
+            double y0 = by * step;
+            double y1 = Math.min(height, (by + 1) * step);
+            for (int bx = 0; bx < cols; bx++) {
+                double x0 = bx * step;
+                double x1 = Math.min(width, (bx + 1) * step);
+                in[by * cols + bx] = mask.contains((x0 + x1) / 2, (y0 + y1) / 2)
+                        || mask.contains(x0, y0) || mask.contains(x1, y0)
+                        || mask.contains(x0, y1) || mask.contains(x1, y1);
+            }
+        }
+        return new BlockMask(width, height, step, in);
+    }
+
+    /** 벽 선분이 닫힌 블록 사각형과 만나면 표시(벽 바운딩 박스 안 블록만 검사) */
+    public static BlockMask ofWalls(List<Wall> walls, int width, int height, int gridStepPx) {
+        int step = Math.max(1, gridStepPx);
+        int cols = (width + step - 1) / step;
+        int rows = (height + step - 1) / step;
+        boolean[] hit = new boolean[cols * rows];
+        for (Wall w : walls) {
+            int bx0 = Math.max(0, (int) Math.floor(Math.min(w.x1, w.x2) / step) - 1);
+            int by0 = Math.max(0, (int) Math.floor(Math.min(w.y1, w.y2) / step) - 1);
+            int bx1 = Math.min(cols - 1, (int) Math.floor(Math.max(w.x1, w.x2) / step) + 1);
+            int by1 = Math.min(rows - 1, (int) Math.floor(Math.max(w.y1, w.y2) / step) + 1);
+            for (int by = by0; by <= by1; by++) {
+                for (int bx = bx0; bx <= bx1; bx++) {
+                    int i = by * cols + bx;
+                    if (!hit[i] && segmentHitsRect(w.x1, w.y1, w.x2, w.y2,
+                            bx * step, by * step, (bx + 1) * step, (by + 1) * step)) {
+                        hit[i] = true;
+                    }
+                }
+            }
+        }
+        return new BlockMask(width, height, step, hit);
+    }
+
+    /** 선분과 닫힌 사각형의 교차(Liang-Barsky 클리핑) */
+    private static boolean segmentHitsRect(double ax, double ay, double bx, double by,
+                                           double x0, double y0, double x1, double y1) {
+        double t0 = 0.0, t1 = 1.0;
+        double dx = bx - ax, dy = by - ay;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {ax - x0, x1 - ax, ay - y0, y1 - ay};
+        for (int i = 0; i < 4; i++) {
+            if (p[i] == 0) {
+                if (q[i] < 0) return false;
+                continue;
+            }
+            double t = q[i] / p[i];
+            if (p[i] < 0) {
+                if (t > t1) return false;
+                if (t > t0) t0 = t;
+            } else {
+                if (t < t0) return false;
+                if (t < t1) t1 = t;
+            }
+        }
+        return true;
+    }
+
+    public boolean get(int bx, int by) {
+        return inside[by * cols + bx];
+    }
+
+    /** 블록 범위 [bx0,bx1) x [by0,by1)에 안쪽 블록이 하나라도 있는지 */
+    public boolean anyIn(int bx0, int by0, int bx1, int by1) {
+        int stride = cols + 1;
+        bx0 = Math.max(0, bx0);
+        by0 = Math.max(0, by0);
+        bx1 = Math.min(cols, bx1);
+        by1 = Math.min(rows, by1);
+        if (bx0 >= bx1 || by0 >= by1) return false;
+        return sat[by1 * stride + bx1] - sat[by0 * stride + bx1] - sat[by1 * stride + bx0] + sat[by0 * stride + bx0] > 0;
+    }
+
+    /** 안쪽 블록 수 */
+    public int insideCount() { return insideCount; }
+
+    /** 안쪽 블록을 모두 담는 블록 범위 {bx0, by0, bx1, by1}(끝 제외). 안쪽이 없으면 null */
+    public int[] bounds() {
+        if (insideCount == 0) return null;
+        int bx0 = cols, by0 = rows, bx1 = 0, by1 = 0;
+        for (int by = 0; by < rows; by++) {
+            for (int bx = 0; bx < cols; bx++) {
+                if (!inside[by * cols + bx]) continue;
+                bx0 = Math.min(bx0, bx);
+                by0 = Math.min(by0, by);
+                bx1 = Math.max(bx1, bx + 1);
+                by1 = Math.max(by1, by + 1);
+            }
+        }
+        return new int[]{bx0, by0, bx1, by1};
+    }
+}
@@ -0,0 +1,251 @@
+package app.engine;
+
+import app.model.Band;
+import app.model.Building;
+import app.model.EnvironmentSnapshot;
+import app.model.Floor;
+import app.model.RoiMask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * 다층 건물 히트맵 엔진.
+ * - 층마다 HeatmapGenerator(층 내부 LOS/반사/회절 + AP 레이어 캐시)로 계산
+ * - 위/아래 interferenceRange 층의 AP는 3D 거리 경로손실 + 슬래브 감쇠로 더함(층 내부 벽은 무시)
+ * - 층별 결과는 "자기 층 + 범위 내 층" 내용 해시로 캐시 → 한 층을 고치면 범위 안 층만 재계산
+ * - 재계산할 층들은 병렬로 계산(층당 스레드 = parallelism / 층 수)
+ * - 시작 시 층마다 EnvironmentSnapshot을 찍고 계산은 스냅샷만 읽음
+ */
+public class BuildingHeatmapEngine {
+
+    private final Building building;
+
+    private final Map<Floor, HeatmapGenerator> generators = new IdentityHashMap<>();
+    private final Map<Floor, Cached> results = new IdentityHashMap<>();
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int lastRecomputed;
+
+    private static final class Cached {
+        final long key;
+        final RssiField field;
+        Cached(long key, RssiField field) { this.key = key; this.field = field; }
+    }
+
+    /** 다른 층 AP 1대를 수신 층 기준으로 미리 계산한 값 */
+    private static final class RemoteAp {
+        final double xM, yM, zM;
+        final double[] eirpMinusSlabDb = new double[Band.values().length]; // 비활성 밴드는 NaN
+        RemoteAp(double xM, double yM, double zM) { this.xM = xM; this.yM = yM; this.zM = zM; }
+    }
+
+    public BuildingHeatmapEngine(Building building) {
+        this.building = building;
+    }
+
+    public Building getBuilding() { return building; }
+
+    public int getParallelism() { return parallelism; }
+    public void setParallelism(int threads) { this.parallelism = Math.max(1, threads); }
+
+    /** 마지막 computeAll()에서 실제로 다시 계산한 층 수 */
+    public int getLastRecomputed() { return lastRecomputed; }
+
+    /** 층의 엔진(AP 레이어 캐시 유지용으로 층마다 1개) */
+    public synchronized HeatmapGenerator generatorFor(Floor floor) {
+        return generators.computeIfAbsent(floor, f -> new HeatmapGenerator(f.env));
+    }
+
+    /** 캐시된 층 결과 전체 삭제 */
+    public synchronized void invalidate() {
+        results.clear();
+    }
+
+    /**
+     * 모든 층의 블록 격자 계산(floors 순서와 같은 배열).
+     * 내용이 바뀌지 않은 층은 캐시된 결과를 그대로 반환.
+     */
+    public RssiField[] computeAll(int gridStepPx) {
+        List<Floor> floors = new ArrayList<>(building.getFloors());
+        int n = floors.size();
+        RssiField[] out = new RssiField[n];
+
+        EnvironmentSnapshot[] snaps = new EnvironmentSnapshot[n];
+        for (int i = 0; i < n; i++) {
+            Floor f = floors.get(i);
+            snaps[i] = f.env.snapshot();
+            if (Double.isNaN(snaps[i].getScaleMPerPx())) {
+                throw new IllegalStateException("스케일이 보정되지 않은 층: " + f);
+            }
+        }
+
+        // 1) 층별 캐시 key → 재계산 대상
+        long[] keys = new long[n];
+        List<Integer> stale = new ArrayList<>();
+        synchronized (this) {
+            Set<Floor> alive = identitySet(floors);
+            results.keySet().retainAll(alive);
+            generators.entrySet().removeIf(e -> {
+                if (alive.contains(e.getKey())) return false;
+                e.getValue().close(); // 삭제된 층의 스레드 풀 정리
+                return true;
+            });
+            for (int i = 0; i < n; i++) {
+                keys[i] = floorKey(floors, snaps, i, gridStepPx);
+                Cached c = results.get(floors.get(i));
+                if (c != null && c.key == keys[i]) out[i] = c.field;
+                else stale.add(i);
+            }
+        }
+        lastRecomputed = stale.size();
+        if (stale.isEmpty()) return out;
+
+        // 2) 바뀐 층만 병렬 계산
+        int floorThreads = Math.min(parallelism, stale.size());
+        int perFloor = Math.max(1, parallelism / floorThreads);
+        for (int i : stale) generatorFor(floors.get(i)).setParallelism(perFloor);
+
+        if (floorThreads <= 1) {
+            for (int i : stale) out[i] = computeFloor(floors, snaps, i, gridStepPx);
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(floorThreads);
+            try {
+                List<ForkJoinTask<?>> tasks = new ArrayList<>(stale.size());
+                for (int i : stale) {
+                    tasks.add(pool.submit(() -> { out[i] = computeFloor(floors, snaps, i, gridStepPx); }));
+                }
+                for (ForkJoinTask<?> t : tasks) t.join();
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        synchronized (this) {
+            for (int i : stale) results.put(floors.get(i), new Cached(keys[i], out[i]));
+        }
+        return out;
+    }
+
+    /** 층 1개: 자기 층 계산 + 범위 내 다른 층 AP 합성(블록별 최강 AP) */
+    private RssiField computeFloor(List<Floor> floors, EnvironmentSnapshot[] snaps, int index, int gridStepPx) {
+        Floor floor = floors.get(index);
+        EnvironmentSnapshot snap = snaps[index];
+        RssiField field = generatorFor(floor).generate(
+                new HeatmapGenerator.Request(floor.widthPx, floor.heightPx, gridStepPx).snapshot(snap)).field;
+
+        List<RemoteAp> remote = remoteAps(floors, snaps, index);
+        if (remote.isEmpty()) return field;
+
+        double scale = snap.getScaleMPerPx();
+        double pathLossN = snap.getPathLossN();
+        double minDistanceM = snap.getMinDistanceM();
+        double rxZ = building.elevationM(index) + building.getReceiverHeightM();
+        Band[] bands = Band.values();
+        RoiMask roi = snap.roiMask();
+        BlockMask mask = roi.isEmpty() ? null : BlockMask.of(roi, floor.widthPx, floor.heightPx, field.gridStepPx);
+
+        for (int by = 0; by < field.rows; by++) {
+            for (int bx = 0; bx < field.cols; bx++) {
+                if (mask != null && !mask.get(bx, by)) continue; // 관심 영역 밖은 자기 층처럼 비워 둠
+                // 다른 층 신호는 블록 안에서 거의 변하지 않으므로 블록 중심 1점으로 계산
+                double rxX = Math.min(floor.widthPx - 1, bx * field.gridStepPx + field.gridStepPx / 2) * scale;
+                double rxY = Math.min(floor.heightPx - 1, by * field.gridStepPx + field.gridStepPx / 2) * scale;
+
+                double best = -1e9;
+                for (RemoteAp ap : remote) {
+                    double dx = ap.xM - rxX, dy = ap.yM - rxY, dz = ap.zM - rxZ;
+                    double dM = Math.max(minDistanceM, Math.sqrt(dx * dx + dy * dy + dz * dz));
+                    for (Band b : bands) {
+                        double base = ap.eirpMinusSlabDb[b.ordinal()];
+                        if (Double.isNaN(base)) continue;
+                        double rssi = base - WifiMath.pathLossDb(dM, b.freqGhz, pathLossN);
+                        if (rssi > best) best = rssi;
+                    }
+                }
+
+                float own = field.get(bx, by);
+                if (best > -1e9 && (Float.isNaN(own) || best > own)) field.set(bx, by, (float) best);
+            }
+        }
+        return field;
+    }
+
+    private List<RemoteAp> remoteAps(List<Floor> floors, EnvironmentSnapshot[] snaps, int index) {
+        List<RemoteAp> out = new ArrayList<>();
+        int range = building.getInterferenceRange();
+        Band[] bands = Band.values();
+
+        for (int g = Math.max(0, index - range); g <= Math.min(floors.size() - 1, index + range); g++) {
+            if (g == index) continue;
+            EnvironmentSnapshot src = snaps[g];
+            double scale = src.getScaleMPerPx();
+            double z = building.elevationM(g) + floors.get(g).apMountHeightM;
+
+            for (int ap = 0; ap < src.apCount(); ap++) {
+                if (!src.apEnabled(ap)) continue;
+                RemoteAp r = new RemoteAp(src.apX(ap) * scale, src.apY(ap) * scale, z);
+                boolean any = false;
+                for (Band b : bands) {
+                    if (!src.radioEnabled(ap, b)) {
+                        r.eirpMinusSlabDb[b.ordinal()] = Double.NaN;
+                        continue;
+                    }
+                    r.eirpMinusSlabDb[b.ordinal()] = src.txPowerDbm(ap, b) + src.antennaGain(ap, b)
+                            - building.slabLossDb(g, index, b);
+                    any = true;
+                }
+                if (any) out.add(r);
+            }
+        }
+        return out;
+    }
+
+    // ===== 캐시 key =====
+
+    /** 자기 층 전체 내용(관심 영역 포함) + 범위 내 층의 AP/높이/슬래브(다른 층 벽은 결과에 영향 없음) */
+    private long floorKey(List<Floor> floors, EnvironmentSnapshot[] snaps, int index, int gridStepPx) {
+        Floor f = floors.get(index);
+        EnvironmentSnapshot snap = snaps[index];
+        long h = LayerCache.geometryKey(snap.wallsKey(), snap.getScaleMPerPx(),
+                snap.getPathLossN(), snap.getMinDistanceM(), f.widthPx, f.heightPx, gridStepPx);
+        h = LayerCache.mix(h, apsKey(snap));
+        if (!snap.roiMask().isEmpty()) h = LayerCache.mix(h, snap.roiMask().key());
+        h = LayerCache.mix(h, Double.doubleToLongBits(building.elevationM(index) + building.getReceiverHeightM()));
+
+        int range = building.getInterferenceRange();
+        for (int g = Math.max(0, index - range); g <= Math.min(floors.size() - 1, index + range); g++) {
+            if (g == index) continue;
+            Floor src = floors.get(g);
+            h = LayerCache.mix(h, g - index);
+            h = LayerCache.mix(h, Double.doubleToLongBits(snaps[g].getScaleMPerPx()));
+            h = LayerCache.mix(h, Double.doubleToLongBits(building.elevationM(g) + src.apMountHeightM));
+            for (Band b : Band.values()) {
+                h = LayerCache.mix(h, Double.doubleToLongBits(building.slabLossDb(g, index, b)));
+            }
+            h = LayerCache.mix(h, apsKey(snaps[g]));
+        }
+        return h;
+    }
+
+    private static long apsKey(EnvironmentSnapshot snap) {
+        long h = 0x1157L;
+        for (int ap = 0; ap < snap.apCount(); ap++) {
+            if (!snap.apEnabled(ap)) continue;
+            h = LayerCache.mix(h, snap.apKey(ap));
+        }
+        return h;
+    }
+
+    private static Set<Floor> identitySet(List<Floor> floors) {
+        Set<Floor> s = Collections.newSetFromMap(new IdentityHashMap<>());
+        s.addAll(floors);
+        return s;
+    }
+}
@@ -0,0 +1,131 @@
+package app.engine;
+
+import app.model.Band;
+import app.model.Wall;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 회절 코너 집합(벽 끝점 그래프에서 1번만 추출).
+ * - 노드에 붙은 벽 방향을 각도순으로 놓았을 때 가장 큰 빈 각이 180°보다 크면 볼록 코너
+ *   (자유단 = 360°, 꺾인 모서리 = 360° - 내각). 일직선 이음/T/십자 접합은 제외
+ *   노드를 내부로 지나는 벽(WallGraph.wallsThrough)은 양방향으로 셈 → 벽 중간에 닿는 T 끝점도 제외
+ * - 반올림한 정수 좌표가 같은 노드는 하나만 유지
+ * - ApView: AP 1대 기준 코너까지 거리/관통 벽 수/밴드별 벽 감쇠 표
+ *   → 샘플마다 corner→rx 구간만 검사하면 됨
+ */
+public final class DiffractionCorners {
+
+    /** 일직선 판정 허용 각(도): 빈 각이 180° + 이 값 이하면 코너가 아님 */
+    public static final double DEFAULT_TOLERANCE_DEG = 1.0;
+
+    private static final int BANDS = Band.values().length;
+
+    private final double[] x;
+    private final double[] y;
+
+    private DiffractionCorners(double[] x, double[] y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public static DiffractionCorners build(WallGraph graph) {
+        return build(graph, DEFAULT_TOLERANCE_DEG);
+    }
+
+    public static DiffractionCorners build(WallGraph graph, double toleranceDeg) {
+        int nodes = graph.nodeCount();
+        double[] xs = new double[nodes];
+        double[] ys = new double[nodes];
+        double minGap = Math.PI + Math.toRadians(toleranceDeg);
+        Set<Long> seen = new HashSet<>();
+        int n = 0;
+
+        for (int node = 0; node < nodes; node++) {
+            double nx = graph.nodeX(node), ny = graph.nodeY(node);
+            if (maxGap(graph, node) <= minGap) continue;
+
+            long key = (((long) (int) Math.round(nx)) << 32) ^ (((int) Math.round(ny)) & 0xffffffffL);
+            if (!seen.add(key)) continue;
+
+            xs[n] = nx;
+            ys[n] = ny;
+            n++;
+        }
+        return new DiffractionCorners(Arrays.copyOf(xs, n), Arrays.copyOf(ys, n));
+    }
+
+    /** 노드에 붙은 벽 방향 사이 가장 큰 빈 각(rad). 벽이 없으면 0 */
+    private static double maxGap(WallGraph graph, int node) {
+        int[] at = graph.wallsAt(node);
+        int[] through = graph.wallsThrough(node);
+        double[] ang = new double[at.length + 2 * through.length];
+        int m = 0;
+        for (int w : at) {
+            int other = (graph.startNode(w) == node) ? graph.endNode(w) : graph.startNode(w);
+            if (other == node) continue; // 길이 0 벽
+            ang[m++] = Math.atan2(graph.nodeY(other) - graph.nodeY(node),
+                    graph.nodeX(other) - graph.nodeX(node));
+        }
+        for (int w : through) {
+            double a = Math.atan2(graph.nodeY(graph.endNode(w)) - graph.nodeY(graph.startNode(w)),
+                    graph.nodeX(graph.endNode(w)) - graph.nodeX(graph.startNode(w)));
+            ang[m++] = a;
+            ang[m++] = (a > 0) ? a - Math.PI : a + Math.PI;
+        }
+        if (m == 0) return 0.0;
+        if (m == 1) return 2 * Math.PI;
+
+        Arrays.sort(ang, 0, m);
+        double gap = ang[0] + 2 * Math.PI - ang[m - 1];
+        for (int i = 1; i < m; i++) gap = Math.max(gap, ang[i] - ang[i - 1]);
+        return gap;
+    }
+
+    public int size() { return x.length; }
+
+    public double x(int corner) { return x[corner]; }
+    public double y(int corner) { return y[corner]; }
+
+    /** AP(apX, apY) 기준 코너 표 생성. 코너 수 x 벽 수 교차 검사 */
+    public ApView viewFrom(double apX, double apY, List<Wall> walls) {
+        int n = x.length;
+        double[] dist = new double[n];
+        int[] crossings = new int[n];
+        double[] loss = new double[n * BANDS];
+        double[] tmp = new double[BANDS];
+
+        for (int c = 0; c < n; c++) {
+            dist[c] = Math.hypot(x[c] - apX, y[c] - apY);
+            Arrays.fill(tmp, 0.0);
+            crossings[c] = WifiMath.wallLossAlongBands(apX, apY, x[c], y[c], walls, null, tmp);
+            System.arraycopy(tmp, 0, loss, c * BANDS, BANDS);
+        }
+        return new ApView(dist, crossings, loss);
+    }
+
+    /** AP 1대 기준 AP→코너 구간 정보 */
+    public static final class ApView {
+        private final double[] distPx;
+        private final int[] crossings;
+        private final double[] wallLossDb; // [corner * BANDS + band]
+
+        private ApView(double[] distPx, int[] crossings, double[] wallLossDb) {
+            this.distPx = distPx;
+            this.crossings = crossings;
+            this.wallLossDb = wallLossDb;
+        }
+
+        /** AP→코너 거리(px) */
+        public double distPx(int corner) { return distPx[corner]; }
+
+        /** AP→코너 직선이 관통하는 벽 수 */
+        public int crossings(int corner) { return crossings[corner]; }
+
+        /** AP→코너 구간 벽 감쇠(dB) */
+        public double wallLossDb(int corner, int band) { return wallLossDb[corner * BANDS + band]; }
+    }
+}
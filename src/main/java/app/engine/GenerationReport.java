@@ -0,0 +1,208 @@
+package app.engine;
+
+import java.util.Locale;
+
+/**
+ * 히트맵 1회 생성의 단계별 시간(ns)과 카운터.
+ * - 계측이 꺼져 있으면 엔진은 Recorder를 만들지 않음(null 체크 1회 비용)
+ * - 워커 스레드별 Recorder에 누적 후 생성 끝에 merge
+ */
+public final class GenerationReport {
+
+    /** 계측 단계 */
+    public enum Stage {
+        CANDIDATES("candidate ranking"),
+        LOS("LOS wall loss"),
+        REFLECTION("reflections"),
+        DIFFRACTION("diffraction"),
+        COMPOSITE("layer composite"),
+        COLORIZE("colorization"),
+        BLUR("blur");
+
+        public final String label;
+
+        Stage(String label) { this.label = label; }
+    }
+
+    // ===== 작업 규모 =====
+    private int width, height, gridStepPx, threads, tiles;
+    private int walls, aps;
+    private int wallsInput = -1; // 벽 정리 전 개수(정리 안 했으면 -1)
+
+    // ===== 시간 =====
+    private long totalNanos;
+    private final long[] stageNanos = new long[Stage.values().length];
+
+    // ===== 카운터 =====
+    private long samples;            // 수신점 샘플 위치 수(3x3 + 적응 샘플링 모서리)
+    private long apEvaluations;      // 샘플 x AP 평가 수
+    private long wallTests;          // 선분-벽 교차 테스트 수
+    private long reflectionAccepted;
+    private long reflectionNoPath;   // 빌더가 거절(반사점 없음/극단적 우회)
+    private long reflectionCulled;   // LOS 비율 컷오프로 제외
+    private long reflectionPruned;   // 상한이 허용 오차 안이라 생략
+    private long diffractionAccepted;
+    private long diffractionFiltered; // 후보 단계 관통 수 필터로 제외
+    private long diffractionCulled;   // LOS 비율 컷오프로 제외
+    private long diffractionPruned;   // 상한이 허용 오차 안이라 코너→rx 검사 생략
+    private long wallTestsPruned;     // 가지치기로 생략한 교차 테스트 수
+    private long apCellsEvaluated;    // 계산한 (AP, 셀) 수
+    private long apCellsCulled;       // 이길 수 없어 건너뛴 (AP, 셀) 수
+    private long blocksInterpolated;  // 모서리 보간으로 끝낸 (AP, 블록) 수(적응 샘플링)
+    private long blocksRefined;       // 3x3 샘플링한 (AP, 블록) 수(적응 샘플링)
+    private long blocksCoarse;        // 거친 격자 칸 모서리로 보간한 (AP, 블록) 수
+    private long blocksWallAware;     // 샘플별 같은 쪽 모서리로 복원한 (AP, 블록) 수(거친 격자 모드)
+    private long cacheHits;
+    private long cacheMisses;
+
+    public GenerationReport() {}
+
+    void setJob(int width, int height, int gridStepPx, int threads, int tiles, int walls, int aps) {
+        this.width = width;
+        this.height = height;
+        this.gridStepPx = gridStepPx;
+        this.threads = threads;
+        this.tiles = tiles;
+        this.walls = walls;
+        this.aps = aps;
+    }
+
+    void addStage(Stage s, long nanos) { stageNanos[s.ordinal()] += nanos; }
+
+    public void setTotalNanos(long nanos) { this.totalNanos = nanos; }
+
+    void setWallSimplification(int input, int output) {
+        this.wallsInput = input;
+        this.walls = output;
+    }
+
+    // 레이어 캐시 조회는 작업당 레이어마다 1번(호출 스레드)이라 Recorder가 아니라 리포트에 바로 셈
+    void addCacheHit() { cacheHits++; }
+    void addCacheMiss() { cacheMisses++; }
+
+    synchronized void merge(Recorder r) {
+        for (int i = 0; i < stageNanos.length; i++) stageNanos[i] += r.stageNanos[i];
+        samples += r.samples;
+        apEvaluations += r.apEvaluations;
+        wallTests += r.wallTests;
+        reflectionAccepted += r.reflectionAccepted;
+        reflectionNoPath += r.reflectionNoPath;
+        reflectionCulled += r.reflectionCulled;
+        reflectionPruned += r.reflectionPruned;
+        diffractionAccepted += r.diffractionAccepted;
+        diffractionFiltered += r.diffractionFiltered;
+        diffractionCulled += r.diffractionCulled;
+        diffractionPruned += r.diffractionPruned;
+        wallTestsPruned += r.wallTestsPruned;
+        apCellsEvaluated += r.apCellsEvaluated;
+        apCellsCulled += r.apCellsCulled;
+        blocksInterpolated += r.blocksInterpolated;
+        blocksRefined += r.blocksRefined;
+        blocksCoarse += r.blocksCoarse;
+        blocksWallAware += r.blocksWallAware;
+    }
+
+    // ===== getters =====
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getGridStepPx() { return gridStepPx; }
+    public int getThreads() { return threads; }
+    public int getTiles() { return tiles; }
+    public int getWalls() { return walls; }
+    public int getAps() { return aps; }
+    public int getWallsInput() { return wallsInput; }
+
+    public long getTotalNanos() { return totalNanos; }
+    public long getStageNanos(Stage s) { return stageNanos[s.ordinal()]; }
+
+    public long getSamples() { return samples; }
+    public long getApEvaluations() { return apEvaluations; }
+    public long getWallTests() { return wallTests; }
+    public long getReflectionAccepted() { return reflectionAccepted; }
+    public long getReflectionNoPath() { return reflectionNoPath; }
+    public long getReflectionCulled() { return reflectionCulled; }
+    public long getReflectionPruned() { return reflectionPruned; }
+    public long getDiffractionAccepted() { return diffractionAccepted; }
+    public long getDiffractionFiltered() { return diffractionFiltered; }
+    public long getDiffractionCulled() { return diffractionCulled; }
+    public long getDiffractionPruned() { return diffractionPruned; }
+    public long getWallTestsPruned() { return wallTestsPruned; }
+    public long getApCellsEvaluated() { return apCellsEvaluated; }
+    public long getApCellsCulled() { return apCellsCulled; }
+    public long getBlocksInterpolated() { return blocksInterpolated; }
+    public long getBlocksRefined() { return blocksRefined; }
+    public long getBlocksCoarse() { return blocksCoarse; }
+    public long getBlocksWallAware() { return blocksWallAware; }
+    public long getCacheHits() { return cacheHits; }
+    public long getCacheMisses() { return cacheMisses; }
+
+    /**
+     * 여러 줄 요약.
+     * 전파 단계 시간은 워커 스레드 합계(CPU 시간에 가까움), total은 벽시계 시간.
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT,
+                "heatmap %dx%d grid=%dpx walls=%d aps=%d threads=%d tiles=%d total=%.1f ms%n",
+                width, height, gridStepPx, walls, aps, threads, tiles, totalNanos / 1e6));
+        if (wallsInput >= 0) {
+            sb.append(String.format(Locale.ROOT, "  walls simplified %d -> %d%n", wallsInput, walls));
+        }
+        for (Stage s : Stage.values()) {
+            sb.append(String.format(Locale.ROOT, "  %-18s %10.1f ms%n", s.label, stageNanos[s.ordinal()] / 1e6));
+        }
+        sb.append(String.format(Locale.ROOT,
+                "  samples=%d apEvals=%d wallTests=%d pruned=%d%n",
+                samples, apEvaluations, wallTests, wallTestsPruned));
+        sb.append(String.format(Locale.ROOT,
+                "  reflection accepted=%d noPath=%d culled=%d pruned=%d%n",
+                reflectionAccepted, reflectionNoPath, reflectionCulled, reflectionPruned));
+        sb.append(String.format(Locale.ROOT,
+                "  diffraction accepted=%d filtered=%d culled=%d pruned=%d%n",
+                diffractionAccepted, diffractionFiltered, diffractionCulled, diffractionPruned));
+        sb.append(String.format(Locale.ROOT,
+                "  ap cells evaluated=%d culled=%d%n", apCellsEvaluated, apCellsCulled));
+        if (blocksInterpolated + blocksRefined + blocksCoarse + blocksWallAware > 0) {
+            sb.append(String.format(Locale.ROOT,
+                    "  adaptive blocks coarse=%d interpolated=%d wallAware=%d refined=%d%n",
+                    blocksCoarse, blocksInterpolated, blocksWallAware, blocksRefined));
+        }
+        sb.append(String.format(Locale.ROOT, "  layer cache hits=%d misses=%d", cacheHits, cacheMisses));
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    /**
+     * 워커 스레드 전용 누적기(동기화 없음).
+     * 엔진 내부에서만 생성/병합.
+     */
+    public static final class Recorder {
+        final long[] stageNanos = new long[Stage.values().length];
+        long samples;
+        long apEvaluations;
+        long wallTests;
+        long reflectionAccepted;
+        long reflectionNoPath;
+        long reflectionCulled;
+        long reflectionPruned;
+        long diffractionAccepted;
+        long diffractionFiltered;
+        long diffractionCulled;
+        long diffractionPruned;
+        long wallTestsPruned;
+        long apCellsEvaluated;
+        long apCellsCulled;
+        long blocksInterpolated;
+        long blocksRefined;
+        long blocksCoarse;
+        long blocksWallAware;
+
+        Recorder() {}
+
+        void add(Stage s, long nanos) { stageNanos[s.ordinal()] += nanos; }
+    }
+}
@@ -1,24 +1,38 @@
 package app.engine;
 
-import app.model.RadioConfig;
+import app.jfr.HeatmapJobEvent;
+import app.jfr.TileCompletedEvent;
 import app.model.*;
 import javafx.geometry.Point2D;
-import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
-import javafx.scene.paint.Color;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.BooleanSupplier;
 
 /**
  * WifiEnvironment를 기반으로 히트맵 이미지를 생성하는 클래스.
  * - LOS(직진) + 1차 반사 + 1차 회절(코너)을 전력(mW) 합산
- * - 밴드는 2.4/5 중 활성 라디오에 대해 계산 후 "최강 RSSI" 선택
+ * - AP별/밴드별 경로 이득 레이어를 캐시하고, 합성 때 밴드 상수(출력 + 이득 - 기준 손실)를 더해
+ *   블록별 최강 (AP, 밴드)를 선택(옮기거나 새로 생긴 AP만 재계산, 출력/활성 변경은 합성만)
+ * - 관심 영역(RoiMask)이 있으면 영역 밖 타일/셀/블록은 계산·블러하지 않고 NaN으로 둠
+ * - 적응 샘플링: 고른 블록은 공유 모서리 샘플로 보간, 벽/AP/급변 블록만 3x3
+ *   (거친 격자 모드면 벽 없는 칸은 칸 모서리만 계산해 보간, 벽을 사이에 두고는 보간하지 않음)
+ * - 영향 반경 하한(범례 최솟값)이 있으면 AP 공간 색인으로 셀마다 영향 원이 닿는 AP만 계산/합성
  */
-public class HeatmapGenerator {
+public class HeatmapGenerator implements AutoCloseable {
 
     private final WifiEnvironment env;
 
@@ -39,204 +53,1824 @@ public class HeatmapGenerator {
     }
 
     private static final class CornerCand {
-        final Point2D corner;
+        final int corner; // DiffractionCorners 인덱스
         final double score; // 작을수록 더 가까움
-        CornerCand(Point2D corner, double score) { this.corner = corner; this.score = score; }
+        CornerCand(int corner, double score) { this.corner = corner; this.score = score; }
+    }
+
+    // ===== 샘플링/병렬 =====
+    private static final int SUB = 3; // 3x3 슈퍼샘플링
+    /** 병렬 작업 단위: 한 변 TILE_BLOCKS 블록짜리 타일 */
+    public static final int TILE_BLOCKS = 16;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private ForkJoinPool pool; // parallelism 스레드, 계산마다 재사용(close()에서 종료)
+
+    // ===== AP별 레이어 캐시 =====
+    private final LayerCache layerCache = new LayerCache();
+
+    // ===== 벽 정리 =====
+    private boolean simplifyWalls = true;
+    private long simplifiedKey;
+    private WallSimplifier.Result simplified;
+
+    // ===== 경로 가지치기 =====
+    /** 기본 허용 오차(dB): 생략한 경로 때문에 밴드별 합산 전력이 낮아지는 최대치 */
+    public static final double DEFAULT_PRUNE_TOLERANCE_DB = 0.01;
+    private double pruneToleranceDb = DEFAULT_PRUNE_TOLERANCE_DB;
+
+    // ===== 셀 AP 컬링 =====
+    /** 컬링 판정 단위: 한 변 CULL_BLOCKS 블록(TILE_BLOCKS의 약수 → 셀이 타일을 넘지 않음) */
+    private static final int CULL_BLOCKS = 4;
+    /** 셀마다 하한(벽 검사)을 계산할 가까운 AP 수 */
+    private static final int CULL_WITNESS_CANDIDATES = 4;
+    private boolean apCulling = true;
+
+    // ===== AP 영향 반경 =====
+    /** 영향 반경 밖 셀에 남기는 여유(dB): 출력을 이만큼 올려도 그 셀은 다시 계산하지 않음 */
+    private static final double INFLUENCE_SLACK_DB = 3.0;
+    /** 하한 증인 key(컬링 정보에서 "하한을 넘을 수 없음", 실제 AP 레이어 key와 겹치지 않는 값) */
+    private static final long FLOOR_WITNESS = 0x0F10_0DF1_00DL;
+    /** cullCell 결과: 하한에 컬링됨 */
+    private static final int CULLED_BY_FLOOR = -2;
+    private double influenceFloorDbm = Double.NaN;
+
+    // ===== 회절 코너 =====
+    private long cornerCacheKey;
+    private DiffractionCorners cornerCache;
+
+    // ===== 관심 영역 =====
+    private long blockMaskKey;
+    private BlockMask blockMask;
+
+    // ===== 적응 샘플링 =====
+    /** 기본 모서리 허용 편차(dB): 블록 모서리 4점의 밴드별 최대/최소가 이 안이면 보간 */
+    public static final double DEFAULT_ADAPTIVE_SPREAD_DB = 2.0;
+    private boolean adaptiveSampling = true;
+    private double adaptiveSpreadDb = DEFAULT_ADAPTIVE_SPREAD_DB;
+    private long wallBlocksKey;
+    private BlockMask wallBlocks;
+    /** 거친 격자 칸 크기(블록, TILE_BLOCKS의 약수). 1이면 블록 모서리만 */
+    private int coarseLatticeBlocks = 1;
+
+    // ===== 타일 순서 =====
+    private volatile TileFocus tileFocus;
+
+    // ===== 계측 =====
+    private static final System.Logger LOG = System.getLogger(HeatmapGenerator.class.getName());
+    private boolean instrumented = false;
+    private boolean logReports = false;
+
+    /**
+     * 생성 요청: 캔버스 크기/격자(필수) + 선택 항목(스냅샷, 색상화, 리포트, 취소, 타일 게시).
+     * 예) generate(new Request(w, h, grid).snapshot(snap).image(min, max, smooth).cancelled(c))
+     */
+    public static final class Request {
+        final int width, height, gridStepPx;
+        EnvironmentSnapshot snapshot;
+        boolean colorize;
+        double legendMinDbm, legendMaxDbm;
+        int smoothRadiusPx;
+        GenerationReport report;
+        BooleanSupplier cancelled;
+        TileBoard board;
+
+        public Request(int width, int height, int gridStepPx) {
+            this.width = width;
+            this.height = height;
+            this.gridStepPx = gridStepPx;
+        }
+
+        /** 계산할 스냅샷(없으면 호출 시점의 환경) */
+        public Request snapshot(EnvironmentSnapshot snapshot) {
+            this.snapshot = snapshot;
+            return this;
+        }
+
+        /** 범례 범위로 색상화하고 smoothRadiusPx(0 = 끔)로 블러한 이미지도 생성 */
+        public Request image(double legendMinDbm, double legendMaxDbm, int smoothRadiusPx) {
+            this.colorize = true;
+            this.legendMinDbm = legendMinDbm;
+            this.legendMaxDbm = legendMaxDbm;
+            this.smoothRadiusPx = smoothRadiusPx;
+            return this;
+        }
+
+        /** 계측 결과를 채울 리포트(setInstrumented 설정과 무관) */
+        public Request report(GenerationReport report) {
+            this.report = report;
+            return this;
+        }
+
+        /** 타일마다 확인하는 취소 조건 */
+        public Request cancelled(BooleanSupplier cancelled) {
+            this.cancelled = cancelled;
+            return this;
+        }
+
+        /** 계산 도중 완성된 타일을 게시할 보드(바뀐 AP가 없으면 전체 합성 후 한꺼번에 게시) */
+        public Request board(TileBoard board) {
+            this.board = board;
+            return this;
+        }
+    }
+
+    /** 생성 결과: 이미지(요청한 경우) + 블록 격자 + 리포트(계측 시) */
+    public static final class Result {
+        public final WritableImage image; // Request.image()를 지정하지 않았으면 null
+        public final RssiField field;
+        public final GenerationReport report; // 계측 꺼져 있으면 null
+
+        Result(WritableImage image, RssiField field, GenerationReport report) {
+            this.image = image;
+            this.field = field;
+            this.report = report;
+        }
     }
 
     public HeatmapGenerator(WifiEnvironment env) {
         this.env = env;
     }
 
-    public WritableImage generate(int width,
-                                  int height,
-                                  int gridStepPx,
-                                  double legendMinDbm,
-                                  double legendMaxDbm,
-                                  int smoothRadiusPx) {
-
-        // 환경에서 현재 상태 가져오기
-        List<AP> aps = new ArrayList<>(env.getAps());
-        List<Wall> walls = new ArrayList<>(env.getWalls());
-        double scaleMPerPx = env.getScaleMPerPx();
-        double pathLossN = env.getPathLossN();
-        double minDistanceM = env.getMinDistanceM();
-
-        // 1) 활성 AP 필터링
-        List<AP> enabled = new ArrayList<>();
-        for (AP ap : aps) {
-            if (ap != null && ap.enabled) enabled.add(ap);
-        }
-
-        WritableImage img = new WritableImage(width, height);
-        PixelWriter pw = img.getPixelWriter();
-
-        int sub = 3; // 3x3 슈퍼샘플링
-
-        for (int yy = 0; yy < height; yy += gridStepPx) {
-            for (int xx = 0; xx < width; xx += gridStepPx) {
-
-                double mwSum = 0.0;
-                int samples = 0;
-
-                // 블록 내 3x3 샘플
-                for (int sy = 0; sy < sub; sy++) {
-                    for (int sx = 0; sx < sub; sx++) {
-                        int px = Math.min(width - 1, xx + (sx * gridStepPx + gridStepPx / 2) / sub);
-                        int py = Math.min(height - 1, yy + (sy * gridStepPx + gridStepPx / 2) / sub);
-
-                        double strongest = -1e9;
-
-                        for (AP ap : enabled) {
-                            Point2D apPt = new Point2D(ap.x, ap.y);
-                            Point2D rxPt = new Point2D(px, py);
-
-                            // 1) 거리(m)
-                            double dM = apPt.distance(rxPt) * scaleMPerPx;
-                            dM = Math.max(dM, minDistanceM);
-
-                            double bestRssi = -1e9;
-
-                            // ===== 반사 후보 벽을 가까운 것 위주로 제한 (성능 보호) =====
-                            List<WallCand> wallCands = new ArrayList<>();
-                            for (Wall w : walls) {
-                                if (w == null) continue;
-                                Point2D w1 = new Point2D(w.x1, w.y1);
-                                Point2D w2 = new Point2D(w.x2, w.y2);
-                                Point2D cpAp = WifiMath.closestPointOnSegment(apPt, w1, w2);
-                                Point2D cpRx = WifiMath.closestPointOnSegment(rxPt, w1, w2);
-                                double dApM = apPt.distance(cpAp) * scaleMPerPx;
-                                double dRxM = rxPt.distance(cpRx) * scaleMPerPx;
-                                double minM = Math.min(dApM, dRxM);
-                                if (minM <= REFLECTION_RADIUS_M) {
-                                    wallCands.add(new WallCand(w, minM));
-                                }
-                            }
-                            wallCands.sort(Comparator.comparingDouble(a -> a.score));
-                            if (wallCands.size() > MAX_REFLECTION_WALLS) {
-                                wallCands = wallCands.subList(0, MAX_REFLECTION_WALLS);
-                            }
+    public int getParallelism() { return parallelism; }
 
-                            // ===== 회절 코너 후보 생성(거리 랭킹 + 중복 제거 + 간단 필터) =====
-                            List<CornerCand> cornerRank = new ArrayList<>();
-                            for (Wall w : walls) {
-                                if (w == null) continue;
-                                Point2D c1 = new Point2D(w.x1, w.y1);
-                                Point2D c2 = new Point2D(w.x2, w.y2);
-
-                                double c1Score = Math.min(apPt.distance(c1) * scaleMPerPx, rxPt.distance(c1) * scaleMPerPx);
-                                double c2Score = Math.min(apPt.distance(c2) * scaleMPerPx, rxPt.distance(c2) * scaleMPerPx);
-                                if (c1Score <= DIFFRACTION_RADIUS_M) cornerRank.add(new CornerCand(c1, c1Score));
-                                if (c2Score <= DIFFRACTION_RADIUS_M) cornerRank.add(new CornerCand(c2, c2Score));
-                            }
+    /** AP별 RSSI 레이어 캐시(스냅샷 저장/복원, 벤치마크 초기화용) */
+    public LayerCache getLayerCache() { return layerCache; }
 
-                            cornerRank.sort(Comparator.comparingDouble(a -> a.score));
+    /** 계산 스레드 수(1이면 호출 스레드에서 순차 계산) */
+    public void setParallelism(int threads) { this.parallelism = Math.max(1, threads); }
 
-                            Set<Long> seen = new HashSet<>();
-                            List<Point2D> cornerCands = new ArrayList<>();
-                            for (CornerCand cc : cornerRank) {
-                                int qx = (int) Math.round(cc.corner.getX());
-                                int qy = (int) Math.round(cc.corner.getY());
-                                long key = (((long) qx) << 32) ^ (qy & 0xffffffffL);
-                                if (!seen.add(key)) continue;
+    /** 작업 스레드 풀 종료(다음 계산에서 필요하면 다시 만듦) */
+    @Override
+    public synchronized void close() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
 
-                                int cross1 = WifiMath.wallCrossCount(apPt.getX(), apPt.getY(), cc.corner.getX(), cc.corner.getY(), walls, null);
-                                int cross2 = WifiMath.wallCrossCount(cc.corner.getX(), cc.corner.getY(), rxPt.getX(), rxPt.getY(), walls, null);
-                                if (cross1 >= 3 && cross2 >= 3) continue;
+    /** parallelism 크기 풀(스레드 수가 바뀌었으면 새로 만들고 이전 풀은 진행 중 작업이 끝나면 종료) */
+    private synchronized ForkJoinPool pool() {
+        if (pool == null || pool.getParallelism() != parallelism) {
+            if (pool != null) pool.shutdown();
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
 
-                                cornerCands.add(cc.corner);
-                                if (cornerCands.size() >= MAX_DIFFRACTION_CORNERS) break;
-                            }
+    public boolean isSimplifyWalls() { return simplifyWalls; }
 
-                            for (Band b : Band.values()) {
-                                RadioConfig rc = ap.radios.get(b);
-                                if (rc == null || !rc.enabled) continue;
+    /** 계산 전 벽 정리(WallSimplifier) on/off. 환경의 벽 목록 자체는 바꾸지 않음 */
+    public void setSimplifyWalls(boolean simplifyWalls) { this.simplifyWalls = simplifyWalls; }
 
-                                // 2) 직선상 벽 감쇠 (밴드별 2.4/5 적용)
-                                double wallLoss = WifiMath.wallLossAlong(ap.x, ap.y, px, py, walls, b);
+    /** 마지막으로 정리한 벽 목록/통계(아직 없으면 null) */
+    public synchronized WallSimplifier.Result getLastWallSimplification() { return simplified; }
 
-                                double bandMw = 0.0;
+    public boolean isApCulling() { return apCulling; }
 
-                                // 1) LOS
-                                double baseLossLos = WifiMath.pathLossDb(dM, b.freqGhz, pathLossN);
-                                double rssiLos = rc.txPowerDbm + rc.antennaGain - (baseLossLos + wallLoss);
-                                bandMw += Math.pow(10.0, rssiLos / 10.0);
+    /**
+     * AP 컬링 on/off. 켜면 셀(CULL_BLOCKS 블록 사각형)에서 이길 수 없는 AP
+     * (상한 < 가까운 AP의 하한)는 계산하지 않음.
+     * 결과(블록별 최강 AP)는 같고, 컬링된 레이어 셀은 NaN + 증인 AP key/여유로 캐시됨.
+     */
+    public void setApCulling(boolean apCulling) { this.apCulling = apCulling; }
 
-                                double losM = dM;
+    public double getInfluenceFloorDbm() { return influenceFloorDbm; }
 
-                                // 2) 1차 반사
-                                for (WallCand wc : wallCands) {
-                                    Wall w = wc.wall;
-                                    double reflLossDb = 8.0;
-                                    WallMaterial mat = (w == null) ? null : w.getMaterial();
-                                    if (mat != null) {
-                                        reflLossDb = mat.reflectionLossDb();
-                                    }
+    /**
+     * AP 영향 반경의 기준 하한(dBm, 보통 범례 최솟값). NaN이면 끔(기본).
+     * 켜면(컬링이 켜져 있을 때만) AP마다 벽 없는 상한이 이 값 아래로 내려가는 반경을 구해 공간 색인에 넣고,
+     * 셀마다 영향 원이 닿는 AP만 계산/컬링 비교/합성 → 셀당 비용이 주변 AP 수에만 비례.
+     * 반경 밖 셀은 하한 증인으로 컬링돼 캐시되고(출력을 올리면 여유만큼만 재사용),
+     * 어떤 AP도 하한에 못 미치는 블록은 하한 값으로 채움(범례 최솟값 이하는 같은 색)
+     */
+    public void setInfluenceFloorDbm(double floorDbm) { this.influenceFloorDbm = floorDbm; }
 
-                                    WifiMath.Path p = WifiMath.buildSingleBounceReflection(
-                                            apPt, rxPt, w, walls, scaleMPerPx, reflLossDb, b);
-                                    if (p == null) continue;
-                                    if (p.lengthMeters > losM * REFLECTION_LOS_RATIO_CUTOFF) continue;
+    public double getPruneToleranceDb() { return pruneToleranceDb; }
 
-                                    double baseLossRefl = WifiMath.pathLossDb(p.lengthMeters, b.freqGhz, pathLossN);
-                                    double rssiRefl = rc.txPowerDbm + rc.antennaGain
-                                            - (baseLossRefl + p.wallLossDb + p.extraLossDb);
-                                    bandMw += Math.pow(10.0, rssiRefl / 10.0);
-                                }
+    /**
+     * 반사/회절 경로 가지치기 허용 오차(dB). 0이면 가지치기 끔.
+     * 경로별 상한(최단 길이 + 고정 손실)의 합이 LOS 전력 대비 이 오차 안에 드는 경로만 생략.
+     */
+    public void setPruneToleranceDb(double toleranceDb) { this.pruneToleranceDb = Math.max(0.0, toleranceDb); }
+
+    public boolean isAdaptiveSampling() { return adaptiveSampling; }
+
+    /**
+     * 적응 슈퍼샘플링 on/off. 켜면 블록 모서리(이웃 블록과 공유)를 먼저 계산하고,
+     * 벽이 지나거나 AP가 들어 있거나 모서리 편차가 허용치를 넘는 블록만 3x3 샘플링.
+     * 나머지 블록은 모서리 dB를 3x3 샘플 위치로 쌍선형 보간해 mW 평균
+     */
+    public void setAdaptiveSampling(boolean adaptiveSampling) { this.adaptiveSampling = adaptiveSampling; }
+
+    public double getAdaptiveSpreadDb() { return adaptiveSpreadDb; }
+
+    /** 모서리 보간을 허용할 모서리 4점의 밴드별 최대 편차(dB) */
+    public void setAdaptiveSpreadDb(double spreadDb) { this.adaptiveSpreadDb = Math.max(0.0, spreadDb); }
+
+    public int getCoarseLatticeBlocks() { return coarseLatticeBlocks; }
+
+    /**
+     * 벽 인식 거친 격자 모드(적응 샘플링이 켜져 있을 때만). blocks x blocks 블록 칸의 모서리에서만 계산하고,
+     * 칸과 그 둘레 블록에 벽이 없으면(벽 블록 누적합 표로 판정) 칸 모서리를 쌍선형 보간해 블록을 채움.
+     * 보간이 안 되는 블록(벽이 지나거나 모서리가 어긋남)도 3x3을 다 계산하지 않고, 샘플마다
+     * 벽을 사이에 두지 않고 LOS 그림자가 같은 모서리로만 보간(CornerLattice.wallAwareSum: 거친 칸 모서리가
+     * 샘플을 양쪽에서 감싸면 거친 칸, 아니면 블록 모서리), 그런 모서리가 모자라거나 어긋나는 샘플만
+     * 정확히 계산 → 벽 그림자 경계 유지.
+     * 1, 2, 4, 8, 16 중 가장 가까운 작은 값으로 맞춤(칸이 타일을 넘지 않게). 기본 1(끔)
+     */
+    public void setCoarseLatticeBlocks(int blocks) {
+        int b = 1;
+        while (b * 2 <= Math.min(blocks, TILE_BLOCKS)) b *= 2;
+        this.coarseLatticeBlocks = b;
+    }
+
+    public TileFocus getTileFocus() { return tileFocus; }
+
+    /**
+     * 타일 계산 순서 기준(nullable = 래스터 순서). 보이는 영역/마우스 근처 타일부터 계산하고,
+     * 계산 도중 focus가 바뀌면 남은 타일 순서를 다시 정함. 결과 값은 순서와 무관
+     */
+    public void setTileFocus(TileFocus tileFocus) { this.tileFocus = tileFocus; }
+
+    public boolean isInstrumented() { return instrumented; }
+
+    /** 단계별 타이머/카운터 수집 on/off (off면 nanoTime 호출도 없음) */
+    public void setInstrumented(boolean instrumented) { this.instrumented = instrumented; }
+
+    public boolean isLogReports() { return logReports; }
+
+    /** true면 생성마다 리포트를 System.Logger(INFO)로 출력. 계측도 함께 켬 */
+    public void setLogReports(boolean logReports) {
+        this.logReports = logReports;
+        if (logReports) this.instrumented = true;
+    }
+
+    /**
+     * 생성 진입점(하나뿐). 블록 격자를 계산하고, req.image()를 지정했으면 색상화/블러까지.
+     * - 스냅샷을 지정하지 않으면 호출 시점의 env.snapshot()으로 계산.
+     *   백그라운드 스레드에서 계산할 때는 편집 스레드(FX)에서 미리 찍은 스냅샷을 넘겨야 계산 도중 편집의 영향을 받지 않음
+     * - 리포트: req.report()가 있으면 거기에, 없으면 setInstrumented(true)일 때만 새로 만들어 채움(총 시간 포함)
+     * - cancelled가 true를 돌려주면 남은 타일을 건너뛰고 CancellationException. 취소된 작업의 레이어는 캐시에 넣지 않음
+     * - board가 있으면 타일마다 합성이 끝나는 대로 게시하고, 끝나거나 취소되면 닫음
+     */
+    public Result generate(Request req) {
+        EnvironmentSnapshot snap = (req.snapshot != null) ? req.snapshot : env.snapshot();
+        GenerationReport report = (req.report != null) ? req.report : (instrumented ? new GenerationReport() : null);
+        long t0 = (report != null) ? System.nanoTime() : 0L;
+
+        RssiField field;
+        try {
+            field = computeFieldInternal(snap, req.width, req.height, req.gridStepPx, report, req.cancelled, req.board);
+        } finally {
+            if (req.board != null) req.board.close();
+        }
+        checkCancelled(req.cancelled);
+
+        WritableImage img = null;
+        if (req.colorize) {
+            long tc = (report != null) ? System.nanoTime() : 0L;
+            img = WifiMath.toImage(field, req.legendMinDbm, req.legendMaxDbm);
+            if (report != null) report.addStage(GenerationReport.Stage.COLORIZE, System.nanoTime() - tc);
+
+            // 스무딩
+            if (req.smoothRadiusPx > 0) {
+                long tb = (report != null) ? System.nanoTime() : 0L;
+                img = WifiMath.boxBlur(img, req.smoothRadiusPx, blockMask(snap, req.width, req.height, field.gridStepPx));
+                if (report != null) report.addStage(GenerationReport.Stage.BLUR, System.nanoTime() - tb);
+            }
+        }
+
+        if (report != null) {
+            report.setTotalNanos(System.nanoTime() - t0);
+            if (logReports) LOG.log(System.Logger.Level.INFO, report.format());
+        }
+        return new Result(img, field, report);
+    }
+
+    /**
+     * 블록 단위 RSSI 격자 계산(스냅샷만 읽음, WifiEnvironment의 라이브 목록/객체는 건드리지 않음).
+     * AP마다 밴드별 경로 이득 레이어(블록별 mW 평균, EIRP 0 dBm 기준)를 LayerCache에 두고,
+     * 캐시에 없는(새로 생겼거나 옮긴) AP의 레이어만 계산한 뒤 밴드 상수를 더해 블록별 최댓값으로 합성.
+     * 타일(TILE_BLOCKS x TILE_BLOCKS 블록) 단위로 parallelism 개 스레드에 분배
+     */
+    private RssiField computeFieldInternal(EnvironmentSnapshot snap, int width, int height, int gridStepPx,
+                                           GenerationReport report, BooleanSupplier cancelled, TileBoard board) {
+        HeatmapJobEvent job = new HeatmapJobEvent();
+        job.begin();
+
+        List<Wall> rawWalls = snap.walls();
+        double scaleMPerPx = snap.getScaleMPerPx();
+        double pathLossN = snap.getPathLossN();
+        double minDistanceM = snap.getMinDistanceM();
+
+        // 0) 벽 정리(중복/조각 제거, 동일 직선 병합)
+        WallSimplifier.Result simplification = simplifyWalls ? simplifiedWalls(snap) : null;
+        List<Wall> walls = (simplification != null) ? simplification.walls : rawWalls;
+        if (report != null && simplification != null) {
+            report.setWallSimplification(simplification.input, simplification.output());
+        }
+        DiffractionCorners corners = diffractionCorners(snap, simplification);
+
+        double pruneFactor = (pruneToleranceDb > 0) ? Math.pow(10.0, pruneToleranceDb / 10.0) - 1.0 : 0.0;
+
+        // 1) 활성 AP → 레이어 키(위치)별 밴드 상수. 같은 위치의 AP는 레이어를 공유하고 밴드별로 센 쪽 상수를 씀
+        int enabledCount = 0;
+        for (int i = 0; i < snap.apCount(); i++) {
+            if (snap.apEnabled(i)) enabledCount++;
+        }
+        List<Integer> layerAps = new ArrayList<>(); // 키별 대표 AP(위치)
+        List<Long> layerKeys = new ArrayList<>();
+        Map<Long, double[]> keyConst = keyConstants(snap, -1, layerAps, layerKeys);
+        double floorDbm = apCulling ? influenceFloorDbm : Double.NaN;
+        boolean useFloor = !Double.isNaN(floorDbm);
+        if (useFloor) keyConst.put(FLOOR_WITNESS, floorConstants(floorDbm));
+
+        RssiField field = new RssiField(width, height, gridStepPx);
+        if (board != null) board.begin(field);
+        BlockMask mask = blockMask(snap, width, height, field.gridStepPx); // null = 캔버스 전체
+        int tilesX = (field.cols + TILE_BLOCKS - 1) / TILE_BLOCKS;
+        int tilesY = (field.rows + TILE_BLOCKS - 1) / TILE_BLOCKS;
+
+        int tileCount = tilesX * tilesY;
+        if (report != null) {
+            report.setJob(width, height, field.gridStepPx, Math.max(1, Math.min(parallelism, tileCount)),
+                    tileCount, walls.size(), enabledCount);
+        }
+
+        // 2) 레이어 캐시 조회: 환경(벽/스케일/캔버스)이 바뀌었으면 전체 무효화
+        long cacheEpoch = layerCache.resetIfGeometryChanged(geometryKey(snap, width, height, field.gridStepPx));
+
+        int nBound = layerAps.size();
+        List<RssiField[]> layerGains = new ArrayList<>(nBound); // layerKeys와 같은 순서
+        for (long key : layerKeys) {
+            RssiField[] gains = layerCache.getGains(key);
+            if (report != null) {
+                if (gains != null) report.addCacheHit();
+                else report.addCacheMiss();
+            }
+            layerGains.add(gains);
+        }
+
+        // 컬링 단위 셀(CULL_BLOCKS x CULL_BLOCKS 블록, 타일 안에 정렬)
+        int cellsX = (field.cols + CULL_BLOCKS - 1) / CULL_BLOCKS;
+        int cellsY = (field.rows + CULL_BLOCKS - 1) / CULL_BLOCKS;
+        int cellCount = cellsX * cellsY;
+
+        // 계산할 (AP, 셀): 새 레이어는 전 셀, 캐시 레이어는 증인이 사라졌거나 출력 변화로 여유가 모자란 컬링 셀만
+        List<Integer> staleBoundList = new ArrayList<>(); // stale → layerAps 인덱스
+        List<RssiField[]> staleLayers = new ArrayList<>();
+        List<long[]> staleWitness = new ArrayList<>();
+        List<float[]> staleSlack = new ArrayList<>();
+        List<boolean[]> staleCells = new ArrayList<>(); // null = 전 셀
+        for (int i = 0; i < nBound; i++) {
+            RssiField[] gains = layerGains.get(i);
+            if (gains == null) {
+                gains = new RssiField[BANDS.length];
+                for (int b = 0; b < gains.length; b++) gains[b] = new RssiField(width, height, field.gridStepPx);
+                layerGains.set(i, gains);
+                staleBoundList.add(i);
+                staleLayers.add(gains);
+                staleWitness.add(new long[cellCount]);
+                staleSlack.add(new float[cellCount]);
+                staleCells.add(null);
+                continue;
+            }
+            LayerCache.Culling old = layerCache.getCulling(layerKeys.get(i));
+            if (old == null || old.witness.length != cellCount) continue;
+            float[] slack = old.slack.clone();
+            boolean[] redo = invalidCulledCells(old, keyConst.get(layerKeys.get(i)), keyConst, slack);
+            if (redo == null) continue;
+            // 캐시(및 편집 기록)가 잡고 있는 레이어는 고치지 않고 복사본의 일부 셀만 다시 계산
+            RssiField[] copy = new RssiField[gains.length];
+            for (int b = 0; b < gains.length; b++) copy[b] = gains[b].copy();
+            layerGains.set(i, copy);
+            staleBoundList.add(i);
+            staleLayers.add(copy);
+            staleWitness.add(old.witness.clone());
+            staleSlack.add(slack);
+            staleCells.add(redo);
+        }
+
+        // 타일 컬링용 키별 밴드 상수(전체 레이어: 다른 AP가 "이길 수 없음"의 근거가 됨)
+        boolean cull = apCulling && (nBound > 1 || useFloor);
+        double[][] boundConst = new double[nBound][];
+        long[] boundKeys = new long[nBound];
+        boolean anyBand = false;
+        for (int i = 0; i < nBound; i++) {
+            boundKeys[i] = layerKeys.get(i);
+            boundConst[i] = keyConst.get(boundKeys[i]);
+            anyBand |= maxConstant(boundConst[i]) > Double.NEGATIVE_INFINITY;
+        }
+        boolean floorFill = useFloor && anyBand; // 하한에 못 미치는 블록을 하한 값으로 채울지
+        double marginDb = ApTileBounds.multipathMarginDb(walls,
+                Math.min(MAX_REFLECTION_WALLS, walls.size()), Math.min(MAX_DIFFRACTION_CORNERS, corners.size()));
+        int[] staleBound = new int[staleBoundList.size()];
+        for (int a = 0; a < staleBound.length; a++) staleBound[a] = staleBoundList.get(a);
+        List<Integer> staleAps = new ArrayList<>(staleBound.length);
+        for (int i : staleBound) staleAps.add(layerAps.get(i));
+
+        // AP 영향 반경 색인(하한이 있을 때만): 셀마다 영향 원이 닿는 레이어만 계산/비교/합성
+        final ApIndex boundIndex;
+        final ApIndex staleIndex;
+        if (!useFloor) {
+            boundIndex = null;
+            staleIndex = null;
+        } else {
+            double[] ax = new double[nBound], ay = new double[nBound], ar = new double[nBound];
+            for (int i = 0; i < nBound; i++) {
+                int ap = layerAps.get(i);
+                ax[i] = snap.apX(ap);
+                ay[i] = snap.apY(ap);
+                ar[i] = ApIndex.influenceRadiusM(maxConstant(boundConst[i]), marginDb, floorDbm, INFLUENCE_SLACK_DB,
+                        pathLossN, minDistanceM) / scaleMPerPx;
+            }
+            boundIndex = ApIndex.of(ax, ay, ar);
+            double[] sx = new double[staleBound.length], sy = new double[staleBound.length];
+            double[] sr = new double[staleBound.length];
+            for (int a = 0; a < staleBound.length; a++) {
+                sx[a] = ax[staleBound[a]];
+                sy[a] = ay[staleBound[a]];
+                sr[a] = ar[staleBound[a]];
+            }
+            staleIndex = ApIndex.of(sx, sy, sr);
+
+            // 반경 밖 셀은 계산 없이 하한 증인으로(새 레이어는 전부 표시해 두고 타일에서 반경 안 셀만 덮어씀)
+            float floorSlack = Math.nextDown((float) INFLUENCE_SLACK_DB);
+            for (int a = 0; a < staleBound.length; a++) {
+                boolean[] need = staleCells.get(a);
+                if (need == null) {
+                    Arrays.fill(staleWitness.get(a), FLOOR_WITNESS);
+                    Arrays.fill(staleSlack.get(a), floorSlack);
+                    continue;
+                }
+                for (int c = 0; c < cellCount; c++) {
+                    if (!need[c]) continue;
+                    int cx0 = (c % cellsX) * CULL_BLOCKS, cy0 = (c / cellsX) * CULL_BLOCKS;
+                    int cx1 = Math.min(field.cols, cx0 + CULL_BLOCKS), cy1 = Math.min(field.rows, cy0 + CULL_BLOCKS);
+                    if (ApTileBounds.minDistance(sx[a], sy[a], cx0 * field.gridStepPx, cy0 * field.gridStepPx,
+                            Math.min(width, cx1 * field.gridStepPx) - 1,
+                            Math.min(height, cy1 * field.gridStepPx) - 1) <= sr[a]) continue;
+                    need[c] = false;
+                    staleWitness.get(a)[c] = FLOOR_WITNESS;
+                    staleSlack.get(a)[c] = floorSlack;
+                    for (RssiField layer : staleLayers.get(a)) fillBlocks(layer, cx0, cy0, cx1, cy1);
+                }
+            }
+        }
+
+        // 3) 바뀐 AP 레이어만 타일 병렬 계산
+        if (!staleAps.isEmpty()) {
+            // AP별 코너 표(AP→코너 거리/관통/감쇠) 먼저
+            long tv = (report != null) ? System.nanoTime() : 0L;
+            DiffractionCorners.ApView[] views = new DiffractionCorners.ApView[staleAps.size()];
+            runTiles(views.length, null, (i, rec) ->
+                    views[i] = corners.viewFrom(snap.apX(staleAps.get(i)), snap.apY(staleAps.get(i)), walls));
+            if (report != null) report.addStage(GenerationReport.Stage.CANDIDATES, System.nanoTime() - tv);
+
+            // 적응 샘플링: 벽이 지나는 블록 표(벽/캔버스가 같으면 재사용), 모서리 허용 편차(mW 비)
+            BlockMask wallBlocks = adaptiveSampling
+                    ? wallBlocks(snap, simplification, walls, width, height, field.gridStepPx) : null;
+            double spreadRatio = Math.pow(10.0, adaptiveSpreadDb / 10.0);
+            int coarse = (wallBlocks != null) ? coarseLatticeBlocks : 1;
 
-                                // 3) 1차 회절(코너)
-                                for (Point2D corner : cornerCands) {
-                                    double lenM = (apPt.distance(corner) + corner.distance(rxPt)) * scaleMPerPx;
-                                    if (lenM > losM * DIFFRACTION_LOS_RATIO_CUTOFF) continue;
+            TileFocus focus = tileFocus;
+            TileTask tileTask = (tile, rec) -> {
+                if (cancelled != null && cancelled.getAsBoolean()) return;
+                TileCompletedEvent tileEvent = new TileCompletedEvent();
+                tileEvent.begin();
 
-                                    Point2D v1 = apPt.subtract(corner);
-                                    Point2D v2 = rxPt.subtract(corner);
-                                    double theta = WifiMath.angleDeg(v1, v2);
-                                    double t = Math.max(0.0, Math.min(120.0, theta));
+                int bx0 = (tile % tilesX) * TILE_BLOCKS;
+                int by0 = (tile / tilesX) * TILE_BLOCKS;
+                int bx1 = Math.min(field.cols, bx0 + TILE_BLOCKS);
+                int by1 = Math.min(field.rows, by0 + TILE_BLOCKS);
 
-                                    double diffLossDb = 6.0 + 0.10 * t;
-                                    double ratio = Math.max(1.0, lenM / losM);
-                                    diffLossDb += 10.0 * Math.log10(ratio);
+                // 관심 영역 밖 타일: 레이어/합성 모두 NaN 그대로(레이어 캐시는 마스크가 같을 때만 재사용)
+                if (mask != null && !mask.anyIn(bx0, by0, bx1, by1)) {
+                    if (board != null) board.publish(tile);
+                    commitTileEvent(tileEvent, tile, bx0, by0, bx1, by1, true);
+                    return;
+                }
+
+                int nStale = staleAps.size();
+                int[] active = new int[nStale];
+                double[][] mwSum = new double[nStale][BANDS.length];
+                double[] sampleMw = new double[BANDS.length];
+                float[] slack = cull ? new float[nStale] : null;
+                int[] culledBy = cull ? new int[nStale] : null;
+                CullScratch scratch = cull ? new CullScratch(nBound) : null;
+                int[] cand = new int[nStale]; // 셀에서 볼 stale AP(색인이 없으면 전부)
+                for (int a = 0; a < nStale; a++) cand[a] = a;
+                int[] fine = new int[nStale];
+                CornerLattice lattice = (wallBlocks != null)
+                        ? new CornerLattice(bx0, by0, field.gridStepPx, width, height, nStale, (a, px, py, out) ->
+                                apGainsAt(snap, staleAps.get(a), walls, corners, views[a], px, py,
+                                        scaleMPerPx, pathLossN, minDistanceM, pruneFactor, out, rec),
+                                (a, x0, y0, x1, y1) -> ApTileBounds.uniformShadow(
+                                        snap.apX(staleAps.get(a)), snap.apY(staleAps.get(a)), x0, y0, x1, y1, walls),
+                                (a, px, py, out) -> {
+                                    Arrays.fill(out, 0.0);
+                                    WifiMath.wallLossAlongBands(snap.apX(staleAps.get(a)), snap.apY(staleAps.get(a)),
+                                            px, py, walls, null, out);
+                                    if (rec != null) rec.wallTests += walls.size();
+                                },
+                                // 거친 격자 모드: 타일에 걸친 벽 선분(샘플↔모서리 사이 벽 판정)
+                                (coarse > 1) ? segmentsIn(walls, bx0 * field.gridStepPx - 1, by0 * field.gridStepPx - 1,
+                                        bx1 * field.gridStepPx + 1, by1 * field.gridStepPx + 1) : null)
+                        : null;
+
+                for (int cy0 = by0; cy0 < by1; cy0 += CULL_BLOCKS) {
+                    for (int cx0 = bx0; cx0 < bx1; cx0 += CULL_BLOCKS) {
+                        int cx1 = Math.min(bx1, cx0 + CULL_BLOCKS);
+                        int cy1 = Math.min(by1, cy0 + CULL_BLOCKS);
+                        int cell = (cy0 / CULL_BLOCKS) * cellsX + cx0 / CULL_BLOCKS;
+                        if (mask != null && !mask.anyIn(cx0, cy0, cx1, cy1)) continue;
 
-                                    WifiMath.Path p = WifiMath.buildSingleCornerDiffraction(
-                                            apPt, rxPt, corner, walls, scaleMPerPx, diffLossDb, b);
-                                    if (p == null) continue;
+                        // 이 셀에서 볼 AP(영향 반경 색인이 있으면 영향 원이 닿는 AP만) 중 계산할 AP(컬링 통과)
+                        double px0 = cx0 * field.gridStepPx, py0 = cy0 * field.gridStepPx;
+                        double px1 = Math.min(width, cx1 * field.gridStepPx) - 1;
+                        double py1 = Math.min(height, cy1 * field.gridStepPx) - 1;
+                        int nCand = (staleIndex != null) ? staleIndex.query(px0, py0, px1, py1, cand) : nStale;
+                        if (cull) {
+                            cullCell(snap, layerAps, boundConst, walls, staleBound, marginDb, boundIndex, floorDbm,
+                                    cand, nCand, px0, py0, px1, py1, scaleMPerPx, pathLossN, minDistanceM,
+                                    scratch, culledBy, slack);
+                        }
+                        int nActive = 0;
+                        for (int q = 0; q < nCand; q++) {
+                            int a = cand[q];
+                            boolean[] need = staleCells.get(a);
+                            if (need != null && !need[cell]) continue;
+                            if (culledBy != null && culledBy[a] != -1) {
+                                staleWitness.get(a)[cell] = (culledBy[a] == CULLED_BY_FLOOR)
+                                        ? FLOOR_WITNESS : boundKeys[culledBy[a]];
+                                staleSlack.get(a)[cell] = slack[a];
+                                for (RssiField layer : staleLayers.get(a)) fillBlocks(layer, cx0, cy0, cx1, cy1);
+                                if (rec != null) rec.apCellsCulled++;
+                                continue;
+                            }
+                            staleWitness.get(a)[cell] = 0L;
+                            staleSlack.get(a)[cell] = 0f;
+                            active[nActive++] = a;
+                            if (rec != null) rec.apCellsEvaluated++;
+                        }
+                        if (nActive == 0) continue;
 
-                                    double baseLossDiff = WifiMath.pathLossDb(p.lengthMeters, b.freqGhz, pathLossN);
-                                    double rssiDiff = rc.txPowerDbm + rc.antennaGain
-                                            - (baseLossDiff + p.wallLossDb + p.extraLossDb);
-                                    bandMw += Math.pow(10.0, rssiDiff / 10.0);
+                        for (int by = cy0; by < cy1; by++) {
+                            for (int bx = cx0; bx < cx1; bx++) {
+                                if (mask != null && !mask.get(bx, by)) continue;
+                                int xx = bx * field.gridStepPx;
+                                int yy = by * field.gridStepPx;
+
+                                // 적응 샘플링: 벽/AP가 없고 모서리 4점이 고르게 맞으면 모서리 보간, 아니면 3x3.
+                                // 거친 격자 모드면 먼저 벽 없는 거친 칸의 모서리로, 안 되면 블록 모서리로
+                                boolean walled = wallBlocks != null && wallBlocks.get(bx, by);
+                                int ox = bx0 + ((bx - bx0) / coarse) * coarse;
+                                int oy = by0 + ((by - by0) / coarse) * coarse;
+                                boolean coarseClear = coarse > 1 && !walled
+                                        && !wallBlocks.anyIn(ox - 1, oy - 1, ox + coarse + 1, oy + coarse + 1);
+                                int nFine = 0;
+                                for (int k = 0; k < nActive; k++) {
+                                    int a = active[k];
+                                    Arrays.fill(mwSum[k], 0.0);
+                                    if (lattice != null) {
+                                        int ap = staleAps.get(a);
+                                        boolean apInCell = apInRect(snap, ap, ox, oy, coarse, field.gridStepPx);
+                                        if (coarseClear && !apInCell
+                                                && lattice.uniformShadow(a, ox, oy, coarse)
+                                                && lattice.smoothSum(a, ox, oy, coarse, bx, by, spreadRatio, mwSum[k], rec)) {
+                                            if (rec != null) rec.blocksCoarse++;
+                                            continue;
+                                        }
+                                        boolean apInBlock = apInRect(snap, ap, bx, by, 1, field.gridStepPx);
+                                        if (coarse > 1 && !apInBlock) {
+                                            // 샘플마다 벽 건너편/다른 그림자를 뺀 칸 모서리(AP가 칸 안이면 블록 모서리)로 보간
+                                            int exact = lattice.wallAwareSum(a, apInCell ? 1 : coarse, bx, by,
+                                                    spreadRatio, mwSum[k], rec);
+                                            if (rec != null) {
+                                                rec.blocksWallAware++;
+                                                rec.samples += exact;
+                                            }
+                                            continue;
+                                        }
+                                        if (!walled && !apInBlock
+                                                && lattice.smoothSum(a, bx, by, 1, bx, by, spreadRatio, mwSum[k], rec)) {
+                                            if (rec != null) rec.blocksInterpolated++;
+                                            continue;
+                                        }
+                                    }
+                                    fine[nFine++] = k;
+                                    if (rec != null && lattice != null) rec.blocksRefined++;
                                 }
 
-                                if (bandMw > 0.0) {
-                                    double bandRssi = 10.0 * Math.log10(bandMw);
-                                    if (bandRssi > bestRssi) bestRssi = bandRssi;
+                                // 블록 내 3x3 샘플
+                                for (int sy = 0; sy < SUB && nFine > 0; sy++) {
+                                    for (int sx = 0; sx < SUB; sx++) {
+                                        int px = Math.min(width - 1, xx + (sx * field.gridStepPx + field.gridStepPx / 2) / SUB);
+                                        int py = Math.min(height - 1, yy + (sy * field.gridStepPx + field.gridStepPx / 2) / SUB);
+                                        if (rec != null) rec.samples++;
+
+                                        for (int f = 0; f < nFine; f++) {
+                                            int k = fine[f];
+                                            int a = active[k];
+                                            apGainsAt(snap, staleAps.get(a), walls, corners, views[a], px, py,
+                                                    scaleMPerPx, pathLossN, minDistanceM, pruneFactor, sampleMw, rec);
+                                            for (int b = 0; b < sampleMw.length; b++) mwSum[k][b] += sampleMw[b];
+                                        }
+                                    }
                                 }
-                            }
 
-                            if (bestRssi > strongest) strongest = bestRssi;
+                                // 밴드별 mW 평균 → dB
+                                for (int k = 0; k < nActive; k++) {
+                                    RssiField[] gains = staleLayers.get(active[k]);
+                                    for (int b = 0; b < gains.length; b++) {
+                                        double mw = mwSum[k][b];
+                                        gains[b].set(bx, by, (mw > 0.0)
+                                                ? (float) (10.0 * Math.log10(mw / (SUB * SUB))) : Float.NaN);
+                                    }
+                                }
+                            }
                         }
+                    }
+                }
+
+                // 이 타일의 레이어가 다 채워졌으므로 바로 합성해 게시(타일끼리 블록이 겹치지 않음)
+                if (board != null) {
+                    compositeGains(layerGains, boundConst, field, boundIndex, bx0, by0, bx1, by1);
+                    if (floorFill) fillFloor(field, mask, (float) floorDbm, bx0, by0, bx1, by1);
+                    board.publish(tile);
+                }
+
+                commitTileEvent(tileEvent, tile, bx0, by0, bx1, by1, false);
+            };
+            if (focus != null) {
+                runTilesByFocus(new TileClaims(focus, tilesX, tilesY, TILE_BLOCKS * field.gridStepPx), report, tileTask);
+            } else {
+                runTiles(tileCount, report, tileTask);
+            }
+        }
+
+        // 일부 타일만 채워진 레이어가 캐시에 들어가지 않게 여기서 중단
+        checkCancelled(cancelled);
+
+        // 4) 캐시 갱신: 새로 계산한 레이어(+컬링 정보, 지금 상수 기준) 저장,
+        //    사라지거나 옮긴 AP의 옛 레이어 제거(꺼 둔 AP의 레이어는 다시 켤 때를 위해 남김).
+        //    계산 중에 캐시가 바뀌었으면(실행 취소/불러오기) 이 결과는 넣지 않음(이번 필드 합성에만 씀)
+        for (int a = 0; a < staleBound.length; a++) {
+            long[] w = staleWitness.get(a);
+            Map<Long, double[]> witnessBasis = null;
+            for (long k : w) {
+                if (k == 0) continue;
+                if (witnessBasis == null) witnessBasis = new HashMap<>();
+                witnessBasis.computeIfAbsent(k, wk -> keyConst.get(wk).clone());
+            }
+            LayerCache.Culling culling = (witnessBasis != null)
+                    ? new LayerCache.Culling(w, staleSlack.get(a), boundConst[staleBound[a]].clone(), witnessBasis)
+                    : null;
+            if (!layerCache.putGains(cacheEpoch, boundKeys[staleBound[a]], staleLayers.get(a), culling)) break;
+        }
+        Set<Long> keep = new HashSet<>();
+        for (int i = 0; i < snap.apCount(); i++) keep.add(snap.apGainKey(i));
+        layerCache.retainOnly(cacheEpoch, keep);
+
+        // 5) 합성: 블록별 최강 AP(레이어 + 밴드 상수) (타일 게시 중이면 타일마다 이미 합성됨)
+        if (board == null || staleAps.isEmpty()) {
+            long tc = (report != null) ? System.nanoTime() : 0L;
+            compositeGains(layerGains, boundConst, field, boundIndex, 0, 0, field.cols, field.rows);
+            if (floorFill) fillFloor(field, mask, (float) floorDbm, 0, 0, field.cols, field.rows);
+            if (report != null) report.addStage(GenerationReport.Stage.COMPOSITE, System.nanoTime() - tc);
+            if (board != null) board.publishAll();
+        }
+
+        job.end();
+        if (job.shouldCommit()) {
+            job.width = width;
+            job.height = height;
+            job.gridStepPx = field.gridStepPx;
+            job.threads = Math.max(1, Math.min(parallelism, tileCount));
+            job.tiles = tileCount;
+            job.walls = walls.size();
+            job.aps = enabledCount;
+            job.fieldBytes = 4L * field.blockCount();
+            job.commit();
+        }
+
+        return field;
+    }
+
+    /**
+     * 이 스냅샷을 지금 계산하면 새로 계산할 AP 레이어 수(캐시 조회만, 계산/캐시 변경 없음).
+     * 출력/이득/활성 밴드만 바뀐 AP는 세지 않음(합성만), 단 그 때문에 컬링 셀을 다시 계산해야 하면 셈.
+     * 0이면 합성만으로 끝남 → 미리보기 단계를 건너뛰는 판단 등에 사용.
+     * changedKeys(바뀐 AP의 apGainKey, null이면 전부)를 주면 컬링 셀은 그 AP 레이어와
+     * 그 AP나 사라진 AP를 증인으로 둔 레이어만 검사(나머지는 상수가 그대로라 여유도 그대로)
+     */
+    public int countStaleLayers(EnvironmentSnapshot snap, int width, int height, int gridStepPx,
+                                Set<Long> changedKeys) {
+        long geometry = geometryKey(snap, width, height, Math.max(1, gridStepPx));
+        List<Long> keys = new ArrayList<>();
+        Map<Long, double[]> keyConst = keyConstants(snap, -1, new ArrayList<>(), keys);
+        if (apCulling && !Double.isNaN(influenceFloorDbm)) keyConst.put(FLOOR_WITNESS, floorConstants(influenceFloorDbm));
+        if (layerCache.getGeometryKey() != geometry) return keys.size();
+        int stale = 0;
+        for (long key : keys) {
+            if (layerCache.getGains(key) == null) {
+                stale++;
+                continue;
+            }
+            LayerCache.Culling old = layerCache.getCulling(key);
+            if (old == null || (changedKeys != null && !changedKeys.contains(key)
+                    && !witnessChanged(old, changedKeys, keyConst))) continue;
+            if (invalidCulledCells(old, keyConst.get(key), keyConst, null) != null) stale++;
+        }
+        return stale;
+    }
+
+    /** 컬링 증인 중 바뀌었거나(changedKeys) 지금 스냅샷에 없는 AP가 있는지 */
+    private static boolean witnessChanged(LayerCache.Culling culling, Set<Long> changedKeys,
+                                          Map<Long, double[]> keyConst) {
+        for (long w : culling.witnessBasis.keySet()) {
+            if (changedKeys.contains(w) || !keyConst.containsKey(w)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * AP 드래그 미리보기 준비(apIndex = 스냅샷 AP 인덱스, 스냅샷은 드래그 시작 직전 상태).
+     * 나머지 AP 레이어는 캐시에서만 가져오고(계산 없음), 캔버스/격자가 캐시와 다르면 빈 base
+     */
+    public ApDragPreview beginApDrag(EnvironmentSnapshot snap, int apIndex, int width, int height,
+                                     int gridStepPx, int coarseFactor) {
+        long geometry = geometryKey(snap, width, height, Math.max(1, gridStepPx));
+        boolean sameGeometry = layerCache.getGeometryKey() == geometry;
 
-                        if (strongest > -1e9) {
-                            mwSum += Math.pow(10.0, strongest / 10.0);
-                            samples++;
+        WallSimplifier.Result simplification = simplifyWalls ? simplifiedWalls(snap) : null;
+        List<Wall> walls = (simplification != null) ? simplification.walls : snap.walls();
+
+        BlockMask mask = blockMask(snap, width, height, Math.max(1, gridStepPx));
+        ApDragPreview preview = new ApDragPreview(width, height, gridStepPx, coarseFactor,
+                bandConstants(snap, apIndex), walls, snap.getScaleMPerPx(), snap.getPathLossN(), snap.getMinDistanceM(),
+                mask);
+        RssiField base = preview.base();
+
+        // 드래그 AP를 뺀 나머지(같은 위치의 다른 AP가 있으면 그 키는 그 AP 상수로 남음)
+        List<Integer> reps = new ArrayList<>();
+        List<Long> keys = new ArrayList<>();
+        Map<Long, double[]> keyConst = keyConstants(snap, apIndex, reps, keys);
+        long dragKey = snap.apGainKey(apIndex);
+        int cellsX = (base.cols + CULL_BLOCKS - 1) / CULL_BLOCKS;
+        int cellCount = cellsX * ((base.rows + CULL_BLOCKS - 1) / CULL_BLOCKS);
+
+        List<RssiField[]> gains = new ArrayList<>();
+        List<double[]> consts = new ArrayList<>();
+        List<Integer> culledByDrag = new ArrayList<>(); // keys 인덱스
+        for (int i = 0; i < keys.size(); i++) {
+            long key = keys.get(i);
+            RssiField[] g = sameGeometry ? layerCache.getGains(key) : null;
+            if (g == null) continue;
+            gains.add(g);
+            consts.add(keyConst.get(key));
+            LayerCache.Culling culling = layerCache.getCulling(key);
+            if (culling != null && culling.witness.length == cellCount) culledByDrag.add(i);
+        }
+        compositeGains(gains, consts.toArray(new double[0][]), base, null, 0, 0, base.cols, base.rows);
+
+        // 드래그 AP에 컬링돼 비어 있던 셀은 그 레이어 AP의 LOS 값으로 채움
+        double[] loss = new double[BANDS.length];
+        for (int i : culledByDrag) {
+            long[] witness = layerCache.getCulling(keys.get(i)).witness;
+            double[] c = keyConst.get(keys.get(i));
+            int ap = reps.get(i);
+            fillCulledByLos(base, witness, dragKey, cellsX, mask, preview, c, snap.apX(ap), snap.apY(ap), loss);
+        }
+        // 하한에 컬링된 블록(영향 반경 밖)은 본 계산과 같이 하한 값으로
+        if (apCulling && !Double.isNaN(influenceFloorDbm) && !gains.isEmpty()) {
+            fillFloor(base, mask, (float) influenceFloorDbm, 0, 0, base.cols, base.rows);
+        }
+        return preview;
+    }
+
+    /** 드래그 AP(dragKey)에 컬링돼 비어 있던 셀에 이 레이어 AP의 LOS 값을 최댓값 합성(관심 영역 밖 블록 제외) */
+    private static void fillCulledByLos(RssiField base, long[] witness, long dragKey, int cellsX, BlockMask mask,
+                                        ApDragPreview los, double[] bandConst, double apX, double apY, double[] loss) {
+        int step = base.gridStepPx;
+        for (int c = 0; c < witness.length; c++) {
+            if (witness[c] != dragKey) continue;
+            int cx0 = (c % cellsX) * CULL_BLOCKS;
+            int cy0 = (c / cellsX) * CULL_BLOCKS;
+            for (int by = cy0; by < Math.min(base.rows, cy0 + CULL_BLOCKS); by++) {
+                for (int bx = cx0; bx < Math.min(base.cols, cx0 + CULL_BLOCKS); bx++) {
+                    if (mask != null && !mask.get(bx, by)) continue;
+                    int px = Math.min(base.width - 1, bx * step + step / 2);
+                    int py = Math.min(base.height - 1, by * step + step / 2);
+                    float v = (float) los.losDbm(bandConst, apX, apY, px, py, loss);
+                    float cur = base.get(bx, by);
+                    if (!Float.isNaN(v) && (Float.isNaN(cur) || v > cur)) base.set(bx, by, v);
+                }
+            }
+        }
+    }
+
+    /**
+     * 활성 AP를 레이어 키(위치)로 묶고 키별 밴드 상수(밴드마다 그 키 AP들 중 최댓값, 없으면 NaN)를 반환.
+     * reps/keys에는 키 순서(처음 나온 AP 순)대로 대표 AP 인덱스와 키를 채움. except는 제외할 AP(-1 = 없음)
+     */
+    private static Map<Long, double[]> keyConstants(EnvironmentSnapshot snap, int except,
+                                                    List<Integer> reps, List<Long> keys) {
+        Map<Long, double[]> out = new LinkedHashMap<>();
+        for (int i = 0; i < snap.apCount(); i++) {
+            if (i == except || !snap.apEnabled(i)) continue;
+            long key = snap.apGainKey(i);
+            double[] c = bandConstants(snap, i);
+            double[] cur = out.get(key);
+            if (cur == null) {
+                out.put(key, c);
+                reps.add(i);
+                keys.add(key);
+                continue;
+            }
+            for (int b = 0; b < c.length; b++) {
+                if (Double.isNaN(cur[b]) || c[b] > cur[b]) cur[b] = Double.isNaN(c[b]) ? cur[b] : c[b];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 캐시된 컬링 셀 중 지금 상수(now, keyConst)로는 여유가 모자라거나 증인이 사라진 셀(없으면 null).
+     * slackOut != null이면 남는 셀의 여유를 지금 상수 기준으로 줄여 씀(다시 계산한 뒤 새 기준으로 저장할 때)
+     */
+    private static boolean[] invalidCulledCells(LayerCache.Culling old, double[] now,
+                                                Map<Long, double[]> keyConst, float[] slackOut) {
+        Map<Long, Double> consumed = new HashMap<>();
+        boolean[] redo = null;
+        for (int c = 0; c < old.witness.length; c++) {
+            long w = old.witness[c];
+            if (w == 0) continue;
+            double d = consumed.computeIfAbsent(w, k -> old.consumed(k, now, keyConst::get));
+            if (old.slack[c] > d) {
+                if (slackOut != null) slackOut[c] = Math.nextDown((float) (old.slack[c] - d));
+                continue;
+            }
+            if (redo == null) redo = new boolean[old.witness.length];
+            redo[c] = true;
+        }
+        return redo;
+    }
+
+    private static void checkCancelled(BooleanSupplier cancelled) {
+        if (cancelled != null && cancelled.getAsBoolean()) throw new CancellationException("heatmap job superseded");
+    }
+
+    /** 타일 JFR 이벤트 마무리(관심 영역 밖이라 건너뛴 타일도 skipped로 기록해 작업의 타일 수와 맞춤) */
+    private static void commitTileEvent(TileCompletedEvent ev, int tile, int bx0, int by0, int bx1, int by1,
+                                        boolean skipped) {
+        ev.end();
+        if (!ev.shouldCommit()) return;
+        ev.tile = tile;
+        ev.blockX = bx0;
+        ev.blockY = by0;
+        ev.blocks = (bx1 - bx0) * (by1 - by0);
+        ev.skipped = skipped;
+        ev.commit();
+    }
+
+    /** 벽이 바뀌었을 때만 다시 정리(같은 벽이면 이전 결과 재사용) */
+    private synchronized WallSimplifier.Result simplifiedWalls(EnvironmentSnapshot snap) {
+        long key = snap.wallsKey();
+        if (simplified == null || key != simplifiedKey) {
+            simplified = WallSimplifier.simplify(snap.walls());
+            simplifiedKey = key;
+            if (logReports) LOG.log(System.Logger.Level.INFO, simplified.format());
+        }
+        return simplified;
+    }
+
+    /** 레이어 캐시 geometry key(벽/설정/캔버스 + 관심 영역이 있으면 그 내용) */
+    private static long geometryKey(EnvironmentSnapshot snap, int width, int height, int gridStepPx) {
+        long key = LayerCache.geometryKey(snap.wallsKey(), snap.getScaleMPerPx(), snap.getPathLossN(),
+                snap.getMinDistanceM(), width, height, gridStepPx);
+        RoiMask roi = snap.roiMask();
+        return roi.isEmpty() ? key : LayerCache.mix(key, roi.key());
+    }
+
+    /** 벽(정리된 벽이면 그 목록)이 지나는 블록. 벽/캔버스/격자가 같으면 이전 결과 재사용 */
+    private synchronized BlockMask wallBlocks(EnvironmentSnapshot snap, WallSimplifier.Result simplification,
+                                              List<Wall> walls, int width, int height, int gridStepPx) {
+        long key = LayerCache.mix(LayerCache.mix(LayerCache.mix(LayerCache.mix(
+                snap.wallsKey(), simplification != null ? 1 : 0), width), height), gridStepPx);
+        if (wallBlocks == null || key != wallBlocksKey) {
+            wallBlocks = BlockMask.ofWalls(walls, width, height, gridStepPx);
+            wallBlocksKey = key;
+        }
+        return wallBlocks;
+    }
+
+    /**
+     * AP가 블록 (bx, by)부터 size x size 블록 사각형(양 끝 포함, 1px 여유) 안에 있는지:
+     * 모서리 4점이 대칭이라 편차로는 못 잡는 봉우리
+     */
+    private static boolean apInRect(EnvironmentSnapshot snap, int ap, int bx, int by, int size, int step) {
+        double x = snap.apX(ap), y = snap.apY(ap);
+        double x0 = (double) bx * step, y0 = (double) by * step, span = (double) size * step;
+        return x >= x0 - 1 && x <= x0 + span + 1 && y >= y0 - 1 && y <= y0 + span + 1;
+    }
+
+    /** 수신점 1개에서 stale AP a의 밴드별 이득(mW)을 out에 */
+    private interface GainSampler {
+        void sample(int a, int px, int py, double[] out);
+    }
+
+    /** stale AP a에서 사각형(px, 양 끝 포함)으로 가는 LOS 벽 집합이 어디서나 같은지 */
+    private interface ShadowTest {
+        boolean uniform(int a, double x0, double y0, double x1, double y1);
+    }
+
+    /** 수신점 1개에서 stale AP a의 LOS 벽 감쇠(밴드별 dB)를 out에(반사/회절 없이 벽 1회 검사) */
+    private interface LosProbe {
+        void loss(int a, int px, int py, double[] out);
+    }
+
+    /** 바운딩 박스가 사각형(px)에 닿는 벽 선분 [x1, y1, x2, y2, ...] */
+    private static double[] segmentsIn(List<Wall> walls, double x0, double y0, double x1, double y1) {
+        double[] seg = new double[walls.size() * 4];
+        int n = 0;
+        for (Wall w : walls) {
+            if (w == null) continue;
+            if (Math.max(w.x1, w.x2) < x0 || Math.min(w.x1, w.x2) > x1
+                    || Math.max(w.y1, w.y2) < y0 || Math.min(w.y1, w.y2) > y1) continue;
+            seg[n++] = w.x1;
+            seg[n++] = w.y1;
+            seg[n++] = w.x2;
+            seg[n++] = w.y2;
+        }
+        return Arrays.copyOf(seg, n);
+    }
+
+    /** src 선분 중 바운딩 박스가 사각형(px)에 닿는 것만 dst에 복사하고 개수를 반환 */
+    private static int filterSegments(double[] src, double x0, double y0, double x1, double y1, double[] dst) {
+        int n = 0;
+        for (int i = 0; i < src.length; i += 4) {
+            if (Math.max(src[i], src[i + 2]) < x0 || Math.min(src[i], src[i + 2]) > x1
+                    || Math.max(src[i + 1], src[i + 3]) < y0 || Math.min(src[i + 1], src[i + 3]) > y1) continue;
+            System.arraycopy(src, i, dst, n * 4, 4);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * 타일 1개의 블록 모서리 격자점(타일 블록 수 + 1)^2에서 stale AP별 밴드 이득(mW)을 처음 쓸 때 계산해 보관.
+     * 이웃 블록이 모서리를 공유하므로 고른 영역에서는 블록당 약 1점만 계산(타일 경계는 타일마다 다시 계산)
+     */
+    private static final class CornerLattice {
+        private final int bx0, by0, step, width, height, stride;
+        private final GainSampler sampler;
+        private final ShadowTest shadow;
+        private final LosProbe los;
+        private final double[] tileSeg;  // 타일에 걸친 벽 선분(거친 격자 모드), 칸/블록별로 추린 것
+        private final double[] coarseSeg;
+        private final double[] blockSeg;
+        private final double[][] mw;     // [a][point * BANDS + band], 처음 쓸 때 할당
+        private final double[][] losDb;  // [a][point * BANDS + band]: 격자점 LOS 벽 감쇠(wallAwareSum용)
+        private final boolean[][] losDone;
+        private final byte[][] shadowCell; // [a][타일 안 거친 칸]: 0 미확인, 1 그림자 경계 없음, 2 있음
+        private final boolean[][] done;  // [a][point]
+        private final boolean[] seen;    // 어느 AP든 계산한 격자점(샘플 수 집계)
+        private final double[] tmp = new double[BANDS.length];
+        private final double[] cornerDb = new double[4];
+        private final double[] sampleLos = new double[BANDS.length];
+        private final int[] cornerPoint = new int[4];
+        private final boolean[] cornerOk = new boolean[4];
+
+        CornerLattice(int bx0, int by0, int step, int width, int height, int nStale,
+                      GainSampler sampler, ShadowTest shadow, LosProbe los, double[] tileSeg) {
+            this.bx0 = bx0;
+            this.by0 = by0;
+            this.step = step;
+            this.width = width;
+            this.height = height;
+            this.stride = TILE_BLOCKS + 1;
+            this.sampler = sampler;
+            this.shadow = shadow;
+            this.los = los;
+            this.tileSeg = tileSeg;
+            this.coarseSeg = (tileSeg != null) ? new double[tileSeg.length] : null;
+            this.blockSeg = (tileSeg != null) ? new double[tileSeg.length] : null;
+            this.mw = new double[nStale][];
+            this.losDb = new double[nStale][];
+            this.losDone = new boolean[nStale][];
+            this.shadowCell = new byte[nStale][];
+            this.done = new boolean[nStale][];
+            this.seen = new boolean[stride * stride];
+        }
+
+        /**
+         * 격자 칸(블록 (ox, oy)부터 size x size 블록)의 모서리 4점이 모든 밴드에서 ratio(mW 비) 안이면
+         * 그 안의 블록 (bx, by) 3x3 샘플 위치의 쌍선형(dB) 보간 값을 mW로 sum에 더하고 true.
+         * 아니면 sum은 그대로 두고 false. size = 1이면 블록 자신의 모서리.
+         * size > 1(거친 칸)이면 편차 한도를 ratio^size로 넓히는 대신 칸 중심점을 1번 더 계산해
+         * 네 모서리 dB 평균과 ratio(dB)의 1/4 넘게 어긋나면(곡률이 크면) false
+         */
+        boolean smoothSum(int a, int ox, int oy, int size, int bx, int by, double ratio, double[] sum,
+                          GenerationReport.Recorder rec) {
+            int nb = BANDS.length;
+            int p00 = point(a, ox, oy, rec);
+            int p10 = point(a, ox + size, oy, rec);
+            int p01 = point(a, ox, oy + size, rec);
+            int p11 = point(a, ox + size, oy + size, rec);
+            int pc = (size > 1) ? point(a, ox + size / 2, oy + size / 2, rec) : -1;
+            double[] m = mw[a];
+            double limit = (size > 1) ? Math.pow(ratio, size) : ratio;
+            double centerTol = Math.log10(ratio) / 4.0;
+            for (int b = 0; b < nb; b++) {
+                double v00 = m[p00 * nb + b], v10 = m[p10 * nb + b], v01 = m[p01 * nb + b], v11 = m[p11 * nb + b];
+                double lo = Math.min(Math.min(v00, v10), Math.min(v01, v11));
+                double hi = Math.max(Math.max(v00, v10), Math.max(v01, v11));
+                if (hi <= 0.0 && (pc < 0 || m[pc * nb + b] <= 0.0)) continue; // 모든 점 신호 없음
+                if (lo <= 0.0 || hi > lo * limit) return false;
+                if (pc >= 0) {
+                    double vc = m[pc * nb + b];
+                    if (vc <= 0.0) return false;
+                    double mid = (Math.log10(v00) + Math.log10(v10) + Math.log10(v01) + Math.log10(v11)) / 4.0;
+                    if (Math.abs(Math.log10(vc) - mid) > centerTol) return false;
+                }
+            }
+            for (int b = 0; b < nb; b++) {
+                double v00 = m[p00 * nb + b], v10 = m[p10 * nb + b], v01 = m[p01 * nb + b], v11 = m[p11 * nb + b];
+                if (v00 <= 0.0) continue;
+                cornerDb[0] = Math.log10(v00);
+                cornerDb[1] = Math.log10(v10);
+                cornerDb[2] = Math.log10(v01);
+                cornerDb[3] = Math.log10(v11);
+                double acc = 0.0;
+                double span = (double) size * step;
+                for (int sy = 0; sy < SUB; sy++) {
+                    double fy = ((by - oy) * step + (sy * step + step / 2) / SUB) / span;
+                    for (int sx = 0; sx < SUB; sx++) {
+                        double fx = ((bx - ox) * step + (sx * step + step / 2) / SUB) / span;
+                        double top = cornerDb[0] + (cornerDb[1] - cornerDb[0]) * fx;
+                        double bottom = cornerDb[2] + (cornerDb[3] - cornerDb[2]) * fx;
+                        acc += Math.pow(10.0, top + (bottom - top) * fy);
+                    }
+                }
+                sum[b] += acc;
+            }
+            return true;
+        }
+
+        /**
+         * 거친 칸(블록 (ox, oy)부터 size x size)에서 AP a의 LOS 벽 그림자 경계가 지나가지 않는지(칸마다 1번 판정).
+         * 칸 모서리가 모두 같은 쪽이어도 사이를 지나는 그림자(기둥 등)를 보간으로 지우지 않기 위함
+         */
+        boolean uniformShadow(int a, int ox, int oy, int size) {
+            int per = TILE_BLOCKS / size;
+            int c = ((oy - by0) / size) * per + (ox - bx0) / size;
+            if (shadowCell[a] == null) shadowCell[a] = new byte[per * per];
+            if (shadowCell[a][c] == 0) {
+                double x1 = Math.min(width - 1, (ox + size) * step), y1 = Math.min(height - 1, (oy + size) * step);
+                shadowCell[a][c] = shadow.uniform(a, ox * step, oy * step, x1, y1) ? (byte) 1 : (byte) 2;
+            }
+            return shadowCell[a][c] == 1;
+        }
+
+        /**
+         * 블록 (bx, by)의 3x3 샘플을 벽 건너편이나 다른 그림자와 섞지 않고 복원(거친 격자 모드).
+         * 샘플마다 거친 칸(size x size 블록) 모서리, 안 되면 블록 모서리 중에서 샘플→모서리 선분이
+         * 그 칸의 벽을 지나지 않고 AP에서의 LOS 벽 감쇠가 샘플과 같은 모서리만 골라,
+         * 둘 이상이고(거친 칸은 샘플을 x, y 양쪽에서 감쌀 때만) 모든 밴드에서 편차 한도(mW 비) 안이면
+         * 그 모서리들의 쌍선형 가중치(합 1로 다시 맞춤)로 dB 보간, 아니면 그 샘플만 정확히 계산.
+         * 모서리는 처음 쓸 때만 계산하므로 거친 칸에서 끝나면 블록 모서리는 계산하지 않음.
+         * mW 합을 sum에 더하고 정확히 계산한 샘플 수를 반환
+         */
+        int wallAwareSum(int a, int size, int bx, int by, double ratio, double[] sum, GenerationReport.Recorder rec) {
+            int nb = BANDS.length;
+            int ox = bx0 + ((bx - bx0) / size) * size;
+            int oy = by0 + ((by - by0) / size) * size;
+            int nCoarse = (size > 1) ? filterSegments(tileSeg, ox * step - 1, oy * step - 1,
+                    (ox + size) * step + 1, (oy + size) * step + 1, coarseSeg) : 0;
+            int nBlock = filterSegments(tileSeg, bx * step - 1, by * step - 1,
+                    (bx + 1) * step + 1, (by + 1) * step + 1, blockSeg);
+            int xx = bx * step, yy = by * step;
+            int exact = 0;
+            for (int sy = 0; sy < SUB; sy++) {
+                int dy = (sy * step + step / 2) / SUB;
+                int py = Math.min(height - 1, yy + dy);
+                for (int sx = 0; sx < SUB; sx++) {
+                    int dx = (sx * step + step / 2) / SUB;
+                    int px = Math.min(width - 1, xx + dx);
+                    los.loss(a, px, py, sampleLos);
+
+                    if (size > 1 && fromCorners(a, ox, oy, size, px, py,
+                            ((bx - ox) * step + dx) / (double) (size * step), ((by - oy) * step + dy) / (double) (size * step),
+                            coarseSeg, nCoarse, ratio, sum, rec)) continue;
+                    if (fromCorners(a, bx, by, 1, px, py, dx / (double) step, dy / (double) step,
+                            blockSeg, nBlock, ratio, sum, rec)) continue;
+
+                    sampler.sample(a, px, py, tmp);
+                    for (int b = 0; b < nb; b++) sum[b] += tmp[b];
+                    exact++;
+                }
+            }
+            return exact;
+        }
+
+        /**
+         * 칸(블록 (cx0, cy0)부터 size x size)의 모서리 중 샘플 (px, py)와 벽(seg)을 사이에 두지 않고
+         * LOS 벽 감쇠가 sampleLos와 같은 모서리로 (fx, fy)를 보간해 sum에 더함. 못 하면 false
+         */
+        private boolean fromCorners(int a, int cx0, int cy0, int size, int px, int py, double fx, double fy,
+                                    double[] seg, int nSeg, double ratio, double[] sum, GenerationReport.Recorder rec) {
+            int nb = BANDS.length;
+            int nOk = 0;
+            for (int c = 0; c < 4; c++) {
+                int gx = cx0 + (c & 1) * size, gy = cy0 + (c >> 1) * size;
+                int p = point(a, gx, gy, rec);
+                losAt(a, p);
+                cornerPoint[c] = p;
+                boolean ok = !crosses(px, py, Math.min(width - 1, gx * step), Math.min(height - 1, gy * step), seg, nSeg);
+                for (int b = 0; ok && b < nb; b++) ok = losDb[a][p * nb + b] == sampleLos[b];
+                cornerOk[c] = ok;
+                if (ok) nOk++;
+            }
+            if (nOk < 2) return false;
+            // 거친 칸은 고른 모서리가 샘플을 양쪽(x, y 모두)에서 감쌀 때만(한쪽 외삽은 칸 크기만큼 어긋남)
+            if (size > 1 && !((cornerOk[0] || cornerOk[2]) && (cornerOk[1] || cornerOk[3])
+                    && (cornerOk[0] || cornerOk[1]) && (cornerOk[2] || cornerOk[3]))) return false;
+            return interpolate(mw[a], fx, fy, ratio, sum);
+        }
+
+        /** wallAwareSum: 고른 모서리의 쌍선형 가중치 합 하한 */
+        private static final double MIN_SUPPORT = 0.5;
+
+        /** cornerOk인 모서리만으로 (fx, fy) 위치를 dB 보간해 sum에 더함. 가중치 합이 작거나 ratio를 넘으면 false */
+        private boolean interpolate(double[] m, double fx, double fy, double ratio, double[] sum) {
+            int nb = BANDS.length;
+            double wSum = 0.0;
+            for (int c = 0; c < 4; c++) {
+                if (cornerOk[c]) wSum += (((c & 1) != 0) ? fx : 1.0 - fx) * (((c >> 1) != 0) ? fy : 1.0 - fy);
+            }
+            if (wSum < MIN_SUPPORT) return false; // 고른 모서리가 샘플에서 멀면(한쪽으로 외삽) 정확히 계산
+            for (int b = 0; b < nb; b++) {
+                double lo = Double.POSITIVE_INFINITY, hi = 0.0;
+                for (int c = 0; c < 4; c++) {
+                    if (!cornerOk[c]) continue;
+                    double v = m[cornerPoint[c] * nb + b];
+                    lo = Math.min(lo, v);
+                    hi = Math.max(hi, v);
+                }
+                if (hi > 0.0 && (lo <= 0.0 || hi > lo * ratio)) return false;
+            }
+            for (int b = 0; b < nb; b++) {
+                double acc = 0.0;
+                for (int c = 0; c < 4; c++) {
+                    if (!cornerOk[c]) continue;
+                    if (m[cornerPoint[c] * nb + b] <= 0.0) { // 고른 모서리 모두 신호 없음(위에서 확인)
+                        acc = Double.NaN;
+                        break;
+                    }
+                    double w = (((c & 1) != 0) ? fx : 1.0 - fx) * (((c >> 1) != 0) ? fy : 1.0 - fy);
+                    acc += w * Math.log10(m[cornerPoint[c] * nb + b]);
+                }
+                if (!Double.isNaN(acc)) sum[b] += Math.pow(10.0, acc / wSum);
+            }
+            return true;
+        }
+
+        /** 선분 (x0,y0)-(x1,y1)이 seg의 벽 중 하나라도 지나는지 */
+        private static boolean crosses(double x0, double y0, double x1, double y1, double[] seg, int nSeg) {
+            for (int i = 0; i < nSeg; i++) {
+                int o = i * 4;
+                if (WifiMath.segmentsIntersect(x0, y0, x1, y1, seg[o], seg[o + 1], seg[o + 2], seg[o + 3])) return true;
+            }
+            return false;
+        }
+
+        /** 격자점 p의 LOS 벽 감쇠(없으면 계산) */
+        private void losAt(int a, int p) {
+            if (losDb[a] == null) {
+                losDb[a] = new double[stride * stride * BANDS.length];
+                losDone[a] = new boolean[stride * stride];
+            }
+            if (losDone[a][p]) return;
+            int bx = bx0 + p % stride, by = by0 + p / stride;
+            los.loss(a, Math.min(width - 1, bx * step), Math.min(height - 1, by * step), sampleLos);
+            System.arraycopy(sampleLos, 0, losDb[a], p * BANDS.length, BANDS.length);
+            losDone[a][p] = true;
+        }
+
+        /** 격자점 인덱스(없으면 계산) */
+        private int point(int a, int bx, int by, GenerationReport.Recorder rec) {
+            int i = (by - by0) * stride + (bx - bx0);
+            if (mw[a] == null) {
+                mw[a] = new double[stride * stride * BANDS.length];
+                done[a] = new boolean[stride * stride];
+            }
+            if (!done[a][i]) {
+                sampler.sample(a, Math.min(width - 1, bx * step), Math.min(height - 1, by * step), tmp);
+                System.arraycopy(tmp, 0, mw[a], i * BANDS.length, BANDS.length);
+                done[a][i] = true;
+                if (rec != null && !seen[i]) {
+                    seen[i] = true;
+                    rec.samples++;
+                }
+            }
+            return i;
+        }
+    }
+
+    /** 관심 영역 블록 마스크(빈 마스크면 null). 마스크/캔버스/격자가 같으면 이전 결과 재사용 */
+    private synchronized BlockMask blockMask(EnvironmentSnapshot snap, int width, int height, int gridStepPx) {
+        RoiMask roi = snap.roiMask();
+        if (roi.isEmpty()) return null;
+        long key = LayerCache.mix(LayerCache.mix(LayerCache.mix(roi.key(), width), height), gridStepPx);
+        if (blockMask == null || key != blockMaskKey) {
+            blockMask = BlockMask.of(roi, width, height, gridStepPx);
+            blockMaskKey = key;
+        }
+        return blockMask;
+    }
+
+    /** 셀 컬링용 타일별 작업 버퍼(레이어 수 크기, 셀마다 다시 할당하지 않음) */
+    private static final class CullScratch {
+        final int[] bound;
+        final double[] dMin; // 레이어 인덱스별(이번 셀에서 본 레이어만 유효)
+        final int[] near = new int[CULL_WITNESS_CANDIDATES];
+        final double[] wallLoss = new double[BANDS.length];
+
+        CullScratch(int nBound) {
+            this.bound = new int[nBound];
+            this.dMin = new double[nBound];
+        }
+    }
+
+    /**
+     * 셀 AP 컬링: 가까운 AP 몇 대의 하한과 하한 기준값(floorDbm, NaN = 없음) 중 최댓값(증인)보다
+     * 상한이 낮은 stale AP는 이 셀에서 이길 수 없음(하한 기준값이면 범례 최솟값 아래라 보이지 않음).
+     * cand[0..nCand)의 stale AP만 판정해 out[a]에 증인 layerAps 인덱스(-1 = 계산 필요, CULLED_BY_FLOOR = 하한)를,
+     * slackOut[a]에 여유(증인 하한 - 상한, dB, 내림)를 기록. 셀 사각형은 수신점 px 좌표(양 끝 포함).
+     * boundIndex가 있으면 영향 원이 셀에 닿는 레이어만 증인 후보(나머지는 어차피 하한 아래),
+     * 없으면 거리 비교는 AP 수에 비례. 벽 검사(하한)는 가까운 CULL_WITNESS_CANDIDATES대만.
+     */
+    private static void cullCell(EnvironmentSnapshot snap, List<Integer> layerAps, double[][] boundConst,
+                                 List<Wall> walls, int[] staleBound, double marginDb,
+                                 ApIndex boundIndex, double floorDbm, int[] cand, int nCand,
+                                 double x0, double y0, double x1, double y1,
+                                 double scaleMPerPx, double pathLossN, double minDistanceM,
+                                 CullScratch scratch, int[] out, float[] slackOut) {
+        int[] bound = scratch.bound;
+        double[] dMin = scratch.dMin;
+        int n;
+        if (boundIndex != null) {
+            n = boundIndex.query(x0, y0, x1, y1, bound);
+        } else {
+            n = layerAps.size();
+            for (int i = 0; i < n; i++) bound[i] = i;
+        }
+        for (int j = 0; j < n; j++) {
+            int i = bound[j];
+            int ap = layerAps.get(i);
+            dMin[i] = ApTileBounds.minDistance(snap.apX(ap), snap.apY(ap), x0, y0, x1, y1) * scaleMPerPx;
+        }
+
+        // 가장 가까운 몇 대만 하한 계산(부분 선택: 정렬된 near에 삽입)
+        int[] near = scratch.near;
+        int k = 0;
+        for (int j = 0; j < n; j++) {
+            int i = bound[j];
+            if (k == near.length && dMin[i] >= dMin[near[k - 1]]) continue;
+            int pos = Math.min(k, near.length - 1);
+            while (pos > 0 && dMin[near[pos - 1]] > dMin[i]) {
+                near[pos] = near[pos - 1];
+                pos--;
+            }
+            near[pos] = i;
+            if (k < near.length) k++;
+        }
+
+        boolean floor = !Double.isNaN(floorDbm);
+        double bestLower = floor ? floorDbm : Double.NEGATIVE_INFINITY;
+        int witness = floor ? CULLED_BY_FLOOR : -1;
+        double[] wallLoss = scratch.wallLoss;
+        for (int j = 0; j < k; j++) {
+            int i = near[j];
+            int ap = layerAps.get(i);
+            double dMaxM = Math.max(minDistanceM,
+                    ApTileBounds.maxDistance(snap.apX(ap), snap.apY(ap), x0, y0, x1, y1) * scaleMPerPx);
+            Arrays.fill(wallLoss, 0.0);
+            ApTileBounds.hullWallLoss(snap.apX(ap), snap.apY(ap), x0, y0, x1, y1, walls, wallLoss);
+            double lower = ApTileBounds.lowerDbm(boundConst[i], WifiMath.pathLossDistanceDb(dMaxM, pathLossN), wallLoss);
+            if (lower > bestLower) {
+                bestLower = lower;
+                witness = i;
+            }
+        }
+
+        for (int q = 0; q < nCand; q++) {
+            int a = cand[q];
+            int i = staleBound[a];
+            out[a] = -1;
+            if (witness == -1 || i == witness) continue;
+            double distLoss = WifiMath.pathLossDistanceDb(dMin[i], pathLossN);
+            // 벽 없는 상한으로 먼저 판정하고, 안 되면 그림자 벽까지 계산
+            double upper = ApTileBounds.upperDbm(boundConst[i], distLoss, null, marginDb);
+            if (upper >= bestLower) {
+                int ap = layerAps.get(i);
+                Arrays.fill(wallLoss, 0.0);
+                ApTileBounds.shadowWallLoss(snap.apX(ap), snap.apY(ap), x0, y0, x1, y1, walls, wallLoss);
+                upper = ApTileBounds.upperDbm(boundConst[i], distLoss, wallLoss, marginDb);
+            }
+            if (upper < bestLower) {
+                out[a] = witness;
+                slackOut[a] = Math.nextDown((float) (bestLower - upper));
+            }
+        }
+    }
+
+    /** 블록 범위에서 합성 결과가 없는(모든 AP가 하한에 컬링된) 관심 영역 안 블록을 하한 값으로 */
+    private static void fillFloor(RssiField out, BlockMask mask, float floor, int bx0, int by0, int bx1, int by1) {
+        for (int by = by0; by < by1; by++) {
+            for (int bx = bx0; bx < bx1; bx++) {
+                if (mask != null && !mask.get(bx, by)) continue;
+                if (Float.isNaN(out.get(bx, by))) out.set(bx, by, floor);
+            }
+        }
+    }
+
+    /** 블록 범위를 NaN(= 이 AP는 합성에서 제외)으로 */
+    private static void fillBlocks(RssiField layer, int bx0, int by0, int bx1, int by1) {
+        for (int by = by0; by < by1; by++) {
+            for (int bx = bx0; bx < bx1; bx++) layer.set(bx, by, Float.NaN);
+        }
+    }
+
+    /** 밴드 상수 중 최댓값(NaN 제외, 활성 밴드가 없으면 -Inf) */
+    private static double maxConstant(double[] bandConst) {
+        double best = Double.NEGATIVE_INFINITY;
+        for (double c : bandConst) {
+            if (!Double.isNaN(c)) best = Math.max(best, c);
+        }
+        return best;
+    }
+
+    /** 하한 증인의 밴드별 "하한"(모든 밴드에서 floorDbm) */
+    private static double[] floorConstants(double floorDbm) {
+        double[] c = new double[BANDS.length];
+        Arrays.fill(c, floorDbm);
+        return c;
+    }
+
+    /** AP 밴드별 상수(EIRP - 1m 기준 손실), 비활성 밴드 NaN */
+    private static double[] bandConstants(EnvironmentSnapshot snap, int ap) {
+        double[] c = new double[BANDS.length];
+        for (Band b : BANDS) {
+            c[b.ordinal()] = snap.radioEnabled(ap, b)
+                    ? snap.txPowerDbm(ap, b) + snap.antennaGain(ap, b) - WifiMath.pathLossRefDb(b.freqGhz)
+                    : Double.NaN;
+        }
+        return c;
+    }
+
+    /** 회절 코너 집합. 정리된 벽이면 정리 단계의 그래프를, 아니면 원본 벽 그래프를 사용 */
+    private synchronized DiffractionCorners diffractionCorners(EnvironmentSnapshot snap,
+                                                               WallSimplifier.Result simplification) {
+        long key = LayerCache.mix(snap.wallsKey(), simplification != null ? 1 : 0);
+        if (cornerCache == null || key != cornerCacheKey) {
+            WallGraph graph = (simplification != null) ? simplification.graph : WallGraph.build(snap.walls());
+            cornerCache = DiffractionCorners.build(graph);
+            cornerCacheKey = key;
+        }
+        return cornerCache;
+    }
+
+    /**
+     * 블록 범위 [bx0,bx1) x [by0,by1)에 AP별 (경로 이득 + EIRP)의 최댓값(NaN 제외)을 기록.
+     * gains[i]는 Band 순서의 밴드별 레이어(기준 손실 포함), consts[i]는 그 AP의 밴드 상수(비활성 밴드 NaN).
+     * index(nullable, gains와 같은 순서)가 있으면 범위에 영향 원이 닿는 레이어만, 그 영향 사각형 안만 합성
+     */
+    private static void compositeGains(List<RssiField[]> gains, double[][] consts, RssiField out, ApIndex index,
+                                       int bx0, int by0, int bx1, int by1) {
+        float[] dst = out.values();
+        int step = out.gridStepPx;
+        int[] near = new int[gains.size()];
+        int n = gains.size();
+        if (index != null) {
+            n = index.query(bx0 * step, by0 * step, Math.min(out.width, bx1 * step) - 1,
+                    Math.min(out.height, by1 * step) - 1, near);
+        } else {
+            for (int l = 0; l < n; l++) near[l] = l;
+        }
+        for (int q = 0; q < n; q++) {
+            int l = near[q];
+            RssiField[] layer = gains.get(l);
+            int lx0 = bx0, ly0 = by0, lx1 = bx1, ly1 = by1;
+            if (index != null) {
+                double r = index.radius(l);
+                lx0 = Math.max(bx0, (int) Math.floor((index.x(l) - r) / step));
+                ly0 = Math.max(by0, (int) Math.floor((index.y(l) - r) / step));
+                lx1 = Math.min(bx1, (int) Math.floor((index.x(l) + r) / step) + 1);
+                ly1 = Math.min(by1, (int) Math.floor((index.y(l) + r) / step) + 1);
+            }
+            for (int b = 0; b < layer.length; b++) {
+                double c = consts[l][b] - GAIN_CONST[b]; // EIRP(기준 손실은 레이어에 들어 있음)
+                if (Double.isNaN(c)) continue;
+                float[] src = layer[b].values();
+                for (int by = ly0; by < ly1; by++) {
+                    int row = by * out.cols;
+                    for (int i = row + lx0; i < row + lx1; i++) {
+                        float v = (float) (src[i] + c);
+                        if (Float.isNaN(v)) continue;
+                        if (Float.isNaN(dst[i]) || v > dst[i]) dst[i] = v;
+                    }
+                }
+            }
+        }
+    }
+
+    /** 타일 1개 계산. rec은 계측 꺼져 있으면 null */
+    private interface TileTask {
+        void run(int tile, GenerationReport.Recorder rec);
+    }
+
+    /**
+     * 타일 인덱스 [0, tileCount)를 parallelism 개 워커가 나눠 처리.
+     * 워커는 공유 카운터에서 다음 타일을 가져가므로 타일 비용이 달라도 균형이 맞음.
+     * 계측 시 워커마다 Recorder 1개를 두고 끝날 때 report에 병합.
+     */
+    private void runTiles(int tileCount, GenerationReport report, TileTask tileTask) {
+        int threads = Math.min(parallelism, tileCount);
+        if (threads <= 1) {
+            GenerationReport.Recorder rec = (report != null) ? new GenerationReport.Recorder() : null;
+            for (int t = 0; t < tileCount; t++) tileTask.run(t, rec);
+            if (rec != null) report.merge(rec);
+            return;
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        ForkJoinPool pool = pool();
+        List<ForkJoinTask<?>> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.add(pool.submit(() -> {
+                GenerationReport.Recorder rec = (report != null) ? new GenerationReport.Recorder() : null;
+                int t;
+                while ((t = next.getAndIncrement()) < tileCount) {
+                    tileTask.run(t, rec);
+                }
+                if (rec != null) report.merge(rec);
+            }));
+        }
+        for (ForkJoinTask<?> w : workers) w.join();
+    }
+
+    /**
+     * 우선순위 순서로 타일 나눠 갖기(락 없음).
+     * - 타일마다 claimed 플래그(CAS)를 두고, 워커는 현재 순서 배열을 앞에서부터 훑어 처음 잡히는 타일을 가져감
+     * - focus.version()이 바뀌면 먼저 알아챈 워커가 순서를 다시 만들고(남은 타일만 의미 있음),
+     *   다른 워커는 새 배열을 받아 앞에서부터 다시 훑음
+     * - 가장 급한 타일을 남은 워커가 바로 가져가므로 타일 비용이 달라도 놀고 있는 워커가 없음
+     */
+    private static final class TileClaims {
+        final TileFocus focus;
+        final int tilesX, tilesY, tilePx;
+        final AtomicIntegerArray claimed;
+        final AtomicInteger remaining;
+
+        private volatile long orderVersion;
+        private volatile int[] order;
+
+        TileClaims(TileFocus focus, int tilesX, int tilesY, int tilePx) {
+            this.focus = focus;
+            this.tilesX = tilesX;
+            this.tilesY = tilesY;
+            this.tilePx = tilePx;
+            this.claimed = new AtomicIntegerArray(tilesX * tilesY);
+            this.remaining = new AtomicInteger(tilesX * tilesY);
+            this.orderVersion = focus.version();
+            this.order = focus.order(tilesX, tilesY, tilePx);
+        }
+
+        int tileCount() { return claimed.length(); }
+
+        /** 최신 순서 배열(focus가 바뀌었으면 한 워커만 다시 정렬) */
+        int[] currentOrder() {
+            long v = focus.version();
+            if (v != orderVersion) {
+                synchronized (this) {
+                    if (v != orderVersion) {
+                        order = focus.order(tilesX, tilesY, tilePx);
+                        orderVersion = v;
+                    }
+                }
+            }
+            return order;
+        }
+
+        /** 워커별 커서 */
+        final class Cursor {
+            private int[] ord = order;
+            private int pos;
+
+            /** 다음 타일(없으면 -1) */
+            int next() {
+                while (remaining.get() > 0) {
+                    int[] cur = currentOrder();
+                    if (cur != ord) {
+                        ord = cur;
+                        pos = 0;
+                    }
+                    while (pos < ord.length) {
+                        int t = ord[pos++];
+                        if (claimed.get(t) == 0 && claimed.compareAndSet(t, 0, 1)) {
+                            remaining.decrementAndGet();
+                            return t;
                         }
                     }
+                    // 이 배열을 다 훑었는데 남은 게 있으면 다른 워커가 막 잡은 것 → 끝
+                    if (currentOrder() == ord) return -1;
+                }
+                return -1;
+            }
+        }
+    }
+
+    private void runTilesByFocus(TileClaims claims, GenerationReport report, TileTask tileTask) {
+        int threads = Math.min(parallelism, claims.tileCount());
+        Runnable worker = () -> {
+            GenerationReport.Recorder rec = (report != null) ? new GenerationReport.Recorder() : null;
+            TileClaims.Cursor cursor = claims.new Cursor();
+            int t;
+            while ((t = cursor.next()) >= 0) tileTask.run(t, rec);
+            if (rec != null) report.merge(rec);
+        };
+        if (threads <= 1) {
+            worker.run();
+            return;
+        }
+
+        ForkJoinPool pool = pool();
+        List<ForkJoinTask<?>> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) workers.add(pool.submit(worker));
+        for (ForkJoinTask<?> w : workers) w.join();
+    }
+
+    /**
+     * 한 수신점(px,py)에서 AP 1대의 밴드별 경로 이득(EIRP 0 dBm 기준 수신 mW)을 bandMw에 기록.
+     * - LOS + 1차 반사 + 1차 회절을 mW 합산, 모든 밴드(활성 여부 무관 → 출력/활성 변경은 합성에서 상수로)
+     * - pruneFactor > 0이면 상한이 작은 반사/회절 경로를 생략(밴드별 합산 오차 <= 10log10(1 + pruneFactor) dB)
+     * - rec != null이면 단계별 시간/카운터 누적
+     */
+    private static void apGainsAt(EnvironmentSnapshot snap,
+                                   int ap,
+                                   List<Wall> walls,
+                                   DiffractionCorners corners,
+                                   DiffractionCorners.ApView view,
+                                   int px,
+                                   int py,
+                                   double scaleMPerPx,
+                                   double pathLossN,
+                                   double minDistanceM,
+                                   double pruneFactor,
+                                   double[] bandMw,
+                                   GenerationReport.Recorder rec) {
+        final int nWalls = walls.size();
+        long ts = 0L;
+
+        if (rec != null) {
+            rec.apEvaluations++;
+            ts = System.nanoTime();
+        }
+
+        double apX = snap.apX(ap);
+        double apY = snap.apY(ap);
+        Point2D apPt = new Point2D(apX, apY);
+        Point2D rxPt = new Point2D(px, py);
+
+        // 1) 거리(m)
+        double dM = apPt.distance(rxPt) * scaleMPerPx;
+        dM = Math.max(dM, minDistanceM);
+
+        // 밴드별 상수(-1m 기준 손실). 경로 기하/벽 교차는 밴드와 무관하므로 1번만 계산
+        final int nb = BANDS.length;
+        final double[] bandConst = GAIN_CONST;
+        Arrays.fill(bandMw, 0.0);
+
+        // 1) LOS: 직선상 벽 감쇠(밴드 벡터)
+        double[] losWallLoss = new double[nb];
+        WifiMath.wallLossAlongBands(apX, apY, px, py, walls, null, losWallLoss);
+        if (rec != null) rec.wallTests += nWalls;
+        addBandMw(bandMw, bandConst, WifiMath.pathLossDistanceDb(dM, pathLossN), losWallLoss, 0.0);
+
+        double losM = dM;
+
+        if (rec != null) {
+            long now = System.nanoTime();
+            rec.add(GenerationReport.Stage.LOS, now - ts);
+            ts = now;
+        }
+
+        // 가지치기 사용량(밴드별 mW): 버린 경로 합이 "지금까지 합산한 전력"의 pruneFactor배 이하면
+        // 최종 합(>= 지금까지 합)에 대한 오차 <= pruneToleranceDb
+        double[] pruneUsed = null;
+        double[] bound = null;
+        if (pruneFactor > 0) {
+            pruneUsed = new double[nb];
+            bound = new double[nb];
+        }
+
+        // ===== 반사 후보 벽을 가까운 것 위주로 제한 (성능 보호) =====
+        List<WallCand> wallCands = new ArrayList<>();
+        for (Wall w : walls) {
+            if (w == null) continue;
+            Point2D w1 = new Point2D(w.x1, w.y1);
+            Point2D w2 = new Point2D(w.x2, w.y2);
+            Point2D cpAp = WifiMath.closestPointOnSegment(apPt, w1, w2);
+            Point2D cpRx = WifiMath.closestPointOnSegment(rxPt, w1, w2);
+            double dApM = apPt.distance(cpAp) * scaleMPerPx;
+            double dRxM = rxPt.distance(cpRx) * scaleMPerPx;
+            double minM = Math.min(dApM, dRxM);
+            if (minM <= REFLECTION_RADIUS_M) {
+                wallCands.add(new WallCand(w, minM));
+            }
+        }
+        wallCands.sort(Comparator.comparingDouble(a -> a.score));
+        if (wallCands.size() > MAX_REFLECTION_WALLS) {
+            wallCands = wallCands.subList(0, MAX_REFLECTION_WALLS);
+        }
+
+        // ===== 회절 코너 후보(미리 뽑은 볼록 코너, 거리 랭킹 + 간단 필터) =====
+        // AP→코너 구간은 view 표에서 읽고, 샘플마다 코너→rx 구간만 벽 검사
+        List<CornerCand> cornerRank = new ArrayList<>();
+        for (int c = 0; c < corners.size(); c++) {
+            double dApM = view.distPx(c) * scaleMPerPx;
+            double dRxM = Math.hypot(corners.x(c) - px, corners.y(c) - py) * scaleMPerPx;
+            double score = Math.min(dApM, dRxM);
+            if (score <= DIFFRACTION_RADIUS_M) cornerRank.add(new CornerCand(c, score));
+        }
+
+        cornerRank.sort(Comparator.comparingDouble(a -> a.score));
+
+        if (rec != null) {
+            long now = System.nanoTime();
+            rec.add(GenerationReport.Stage.CANDIDATES, now - ts);
+            ts = now;
+        }
+
+        // 2) 1차 반사
+        for (WallCand wc : wallCands) {
+            Wall w = wc.wall;
+            double reflLossDb = 8.0;
+            WallMaterial mat = (w == null) ? null : w.getMaterial();
+            if (mat != null) {
+                reflLossDb = mat.reflectionLossDb();
+            }
+
+            // 상한: 이미지 소스 거리(= 유효한 반사 경로 길이) + 반사 손실, 벽 감쇠 0
+            if (pruneUsed != null) {
+                Point2D mirror = WifiMath.reflectPointOverLine(apPt,
+                        new Point2D(w.x1, w.y1), new Point2D(w.x2, w.y2));
+                double lenLb = mirror.distance(rxPt) * scaleMPerPx;
+                Arrays.fill(bound, 0.0);
+                if (tryPrune(pruneUsed, bandMw, pruneFactor, bound, bandConst, WifiMath.pathLossDistanceDb(lenLb, pathLossN), reflLossDb)) {
+                    if (rec != null) {
+                        rec.reflectionPruned++;
+                        rec.wallTestsPruned += 2L * nWalls;
+                    }
+                    continue;
                 }
+            }
+
+            WifiMath.Path p = WifiMath.buildSingleBounceReflectionBands(
+                    apPt, rxPt, w, walls, scaleMPerPx, reflLossDb);
+            if (p == null) {
+                if (rec != null) rec.reflectionNoPath++;
+                continue;
+            }
+            if (rec != null) rec.wallTests += 2L * nWalls;
+            if (p.lengthMeters > losM * REFLECTION_LOS_RATIO_CUTOFF) {
+                if (rec != null) rec.reflectionCulled++;
+                continue;
+            }
+            if (rec != null) rec.reflectionAccepted++;
+
+            addBandMw(bandMw, bandConst, WifiMath.pathLossDistanceDb(p.lengthMeters, pathLossN),
+                    p.bandWallLossDb, p.extraLossDb);
+        }
+
+        if (rec != null) {
+            long now = System.nanoTime();
+            rec.add(GenerationReport.Stage.REFLECTION, now - ts);
+            ts = now;
+        }
+
+        // 3) 1차 회절(코너): 랭킹 순으로 MAX_DIFFRACTION_CORNERS개 자리까지
+        // - 양 구간 관통이 모두 3 이상이면 필터(자리 차지 안 함)
+        // - AP 구간 관통이 3 미만이면 필터될 수 없으므로 컷오프/가지치기를 코너→rx 검사 전에 판정
+        double[] rxLoss = new double[nb];
+        int slots = 0;
+        for (CornerCand cc : cornerRank) {
+            if (slots >= MAX_DIFFRACTION_CORNERS) break;
+            int c = cc.corner;
+            Point2D corner = new Point2D(corners.x(c), corners.y(c));
+            double lenM = (view.distPx(c) + corner.distance(rxPt)) * scaleMPerPx;
+            boolean culled = lenM > losM * DIFFRACTION_LOS_RATIO_CUTOFF;
+            double diffLossDb = culled ? 0.0 : diffractionLossDb(apPt, rxPt, corner, lenM, losM);
 
-                if (samples > 0) {
-                    double avgDbm = 10.0 * Math.log10(mwSum / samples);
-                    Color c = WifiMath.rssiToColor(avgDbm, legendMinDbm, legendMaxDbm);
-                    WifiMath.fillBlock(pw, xx, yy, gridStepPx, gridStepPx, width, height, c);
+            if (view.crossings(c) < 3) {
+                if (culled) {
+                    if (rec != null) rec.diffractionCulled++;
+                    slots++;
+                    continue;
+                }
+                if (pruneUsed != null) {
+                    for (int b = 0; b < nb; b++) bound[b] = view.wallLossDb(c, b);
+                    if (tryPrune(pruneUsed, bandMw, pruneFactor, bound, bandConst,
+                            WifiMath.pathLossDistanceDb(lenM, pathLossN), diffLossDb)) {
+                        if (rec != null) {
+                            rec.diffractionPruned++;
+                            rec.wallTestsPruned += nWalls;
+                        }
+                        slots++;
+                        continue;
+                    }
                 }
             }
+
+            Arrays.fill(rxLoss, 0.0);
+            int cross2 = WifiMath.wallLossAlongBands(corner.getX(), corner.getY(), px, py, walls, null, rxLoss);
+            if (rec != null) rec.wallTests += nWalls;
+            if (view.crossings(c) >= 3 && cross2 >= 3) {
+                if (rec != null) rec.diffractionFiltered++;
+                continue;
+            }
+            slots++;
+            if (culled) {
+                if (rec != null) rec.diffractionCulled++;
+                continue;
+            }
+
+            // 벽 감쇠 = AP→코너(표) + 코너→rx
+            for (int b = 0; b < nb; b++) rxLoss[b] += view.wallLossDb(c, b);
+            if (rec != null) rec.diffractionAccepted++;
+
+            addBandMw(bandMw, bandConst, WifiMath.pathLossDistanceDb(lenM, pathLossN), rxLoss, diffLossDb);
+        }
+
+        if (rec != null) {
+            long now = System.nanoTime();
+            rec.add(GenerationReport.Stage.DIFFRACTION, now - ts);
         }
+    }
+
+    private static final Band[] BANDS = Band.values();
+
+    /** 경로 이득 계산용 밴드 상수(EIRP 0 dBm - 1m 기준 손실) */
+    private static final double[] GAIN_CONST = new double[BANDS.length];
+    static {
+        for (Band b : BANDS) GAIN_CONST[b.ordinal()] = -WifiMath.pathLossRefDb(b.freqGhz);
+    }
+
+    /** 코너 회절 추가 손실(dB): 꺾임 각 + 우회 비율 */
+    private static double diffractionLossDb(Point2D apPt, Point2D rxPt, Point2D corner, double lenM, double losM) {
+        Point2D v1 = apPt.subtract(corner);
+        Point2D v2 = rxPt.subtract(corner);
+        double theta = WifiMath.angleDeg(v1, v2);
+        double t = Math.max(0.0, Math.min(120.0, theta));
 
-        // 스무딩
-        if (smoothRadiusPx > 0) {
-            return WifiMath.boxBlur(img, smoothRadiusPx);
+        double diffLossDb = 6.0 + 0.10 * t;
+        double ratio = Math.max(1.0, lenM / losM);
+        diffLossDb += 10.0 * Math.log10(ratio);
+        return diffLossDb;
+    }
+
+    /**
+     * 경로 상한을 더해도 모든 활성 밴드에서 used <= bandMw * pruneFactor면 used에 더하고 true(경로 생략).
+     * lossLowerDb에는 밴드별로 이미 아는 벽 감쇠 하한을 넣어 둘 것(없으면 0). 호출 후 내용은 덮어씀.
+     */
+    private static boolean tryPrune(double[] used, double[] bandMw, double pruneFactor,
+                                    double[] lossLowerDb, double[] bandConst,
+                                    double distanceLossDb, double extraLossDb) {
+        for (int b = 0; b < used.length; b++) {
+            double c = bandConst[b];
+            if (Double.isNaN(c)) {
+                lossLowerDb[b] = 0.0;
+                continue;
+            }
+            double upperMw = Math.pow(10.0, (c - (distanceLossDb + lossLowerDb[b] + extraLossDb)) / 10.0);
+            if (used[b] + upperMw > bandMw[b] * pruneFactor) return false;
+            lossLowerDb[b] = upperMw; // 아래 누적용으로 재사용
         }
+        for (int b = 0; b < used.length; b++) used[b] += lossLowerDb[b];
+        return true;
+    }
 
-        return img;
+    /** 경로 1개의 밴드별 수신 전력(mW)을 누적(비활성 밴드 = bandConst NaN은 건너뜀) */
+    private static void addBandMw(double[] bandMw, double[] bandConst, double distanceLossDb,
+                                  double[] wallLossDb, double extraLossDb) {
+        for (int b = 0; b < bandMw.length; b++) {
+            double c = bandConst[b];
+            if (Double.isNaN(c)) continue;
+            double rssi = c - (distanceLossDb + wallLossDb[b] + extraLossDb);
+            bandMw[b] += Math.pow(10.0, rssi / 10.0);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,521 @@
+package app.engine;
+
+import app.jfr.CacheEvictionEvent;
+import app.model.AP;
+import app.model.Band;
+import app.model.RadioConfig;
+import app.model.Wall;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * AP별 경로 이득 레이어 캐시.
+ * - 레이어 = AP 1대 x 밴드 1개의 블록 단위 경로 이득 격자(RssiField, EIRP 0 dBm 기준 수신 dBm)
+ *   → 출력/안테나 이득/활성 밴드와 무관하므로 그런 값이 바뀌면 합성 때 상수만 더하면 됨
+ * - AP 키: 위치만(apGainKey). 밴드 레이어 키 = bandKey(AP 키, 밴드)
+ * - 벽/스케일/경로손실/캔버스/격자(= geometry key)가 바뀌면 전체 무효화
+ * - AP 컬링된 AP는 셀별 "증인" AP 키와 여유(dB), 컬링 당시 밴드 상수를 함께 보관(Culling).
+ *   출력이 바뀌어도 여유 안이면 그대로 쓰고, 넘거나 증인 AP가 사라지면 그 셀만 다시 계산
+ * - 캐시에 넣은 레이어는 수정하지 않음 → retain()으로 잡아 둔 참조를 나중에 adopt()로 되돌릴 수 있음(실행 취소)
+ * - 내용을 통째로 바꾸는 연산(geometry 전환/adopt/restore/clear)마다 epoch 증가.
+ *   계산은 시작할 때 받은 epoch로만 결과를 넣을 수 있음 → 도중에 실행 취소/불러오기가 끼면 그 계산 결과는 버림
+ * - 레이어 + 컬링 정보 메모리가 budgetBytes를 넘으면 가장 오래 안 쓴(getGains/putGains) AP부터
+ *   밴드 레이어와 컬링 정보를 통째로 버림(CacheEvictionEvent reason "budget").
+ *   계산 중인 레이어는 계산 쪽이 참조를 들고 있으므로 버려도 그 결과에는 영향 없음(다음 계산에서 다시 계산)
+ */
+public final class LayerCache {
+
+    private static final Band[] BANDS = Band.values();
+
+    /** 레이어 캐시 기본 예산(512 MB) */
+    public static final long DEFAULT_BUDGET_BYTES = 512L << 20;
+
+    private long geometryKey;
+    private long epoch;
+    private final Map<Long, RssiField> layers = new HashMap<>();
+    private final Map<Long, Culling> cullings = new HashMap<>();
+
+    private long budgetBytes = DEFAULT_BUDGET_BYTES;
+    private long bytes;
+    /** 레이어가 있는 AP 키, 오래 안 쓴 순서(앞 = 가장 오래됨) */
+    private final Set<Long> recent = new LinkedHashSet<>();
+    /** 어느 AP 것인지 아직 모르는 밴드 레이어 키(불러오기/되돌리기, 처음 getGains 때 AP로 옮김). 예산 초과 시 먼저 버림 */
+    private final Set<Long> unclaimed = new LinkedHashSet<>();
+
+    /**
+     * 컬링된 셀 정보(AP 1대, 불변).
+     * 셀 c는 witness[c] AP의 하한이 이 AP의 상한보다 slack[c] dB 높아서 비워 둔 것(witness 0 = 계산된 셀).
+     * 밴드 상수(EIRP - 1m 기준 손실, 비활성 NaN)가 basis/witnessBasis에서 바뀐 만큼 여유가 줄어듦
+     */
+    static final class Culling {
+        final long[] witness;
+        final float[] slack;
+        final double[] basis;
+        final Map<Long, double[]> witnessBasis;
+
+        Culling(long[] witness, float[] slack, double[] basis, Map<Long, double[]> witnessBasis) {
+            this.witness = witness;
+            this.slack = slack;
+            this.basis = basis;
+            this.witnessBasis = witnessBasis;
+        }
+
+        /**
+         * 지금 밴드 상수(constOf: AP 키 → 상수, 없으면 null = 사라진 AP)로 여유가 얼마나 줄었는지(dB).
+         * 셀이 유효하려면 slack[c] > 이 값. 증인이 사라졌거나 밴드가 켜지고/꺼져 판단할 수 없으면 +Inf
+         */
+        double consumed(long witnessKey, double[] now, Function<Long, double[]> constOf) {
+            double[] wNow = constOf.apply(witnessKey);
+            double[] wBasis = witnessBasis.get(witnessKey);
+            if (wNow == null || wBasis == null) return Double.POSITIVE_INFINITY;
+            // 이 AP 상한의 최대 상승 - 증인 하한의 최대 하락
+            double up = Double.NEGATIVE_INFINITY;
+            double down = Double.POSITIVE_INFINITY;
+            for (int b = 0; b < now.length; b++) {
+                if (!Double.isNaN(now[b])) {
+                    if (Double.isNaN(basis[b])) return Double.POSITIVE_INFINITY;
+                    up = Math.max(up, now[b] - basis[b]);
+                }
+                if (!Double.isNaN(wBasis[b])) {
+                    if (Double.isNaN(wNow[b])) return Double.POSITIVE_INFINITY;
+                    down = Math.min(down, wNow[b] - wBasis[b]);
+                }
+            }
+            if (up == Double.NEGATIVE_INFINITY) return Double.NEGATIVE_INFINITY; // 활성 밴드 없음 → 이길 수 없음
+            return up - down;
+        }
+    }
+
+    /** 특정 시점의 캐시 내용(레이어 참조만 보관, 복사 없음) */
+    public static final class Retained {
+        public final long geometryKey;
+        public final Map<Long, RssiField> layers;
+        final Map<Long, Culling> cullings;
+        final Set<Long> apKeys;
+
+        private Retained(long geometryKey, Map<Long, RssiField> layers, Map<Long, Culling> cullings,
+                         Set<Long> apKeys) {
+            this.geometryKey = geometryKey;
+            this.layers = Collections.unmodifiableMap(layers);
+            this.cullings = cullings;
+            this.apKeys = apKeys;
+        }
+
+        public boolean isEmpty() { return layers.isEmpty(); }
+    }
+
+    /** 저장/불러오기용 컬링 정보 묶음(AP 키 → Culling, 내용은 엔진 전용) */
+    public static final class Cullings {
+        public static final Cullings NONE = new Cullings(Map.of());
+
+        final Map<Long, Culling> map;
+
+        private Cullings(Map<Long, Culling> map) {
+            this.map = map;
+        }
+
+        public int size() { return map.size(); }
+    }
+
+    public synchronized long getGeometryKey() { return geometryKey; }
+
+    public synchronized long getBudgetBytes() { return budgetBytes; }
+
+    /** 레이어 + 컬링 정보 예산(바이트). 0이면 방금 넣은 AP 것만 남김 */
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = Math.max(0L, budgetBytes);
+        enforceBudget(null);
+    }
+
+    /** 지금 보관 중인 레이어 + 컬링 정보 바이트 */
+    public synchronized long bytes() { return bytes; }
+
+    /**
+     * geometry key가 다르면 모든 레이어를 버리고 새 key로 전환.
+     * @return 지금 epoch(계산 결과를 putGains/retainOnly로 넣을 때 그대로 넘김)
+     */
+    public synchronized long resetIfGeometryChanged(long key) {
+        if (key != geometryKey) {
+            evictAll("geometry changed");
+            geometryKey = key;
+        }
+        return epoch;
+    }
+
+    /** AP 1대의 밴드별 레이어(Band 순서). 한 밴드라도 없으면 null */
+    public synchronized RssiField[] getGains(long apKey) {
+        RssiField[] out = new RssiField[BANDS.length];
+        for (Band b : BANDS) {
+            out[b.ordinal()] = layers.get(bandKey(apKey, b));
+            if (out[b.ordinal()] == null) return null;
+        }
+        for (Band b : BANDS) unclaimed.remove(bandKey(apKey, b));
+        touch(apKey);
+        return out;
+    }
+
+    /**
+     * gains: Band 순서의 밴드별 레이어. culling이 null이면 모든 셀 계산됨.
+     * epoch가 계산 시작 때와 다르면(그 사이 캐시 내용이 바뀜) 넣지 않고 false
+     */
+    public synchronized boolean putGains(long epoch, long apKey, RssiField[] gains, Culling culling) {
+        if (epoch != this.epoch) return false;
+        for (Band b : BANDS) {
+            putLayer(bandKey(apKey, b), gains[b.ordinal()]);
+            unclaimed.remove(bandKey(apKey, b));
+        }
+        putCulling(apKey, culling);
+        touch(apKey);
+        enforceBudget(apKey);
+        return true;
+    }
+
+    /** 컬링된 셀이 있는 AP면 그 정보, 아니면 null */
+    synchronized Culling getCulling(long apKey) {
+        return cullings.get(apKey);
+    }
+
+    /**
+     * apKeys에 없는 AP의 레이어 제거(삭제/이동된 AP의 옛 레이어).
+     * epoch가 다르면 apKeys가 지금 내용 기준이 아니므로(예: 실행 취소로 되돌린 AP) 아무것도 지우지 않고 false
+     */
+    public synchronized boolean retainOnly(long epoch, Set<Long> apKeys) {
+        if (epoch != this.epoch) return false;
+        Set<Long> keep = new HashSet<>();
+        for (long k : apKeys) {
+            for (Band b : BANDS) keep.add(bandKey(k, b));
+        }
+        Iterator<Map.Entry<Long, RssiField>> it = layers.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, RssiField> e = it.next();
+            if (!keep.contains(e.getKey())) {
+                emitEviction(e.getKey(), e.getValue(), "ap moved or removed");
+                bytes -= layerBytes(e.getValue());
+                unclaimed.remove(e.getKey());
+                it.remove();
+            }
+        }
+        Iterator<Map.Entry<Long, Culling>> ci = cullings.entrySet().iterator();
+        while (ci.hasNext()) {
+            Map.Entry<Long, Culling> e = ci.next();
+            if (!apKeys.contains(e.getKey())) {
+                bytes -= cullingBytes(e.getValue());
+                ci.remove();
+            }
+        }
+        recent.retainAll(apKeys);
+        return true;
+    }
+
+    public synchronized void clear() {
+        evictAll("cleared");
+    }
+
+    public synchronized int size() { return layers.size(); }
+
+    /**
+     * 현재 밴드 레이어 복사본(저장용, 키 = bandKey).
+     * 컬링된 셀이 있는 레이어도 포함 → copyCullings()를 함께 저장해야 불러온 뒤 비운 셀을 판단할 수 있음
+     */
+    public synchronized Map<Long, RssiField> copyLayers() {
+        return new HashMap<>(layers);
+    }
+
+    /** 현재 컬링 정보(저장용, 항목은 불변이라 복사 없음) */
+    public synchronized Cullings copyCullings() {
+        return new Cullings(new HashMap<>(cullings));
+    }
+
+    /**
+     * 컬링 정보 직렬화(빅엔디언):
+     * u8 밴드 수 | int count | (long apKey | int cells | (long witness | float slack) x cells
+     * | double[밴드] basis | int n | (long witnessKey | double[밴드]) x n) x count
+     */
+    public static void writeCullings(DataOutput d, Cullings c) throws IOException {
+        d.writeByte(BANDS.length);
+        d.writeInt(c.map.size());
+        for (Map.Entry<Long, Culling> e : c.map.entrySet()) {
+            Culling cu = e.getValue();
+            d.writeLong(e.getKey());
+            d.writeInt(cu.witness.length);
+            for (int i = 0; i < cu.witness.length; i++) {
+                d.writeLong(cu.witness[i]);
+                d.writeFloat(cu.slack[i]);
+            }
+            for (double v : cu.basis) d.writeDouble(v);
+            d.writeInt(cu.witnessBasis.size());
+            for (Map.Entry<Long, double[]> w : cu.witnessBasis.entrySet()) {
+                d.writeLong(w.getKey());
+                for (double v : w.getValue()) d.writeDouble(v);
+            }
+        }
+    }
+
+    /** writeCullings 형식 읽기 */
+    public static Cullings readCullings(DataInput d) throws IOException {
+        if (d.readUnsignedByte() != BANDS.length) throw new IOException("밴드 수가 다른 컬링 정보");
+        int count = d.readInt();
+        if (count < 0) throw new IOException("손상된 컬링 정보");
+        Map<Long, Culling> map = new HashMap<>(Math.max(16, count * 2));
+        for (int k = 0; k < count; k++) {
+            long apKey = d.readLong();
+            int cells = d.readInt();
+            if (cells < 0) throw new IOException("손상된 컬링 정보");
+            long[] witness = new long[cells];
+            float[] slack = new float[cells];
+            for (int i = 0; i < cells; i++) {
+                witness[i] = d.readLong();
+                slack[i] = d.readFloat();
+            }
+            double[] basis = readBands(d);
+            int n = d.readInt();
+            if (n < 0) throw new IOException("손상된 컬링 정보");
+            Map<Long, double[]> witnessBasis = new HashMap<>(Math.max(4, n * 2));
+            for (int i = 0; i < n; i++) {
+                long key = d.readLong();
+                witnessBasis.put(key, readBands(d));
+            }
+            map.put(apKey, new Culling(witness, slack, basis, witnessBasis));
+        }
+        return new Cullings(map);
+    }
+
+    private static double[] readBands(DataInput d) throws IOException {
+        double[] v = new double[BANDS.length];
+        for (int b = 0; b < v.length; b++) v[b] = d.readDouble();
+        return v;
+    }
+
+    /** 현재 내용을 참조로 잡아 둠(레이어는 불변이라 복사하지 않음) */
+    public synchronized Retained retain() {
+        return new Retained(geometryKey, new HashMap<>(layers), new HashMap<>(cullings), new HashSet<>(recent));
+    }
+
+    /**
+     * retain()으로 잡아 둔 레이어를 되돌림.
+     * geometry key가 같으면 없는 레이어만 추가, 다르면 현재 내용을 버리고 그 시점으로 전환.
+     */
+    public synchronized void adopt(Retained r) {
+        if (r == null) return;
+        epoch++;
+        if (r.geometryKey != geometryKey) {
+            evictAll("history restored");
+            geometryKey = r.geometryKey;
+        }
+        // 밴드 레이어와 컬링 정보는 AP 단위로 함께 옮김(현재 캐시에 있는 AP는 그대로)
+        Set<Long> present = new HashSet<>();
+        for (long k : r.layers.keySet()) {
+            if (layers.containsKey(k)) present.add(k);
+        }
+        for (Map.Entry<Long, RssiField> e : r.layers.entrySet()) {
+            if (!present.contains(e.getKey())) {
+                putLayer(e.getKey(), e.getValue());
+                unclaimed.add(e.getKey());
+            }
+        }
+        for (Map.Entry<Long, Culling> e : r.cullings.entrySet()) {
+            if (!present.contains(bandKey(e.getKey(), BANDS[0]))) putCulling(e.getKey(), e.getValue());
+        }
+        // 되돌린 AP가 가장 최근(예산 초과 시 지금 캐시의 다른 AP부터 버림)
+        for (long k : r.apKeys) {
+            if (present.contains(bandKey(k, BANDS[0]))) continue;
+            for (Band b : BANDS) unclaimed.remove(bandKey(k, b));
+            touch(k);
+        }
+        enforceBudget(null);
+    }
+
+    /** 저장된 밴드 레이어(키 = bandKey)와 컬링 정보로 교체(스냅샷 불러오기). 레이어가 없는 AP의 컬링 정보는 버림 */
+    public synchronized void restore(long geometryKey, Map<Long, RssiField> restored, Cullings restoredCullings) {
+        evictAll("restored from snapshot");
+        this.geometryKey = geometryKey;
+        for (Map.Entry<Long, RssiField> e : restored.entrySet()) {
+            putLayer(e.getKey(), e.getValue());
+            unclaimed.add(e.getKey());
+        }
+        for (Map.Entry<Long, Culling> e : restoredCullings.map.entrySet()) {
+            if (layers.containsKey(bandKey(e.getKey(), BANDS[0]))) putCulling(e.getKey(), e.getValue());
+        }
+        enforceBudget(null);
+    }
+
+    private void evictAll(String reason) {
+        epoch++;
+        for (Map.Entry<Long, RssiField> e : layers.entrySet()) {
+            emitEviction(e.getKey(), e.getValue(), reason);
+        }
+        layers.clear();
+        cullings.clear();
+        recent.clear();
+        unclaimed.clear();
+        bytes = 0;
+    }
+
+    // ===== 예산 =====
+
+    /** AP를 가장 최근에 쓴 것으로 */
+    private void touch(long apKey) {
+        recent.remove(apKey);
+        recent.add(apKey);
+    }
+
+    private void putLayer(long key, RssiField layer) {
+        RssiField old = layers.put(key, layer);
+        if (old != null) bytes -= layerBytes(old);
+        bytes += layerBytes(layer);
+    }
+
+    /** culling이 null이면 그 AP의 컬링 정보 제거 */
+    private void putCulling(long apKey, Culling culling) {
+        Culling old = (culling != null) ? cullings.put(apKey, culling) : cullings.remove(apKey);
+        if (old != null) bytes -= cullingBytes(old);
+        if (culling != null) bytes += cullingBytes(culling);
+    }
+
+    /**
+     * 예산을 넘는 동안 어느 AP 것인지 모르는 레이어 → 가장 오래 안 쓴 AP 순으로 버림.
+     * keep(nullable)은 방금 넣은 AP라 버리지 않음
+     */
+    private void enforceBudget(Long keep) {
+        Iterator<Long> orphan = unclaimed.iterator();
+        while (bytes > budgetBytes && orphan.hasNext()) {
+            long key = orphan.next();
+            orphan.remove();
+            RssiField layer = layers.remove(key);
+            if (layer == null) continue;
+            emitEviction(key, layer, "budget");
+            bytes -= layerBytes(layer);
+        }
+        Iterator<Long> oldest = recent.iterator();
+        while (bytes > budgetBytes && oldest.hasNext()) {
+            long apKey = oldest.next();
+            if (keep != null && apKey == keep) continue;
+            oldest.remove();
+            for (Band b : BANDS) {
+                long key = bandKey(apKey, b);
+                RssiField layer = layers.remove(key);
+                if (layer == null) continue;
+                emitEviction(key, layer, "budget");
+                bytes -= layerBytes(layer);
+            }
+            putCulling(apKey, null);
+        }
+    }
+
+    private static long layerBytes(RssiField layer) {
+        return 4L * layer.blockCount();
+    }
+
+    /** 컬링 정보 크기(셀별 증인 키 + 여유, 밴드 상수) */
+    private static long cullingBytes(Culling c) {
+        return 12L * c.witness.length + 8L * c.basis.length
+                + (8L + 8L * BANDS.length) * c.witnessBasis.size();
+    }
+
+    private static void emitEviction(long key, RssiField layer, String reason) {
+        CacheEvictionEvent ev = new CacheEvictionEvent();
+        if (!ev.shouldCommit()) return;
+        ev.cache = "ap-layers";
+        ev.key = Long.toHexString(key);
+        ev.bytes = layerBytes(layer);
+        ev.reason = reason;
+        ev.commit();
+    }
+
+    // ===== 내용 해시 =====
+
+    /**
+     * 레이어 전체에 영향을 주는 환경 해시:
+     * 벽(좌표/재질/감쇠), 스케일, 경로손실 지수, 최소거리, 캔버스 크기, 격자.
+     */
+    public static long geometryKey(Collection<Wall> walls,
+                                   double scaleMPerPx,
+                                   double pathLossN,
+                                   double minDistanceM,
+                                   int width,
+                                   int height,
+                                   int gridStepPx) {
+        return geometryKey(wallsKey(walls), scaleMPerPx, pathLossN, minDistanceM, width, height, gridStepPx);
+    }
+
+    /** geometryKey()와 같지만 벽 해시(wallsKey)를 이미 알고 있을 때 */
+    public static long geometryKey(long wallsKey,
+                                   double scaleMPerPx,
+                                   double pathLossN,
+                                   double minDistanceM,
+                                   int width,
+                                   int height,
+                                   int gridStepPx) {
+        long h = mix(0x5EED_CAFE_F00DL, wallsKey);
+        h = mix(h, Double.doubleToLongBits(scaleMPerPx));
+        h = mix(h, Double.doubleToLongBits(pathLossN));
+        h = mix(h, Double.doubleToLongBits(minDistanceM));
+        h = mix(h, width);
+        h = mix(h, height);
+        h = mix(h, gridStepPx);
+        return h;
+    }
+
+    /** 벽 목록 해시(좌표/재질/감쇠, 목록 순서대로) */
+    public static long wallsKey(Collection<Wall> walls) {
+        long h = walls.size();
+        for (Wall w : walls) {
+            if (w == null) continue;
+            h = mix(h, Double.doubleToLongBits(w.x1));
+            h = mix(h, Double.doubleToLongBits(w.y1));
+            h = mix(h, Double.doubleToLongBits(w.x2));
+            h = mix(h, Double.doubleToLongBits(w.y2));
+            // 감쇠는 float 정밀도로(PackedWalls/스냅샷 왕복 후에도 같은 key)
+            h = mix(h, Float.floatToIntBits((float) w.attenuationDb24));
+            h = mix(h, Float.floatToIntBits((float) w.attenuationDb5));
+            h = mix(h, w.getMaterial().ordinal());
+        }
+        return h;
+    }
+
+    /** AP 1대의 레이어 키: 위치만(출력/이득/활성 밴드는 합성 때 상수로 반영) */
+    public static long apGainKey(AP ap) {
+        long h = 0x6A_14_0E_5EL;
+        h = mix(h, Double.doubleToLongBits(ap.x));
+        h = mix(h, Double.doubleToLongBits(ap.y));
+        return h;
+    }
+
+    /** AP 레이어 키 + 밴드 → 밴드 레이어 키 */
+    public static long bandKey(long apGainKey, Band band) {
+        return mix(apGainKey, 0xBA_0DL + band.ordinal());
+    }
+
+    /** AP 내용 해시: 위치 + 밴드별 (활성, 출력, 이득). 이름/SSID는 결과에 영향이 없어 제외 */
+    public static long apKey(AP ap) {
+        long h = 0xA9_1A7E_12L;
+        h = mix(h, Double.doubleToLongBits(ap.x));
+        h = mix(h, Double.doubleToLongBits(ap.y));
+        for (Band b : Band.values()) {
+            RadioConfig rc = ap.radios.get(b);
+            boolean on = rc != null && rc.enabled;
+            h = mix(h, on ? 1 : 0);
+            if (!on) continue;
+            h = mix(h, Double.doubleToLongBits(rc.txPowerDbm));
+            h = mix(h, Double.doubleToLongBits(rc.antennaGain));
+        }
+        return h;
+    }
+
+    public static long mix(long h, long v) {
+        h ^= v;
+        h *= 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 31);
+    }
+}
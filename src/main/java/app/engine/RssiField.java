@@ -0,0 +1,59 @@
+package app.engine;
+
+import java.util.Arrays;
+
+/**
+ * 블록(gridStep px) 단위 RSSI(dBm) 격자.
+ * - 한 블록 = 3x3 슈퍼샘플을 mW 평균한 값
+ * - 신호가 없는 블록은 NaN
+ */
+public final class RssiField {
+
+    public final int width;
+    public final int height;
+    public final int gridStepPx;
+    public final int cols;
+    public final int rows;
+
+    private final float[] dbm;
+
+    public RssiField(int width, int height, int gridStepPx) {
+        this.width = width;
+        this.height = height;
+        this.gridStepPx = Math.max(1, gridStepPx);
+        this.cols = (width + this.gridStepPx - 1) / this.gridStepPx;
+        this.rows = (height + this.gridStepPx - 1) / this.gridStepPx;
+        this.dbm = new float[cols * rows];
+        Arrays.fill(dbm, Float.NaN);
+    }
+
+    public float get(int col, int row) {
+        return dbm[row * cols + col];
+    }
+
+    public void set(int col, int row, float v) {
+        dbm[row * cols + col] = v;
+    }
+
+    /** 픽셀 좌표가 속한 블록 값(범위 밖이면 NaN) */
+    public float atPixel(int px, int py) {
+        if (px < 0 || py < 0 || px >= width || py >= height) return Float.NaN;
+        return get(px / gridStepPx, py / gridStepPx);
+    }
+
+    /** 같은 크기/값의 새 격자(캐시에 있는 레이어를 고칠 때 복사본에서 작업) */
+    public RssiField copy() {
+        RssiField c = new RssiField(width, height, gridStepPx);
+        System.arraycopy(dbm, 0, c.dbm, 0, dbm.length);
+        return c;
+    }
+
+    public int blockCount() {
+        return dbm.length;
+    }
+
+    /** 내부 배열(행 우선). 직렬화/합성용이므로 수정 시 주의 */
+    public float[] values() {
+        return dbm;
+    }
+}
@@ -0,0 +1,110 @@
+package app.engine;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 계산 워커 → FX 스레드로 완성된 타일을 넘기는 게시판(락 없음).
+ * - 타일마다 상태(EMPTY → READY → TAKEN)를 AtomicIntegerArray로 관리
+ * - 완성된 타일 번호는 ConcurrentLinkedQueue(비차단 MPSC)로 전달
+ *   → 워커는 publish만, 소비자(FX 펄스 1개)는 poll만 하므로 서로 기다리지 않고
+ *     Platform.runLater도 타일 수만큼 쌓이지 않음
+ * - 워커가 타일 블록을 field에 다 쓴 뒤 publish → 큐를 거쳐 poll한 쪽에서 값이 보임(happens-before)
+ *
+ * 한 번의 생성 작업에만 사용. 생성이 끝나거나 취소되면 close()됨
+ */
+public final class TileBoard {
+
+    public static final int EMPTY = 0;
+    public static final int READY = 1;
+    public static final int TAKEN = 2;
+
+    public final int width;
+    public final int height;
+    public final int gridStepPx;
+    public final int cols;
+    public final int rows;
+    public final int tilesX;
+    public final int tilesY;
+
+    private final AtomicIntegerArray state;
+    private final ConcurrentLinkedQueue<Integer> completed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger published = new AtomicInteger();
+
+    private volatile RssiField field;
+    private volatile boolean closed;
+
+    public TileBoard(int width, int height, int gridStepPx) {
+        this.width = width;
+        this.height = height;
+        this.gridStepPx = Math.max(1, gridStepPx);
+        this.cols = (width + this.gridStepPx - 1) / this.gridStepPx;
+        this.rows = (height + this.gridStepPx - 1) / this.gridStepPx;
+        this.tilesX = (cols + HeatmapGenerator.TILE_BLOCKS - 1) / HeatmapGenerator.TILE_BLOCKS;
+        this.tilesY = (rows + HeatmapGenerator.TILE_BLOCKS - 1) / HeatmapGenerator.TILE_BLOCKS;
+        this.state = new AtomicIntegerArray(tilesX * tilesY);
+    }
+
+    public int tileCount() { return state.length(); }
+
+    /** 채워지는 합성 격자(생성 시작 전이면 null) */
+    public RssiField field() { return field; }
+
+    /** 생성 작업이 끝났거나 취소됨(남은 타일은 더 오지 않음) */
+    public boolean isClosed() { return closed; }
+
+    /** 모든 타일이 게시됨 */
+    public boolean isComplete() { return published.get() == state.length(); }
+
+    public int publishedCount() { return published.get(); }
+
+    public int state(int tile) { return state.get(tile); }
+
+    // ===== 타일 → 블록 범위 =====
+
+    public int blockX0(int tile) { return (tile % tilesX) * HeatmapGenerator.TILE_BLOCKS; }
+    public int blockY0(int tile) { return (tile / tilesX) * HeatmapGenerator.TILE_BLOCKS; }
+    public int blockX1(int tile) { return Math.min(cols, blockX0(tile) + HeatmapGenerator.TILE_BLOCKS); }
+    public int blockY1(int tile) { return Math.min(rows, blockY0(tile) + HeatmapGenerator.TILE_BLOCKS); }
+
+    // ===== 생산자(계산 워커) =====
+
+    /** 생성기가 합성 격자를 만든 직후 호출. 크기가 다르면 예외 */
+    void begin(RssiField f) {
+        if (f.width != width || f.height != height || f.gridStepPx != gridStepPx) {
+            throw new IllegalArgumentException("tile board " + width + "x" + height + "/" + gridStepPx
+                    + " does not match field " + f.width + "x" + f.height + "/" + f.gridStepPx);
+        }
+        this.field = f;
+    }
+
+    /** 타일 완성(블록 값 기록 후). 같은 타일을 두 번 게시하면 무시 */
+    void publish(int tile) {
+        if (state.compareAndSet(tile, EMPTY, READY)) {
+            published.incrementAndGet();
+            completed.offer(tile);
+        }
+    }
+
+    void publishAll() {
+        for (int t = 0; t < state.length(); t++) publish(t);
+    }
+
+    void close() { closed = true; }
+
+    // ===== 소비자(FX 스레드) =====
+
+    /** 완성됐지만 아직 가져가지 않은 타일 1개(없으면 -1) */
+    public int poll() {
+        Integer t = completed.poll();
+        if (t == null) return -1;
+        state.set(t, TAKEN);
+        return t;
+    }
+
+    /** 더 가져갈 타일이 없고 앞으로도 오지 않음 */
+    public boolean isDrained() {
+        return (closed || isComplete()) && completed.isEmpty();
+    }
+}
@@ -0,0 +1,94 @@
+package app.engine;
+
+import java.util.Arrays;
+
+/**
+ * 타일 계산 순서의 기준(화면에 보이는 영역 + 마우스 위치, 캔버스 픽셀 좌표).
+ * - FX 스레드가 팬/줌/마우스 이동 때 갱신, 계산 워커는 version()이 바뀌면 남은 타일 순서를 다시 정함
+ * - 순서: 보이는 영역과 겹치는 타일 먼저, 그 안에서는 마우스(보이는 영역 안일 때) 또는 화면 중심에 가까운 순
+ * - 아무것도 설정하지 않으면 래스터 순서
+ */
+public final class TileFocus {
+
+    private static final class State {
+        final long version;
+        final boolean hasView;
+        final double vx0, vy0, vx1, vy1;
+        final boolean hasPointer;
+        final double px, py;
+
+        State(long version, boolean hasView, double vx0, double vy0, double vx1, double vy1,
+              boolean hasPointer, double px, double py) {
+            this.version = version;
+            this.hasView = hasView;
+            this.vx0 = vx0;
+            this.vy0 = vy0;
+            this.vx1 = vx1;
+            this.vy1 = vy1;
+            this.hasPointer = hasPointer;
+            this.px = px;
+            this.py = py;
+        }
+    }
+
+    private volatile State state = new State(0, false, 0, 0, 0, 0, false, 0, 0);
+
+    /** 바뀔 때마다 증가(워커가 순서를 다시 정할지 판단) */
+    public long version() { return state.version; }
+
+    /** 화면에 보이는 영역(캔버스 좌표). 같은 값이면 무시 */
+    public synchronized void setViewport(double x0, double y0, double x1, double y1) {
+        State s = state;
+        if (s.hasView && s.vx0 == x0 && s.vy0 == y0 && s.vx1 == x1 && s.vy1 == y1) return;
+        state = new State(s.version + 1, true, x0, y0, x1, y1, s.hasPointer, s.px, s.py);
+    }
+
+    /** 마우스 위치(캔버스 좌표) */
+    public synchronized void setPointer(double x, double y) {
+        State s = state;
+        if (s.hasPointer && s.px == x && s.py == y) return;
+        state = new State(s.version + 1, s.hasView, s.vx0, s.vy0, s.vx1, s.vy1, true, x, y);
+    }
+
+    /** 마우스가 캔버스를 벗어남 */
+    public synchronized void clearPointer() {
+        State s = state;
+        if (!s.hasPointer) return;
+        state = new State(s.version + 1, s.hasView, s.vx0, s.vy0, s.vx1, s.vy1, false, 0, 0);
+    }
+
+    /**
+     * 타일 번호를 우선순위 순으로 정렬해 반환(tilesX x tilesY 타일, 한 변 tilePx 픽셀).
+     * 호출 시점 상태 기준이므로 version()은 호출 전에 읽어 둘 것
+     */
+    public int[] order(int tilesX, int tilesY, int tilePx) {
+        State s = state;
+        int n = tilesX * tilesY;
+        int[] order = new int[n];
+        if (!s.hasView && !s.hasPointer) {
+            for (int i = 0; i < n; i++) order[i] = i;
+            return order;
+        }
+
+        boolean pointerInView = s.hasPointer
+                && (!s.hasView || (s.px >= s.vx0 && s.px < s.vx1 && s.py >= s.vy0 && s.py < s.vy1));
+        double fx = pointerInView ? s.px : (s.vx0 + s.vx1) / 2.0;
+        double fy = pointerInView ? s.py : (s.vy0 + s.vy1) / 2.0;
+
+        // (점수 << 32 | 타일) 정렬 → 객체 없이 정렬
+        long[] keyed = new long[n];
+        for (int t = 0; t < n; t++) {
+            double x0 = (t % tilesX) * (double) tilePx;
+            double y0 = (t / tilesX) * (double) tilePx;
+            double dx = x0 + tilePx / 2.0 - fx;
+            double dy = y0 + tilePx / 2.0 - fy;
+            long d = (long) Math.min(Math.sqrt(dx * dx + dy * dy), 0x3FFFFFFF);
+            boolean visible = !s.hasView || (x0 < s.vx1 && x0 + tilePx > s.vx0 && y0 < s.vy1 && y0 + tilePx > s.vy0);
+            long score = visible ? d : 0x40000000L + d;
+            keyed[t] = (score << 32) | t;
+        }
+        Arrays.sort(keyed);
+        for (int i = 0; i < n; i++) order[i] = (int) keyed[i];
+        return order;
+    }
+}
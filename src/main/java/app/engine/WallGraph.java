@@ -0,0 +1,156 @@
+package app.engine;
+
+import app.model.Wall;
+import javafx.geometry.Point2D;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 벽 끝점 인접 그래프.
+ * - 노드 = 서로 겹치는(스냅된) 끝점, 간선 = 벽
+ * - 노드 차수: 1 = 벽 끝(자유단), 2 = 모서리/이음, 3+ = T/십자 접합
+ * - 끝점이 다른 벽의 내부(끝점 제외) 위에 놓이면 그 벽은 노드를 관통(wallsThrough) → 차수에 양방향 2로 셈.
+ *   벽 하나의 중간에 닿는 T 접합(병합되지 않은 긴 벽, 정리 끈 경우)도 접합으로 인식
+ */
+public final class WallGraph {
+
+    private final double[] nodeX;
+    private final double[] nodeY;
+    private final int[] wallStart; // wall i → 시작 노드
+    private final int[] wallEnd;   // wall i → 끝 노드
+    private final int[][] wallsAt; // node → 연결된 wall 인덱스
+    private final int[][] through; // node → 내부로 노드를 지나는 wall 인덱스
+
+    /** 끝점이 벽 내부 위에 있다고 보는 법선 거리(px), WallSimplifier 기본 스냅과 같음 */
+    public static final double INCIDENCE_PX = 1.0;
+
+    private static final double CELL_PX = 64.0;
+    private static final int[] NONE = new int[0];
+
+    private WallGraph(double[] nodeX, double[] nodeY, int[] wallStart, int[] wallEnd, int[][] wallsAt,
+                      int[][] through) {
+        this.nodeX = nodeX;
+        this.nodeY = nodeY;
+        this.wallStart = wallStart;
+        this.wallEnd = wallEnd;
+        this.wallsAt = wallsAt;
+        this.through = through;
+    }
+
+    /** 좌표가 정확히 같은 끝점끼리 노드로 묶음(스냅은 WallSimplifier에서 먼저 수행) */
+    public static WallGraph build(List<Wall> walls) {
+        int n = walls.size();
+        Map<Point2D, Integer> ids = new HashMap<>(n * 2);
+        double[] xs = new double[Math.max(4, n * 2)];
+        double[] ys = new double[xs.length];
+        int[] deg = new int[xs.length];
+        int[] start = new int[n];
+        int[] end = new int[n];
+        int nodes = 0;
+
+        for (int i = 0; i < n; i++) {
+            Wall w = walls.get(i);
+            for (int e = 0; e < 2; e++) {
+                double x = (e == 0) ? w.x1 : w.x2;
+                double y = (e == 0) ? w.y1 : w.y2;
+                Point2D key = new Point2D(x, y);
+                Integer id = ids.get(key);
+                if (id == null) {
+                    id = nodes++;
+                    ids.put(key, id);
+                    xs[id] = x;
+                    ys[id] = y;
+                }
+                deg[id]++;
+                if (e == 0) start[i] = id;
+                else end[i] = id;
+            }
+        }
+
+        int[][] at = new int[nodes][];
+        for (int k = 0; k < nodes; k++) at[k] = new int[deg[k]];
+        int[] fill = new int[nodes];
+        for (int i = 0; i < n; i++) {
+            at[start[i]][fill[start[i]]++] = i;
+            at[end[i]][fill[end[i]]++] = i;
+        }
+
+        xs = Arrays.copyOf(xs, nodes);
+        ys = Arrays.copyOf(ys, nodes);
+        return new WallGraph(xs, ys, start, end, at, incidence(walls, xs, ys, start, end));
+    }
+
+    /** 노드별 관통 벽: 노드를 격자 버킷에 넣고 벽마다 bbox가 닿는 버킷의 노드만 검사 */
+    private static int[][] incidence(List<Wall> walls, double[] xs, double[] ys, int[] start, int[] end) {
+        int nodes = xs.length;
+        int[][] through = new int[nodes][];
+        Arrays.fill(through, NONE);
+        Map<Long, List<Integer>> grid = new HashMap<>();
+        for (int k = 0; k < nodes; k++) {
+            grid.computeIfAbsent(cellKey(Math.floor(xs[k] / CELL_PX), Math.floor(ys[k] / CELL_PX)),
+                    c -> new ArrayList<>()).add(k);
+        }
+        double tol = INCIDENCE_PX, tol2 = tol * tol;
+        for (int i = 0; i < walls.size(); i++) {
+            Wall w = walls.get(i);
+            double dx = w.x2 - w.x1, dy = w.y2 - w.y1;
+            double len2 = dx * dx + dy * dy;
+            if (len2 < 1e-18) continue;
+            long cx0 = (long) Math.floor((Math.min(w.x1, w.x2) - tol) / CELL_PX);
+            long cx1 = (long) Math.floor((Math.max(w.x1, w.x2) + tol) / CELL_PX);
+            long cy0 = (long) Math.floor((Math.min(w.y1, w.y2) - tol) / CELL_PX);
+            long cy1 = (long) Math.floor((Math.max(w.y1, w.y2) + tol) / CELL_PX);
+            for (long cy = cy0; cy <= cy1; cy++) {
+                for (long cx = cx0; cx <= cx1; cx++) {
+                    List<Integer> l = grid.get(cellKey(cx, cy));
+                    if (l == null) continue;
+                    for (int k : l) {
+                        if (k == start[i] || k == end[i]) continue;
+                        double t = ((xs[k] - w.x1) * dx + (ys[k] - w.y1) * dy) / len2;
+                        double ex = w.x1 + t * dx - xs[k], ey = w.y1 + t * dy - ys[k];
+                        if (ex * ex + ey * ey > tol2) continue;
+                        // 끝점 근처(스냅 반경 안)는 관통이 아님
+                        double along = t * Math.sqrt(len2);
+                        if (along <= tol || along >= Math.sqrt(len2) - tol) continue;
+                        through[k] = Arrays.copyOf(through[k], through[k].length + 1);
+                        through[k][through[k].length - 1] = i;
+                    }
+                }
+            }
+        }
+        return through;
+    }
+
+    private static long cellKey(double cx, double cy) {
+        return (((long) cx) << 32) ^ (((long) cy) & 0xffffffffL);
+    }
+
+    public int nodeCount() { return nodeX.length; }
+    public int wallCount() { return wallStart.length; }
+
+    public double nodeX(int node) { return nodeX[node]; }
+    public double nodeY(int node) { return nodeY[node]; }
+
+    /** 노드에서 뻗는 벽 방향 수(관통 벽은 2) */
+    public int degree(int node) { return wallsAt[node].length + 2 * through[node].length; }
+
+    /** node에 연결된 벽 인덱스(수정 금지) */
+    public int[] wallsAt(int node) { return wallsAt[node]; }
+
+    /** 끝점이 아닌 내부로 node를 지나는 벽 인덱스(수정 금지) */
+    public int[] wallsThrough(int node) { return through[node]; }
+
+    public int startNode(int wall) { return wallStart[wall]; }
+    public int endNode(int wall) { return wallEnd[wall]; }
+
+    /** 자유단(차수 1) 노드 수 */
+    public int danglingEnds() {
+        int c = 0;
+        for (int k = 0; k < wallsAt.length; k++) if (degree(k) == 1) c++;
+        return c;
+    }
+}
@@ -0,0 +1,321 @@
+package app.engine;
+
+import app.model.Wall;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 계산 전 벽 목록 정리.
+ * 1) 가까운 끝점 스냅(snapPx 이내 → 처음 본 점으로)
+ * 2) 길이 0 벽 제거
+ * 3) 같은 재질/감쇠 + 같은 끝점 중복 제거
+ * 4) 같은 재질/감쇠의 동일 직선 위에서 닿거나 겹치는 벽을 하나로 병합
+ *    → wallLossAlong 호출당 벽 수 감소, 이음점을 지나는 경로의 감쇠 이중 합산 방지
+ *    단, 다른 벽이 끝나는 이음점(T 접합)은 넘어가지 않음 → 그래프에서 접합 노드 유지
+ * 5) 끝점 인접 그래프(WallGraph) 생성
+ *
+ * 입력 Wall 객체는 수정하지 않음(바뀌지 않은 벽은 같은 인스턴스 그대로 반환).
+ */
+public final class WallSimplifier {
+
+    private WallSimplifier() {}
+
+    /** 허용치(px) */
+    public static final class Options {
+        /** 끝점 스냅 반경, 동일 직선 판정 법선 거리, 병합 간격 */
+        public double snapPx = 1.0;
+        /** 동일 직선 판정 각도 차(도) */
+        public double angleToleranceDeg = 0.5;
+    }
+
+    /** 정리 결과 + 통계 */
+    public static final class Result {
+        public final List<Wall> walls;
+        public final WallGraph graph;
+        public final int input;
+        public final int snappedEndpoints;
+        public final int zeroLength;
+        public final int duplicates;
+        public final int merged; // 병합으로 사라진 벽 수
+
+        Result(List<Wall> walls, WallGraph graph, int input,
+               int snappedEndpoints, int zeroLength, int duplicates, int merged) {
+            this.walls = walls;
+            this.graph = graph;
+            this.input = input;
+            this.snappedEndpoints = snappedEndpoints;
+            this.zeroLength = zeroLength;
+            this.duplicates = duplicates;
+            this.merged = merged;
+        }
+
+        public int output() { return walls.size(); }
+
+        public String format() {
+            double pct = (input == 0) ? 0.0 : 100.0 * (input - walls.size()) / input;
+            return String.format(Locale.ROOT,
+                    "walls %d -> %d (-%.1f%%): zeroLength=%d duplicates=%d merged=%d snapped=%d nodes=%d",
+                    input, walls.size(), pct, zeroLength, duplicates, merged, snappedEndpoints,
+                    graph.nodeCount());
+        }
+
+        @Override
+        public String toString() { return format(); }
+    }
+
+    public static Result simplify(List<Wall> walls) {
+        return simplify(walls, new Options());
+    }
+
+    public static Result simplify(List<Wall> walls, Options opt) {
+        List<Wall> src = new ArrayList<>(walls.size());
+        for (Wall w : walls) if (w != null) src.add(w);
+        int n = src.size();
+
+        double[] c = new double[n * 4];
+        for (int i = 0; i < n; i++) {
+            Wall w = src.get(i);
+            c[i * 4] = w.x1;
+            c[i * 4 + 1] = w.y1;
+            c[i * 4 + 2] = w.x2;
+            c[i * 4 + 3] = w.y2;
+        }
+
+        // 1) 끝점 스냅
+        int snapped = snapEndpoints(c, n, opt.snapPx);
+
+        // 2) 길이 0 제거 + 3) 정확한 중복 제거, 속성(재질/감쇠)별 그룹
+        int zeroLength = 0;
+        int duplicates = 0;
+        Map<String, List<Integer>> groups = new LinkedHashMap<>(); // 입력 순서 유지
+        Set<String> seen = new HashSet<>();
+        Map<String, Integer> ends = new HashMap<>(); // 끝점 좌표 → 그 점에서 끝나는 벽 수(재질 무관)
+        for (int i = 0; i < n; i++) {
+            double dx = c[i * 4 + 2] - c[i * 4], dy = c[i * 4 + 3] - c[i * 4 + 1];
+            if (dx * dx + dy * dy < 1e-18) {
+                zeroLength++;
+                continue;
+            }
+            String prop = propertyKey(src.get(i));
+            if (!seen.add(prop + '|' + segmentKey(c, i))) {
+                duplicates++;
+                continue;
+            }
+            groups.computeIfAbsent(prop, k -> new ArrayList<>()).add(i);
+            ends.merge(pointKey(c, i * 2), 1, Integer::sum);
+            ends.merge(pointKey(c, i * 2 + 1), 1, Integer::sum);
+        }
+
+        // 4) 동일 직선 병합
+        List<Wall> out = new ArrayList<>(n);
+        int[] mergedCount = new int[1];
+        for (List<Integer> g : groups.values()) {
+            mergeGroup(src, c, g, ends, opt, out, mergedCount);
+        }
+
+        return new Result(out, WallGraph.build(out), n, snapped, zeroLength, duplicates, mergedCount[0]);
+    }
+
+    // ===== 1) 스냅 =====
+
+    private static int snapEndpoints(double[] c, int n, double snap) {
+        if (snap <= 0) return 0;
+        double cell = snap;
+        double snap2 = snap * snap;
+        Map<Long, List<double[]>> grid = new HashMap<>();
+        int moved = 0;
+
+        for (int p = 0; p < n * 2; p++) {
+            double x = c[p * 2], y = c[p * 2 + 1];
+            long cx = (long) Math.floor(x / cell), cy = (long) Math.floor(y / cell);
+            double[] rep = null;
+            double best = snap2;
+            for (long gy = cy - 1; gy <= cy + 1; gy++) {
+                for (long gx = cx - 1; gx <= cx + 1; gx++) {
+                    List<double[]> l = grid.get((gx << 32) ^ (gy & 0xffffffffL));
+                    if (l == null) continue;
+                    for (double[] q : l) {
+                        double dx = q[0] - x, dy = q[1] - y;
+                        double d2 = dx * dx + dy * dy;
+                        if (d2 <= best) { best = d2; rep = q; }
+                    }
+                }
+            }
+            if (rep == null) {
+                grid.computeIfAbsent((cx << 32) ^ (cy & 0xffffffffL), k -> new ArrayList<>())
+                        .add(new double[]{x, y});
+                continue;
+            }
+            if (rep[0] != x || rep[1] != y) moved++;
+            c[p * 2] = rep[0];
+            c[p * 2 + 1] = rep[1];
+        }
+        return moved;
+    }
+
+    // ===== 4) 병합 =====
+
+    /**
+     * 각도 → 법선 거리 → 방향 구간 순으로 군집.
+     * 병합된 벽의 끝점은 구성 벽의 실제(스냅된) 끝점 중 양 끝을 사용 → 접합 노드 유지.
+     */
+    private static void mergeGroup(List<Wall> src, double[] c, List<Integer> idx, Map<String, Integer> ends,
+                                   Options opt, List<Wall> out, int[] mergedCount) {
+        int m = idx.size();
+        double[] theta = new double[m];
+        Integer[] order = new Integer[m];
+        for (int k = 0; k < m; k++) {
+            int i = idx.get(k);
+            double dx = c[i * 4 + 2] - c[i * 4], dy = c[i * 4 + 3] - c[i * 4 + 1];
+            double a;
+            if (dy == 0) a = 0.0;
+            else if (dx == 0) a = Math.PI / 2;
+            else {
+                a = Math.atan2(dy, dx);
+                if (a < 0) a += Math.PI;
+                if (a >= Math.PI) a -= Math.PI;
+            }
+            theta[k] = a;
+            order[k] = k;
+        }
+        Arrays.sort(order, (p, q) -> Double.compare(theta[p], theta[q]));
+
+        double angTol = Math.toRadians(opt.angleToleranceDeg);
+        int s = 0;
+        while (s < m) {
+            int e = s + 1;
+            while (e < m && theta[order[e]] - theta[order[s]] <= angTol) e++;
+            // π 근처와 0 근처는 같은 방향: 마지막 그룹이 0 근처 그룹과 이어지는 드문 경우는 병합하지 않음(보수적)
+            mergeLines(src, c, idx, order, s, e, theta[order[s]], opt.snapPx, ends, out, mergedCount);
+            s = e;
+        }
+    }
+
+    private static void mergeLines(List<Wall> src, double[] c, List<Integer> idx, Integer[] order,
+                                   int s, int e, double a, double tol, Map<String, Integer> ends,
+                                   List<Wall> out, int[] mergedCount) {
+        double ux = Math.cos(a), uy = Math.sin(a);
+        if (a == 0.0) { ux = 1; uy = 0; }
+        else if (a == Math.PI / 2) { ux = 0; uy = 1; }
+        double nx = -uy, ny = ux;
+
+        int m = e - s;
+        int[] seg = new int[m];
+        double[] rho = new double[m];
+        double[] t0 = new double[m];
+        double[] t1 = new double[m];
+        boolean[] flip = new boolean[m]; // true면 (x2,y2)가 t0 쪽 끝
+        Integer[] byRho = new Integer[m];
+        for (int k = 0; k < m; k++) {
+            int i = idx.get(order[s + k]);
+            seg[k] = i;
+            double ta = ux * c[i * 4] + uy * c[i * 4 + 1];
+            double tb = ux * c[i * 4 + 2] + uy * c[i * 4 + 3];
+            flip[k] = tb < ta;
+            t0[k] = Math.min(ta, tb);
+            t1[k] = Math.max(ta, tb);
+            rho[k] = nx * (c[i * 4] + c[i * 4 + 2]) * 0.5 + ny * (c[i * 4 + 1] + c[i * 4 + 3]) * 0.5;
+            byRho[k] = k;
+        }
+        Arrays.sort(byRho, (p, q) -> Double.compare(rho[p], rho[q]));
+
+        int cs = 0;
+        while (cs < m) {
+            int ce = cs + 1;
+            while (ce < m && rho[byRho[ce]] - rho[byRho[cs]] <= tol) ce++;
+
+            Integer[] byT = Arrays.copyOfRange(byRho, cs, ce);
+            Arrays.sort(byT, (p, q) -> {
+                int r = Double.compare(t0[p], t0[q]);
+                return (r != 0) ? r : Integer.compare(seg[p], seg[q]);
+            });
+
+            int runStart = 0;
+            int lo = byT[0], hi = byT[0]; // t0 최소 / t1 최대 구성 벽
+            for (int k = 1; k <= byT.length; k++) {
+                boolean flush = (k == byT.length) || (t0[byT[k]] > t1[hi] + tol)
+                        || (t0[byT[k]] >= t1[hi] - tol && isJunction(c, seg, flip, hi, byT[k], ends));
+                if (flush) {
+                    int members = k - runStart;
+                    out.add(buildWall(src, c, seg, flip, lo, hi, members));
+                    mergedCount[0] += members - 1;
+                    if (k == byT.length) break;
+                    runStart = k;
+                    lo = byT[k];
+                    hi = byT[k];
+                } else if (t1[byT[k]] > t1[hi]) {
+                    hi = byT[k];
+                }
+            }
+            cs = ce;
+        }
+    }
+
+    /**
+     * 맞닿은 두 벽(hi의 t1 끝, next의 t0 끝) 사이 이음점에서 다른 벽이 끝나는지.
+     * 그런 점을 넘어 병합하면 T 접합이 한 벽의 내부점이 되어 그래프에서 사라짐
+     */
+    private static boolean isJunction(double[] c, int[] seg, boolean[] flip, int hi, int next,
+                                      Map<String, Integer> ends) {
+        int qp = seg[hi] * 2 + (flip[hi] ? 0 : 1);     // hi의 t1 쪽 끝점
+        int pp = seg[next] * 2 + (flip[next] ? 1 : 0); // next의 t0 쪽 끝점
+        String p = pointKey(c, pp), q = pointKey(c, qp);
+        int others = p.equals(q)
+                ? ends.getOrDefault(p, 0) - 2
+                : (ends.getOrDefault(p, 0) - 1) + (ends.getOrDefault(q, 0) - 1);
+        return others > 0;
+    }
+
+    private static Wall buildWall(List<Wall> src, double[] c, int[] seg, boolean[] flip,
+                                  int lo, int hi, int members) {
+        int li = seg[lo], hiIdx = seg[hi];
+        double x1 = flip[lo] ? c[li * 4 + 2] : c[li * 4];
+        double y1 = flip[lo] ? c[li * 4 + 3] : c[li * 4 + 1];
+        double x2 = flip[hi] ? c[hiIdx * 4] : c[hiIdx * 4 + 2];
+        double y2 = flip[hi] ? c[hiIdx * 4 + 1] : c[hiIdx * 4 + 3];
+
+        Wall proto = src.get(li);
+        if (members == 1 && proto.x1 == x1 && proto.y1 == y1 && proto.x2 == x2 && proto.y2 == y2) {
+            return proto; // 변화 없음
+        }
+        if (members == 1 && proto.x1 == x2 && proto.y1 == y2 && proto.x2 == x1 && proto.y2 == y1) {
+            return proto;
+        }
+
+        Wall w = new Wall(x1, y1, x2, y2, proto.getMaterial());
+        w.attenuationDb24 = proto.attenuationDb24;
+        w.attenuationDb5 = proto.attenuationDb5;
+        w.attenuationDb = proto.attenuationDb;
+        w.kind = proto.kind;
+        return w;
+    }
+
+    // ===== 키 =====
+
+    private static String propertyKey(Wall w) {
+        return w.getMaterial().ordinal() + ":" + Double.doubleToLongBits(w.attenuationDb24)
+                + ":" + Double.doubleToLongBits(w.attenuationDb5);
+    }
+
+    /** 끝점 p(= 벽 p / 2의 p % 2번째 끝) 좌표 키 */
+    private static String pointKey(double[] c, int p) {
+        return c[p * 2] + "," + c[p * 2 + 1];
+    }
+
+    /** 방향 무관 끝점 키 */
+    private static String segmentKey(double[] c, int i) {
+        double ax = c[i * 4], ay = c[i * 4 + 1], bx = c[i * 4 + 2], by = c[i * 4 + 3];
+        boolean swap = (bx < ax) || (bx == ax && by < ay);
+        return swap
+                ? bx + "," + by + "," + ax + "," + ay
+                : ax + "," + ay + "," + bx + "," + by;
+    }
+}
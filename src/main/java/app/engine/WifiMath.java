@@ -3,7 +3,7 @@ package app.engine;
 import app.model.Band;
 import app.model.Wall;
 import javafx.geometry.Point2D;
-import javafx.scene.image.PixelReader;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
@@ -24,41 +24,49 @@ public final class WifiMath {
     // 부동소수점 비교 오차 허용치
     private static final double EPS = 1e-9;
 
-    private static int orient(Point2D a, Point2D b, Point2D c) {
+    private static int orient(double ax, double ay, double bx, double by, double cx, double cy) {
         // cross((b-a),(c-a))
-        double v = (b.getX() - a.getX()) * (c.getY() - a.getY())
-                - (b.getY() - a.getY()) * (c.getX() - a.getX());
+        double v = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
         if (Math.abs(v) < EPS) return 0; // collinear
         return (v > 0) ? 1 : -1; // ccw : cw
     }
 
-    private static boolean onSegment(Point2D a, Point2D b, Point2D p) {
+    private static boolean onSegment(double ax, double ay, double bx, double by, double px, double py) {
         // p가 ab의 bounding box 안에 있고 collinear일 때
-        return p.getX() <= Math.max(a.getX(), b.getX()) + EPS
-                && p.getX() + EPS >= Math.min(a.getX(), b.getX())
-                && p.getY() <= Math.max(a.getY(), b.getY()) + EPS
-                && p.getY() + EPS >= Math.min(a.getY(), b.getY());
+        return px <= Math.max(ax, bx) + EPS && px + EPS >= Math.min(ax, bx)
+                && py <= Math.max(ay, by) + EPS && py + EPS >= Math.min(ay, by);
+    }
+
+    private static boolean onSegment(Point2D a, Point2D b, Point2D p) {
+        return onSegment(a.getX(), a.getY(), b.getX(), b.getY(), p.getX(), p.getY());
     }
 
     /**
      * 선분 ab와 cd가 교차하는지 여부(끝점 접촉/일직선 겹침 포함)
      */
     public static boolean segmentsIntersect(Point2D a, Point2D b, Point2D c, Point2D d) {
-        int o1 = orient(a, b, c);
-        int o2 = orient(a, b, d);
-        int o3 = orient(c, d, a);
-        int o4 = orient(c, d, b);
+        return segmentsIntersect(a.getX(), a.getY(), b.getX(), b.getY(), c.getX(), c.getY(), d.getX(), d.getY());
+    }
+
+    /** segmentsIntersect의 좌표 버전(객체 할당 없음, 벽 루프용) */
+    public static boolean segmentsIntersect(double ax, double ay, double bx, double by,
+                                            double cx, double cy, double dx, double dy) {
+        // 바운딩 박스가 안 겹치면 바로 탈락(대부분의 벽)
+        if (Math.max(ax, bx) + EPS < Math.min(cx, dx) || Math.max(cx, dx) + EPS < Math.min(ax, bx)) return false;
+        if (Math.max(ay, by) + EPS < Math.min(cy, dy) || Math.max(cy, dy) + EPS < Math.min(ay, by)) return false;
+        int o1 = orient(ax, ay, bx, by, cx, cy);
+        int o2 = orient(ax, ay, bx, by, dx, dy);
+        int o3 = orient(cx, cy, dx, dy, ax, ay);
+        int o4 = orient(cx, cy, dx, dy, bx, by);
 
         // 일반적인 교차
         if (o1 != o2 && o3 != o4) return true;
 
         // 특수 케이스: collinear + onSegment
-        if (o1 == 0 && onSegment(a, b, c)) return true;
-        if (o2 == 0 && onSegment(a, b, d)) return true;
-        if (o3 == 0 && onSegment(c, d, a)) return true;
-        if (o4 == 0 && onSegment(c, d, b)) return true;
-
-        return false;
+        if (o1 == 0 && onSegment(ax, ay, bx, by, cx, cy)) return true;
+        if (o2 == 0 && onSegment(ax, ay, bx, by, dx, dy)) return true;
+        if (o3 == 0 && onSegment(cx, cy, dx, dy, ax, ay)) return true;
+        return o4 == 0 && onSegment(cx, cy, dx, dy, bx, by);
     }
 
     /**
@@ -179,20 +187,41 @@ public final class WifiMath {
                                        Wall ignoreWall,
                                        Band band) {
         double sum = 0.0;
-        Point2D a = new Point2D(ax, ay);
-        Point2D b = new Point2D(bx, by);
         for (Wall w : walls) {
             if (w == null) continue;
             if (ignoreWall != null && w == ignoreWall) continue;
-            if (segmentsIntersect(a, b,
-                    new Point2D(w.x1, w.y1),
-                    new Point2D(w.x2, w.y2))) {
+            if (segmentsIntersect(ax, ay, bx, by, w.x1, w.y1, w.x2, w.y2)) {
                 sum += w.attenuationDb(band);
             }
         }
         return sum;
     }
 
+    /**
+     * 전 밴드 벽 감쇠를 한 번의 교차 검사로 합산.
+     * out[band.ordinal()]에 더함(호출 측에서 0으로 초기화).
+     * 교차 판정은 밴드와 무관하므로 밴드별 wallLossAlong을 여러 번 부르는 것보다 저렴.
+     * @return 관통한 벽 수(wallCrossCount와 같은 값)
+     */
+    public static int wallLossAlongBands(double ax, double ay,
+                                          double bx, double by,
+                                          java.util.List<Wall> walls,
+                                          Wall ignoreWall,
+                                          double[] out) {
+        int cnt = 0;
+        for (Wall w : walls) {
+            if (w == null) continue;
+            if (ignoreWall != null && w == ignoreWall) continue;
+            if (segmentsIntersect(ax, ay, bx, by, w.x1, w.y1, w.x2, w.y2)) {
+                for (Band band : BANDS) out[band.ordinal()] += w.attenuationDb(band);
+                cnt++;
+            }
+        }
+        return cnt;
+    }
+
+    private static final Band[] BANDS = Band.values();
+
     /**
      * 선분(a,b) 경로가 벽을 몇 개 관통하는지(디버깅/회절 후보 필터링에 유용)
      */
@@ -201,13 +230,9 @@ public final class WifiMath {
                                      java.util.List<Wall> walls,
                                      Wall ignoreWall) {
         int cnt = 0;
-        Point2D a = new Point2D(ax, ay);
-        Point2D b = new Point2D(bx, by);
         for (Wall w : walls) {
             if (ignoreWall != null && w == ignoreWall) continue;
-            if (segmentsIntersect(a, b,
-                    new Point2D(w.x1, w.y1),
-                    new Point2D(w.x2, w.y2))) {
+            if (segmentsIntersect(ax, ay, bx, by, w.x1, w.y1, w.x2, w.y2)) {
                 cnt++;
             }
         }
@@ -223,13 +248,21 @@ public final class WifiMath {
         public final double extraLossDb; // 반사/회절 등 추가 손실
         public final Point2D via; // 반사점/코너점 등(없으면 null)
         public final Wall viaWall; // 반사에 사용된 벽(없으면 null)
+        /** 밴드별 벽 감쇠(*Bands 빌더로 만든 경우만, 아니면 null). wallLossDb는 2.4GHz 값 */
+        public final double[] bandWallLossDb;
 
         public Path(double lengthMeters, double wallLossDb, double extraLossDb, Point2D via, Wall viaWall) {
+            this(lengthMeters, wallLossDb, extraLossDb, via, viaWall, null);
+        }
+
+        public Path(double lengthMeters, double wallLossDb, double extraLossDb, Point2D via, Wall viaWall,
+                    double[] bandWallLossDb) {
             this.lengthMeters = lengthMeters;
             this.wallLossDb = wallLossDb;
             this.extraLossDb = extraLossDb;
             this.via = via;
             this.viaWall = viaWall;
+            this.bandWallLossDb = bandWallLossDb;
         }
     }
 
@@ -286,6 +319,36 @@ public final class WifiMath {
         return new Path(lenM, wallLossDb, reflectionLossDb, p, wall);
     }
 
+    /**
+     * buildSingleBounceReflection과 같은 경로를 전 밴드 벽 감쇠(bandWallLossDb)와 함께 생성.
+     * 반사점/길이 계산과 벽 교차 검사는 1번만 수행.
+     */
+    public static Path buildSingleBounceReflectionBands(Point2D ap,
+                                                        Point2D rx,
+                                                        Wall wall,
+                                                        java.util.List<Wall> walls,
+                                                        double scaleMPerPx,
+                                                        double reflectionLossDb) {
+        Point2D w1 = new Point2D(wall.x1, wall.y1);
+        Point2D w2 = new Point2D(wall.x2, wall.y2);
+
+        Point2D apMirror = reflectPointOverLine(ap, w1, w2);
+        Point2D p = segmentIntersectionPoint(apMirror, rx, w1, w2);
+        if (p == null) return null;
+
+        double lenM = (ap.distance(p) + p.distance(rx)) * scaleMPerPx;
+
+        // 길이 컷을 벽 검사보다 먼저(결과는 같고 버릴 경로의 교차 검사를 생략)
+        double losM = ap.distance(rx) * scaleMPerPx;
+        if (lenM > losM * 2.5) return null;
+
+        double[] loss = new double[BANDS.length];
+        wallLossAlongBands(ap.getX(), ap.getY(), p.getX(), p.getY(), walls, wall, loss);
+        wallLossAlongBands(p.getX(), p.getY(), rx.getX(), rx.getY(), walls, wall, loss);
+
+        return new Path(lenM, loss[Band.GHZ_24.ordinal()], reflectionLossDb, p, wall, loss);
+    }
+
     /**
      * 1차 회절 경로 (코너 기반 근사)
      *
@@ -328,19 +391,33 @@ public final class WifiMath {
 
     // ===== 색상 매핑 및 픽셀 유틸 =====
 
+    // [t, R, G, B]
+    private static final double[][] COLOR_STOPS = {
+            {0.00, 0,   160, 0},    // Green
+            {0.50, 255, 235, 0},    // Yellow
+            {1.00, 230, 40,  20}    // Red
+    };
+
+    // 히트맵 오버레이 불투명도(0.55)
+    private static final int HEATMAP_ALPHA = (int) Math.round(0.55 * 255);
+
     /**
      * RSSI(dBm) → 강(빨강) ~ 중(노랑) ~ 약(초록) 색상 매핑
      */
     public static Color rssiToColor(double rssi, double vmin, double vmax) {
+        int argb = rssiToArgb(rssi, vmin, vmax);
+        return Color.rgb((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, 0.55);
+    }
+
+    /**
+     * 범례 색 매핑 본체: ARGB int로 반환(알파 0.55 고정, rssiToColor도 이 값을 씀).
+     * 대량 픽셀 버퍼 채우기용.
+     */
+    public static int rssiToArgb(double rssi, double vmin, double vmax) {
         double t = (rssi - vmin) / (vmax - vmin);
         t = Math.max(0.0, Math.min(1.0, t));
 
-        // [t, R, G, B]
-        double[][] stops = {
-                {0.00, 0,   160, 0},    // Green
-                {0.50, 255, 235, 0},    // Yellow
-                {1.00, 230, 40,  20}    // Red
-        };
+        double[][] stops = COLOR_STOPS;
 
         int i = 0;
         while (i < stops.length - 1 && t > stops[i + 1][0]) {
@@ -351,11 +428,41 @@ public final class WifiMath {
         double t1 = stops[i + 1][0];
         double u = (t1 == t0) ? 0.0 : (t - t0) / (t1 - t0);
 
-        double r = stops[i][1] + u * (stops[i + 1][1] - stops[i][1]);
-        double g = stops[i][2] + u * (stops[i + 1][2] - stops[i][2]);
-        double b = stops[i][3] + u * (stops[i + 1][3] - stops[i][3]);
+        int r = (int) Math.round(stops[i][1] + u * (stops[i + 1][1] - stops[i][1]));
+        int g = (int) Math.round(stops[i][2] + u * (stops[i + 1][2] - stops[i][2]));
+        int b = (int) Math.round(stops[i][3] + u * (stops[i + 1][3] - stops[i][3]));
 
-        return new Color(r / 255.0, g / 255.0, b / 255.0, 0.55);
+        return (HEATMAP_ALPHA << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * RssiField → 히트맵 이미지(블록 단위 채움, 신호 없는 블록은 투명).
+     * 픽셀 버퍼를 한 번에 채운 뒤 setPixels 1회로 업로드.
+     */
+    public static WritableImage toImage(RssiField field, double vmin, double vmax) {
+        int w = field.width;
+        int h = field.height;
+        int step = field.gridStepPx;
+        int[] argb = new int[w * h];
+
+        for (int by = 0; by < field.rows; by++) {
+            int y0 = by * step;
+            int y1 = Math.min(y0 + step, h);
+            for (int bx = 0; bx < field.cols; bx++) {
+                float v = field.get(bx, by);
+                if (Float.isNaN(v)) continue;
+                int c = rssiToArgb(v, vmin, vmax);
+                int x0 = bx * step;
+                int x1 = Math.min(x0 + step, w);
+                for (int y = y0; y < y1; y++) {
+                    java.util.Arrays.fill(argb, y * w + x0, y * w + x1, c);
+                }
+            }
+        }
+
+        WritableImage img = new WritableImage(w, h);
+        img.getPixelWriter().setPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), argb, 0, w);
+        return img;
     }
 
     /**
@@ -384,20 +491,75 @@ public final class WifiMath {
 
         int w = (int) src.getWidth();
         int h = (int) src.getHeight();
-        WritableImage tmp = new WritableImage(w, h);
+        int[] argb = new int[w * h];
+        src.getPixelReader().getPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), argb, 0, w);
+
+        int[] out = boxBlur(argb, w, h, radius);
+
+        WritableImage dst = new WritableImage(w, h);
+        dst.getPixelWriter().setPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), out, 0, w);
+        return dst;
+    }
+
+    /**
+     * 관심 영역만 흐림(mask == null이면 boxBlur(src, radius)와 같음).
+     * 영역 밖 블록은 색이 없으므로(투명 0) 안쪽 블록 범위 ± radius만 흐려도 그 안의 결과는 전체를 흐린 것과 같고,
+     * 흐린 뒤 영역 밖 블록으로 번진 색은 지움
+     */
+    public static WritableImage boxBlur(WritableImage src, int radius, BlockMask mask) {
+        if (mask == null) return boxBlur(src, radius);
+        if (radius <= 0) return src;
+
+        int w = (int) src.getWidth();
+        int h = (int) src.getHeight();
         WritableImage dst = new WritableImage(w, h);
-        PixelReader pr = src.getPixelReader();
-        PixelWriter pwTmp = tmp.getPixelWriter();
-        PixelWriter pwDst = dst.getPixelWriter();
+        int[] b = mask.bounds();
+        if (b == null) return dst;
+
+        int step = mask.gridStepPx;
+        int x0 = Math.max(0, b[0] * step - radius);
+        int y0 = Math.max(0, b[1] * step - radius);
+        int x1 = Math.min(w, b[2] * step + radius);
+        int y1 = Math.min(h, b[3] * step + radius);
+        int sw = x1 - x0;
+        int sh = y1 - y0;
+        if (sw <= 0 || sh <= 0) return dst;
+
+        int[] argb = new int[sw * sh];
+        src.getPixelReader().getPixels(x0, y0, sw, sh, PixelFormat.getIntArgbInstance(), argb, 0, sw);
+        int[] out = boxBlur(argb, sw, sh, radius);
+
+        for (int y = 0; y < sh; y++) {
+            int by = (y0 + y) / step;
+            int row = y * sw;
+            for (int x = 0; x < sw; x++) {
+                if (!mask.get((x0 + x) / step, by)) out[row + x] = 0;
+            }
+        }
+
+        dst.getPixelWriter().setPixels(x0, y0, sw, sh, PixelFormat.getIntArgbInstance(), out, 0, sw);
+        return dst;
+    }
+
+    /**
+     * ARGB 버퍼(w x h, 행 우선) box blur. 이미지 버전과 같은 계산(가장자리는 끝 픽셀 반복).
+     * 출력 행 y는 입력 행 [y - radius, y + radius]만 읽으므로
+     * 위아래로 radius 행씩 더 붙인 띠를 흐린 뒤 가운데만 쓰면 전체를 흐린 결과와 같음.
+     */
+    public static int[] boxBlur(int[] src, int w, int h, int radius) {
+        if (radius <= 0) return src;
+
+        int[] tmp = new int[w * h];
+        int[] dst = new int[w * h];
+        int win = radius * 2 + 1;
 
         // 수평 방향
         for (int y = 0; y < h; y++) {
+            int row = y * w;
             double a = 0, r = 0, g = 0, b = 0;
-            int win = radius * 2 + 1;
 
             for (int x = -radius; x <= radius; x++) {
-                int xx = Math.min(w - 1, Math.max(0, x));
-                int argb = pr.getArgb(xx, y);
+                int argb = src[row + Math.min(w - 1, Math.max(0, x))];
                 a += (argb >>> 24) & 0xFF;
                 r += (argb >>> 16) & 0xFF;
                 g += (argb >>> 8) & 0xFF;
@@ -405,16 +567,10 @@ public final class WifiMath {
             }
 
             for (int x = 0; x < w; x++) {
-                int outA = (int) Math.round(a / win);
-                int outR = (int) Math.round(r / win);
-                int outG = (int) Math.round(g / win);
-                int outB = (int) Math.round(b / win);
-                pwTmp.setArgb(x, y, (outA << 24) | (outR << 16) | (outG << 8) | outB);
+                tmp[row + x] = averageArgb(a, r, g, b, win);
 
-                int xOut = Math.max(0, x - radius);
-                int xIn  = Math.min(w - 1, x + radius + 1);
-                int argbOut = pr.getArgb(xOut, y);
-                int argbIn  = pr.getArgb(xIn, y);
+                int argbOut = src[row + Math.max(0, x - radius)];
+                int argbIn  = src[row + Math.min(w - 1, x + radius + 1)];
 
                 a += ((argbIn >>> 24) & 0xFF) - ((argbOut >>> 24) & 0xFF);
                 r += ((argbIn >>> 16) & 0xFF) - ((argbOut >>> 16) & 0xFF);
@@ -424,14 +580,11 @@ public final class WifiMath {
         }
 
         // 수직 방향
-        PixelReader pr2 = tmp.getPixelReader();
         for (int x = 0; x < w; x++) {
             double a = 0, r = 0, g = 0, b = 0;
-            int win = radius * 2 + 1;
 
             for (int y = -radius; y <= radius; y++) {
-                int yy = Math.min(h - 1, Math.max(0, y));
-                int argb = pr2.getArgb(x, yy);
+                int argb = tmp[Math.min(h - 1, Math.max(0, y)) * w + x];
                 a += (argb >>> 24) & 0xFF;
                 r += (argb >>> 16) & 0xFF;
                 g += (argb >>> 8) & 0xFF;
@@ -439,16 +592,10 @@ public final class WifiMath {
             }
 
             for (int y = 0; y < h; y++) {
-                int outA = (int) Math.round(a / win);
-                int outR = (int) Math.round(r / win);
-                int outG = (int) Math.round(g / win);
-                int outB = (int) Math.round(b / win);
-                pwDst.setArgb(x, y, (outA << 24) | (outR << 16) | (outG << 8) | outB);
+                dst[y * w + x] = averageArgb(a, r, g, b, win);
 
-                int yOut = Math.max(0, y - radius);
-                int yIn  = Math.min(h - 1, y + radius + 1);
-                int argbOut = pr2.getArgb(x, yOut);
-                int argbIn  = pr2.getArgb(x, yIn);
+                int argbOut = tmp[Math.max(0, y - radius) * w + x];
+                int argbIn  = tmp[Math.min(h - 1, y + radius + 1) * w + x];
 
                 a += ((argbIn >>> 24) & 0xFF) - ((argbOut >>> 24) & 0xFF);
                 r += ((argbIn >>> 16) & 0xFF) - ((argbOut >>> 16) & 0xFF);
@@ -460,6 +607,14 @@ public final class WifiMath {
         return dst;
     }
 
+    private static int averageArgb(double a, double r, double g, double b, int win) {
+        int outA = (int) Math.round(a / win);
+        int outR = (int) Math.round(r / win);
+        int outG = (int) Math.round(g / win);
+        int outB = (int) Math.round(b / win);
+        return (outA << 24) | (outR << 16) | (outG << 8) | outB;
+    }
+
     // ===== 경로손실 모델 =====
 
     /**
@@ -471,16 +626,23 @@ public final class WifiMath {
      * - n    : 경로손실 지수 (1.6 ~ 4 정도)
      */
     public static double pathLossDb(double dMeters, double fGhz, double n) {
-        // d는 최소 0.1m 정도로 바닥 깔기 (너 nearFieldFloorM도 별도로 쓰고 있으니 이건 보호용)
-        double d = Math.max(dMeters, 0.1);
+        // 로그-거리 경로손실 모델: PL(d) = PL0 + 10 n log10(d / d0), d0 = 1m
+        return pathLossRefDb(fGhz) + pathLossDistanceDb(dMeters, n);
+    }
 
+    /**
+     * pathLossDb의 주파수 항: 1m 기준 FSPL = 32.44 + 20log10(fMHz) - 60.
+     * 밴드마다 상수이므로 경로 여러 개를 계산할 때는 미리 구해 둘 것.
+     */
+    public static double pathLossRefDb(double fGhz) {
         double fMHz = fGhz * 1000.0;
+        return 32.44 + 20 * Math.log10(fMHz) - 60.0;
+    }
 
-        // 1m 기준 FSPL (d0 = 1m)
-        // FSPL(1m) = 32.44 + 20log10(fMHz) - 60
-        double pl0 = 32.44 + 20 * Math.log10(fMHz) - 60.0;
-
-        // 로그-거리 경로손실 모델: PL(d) = PL0 + 10 n log10(d / d0), d0 = 1m
-        return pl0 + 10.0 * n * Math.log10(d / 1.0);
+    /** pathLossDb의 거리 항: 10 n log10(d), 밴드와 무관 */
+    public static double pathLossDistanceDb(double dMeters, double n) {
+        // d는 최소 0.1m 정도로 바닥 깔기 (너 nearFieldFloorM도 별도로 쓰고 있으니 이건 보호용)
+        double d = Math.max(dMeters, 0.1);
+        return 10.0 * n * Math.log10(d / 1.0);
     }
 }
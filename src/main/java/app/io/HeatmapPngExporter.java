@@ -0,0 +1,293 @@
+package app.io;
+
+import app.engine.RssiField;
+import app.engine.WifiMath;
+import app.model.EnvironmentSnapshot;
+import app.model.Wall;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 고해상도 PNG 내보내기(평면도 + 히트맵 + 벽 + AP를 띠 단위로 합성).
+ * - 출력 = 캔버스(평면도 px) x scale. 띠(stripRows 행)마다 Java2D로 그려 PngStreamWriter로 바로 기록
+ *   → 메모리는 출력 크기와 무관하게 "스레드 수 x 2개 띠" 정도로 제한
+ * - 띠 렌더/필터/압축은 threads개 스레드에서 병렬, 파일 기록만 위에서부터 순서대로
+ * - 히트맵 스무딩은 화면과 같은 box blur(반경 x scale)를 위아래 반경만큼 더 그린 띠에 적용 → 띠 경계 없음
+ * - 화면(CanvasView.render)과 같은 순서/색: 평면도 → 히트맵 → 벽(재질 색) → AP(원 + 이름)
+ */
+public final class HeatmapPngExporter {
+
+    /** 내보내기 설정 */
+    public static final class Options {
+        /** 출력 배율(캔버스 px 대비) */
+        public double scale = 3.0;
+        /** 띠 높이(출력 px) */
+        public int stripRows = 64;
+        /** 렌더/압축 스레드 수 */
+        public int threads = Runtime.getRuntime().availableProcessors();
+        /** 띠마다 독립 압축(병렬). false면 하나의 deflate 스트림(순차, 조금 더 작음) */
+        public boolean parallelDeflate = true;
+
+        public double legendMinDbm = -96;
+        public double legendMaxDbm = -10;
+        /** 캔버스 px 기준 스무딩 반경(AppState.smoothRadiusPx) */
+        public int smoothRadiusPx = 0;
+    }
+
+    /** 내보내기 결과 */
+    public static final class Result {
+        public final int width;
+        public final int height;
+        public final int strips;
+        public final long bytes;
+        public final long millis;
+
+        Result(int width, int height, int strips, long bytes, long millis) {
+            this.width = width;
+            this.height = height;
+            this.strips = strips;
+            this.bytes = bytes;
+            this.millis = millis;
+        }
+    }
+
+    private static final Color AP_FILL = new Color(30, 144, 255); // DODGERBLUE
+
+    private final BufferedImage floorplan;
+    private final RssiField field;
+    private final EnvironmentSnapshot snap;
+    private final Options opt;
+
+    private final int outWidth;
+    private final int outHeight;
+    private final int blurRadius;
+    private final int[] blockArgb; // 블록별 색(신호 없음 = 0, 투명)
+    private final Color[] wallColors;
+
+    private HeatmapPngExporter(int baseWidth, int baseHeight, BufferedImage floorplan, RssiField field,
+                               EnvironmentSnapshot snap, Options opt) {
+        this.floorplan = floorplan;
+        this.field = field;
+        this.snap = snap;
+        this.opt = opt;
+
+        this.outWidth = Math.max(1, (int) Math.round(baseWidth * opt.scale));
+        this.outHeight = Math.max(1, (int) Math.round(baseHeight * opt.scale));
+        this.blurRadius = (int) Math.round(Math.max(0, opt.smoothRadiusPx) * opt.scale);
+
+        if (field != null) {
+            float[] v = field.values();
+            blockArgb = new int[v.length];
+            for (int i = 0; i < v.length; i++) {
+                if (!Float.isNaN(v[i])) blockArgb[i] = WifiMath.rssiToArgb(v[i], opt.legendMinDbm, opt.legendMaxDbm);
+            }
+        } else {
+            blockArgb = null;
+        }
+
+        wallColors = new Color[snap.wallCount()];
+        for (int i = 0; i < wallColors.length; i++) {
+            Wall w = snap.walls().get(i);
+            Color c = Color.BLACK;
+            try {
+                if (w.getMaterial() != null) c = Color.decode(w.getMaterial().colorHex());
+            } catch (NumberFormatException ignored) {}
+            wallColors[i] = c;
+        }
+    }
+
+    /**
+     * (baseWidth x baseHeight) 캔버스를 opt.scale 배로 file에 저장(임시 파일에 쓴 뒤 원자적 교체).
+     * @param floorplan 평면도(null이면 흰 배경)
+     * @param field 히트맵 격자(null이면 히트맵 없이)
+     */
+    public static Result export(Path file,
+                                int baseWidth,
+                                int baseHeight,
+                                BufferedImage floorplan,
+                                RssiField field,
+                                EnvironmentSnapshot snap,
+                                Options opt) throws IOException {
+        long t0 = System.nanoTime();
+        HeatmapPngExporter ex = new HeatmapPngExporter(baseWidth, baseHeight, floorplan, field, snap, opt);
+
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        int strips;
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                strips = ex.write(out);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return new Result(ex.outWidth, ex.outHeight, strips, Files.size(file),
+                (System.nanoTime() - t0) / 1_000_000L);
+    }
+
+    /** 띠 작업을 스레드 수 x 2개까지만 앞서 실행하고, 완료되는 대로 순서대로 기록 */
+    private int write(OutputStream out) throws IOException {
+        PngStreamWriter png = new PngStreamWriter(out, outWidth, outHeight, opt.parallelDeflate);
+        int rowsPer = Math.max(1, opt.stripRows);
+        int strips = (outHeight + rowsPer - 1) / rowsPer;
+        int threads = Math.max(1, Math.min(opt.threads, strips));
+
+        AtomicInteger ids = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "png-export-" + ids.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            ArrayDeque<Future<PngStreamWriter.Strip>> inFlight = new ArrayDeque<>();
+            int next = 0;
+            while (next < strips || !inFlight.isEmpty()) {
+                while (next < strips && inFlight.size() < threads * 2) {
+                    int y0 = next * rowsPer;
+                    int rows = Math.min(rowsPer, outHeight - y0);
+                    boolean last = (next == strips - 1);
+                    inFlight.add(pool.submit(() -> png.encodeStrip(renderStrip(y0, rows), rows, last)));
+                    next++;
+                }
+                png.writeStrip(await(inFlight.poll()));
+            }
+            png.finish();
+        } finally {
+            pool.shutdownNow();
+        }
+        return strips;
+    }
+
+    private static PngStreamWriter.Strip await(Future<PngStreamWriter.Strip> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("PNG 내보내기 중단", e);
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof RuntimeException re) throw re;
+            if (c instanceof Error err) throw err;
+            throw new IOException(c);
+        }
+    }
+
+    // ===== 띠 렌더 =====
+
+    /** 출력 행 [y0, y0 + rows)를 그린 RGB 버퍼 */
+    private int[] renderStrip(int y0, int rows) {
+        BufferedImage img = new BufferedImage(outWidth, rows, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, outWidth, rows);
+
+            g.translate(0, -y0);
+            AffineTransform device = g.getTransform();
+            AffineTransform canvas = new AffineTransform(device);
+            canvas.scale(opt.scale, opt.scale);
+
+            // 평면도(캔버스 px = 평면도 px)
+            if (floorplan != null) {
+                g.setTransform(canvas);
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(floorplan, 0, 0, null);
+            }
+
+            // 히트맵(출력 해상도에서 채우고 흐림)
+            if (field != null) {
+                g.setTransform(device);
+                g.drawImage(heatmapStrip(y0, rows), 0, y0, null);
+            }
+
+            g.setTransform(canvas);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+
+            // 벽: 띠 범위(캔버스 좌표)와 겹치는 것만
+            double top = y0 / opt.scale - 2.0, bottom = (y0 + rows) / opt.scale + 2.0;
+            g.setStroke(new BasicStroke(2f, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER));
+            for (int i = 0; i < wallColors.length; i++) {
+                Wall w = snap.walls().get(i);
+                if (Math.max(w.y1, w.y2) < top || Math.min(w.y1, w.y2) > bottom) continue;
+                g.setColor(wallColors[i]);
+                g.draw(new Line2D.Double(w.x1, w.y1, w.x2, w.y2));
+            }
+
+            // AP(이름 라벨이 위로 나가므로 여유를 둠)
+            g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+            double r = 6;
+            for (int i = 0; i < snap.apCount(); i++) {
+                if (!snap.apEnabled(i)) continue;
+                double x = snap.apX(i), y = snap.apY(i);
+                if (y + r + 2 < top || y - r - 20 > bottom) continue;
+                Ellipse2D dot = new Ellipse2D.Double(x - r, y - r, 2 * r, 2 * r);
+                g.setColor(AP_FILL);
+                g.fill(dot);
+                g.setColor(Color.WHITE);
+                g.setStroke(new BasicStroke(2f));
+                g.draw(dot);
+                if (snap.apName(i) != null) {
+                    g.setColor(Color.BLACK);
+                    g.drawString(snap.apName(i), (float) (x + r + 4), (float) (y - r - 2));
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+    }
+
+    /** 히트맵 띠(ARGB). 스무딩 반경만큼 위아래 행을 더 채워 흐린 뒤 가운데만 사용 */
+    private BufferedImage heatmapStrip(int y0, int rows) {
+        int h0 = Math.max(0, y0 - blurRadius);
+        int h1 = Math.min(outHeight, y0 + rows + blurRadius);
+        int[] argb = new int[outWidth * (h1 - h0)];
+
+        int[] col = new int[outWidth]; // 출력 x → 블록 열(범위 밖 -1)
+        for (int x = 0; x < outWidth; x++) {
+            int px = (int) (x / opt.scale);
+            col[x] = (px < field.width) ? px / field.gridStepPx : -1;
+        }
+
+        for (int y = h0; y < h1; y++) {
+            int py = (int) (y / opt.scale);
+            if (py >= field.height) continue;
+            int rowBase = (py / field.gridStepPx) * field.cols;
+            int o = (y - h0) * outWidth;
+            for (int x = 0; x < outWidth; x++) {
+                if (col[x] >= 0) argb[o + x] = blockArgb[rowBase + col[x]];
+            }
+        }
+
+        if (blurRadius > 0) argb = WifiMath.boxBlur(argb, outWidth, h1 - h0, blurRadius);
+
+        BufferedImage heat = new BufferedImage(outWidth, rows, BufferedImage.TYPE_INT_ARGB);
+        int[] dst = ((DataBufferInt) heat.getRaster().getDataBuffer()).getData();
+        System.arraycopy(argb, (y0 - h0) * outWidth, dst, 0, outWidth * rows);
+        return heat;
+    }
+}
@@ -0,0 +1,221 @@
+package app.io;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 행 단위로 흘려 쓰는 PNG 인코더(8비트 RGB, 비인터레이스).
+ * - 띠(strip) 단위로 필터 + 압축해 IDAT 청크로 바로 기록 → 전체 이미지를 메모리에 두지 않음
+ * - 필터: 띠 첫 행은 Sub, 나머지는 Paeth → 띠끼리 의존성이 없어 병렬 처리 가능
+ * - 병렬 압축: 띠마다 독립 raw deflate(SYNC_FLUSH, 마지막 띠만 FINISH)를 이어 붙이고
+ *   zlib 헤더/Adler-32(띠별 값 결합)를 직접 씀. 띠 경계에서 사전이 끊겨 압축률은 약간 손해
+ *
+ * 사용 순서: 생성(시그니처 + IHDR) → encodeStrip(병렬 가능) → 위에서부터 writeStrip → finish(IEND)
+ */
+public final class PngStreamWriter {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final int FILTER_SUB = 1;
+    private static final int FILTER_PAETH = 4;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final boolean parallelDeflate;
+
+    /** 순차 압축일 때 하나의 zlib 스트림 */
+    private final Deflater deflater;
+    private final byte[] buf = new byte[1 << 16];
+
+    private long adler = 1L;
+    private int rowsWritten;
+
+    /** 띠 1개를 필터 + (병렬 모드면) 압축한 결과 */
+    public static final class Strip {
+        final int rows;
+        final byte[] data;   // 병렬: raw deflate 조각, 순차: 필터된 원본 행
+        final int length;
+        final long adler;    // 필터된 원본 행의 Adler-32
+        final int rawBytes;
+
+        Strip(int rows, byte[] data, int length, long adler, int rawBytes) {
+            this.rows = rows;
+            this.data = data;
+            this.length = length;
+            this.adler = adler;
+            this.rawBytes = rawBytes;
+        }
+    }
+
+    public PngStreamWriter(OutputStream out, int width, int height, boolean parallelDeflate) throws IOException {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("size " + width + "x" + height);
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        this.parallelDeflate = parallelDeflate;
+        this.deflater = parallelDeflate ? null : new Deflater(Deflater.DEFAULT_COMPRESSION);
+
+        this.out.write(SIGNATURE);
+        ByteBuffer ihdr = ByteBuffer.allocate(13)
+                .putInt(width)
+                .putInt(height)
+                .put((byte) 8)  // bit depth
+                .put((byte) 2)  // color type: RGB
+                .put((byte) 0)  // compression
+                .put((byte) 0)  // filter
+                .put((byte) 0); // interlace
+        writeChunk("IHDR", ihdr.array(), 0, 13);
+
+        if (parallelDeflate) {
+            // zlib 헤더(CM=8, CINFO=7, FLEVEL=2) - 병렬 모드에서는 직접 씀
+            byte[] zh = {0x78, (byte) 0x9C};
+            writeChunk("IDAT", zh, 0, zh.length);
+        }
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public boolean isParallelDeflate() { return parallelDeflate; }
+
+    /**
+     * ARGB(알파 무시) 띠를 필터하고, 병렬 모드면 압축까지 수행. 어느 스레드에서나 호출 가능.
+     * @param last 이미지 마지막 띠 여부(병렬 모드에서 FINISH 여부)
+     */
+    public Strip encodeStrip(int[] argb, int rows, boolean last) {
+        int stride = width * 3 + 1;
+        int rawBytes = rows * stride;
+        byte[] raw = new byte[rawBytes];
+        byte[] prev = new byte[width * 3];
+        byte[] cur = new byte[width * 3];
+
+        for (int y = 0; y < rows; y++) {
+            int src = y * width;
+            for (int x = 0, i = 0; x < width; x++) {
+                int p = argb[src + x];
+                cur[i++] = (byte) (p >>> 16);
+                cur[i++] = (byte) (p >>> 8);
+                cur[i++] = (byte) p;
+            }
+            int o = y * stride;
+            if (y == 0) filterSub(cur, raw, o);
+            else filterPaeth(cur, prev, raw, o);
+
+            byte[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+
+        Adler32 a = new Adler32();
+        a.update(raw, 0, rawBytes);
+        if (!parallelDeflate) return new Strip(rows, raw, rawBytes, a.getValue(), rawBytes);
+
+        Deflater d = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            d.setInput(raw, 0, rawBytes);
+            if (last) d.finish();
+            byte[] z = new byte[rawBytes / 2 + 64];
+            int n = 0;
+            while (true) {
+                if (n == z.length) z = Arrays.copyOf(z, z.length * 2);
+                n += d.deflate(z, n, z.length - n, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                // SYNC_FLUSH는 출력 버퍼가 남으면 완료, FINISH는 finished()까지
+                if (last ? d.finished() : n < z.length) break;
+            }
+            return new Strip(rows, z, n, a.getValue(), rawBytes);
+        } finally {
+            d.end();
+        }
+    }
+
+    /** encodeStrip 결과를 위에서부터 순서대로 기록(한 스레드에서만 호출) */
+    public void writeStrip(Strip s) throws IOException {
+        if (rowsWritten + s.rows > height) throw new IllegalStateException("rows exceed image height");
+        rowsWritten += s.rows;
+
+        if (parallelDeflate) {
+            writeChunk("IDAT", s.data, 0, s.length);
+            adler = adler32Combine(adler, s.adler, s.rawBytes);
+            return;
+        }
+
+        deflater.setInput(s.data, 0, s.length);
+        if (rowsWritten == height) deflater.finish();
+        while (true) {
+            int n = deflater.deflate(buf, 0, buf.length);
+            if (n > 0) writeChunk("IDAT", buf, 0, n);
+            if (rowsWritten == height ? deflater.finished() : deflater.needsInput()) break;
+        }
+    }
+
+    /** 남은 청크(Adler-32, IEND) 기록. 모든 행을 쓴 뒤에만 호출 */
+    public void finish() throws IOException {
+        if (rowsWritten != height) throw new IllegalStateException("rows " + rowsWritten + " != " + height);
+        if (parallelDeflate) {
+            byte[] t = {(byte) (adler >>> 24), (byte) (adler >>> 16), (byte) (adler >>> 8), (byte) adler};
+            writeChunk("IDAT", t, 0, t.length);
+        } else {
+            deflater.end();
+        }
+        writeChunk("IEND", new byte[0], 0, 0);
+        out.flush();
+    }
+
+    // ===== 필터 =====
+
+    private static void filterSub(byte[] cur, byte[] raw, int o) {
+        raw[o++] = FILTER_SUB;
+        for (int i = 0; i < cur.length; i++) {
+            int left = (i >= 3) ? cur[i - 3] : 0;
+            raw[o++] = (byte) (cur[i] - left);
+        }
+    }
+
+    private static void filterPaeth(byte[] cur, byte[] prev, byte[] raw, int o) {
+        raw[o++] = FILTER_PAETH;
+        for (int i = 0; i < cur.length; i++) {
+            int a = (i >= 3) ? cur[i - 3] & 0xFF : 0;
+            int b = prev[i] & 0xFF;
+            int c = (i >= 3) ? prev[i - 3] & 0xFF : 0;
+            int p = a + b - c;
+            int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+            int pred = (pa <= pb && pa <= pc) ? a : (pb <= pc) ? b : c;
+            raw[o++] = (byte) (cur[i] - pred);
+        }
+    }
+
+    // ===== 청크/체크섬 =====
+
+    private void writeChunk(String type, byte[] data, int off, int len) throws IOException {
+        byte[] t = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(t);
+        crc.update(data, off, len);
+        out.writeInt(len);
+        out.write(t);
+        out.write(data, off, len);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /** zlib adler32_combine: adler1(앞) + adler2(뒤, 길이 len2) → 이어 붙인 데이터의 Adler-32 */
+    static long adler32Combine(long adler1, long adler2, long len2) {
+        final long base = 65521;
+        long rem = len2 % base;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (rem * sum1) % base;
+        sum1 += (adler2 & 0xFFFF) + base - 1;
+        sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF) + base - rem;
+        if (sum1 >= base) sum1 -= base;
+        if (sum1 >= base) sum1 -= base;
+        if (sum2 >= (base << 1)) sum2 -= (base << 1);
+        if (sum2 >= base) sum2 -= base;
+        return sum1 | (sum2 << 16);
+    }
+}
@@ -0,0 +1,656 @@
+package app.io;
+
+import app.model.AP;
+import app.model.AppState;
+import app.model.Band;
+import app.model.Building;
+import app.model.Floor;
+import app.model.PackedWalls;
+import app.model.RadioConfig;
+import app.model.RoiMask;
+import app.model.Wall;
+import app.model.WallMaterial;
+import app.model.WifiEnvironment;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 프로젝트 파일(.json) 저장/불러오기.
+ * - Jackson 스트리밍 API(JsonGenerator/JsonParser)만 사용, 트리 모델 없음
+ * - 벽은 재질 테이블 + stride 7 숫자 배열(x1,y1,x2,y2,재질,감쇠24,감쇠5)로 기록
+ *   → 읽을 때 토큰에서 바로 PackedWalls를 채움
+ *
+ * 형식(version 1):
+ * <pre>
+ * { "format": "wifiheatmap-project", "version": 1,
+ *   "floorplan": "plan.png",
+ *   "environment": { "scaleMPerPx": 0.05, "pathLossN": 2.5 },
+ *   "settings": { "legendMin": -96, ... },
+ *   "aps": [ { "name": "AP-1", "x": 10, "y": 20, "enabled": true,
+ *              "radios": [ { "band": "GHZ_24", "enabled": true, "ssid": "...", ... } ] } ],
+ *   "walls": { "count": 2, "materials": ["DOOR", ...], "data": [x1,y1,x2,y2,m,a24,a5, ...] },
+ *   "mask": [ [x0,y0,x1,y1,...], ... ] }
+ * </pre>
+ * "mask"(관심 영역 다각형, 캔버스 px)는 있을 때만 기록. 없는 파일은 전체 캔버스(빈 마스크)로 읽음
+ *
+ * 건물 파일(saveBuilding/loadBuilding): 층마다 위 환경 필드(environment/aps/walls/mask) + 층 속성.
+ * <pre>
+ * { "format": "wifiheatmap-building", "version": 1, "interferenceRange": 1, "receiverHeightM": 1.0,
+ *   "floors": [ { "name": "1F", "floorplan": "1f.png", "widthPx": 2400, "heightPx": 1600,
+ *                 "heightM": 3.5, "slabAttenuationDb24": 14, "slabAttenuationDb5": 20, "apMountHeightM": 2.7,
+ *                 "environment": { ... }, "aps": [ ... ], "walls": { ... } } ] }
+ * </pre>
+ */
+public final class ProjectFile {
+
+    private ProjectFile() {}
+
+    public static final String FORMAT = "wifiheatmap-project";
+    public static final String BUILDING_FORMAT = "wifiheatmap-building";
+    public static final int VERSION = 1;
+    public static final String EXTENSION = "*.json";
+
+    private static final int WALL_STRIDE = 7;
+    private static final WallMaterial[] MATERIALS = WallMaterial.values();
+
+    private static final JsonFactory JSON = JsonFactory.builder()
+            .enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER)
+            .enable(StreamWriteFeature.USE_FAST_DOUBLE_WRITER)
+            .build();
+
+    /** 불러오기 결과(환경/상태는 load 중 직접 갱신됨) */
+    public static final class Loaded {
+        public final int version;
+        public final PackedWalls walls;
+        public final String floorplan; // 없으면 null, 상대 경로면 프로젝트 파일 기준
+
+        Loaded(int version, PackedWalls walls, String floorplan) {
+            this.version = version;
+            this.walls = walls;
+            this.floorplan = floorplan;
+        }
+    }
+
+    // ===== 저장 =====
+
+    /**
+     * env/state를 file에 저장. 임시 파일에 쓴 뒤 교체하므로 중간 실패 시 기존 파일 유지.
+     * @param floorplan 평면도 경로(상대/절대, 없으면 null)
+     */
+    public static void save(Path file, WifiEnvironment env, AppState state, String floorplan) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                write(out, env, state, floorplan);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public static void write(OutputStream out, WifiEnvironment env, AppState state, String floorplan) throws IOException {
+        try (JsonGenerator g = JSON.createGenerator(out, JsonEncoding.UTF8)) {
+            g.writeStartObject();
+            g.writeStringField("format", FORMAT);
+            g.writeNumberField("version", VERSION);
+            if (floorplan != null) g.writeStringField("floorplan", floorplan);
+            if (state != null) writeSettings(g, state);
+            writeEnvironment(g, env);
+            g.writeEndObject();
+        }
+    }
+
+    /**
+     * 건물(층 목록)을 file에 저장. 층마다 평면도 경로/크기/층고/슬래브/AP 높이와 환경(프로젝트 파일과 같은 필드)을 기록.
+     * 임시 파일에 쓴 뒤 교체하므로 중간 실패 시 기존 파일 유지
+     */
+    public static void saveBuilding(Path file, Building building) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                writeBuilding(out, building);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public static void writeBuilding(OutputStream out, Building building) throws IOException {
+        try (JsonGenerator g = JSON.createGenerator(out, JsonEncoding.UTF8)) {
+            g.writeStartObject();
+            g.writeStringField("format", BUILDING_FORMAT);
+            g.writeNumberField("version", VERSION);
+            g.writeNumberField("interferenceRange", building.getInterferenceRange());
+            g.writeNumberField("receiverHeightM", building.getReceiverHeightM());
+            g.writeArrayFieldStart("floors");
+            for (Floor f : building.getFloors()) {
+                g.writeStartObject();
+                if (f.name != null) g.writeStringField("name", f.name);
+                if (f.floorplan != null) g.writeStringField("floorplan", f.floorplan);
+                g.writeNumberField("widthPx", f.widthPx);
+                g.writeNumberField("heightPx", f.heightPx);
+                g.writeNumberField("heightM", f.heightM);
+                g.writeNumberField("slabAttenuationDb24", f.slabAttenuationDb24);
+                g.writeNumberField("slabAttenuationDb5", f.slabAttenuationDb5);
+                g.writeNumberField("apMountHeightM", f.apMountHeightM);
+                writeEnvironment(g, f.env);
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            g.writeEndObject();
+        }
+    }
+
+    /** 환경 필드(environment/aps/walls/mask)를 현재 객체에 기록 */
+    private static void writeEnvironment(JsonGenerator g, WifiEnvironment env) throws IOException {
+        g.writeObjectFieldStart("environment");
+        writeNumberOrNull(g, "scaleMPerPx", env.getScaleMPerPx());
+        g.writeNumberField("pathLossN", env.getPathLossN());
+        g.writeEndObject();
+
+        g.writeArrayFieldStart("aps");
+        for (AP ap : env.getAps()) {
+            if (ap != null) writeAp(g, ap);
+        }
+        g.writeEndArray();
+
+        writeWalls(g, env.getWalls());
+        writeMask(g, env.getRoiMask());
+    }
+
+    private static void writeSettings(JsonGenerator g, AppState s) throws IOException {
+        g.writeObjectFieldStart("settings");
+        writeNumberOrNull(g, "scaleMPerPx", s.getScaleMPerPx());
+        g.writeNumberField("calibRealMeters", s.getCalibRealMeters());
+        g.writeNumberField("legendMin", s.legendMinProperty().get());
+        g.writeNumberField("legendMax", s.legendMaxProperty().get());
+        g.writeStringField("defaultWallMaterial", s.getDefaultWallMaterial().name());
+        g.writeNumberField("defaultWallDb", s.getDefaultWallDb());
+        g.writeNumberField("pathLossN", s.getPathLossN());
+        g.writeNumberField("smoothRadiusPx", s.getSmoothRadiusPx());
+        g.writeNumberField("gridStepPx", s.getGridStepPx());
+        g.writeEndObject();
+    }
+
+    private static void writeAp(JsonGenerator g, AP ap) throws IOException {
+        g.writeStartObject();
+        g.writeStringField("name", ap.name);
+        g.writeNumberField("x", ap.x);
+        g.writeNumberField("y", ap.y);
+        g.writeBooleanField("enabled", ap.enabled);
+        g.writeArrayFieldStart("radios");
+        for (Band b : Band.values()) {
+            RadioConfig rc = ap.radios.get(b);
+            if (rc == null) continue;
+            g.writeStartObject();
+            g.writeStringField("band", b.name());
+            g.writeBooleanField("enabled", rc.enabled);
+            if (rc.ssid != null) g.writeStringField("ssid", rc.ssid);
+            g.writeNumberField("txPowerDbm", rc.txPowerDbm);
+            g.writeNumberField("antennaGain", rc.antennaGain);
+            if (rc.mode != null) g.writeStringField("mode", rc.mode);
+            g.writeNumberField("channel", rc.channel);
+            g.writeNumberField("channelWidth", rc.channelWidth);
+            if (rc.security != null) g.writeStringField("security", rc.security);
+            g.writeEndObject();
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+    }
+
+    private static void writeWalls(JsonGenerator g, List<Wall> walls) throws IOException {
+        int count = 0;
+        for (Wall w : walls) if (w != null) count++;
+
+        g.writeObjectFieldStart("walls");
+        g.writeNumberField("count", count);
+        g.writeArrayFieldStart("materials");
+        for (WallMaterial m : MATERIALS) g.writeString(m.name());
+        g.writeEndArray();
+
+        g.writeArrayFieldStart("data");
+        for (Wall w : walls) {
+            if (w == null) continue;
+            g.writeNumber(w.x1);
+            g.writeNumber(w.y1);
+            g.writeNumber(w.x2);
+            g.writeNumber(w.y2);
+            g.writeNumber(w.getMaterial().ordinal());
+            g.writeNumber(w.attenuationDb24);
+            g.writeNumber(w.attenuationDb5);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+    }
+
+    private static void writeMask(JsonGenerator g, RoiMask mask) throws IOException {
+        if (mask.isEmpty()) return;
+        g.writeArrayFieldStart("mask");
+        for (int i = 0; i < mask.size(); i++) {
+            double[] poly = mask.polygon(i);
+            g.writeArray(poly, 0, poly.length);
+        }
+        g.writeEndArray();
+    }
+
+    private static void writeNumberOrNull(JsonGenerator g, String field, double v) throws IOException {
+        if (Double.isNaN(v) || Double.isInfinite(v)) g.writeNullField(field);
+        else g.writeNumberField(field, v);
+    }
+
+    // ===== 불러오기 =====
+
+    /**
+     * file을 읽어 env(APs/벽/스케일)와 state(설정)를 교체.
+     * 파싱이 끝까지 성공한 뒤에만 env/state를 바꾸므로 실패 시 기존 상태 유지.
+     */
+    public static Loaded load(Path file, WifiEnvironment env, AppState state) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            return read(in, env, state);
+        }
+    }
+
+    public static Loaded read(InputStream in, WifiEnvironment env, AppState state) throws IOException {
+        int version = -1;
+        String floorplan = null;
+        Settings settings = null;
+        EnvParts parts = new EnvParts(env.getPathLossN());
+
+        try (JsonParser p = JSON.createParser(in)) {
+            expect(p, p.nextToken(), JsonToken.START_OBJECT);
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken t = p.nextToken();
+                switch (field) {
+                    case "format" -> {
+                        if (!FORMAT.equals(p.getValueAsString())) {
+                            throw new IOException("프로젝트 파일 형식이 아닙니다: " + p.getValueAsString());
+                        }
+                    }
+                    case "version" -> {
+                        version = p.getIntValue();
+                        if (version > VERSION) {
+                            throw new IOException("더 새로운 버전의 프로젝트 파일입니다(v" + version + ")");
+                        }
+                    }
+                    case "floorplan" -> floorplan = (t == JsonToken.VALUE_NULL) ? null : p.getValueAsString();
+                    case "settings" -> {
+                        expect(p, t, JsonToken.START_OBJECT);
+                        settings = readSettings(p);
+                    }
+                    default -> {
+                        if (!parts.read(p, field, t)) p.skipChildren(); // 모르는 필드(상위 버전 확장) 무시
+                    }
+                }
+            }
+        }
+
+        if (version < 0) throw new IOException("version 필드가 없습니다");
+
+        // ===== 파싱 성공 → 반영 =====
+        parts.applyTo(env);
+        if (settings != null && state != null) settings.applyTo(state);
+
+        return new Loaded(version, parts.walls, floorplan);
+    }
+
+    /** 건물 파일을 읽어 새 Building으로 반환(층 순서 = 파일 순서) */
+    public static Building loadBuilding(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            return readBuilding(in);
+        }
+    }
+
+    public static Building readBuilding(InputStream in) throws IOException {
+        Building building = new Building();
+        int version = -1;
+
+        try (JsonParser p = JSON.createParser(in)) {
+            expect(p, p.nextToken(), JsonToken.START_OBJECT);
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken t = p.nextToken();
+                switch (field) {
+                    case "format" -> {
+                        if (!BUILDING_FORMAT.equals(p.getValueAsString())) {
+                            throw new IOException("건물 파일 형식이 아닙니다: " + p.getValueAsString());
+                        }
+                    }
+                    case "version" -> {
+                        version = p.getIntValue();
+                        if (version > VERSION) {
+                            throw new IOException("더 새로운 버전의 건물 파일입니다(v" + version + ")");
+                        }
+                    }
+                    case "interferenceRange" -> building.setInterferenceRange(p.getIntValue());
+                    case "receiverHeightM" -> building.setReceiverHeightM(p.getDoubleValue());
+                    case "floors" -> {
+                        expect(p, t, JsonToken.START_ARRAY);
+                        while (p.nextToken() == JsonToken.START_OBJECT) {
+                            building.getFloors().add(readFloor(p));
+                        }
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+        }
+
+        if (version < 0) throw new IOException("version 필드가 없습니다");
+        return building;
+    }
+
+    private static Floor readFloor(JsonParser p) throws IOException {
+        Floor f = new Floor();
+        EnvParts parts = new EnvParts(f.env.getPathLossN());
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken t = p.nextToken();
+            switch (field) {
+                case "name" -> f.name = (t == JsonToken.VALUE_NULL) ? null : p.getValueAsString();
+                case "floorplan" -> f.floorplan = (t == JsonToken.VALUE_NULL) ? null : p.getValueAsString();
+                case "widthPx" -> f.widthPx = p.getIntValue();
+                case "heightPx" -> f.heightPx = p.getIntValue();
+                case "heightM" -> f.heightM = p.getDoubleValue();
+                case "slabAttenuationDb24" -> f.slabAttenuationDb24 = p.getDoubleValue();
+                case "slabAttenuationDb5" -> f.slabAttenuationDb5 = p.getDoubleValue();
+                case "apMountHeightM" -> f.apMountHeightM = p.getDoubleValue();
+                default -> {
+                    if (!parts.read(p, field, t)) p.skipChildren();
+                }
+            }
+        }
+        parts.applyTo(f.env);
+        return f;
+    }
+
+    /** 환경 필드(environment/aps/walls/mask) 읽기 결과. 끝까지 읽은 뒤 applyTo로 한꺼번에 반영 */
+    private static final class EnvParts {
+        double scale = Double.NaN;
+        double pathLossN;
+        final List<AP> aps = new ArrayList<>();
+        PackedWalls walls = new PackedWalls(0);
+        RoiMask mask = RoiMask.EMPTY;
+
+        EnvParts(double pathLossN) {
+            this.pathLossN = pathLossN;
+        }
+
+        /** field가 환경 필드면 값을 읽고 true */
+        boolean read(JsonParser p, String field, JsonToken t) throws IOException {
+            switch (field) {
+                case "environment" -> {
+                    expect(p, t, JsonToken.START_OBJECT);
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String f = p.currentName();
+                        p.nextToken();
+                        switch (f) {
+                            case "scaleMPerPx" -> scale = readDoubleOrNaN(p);
+                            case "pathLossN" -> pathLossN = p.getDoubleValue();
+                            default -> p.skipChildren();
+                        }
+                    }
+                }
+                case "aps" -> {
+                    expect(p, t, JsonToken.START_ARRAY);
+                    while (p.nextToken() == JsonToken.START_OBJECT) {
+                        aps.add(readAp(p));
+                    }
+                }
+                case "walls" -> {
+                    expect(p, t, JsonToken.START_OBJECT);
+                    walls = readWalls(p);
+                }
+                case "mask" -> {
+                    expect(p, t, JsonToken.START_ARRAY);
+                    mask = readMask(p);
+                }
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void applyTo(WifiEnvironment env) {
+            env.setScaleMPerPx(scale);
+            env.setPathLossN(pathLossN);
+            env.getAps().setAll(aps);
+            env.getWalls().setAll(walls.toWalls());
+            env.setRoiMask(mask);
+        }
+    }
+
+    private static AP readAp(JsonParser p) throws IOException {
+        AP ap = new AP();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String f = p.currentName();
+            JsonToken t = p.nextToken();
+            switch (f) {
+                case "name" -> ap.name = p.getValueAsString(ap.name);
+                case "x" -> ap.x = p.getDoubleValue();
+                case "y" -> ap.y = p.getDoubleValue();
+                case "enabled" -> ap.enabled = p.getBooleanValue();
+                case "radios" -> {
+                    expect(p, t, JsonToken.START_ARRAY);
+                    while (p.nextToken() == JsonToken.START_OBJECT) {
+                        readRadio(p, ap);
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+        return ap;
+    }
+
+    private static void readRadio(JsonParser p, AP ap) throws IOException {
+        // band가 먼저 나온다는 보장이 없으므로 값을 모은 뒤 반영
+        Band band = null;
+        Boolean enabled = null;
+        boolean hasSsid = false;
+        String ssid = null, mode = null, security = null;
+        Double tx = null, gain = null;
+        Integer channel = null, width = null;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String f = p.currentName();
+            JsonToken t = p.nextToken();
+            switch (f) {
+                case "band" -> band = parseBand(p.getValueAsString());
+                case "enabled" -> enabled = p.getBooleanValue();
+                case "ssid" -> {
+                    hasSsid = true;
+                    ssid = (t == JsonToken.VALUE_NULL) ? null : p.getValueAsString();
+                }
+                case "txPowerDbm" -> tx = p.getDoubleValue();
+                case "antennaGain" -> gain = p.getDoubleValue();
+                case "mode" -> mode = p.getValueAsString();
+                case "channel" -> channel = p.getIntValue();
+                case "channelWidth" -> width = p.getIntValue();
+                case "security" -> security = p.getValueAsString();
+                default -> p.skipChildren();
+            }
+        }
+        if (band == null) return;
+
+        RadioConfig rc = ap.radios.get(band);
+        if (rc == null) {
+            rc = new RadioConfig(band, ssid);
+            ap.radios.put(band, rc);
+        }
+        if (enabled != null) rc.enabled = enabled;
+        if (hasSsid) rc.ssid = ssid;
+        if (tx != null) rc.txPowerDbm = tx;
+        if (gain != null) rc.antennaGain = gain;
+        if (mode != null) rc.mode = mode;
+        if (channel != null) rc.channel = channel;
+        if (width != null) rc.channelWidth = width;
+        if (security != null) rc.security = security;
+    }
+
+    private static PackedWalls readWalls(JsonParser p) throws IOException {
+        PackedWalls walls = null;
+        int[] materialMap = null; // 파일 재질 인덱스 → 현재 WallMaterial ordinal
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String f = p.currentName();
+            JsonToken t = p.nextToken();
+            switch (f) {
+                case "count" -> {
+                    if (walls == null) walls = new PackedWalls(p.getIntValue());
+                }
+                case "materials" -> {
+                    expect(p, t, JsonToken.START_ARRAY);
+                    List<String> names = new ArrayList<>();
+                    while (p.nextToken() == JsonToken.VALUE_STRING) names.add(p.getText());
+                    materialMap = new int[names.size()];
+                    for (int i = 0; i < materialMap.length; i++) {
+                        materialMap[i] = parseMaterial(names.get(i)).ordinal();
+                    }
+                }
+                case "data" -> {
+                    expect(p, t, JsonToken.START_ARRAY);
+                    if (walls == null) walls = new PackedWalls(1024);
+                    readWallData(p, walls, materialMap);
+                }
+                default -> p.skipChildren();
+            }
+        }
+        return (walls != null) ? walls : new PackedWalls(0);
+    }
+
+    /** 다각형(숫자 배열)의 배열. 꼭짓점 3개 미만인 다각형은 RoiMask.of에서 버림 */
+    private static RoiMask readMask(JsonParser p) throws IOException {
+        List<double[]> polygons = new ArrayList<>();
+        JsonToken t;
+        while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+            expect(p, t, JsonToken.START_ARRAY);
+            double[] v = new double[16];
+            int n = 0;
+            while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+                if (t == null) throw new IOException("mask가 끝나지 않았습니다");
+                if (!t.isNumeric()) throw new IOException("mask에 숫자가 아닌 값: " + t);
+                if (n == v.length) v = Arrays.copyOf(v, n * 2);
+                v[n++] = p.getDoubleValue();
+            }
+            if (n % 2 != 0) throw new IOException("mask 다각형 좌표 수가 홀수입니다");
+            polygons.add(Arrays.copyOf(v, n));
+        }
+        return RoiMask.of(polygons);
+    }
+
+    /** stride 7 숫자 배열을 그대로 PackedWalls에 적재(벽당 객체 할당 없음) */
+    private static void readWallData(JsonParser p, PackedWalls walls, int[] materialMap) throws IOException {
+        double[] v = new double[WALL_STRIDE];
+        int k = 0;
+        JsonToken t;
+        while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+            if (t == null) throw new IOException("walls.data가 끝나지 않았습니다");
+            if (!t.isNumeric()) throw new IOException("walls.data에 숫자가 아닌 값: " + t);
+            v[k++] = p.getDoubleValue();
+            if (k == WALL_STRIDE) {
+                int m = (int) v[4];
+                if (materialMap != null) {
+                    m = (m >= 0 && m < materialMap.length) ? materialMap[m] : WallMaterial.CUSTOM.ordinal();
+                }
+                WallMaterial mat = (m >= 0 && m < MATERIALS.length) ? MATERIALS[m] : WallMaterial.CUSTOM;
+                walls.add(v[0], v[1], v[2], v[3], mat, v[5], v[6]);
+                k = 0;
+            }
+        }
+        if (k != 0) throw new IOException("walls.data 길이가 " + WALL_STRIDE + "의 배수가 아닙니다");
+    }
+
+    private static Settings readSettings(JsonParser p) throws IOException {
+        Settings s = new Settings();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String f = p.currentName();
+            p.nextToken();
+            switch (f) {
+                case "scaleMPerPx" -> s.scaleMPerPx = readDoubleOrNaN(p);
+                case "calibRealMeters" -> s.calibRealMeters = p.getDoubleValue();
+                case "legendMin" -> s.legendMin = p.getDoubleValue();
+                case "legendMax" -> s.legendMax = p.getDoubleValue();
+                case "defaultWallMaterial" -> s.defaultWallMaterial = parseMaterial(p.getValueAsString());
+                case "defaultWallDb" -> s.defaultWallDb = p.getDoubleValue();
+                case "pathLossN" -> s.pathLossN = p.getDoubleValue();
+                case "smoothRadiusPx" -> s.smoothRadiusPx = p.getIntValue();
+                case "gridStepPx" -> s.gridStepPx = p.getIntValue();
+                default -> p.skipChildren();
+            }
+        }
+        return s;
+    }
+
+    /** 읽은 설정 임시 보관(없는 항목은 기존 값 유지) */
+    private static final class Settings {
+        Double scaleMPerPx, calibRealMeters, legendMin, legendMax, defaultWallDb, pathLossN;
+        WallMaterial defaultWallMaterial;
+        Integer smoothRadiusPx, gridStepPx;
+
+        void applyTo(AppState s) {
+            if (scaleMPerPx != null) s.setScaleMPerPx(scaleMPerPx);
+            if (calibRealMeters != null) s.setCalibRealMeters(calibRealMeters);
+            if (legendMin != null) s.legendMinProperty().set(legendMin);
+            if (legendMax != null) s.legendMaxProperty().set(legendMax);
+            if (defaultWallMaterial != null) s.setDefaultWallMaterial(defaultWallMaterial);
+            if (defaultWallDb != null) s.setDefaultWallDb(defaultWallDb);
+            if (pathLossN != null) s.setPathLossN(pathLossN);
+            if (smoothRadiusPx != null) s.setSmoothRadiusPx(smoothRadiusPx);
+            if (gridStepPx != null) s.setGridStepPx(gridStepPx);
+        }
+    }
+
+    // ===== 유틸 =====
+
+    private static void expect(JsonParser p, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("JSON 구조 오류: " + expected + " 필요, " + actual + " 발견 ("
+                    + p.currentLocation() + ")");
+        }
+    }
+
+    private static double readDoubleOrNaN(JsonParser p) throws IOException {
+        return (p.currentToken() == JsonToken.VALUE_NULL) ? Double.NaN : p.getDoubleValue();
+    }
+
+    private static Band parseBand(String s) {
+        if (s == null) return null;
+        try {
+            return Band.valueOf(s);
+        } catch (IllegalArgumentException ignored) {
+            return null;
+        }
+    }
+
+    private static WallMaterial parseMaterial(String s) {
+        if (s == null) return WallMaterial.CUSTOM;
+        try {
+            return WallMaterial.valueOf(s);
+        } catch (IllegalArgumentException ignored) {
+            return WallMaterial.CUSTOM;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package app.io;
+
+import app.engine.HeatmapGenerator;
+import app.engine.LayerCache;
+import app.engine.RssiField;
+import app.model.AppState;
+import app.model.WifiEnvironment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 바이너리 프로젝트 스냅샷(.whms): 환경 + 계산된 AP별/밴드별 경로 이득 레이어.
+ * - 다시 열면 레이어를 엔진 캐시에 복원 → 바뀌지 않은 프로젝트는 재계산 없이 바로 표시
+ * - 레이어는 저장 당시의 geometry key(LayerCache.geometryKey)와 밴드 레이어 key(LayerCache.bandKey)로 식별,
+ *   열고 나서 환경이 다르면 엔진이 해당 레이어만 다시 계산
+ *
+ * 형식(빅엔디언, DataOutputStream):
+ * <pre>
+ *   "WHMS" | u16 version
+ *   long geometryKey | int width | int height | int gridStepPx
+ *   int envBytes | deflate(ProjectFile JSON)
+ *   int layerCount
+ *   layer: long bandKey | tile... (HeatmapGenerator.TILE_BLOCKS 단위, 행 우선)
+ *   tile: int bytes | deflate(u16[] 0.01 dB 양자화, 타일 행마다 이전 값과의 차분)
+ *   int cullingBytes | deflate(LayerCache.writeCullings): AP 컬링으로 비운 셀의 증인/여유/밴드 상수
+ * </pre>
+ * 양자화: q = round((dBm + 200) * 100), NaN = 0xFFFF (-200 ~ +455 dBm 범위, 오차 0.005 dB)
+ * 버전은 VERSION 하나만 읽음(다르면 IOException)
+ */
+public final class ProjectSnapshot {
+
+    private ProjectSnapshot() {}
+
+    public static final int MAGIC = 0x57484D53; // "WHMS"
+    public static final int VERSION = 3;
+    public static final String EXTENSION = "*.whms";
+
+    private static final int Q_NAN = 0xFFFF;
+    private static final double Q_OFFSET_DB = 200.0;
+    private static final double Q_SCALE = 100.0;
+
+    /** 불러오기 결과 */
+    public static final class Loaded {
+        public final ProjectFile.Loaded project;
+        public final int layers; // 복원한 레이어 수
+
+        Loaded(ProjectFile.Loaded project, int layers) {
+            this.project = project;
+            this.layers = layers;
+        }
+    }
+
+    /**
+     * 환경/설정과 generator의 레이어 캐시를 저장(임시 파일에 쓴 뒤 원자적 교체).
+     * 레이어가 아직 없으면 환경만 저장.
+     */
+    public static void save(Path file,
+                            WifiEnvironment env,
+                            AppState state,
+                            String floorplan,
+                            LayerCache cache) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                write(out, env, state, floorplan, cache);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public static void write(OutputStream out,
+                             WifiEnvironment env,
+                             AppState state,
+                             String floorplan,
+                             LayerCache cache) throws IOException {
+        DataOutputStream d = new DataOutputStream(out);
+
+        long geometryKey = cache.getGeometryKey();
+        Map<Long, RssiField> layers = cache.copyLayers();
+        LayerCache.Cullings cullings = cache.copyCullings();
+        RssiField first = layers.isEmpty() ? null : layers.values().iterator().next();
+
+        d.writeInt(MAGIC);
+        d.writeShort(VERSION);
+        d.writeLong(geometryKey);
+        d.writeInt(first == null ? 0 : first.width);
+        d.writeInt(first == null ? 0 : first.height);
+        d.writeInt(first == null ? 0 : first.gridStepPx);
+
+        // 환경: ProjectFile JSON을 압축해 그대로 포함
+        ByteArrayOutputStream json = new ByteArrayOutputStream(1 << 16);
+        Deflater envDeflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream z = new DeflaterOutputStream(json, envDeflater, 1 << 16)) {
+            ProjectFile.write(z, env, state, floorplan);
+        } finally {
+            envDeflater.end();
+        }
+        d.writeInt(json.size());
+        json.writeTo(d);
+
+        d.writeInt(first == null ? 0 : layers.size());
+        if (first != null) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                for (Map.Entry<Long, RssiField> e : layers.entrySet()) {
+                    d.writeLong(e.getKey());
+                    writeLayer(d, e.getValue(), deflater);
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+
+        ByteArrayOutputStream cull = new ByteArrayOutputStream(1 << 12);
+        Deflater cullDeflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream z = new DataOutputStream(new DeflaterOutputStream(cull, cullDeflater, 1 << 12))) {
+            LayerCache.writeCullings(z, first == null ? LayerCache.Cullings.NONE : cullings);
+        } finally {
+            cullDeflater.end();
+        }
+        d.writeInt(cull.size());
+        cull.writeTo(d);
+        d.flush();
+    }
+
+    /**
+     * 스냅샷을 읽어 env/state를 갱신하고 레이어를 cache에 복원.
+     * 환경 파싱 실패 시 env/state는 바뀌지 않음(ProjectFile.read와 동일).
+     */
+    public static Loaded load(Path file, WifiEnvironment env, AppState state, LayerCache cache) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            return read(in, env, state, cache);
+        }
+    }
+
+    public static Loaded read(InputStream in, WifiEnvironment env, AppState state, LayerCache cache) throws IOException {
+        DataInputStream d = new DataInputStream(in);
+
+        if (d.readInt() != MAGIC) throw new IOException("스냅샷 파일 형식이 아닙니다");
+        int version = d.readUnsignedShort();
+        if (version != VERSION) throw new IOException("지원하지 않는 스냅샷 버전입니다(v" + version + ")");
+
+        long geometryKey = d.readLong();
+        int width = d.readInt();
+        int height = d.readInt();
+        int gridStepPx = d.readInt();
+
+        byte[] envBytes = new byte[d.readInt()];
+        d.readFully(envBytes);
+
+        // 레이어를 먼저 모두 읽은 뒤 환경/캐시 반영(중간 실패 시 기존 상태 유지)
+        int count = d.readInt();
+        Map<Long, RssiField> layers = new HashMap<>(Math.max(16, count * 2));
+        if (count > 0) {
+            Inflater inflater = new Inflater();
+            try {
+                for (int i = 0; i < count; i++) {
+                    long bandKey = d.readLong();
+                    RssiField layer = new RssiField(width, height, gridStepPx);
+                    readLayer(d, layer, inflater);
+                    layers.put(bandKey, layer);
+                }
+            } finally {
+                inflater.end();
+            }
+        }
+
+        int cullBytes = d.readInt();
+        if (cullBytes < 0) throw new IOException("손상된 컬링 정보");
+        byte[] cull = new byte[cullBytes];
+        d.readFully(cull);
+        LayerCache.Cullings cullings;
+        try (DataInputStream z = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(cull)))) {
+            cullings = LayerCache.readCullings(z);
+        }
+
+        ProjectFile.Loaded project;
+        try (InputStream json = new InflaterInputStream(new ByteArrayInputStream(envBytes))) {
+            project = ProjectFile.read(json, env, state);
+        }
+
+        cache.restore(geometryKey, layers, cullings);
+        return new Loaded(project, layers.size());
+    }
+
+    // ===== 레이어(타일 단위) =====
+
+    private static void writeLayer(DataOutputStream d, RssiField layer, Deflater deflater) throws IOException {
+        final int tb = HeatmapGenerator.TILE_BLOCKS;
+        byte[] raw = new byte[tb * tb * 2];
+        byte[] packed = new byte[raw.length + 64];
+
+        for (int ty = 0; ty < layer.rows; ty += tb) {
+            for (int tx = 0; tx < layer.cols; tx += tb) {
+                int bx1 = Math.min(layer.cols, tx + tb);
+                int by1 = Math.min(layer.rows, ty + tb);
+
+                int n = 0;
+                for (int by = ty; by < by1; by++) {
+                    int prev = 0;
+                    for (int bx = tx; bx < bx1; bx++) {
+                        int q = quantize(layer.get(bx, by));
+                        int delta = (q - prev) & 0xFFFF;
+                        prev = q;
+                        raw[n++] = (byte) (delta >>> 8);
+                        raw[n++] = (byte) delta;
+                    }
+                }
+
+                deflater.reset();
+                deflater.setInput(raw, 0, n);
+                deflater.finish();
+                int len = 0;
+                while (!deflater.finished()) {
+                    if (len == packed.length) packed = Arrays.copyOf(packed, packed.length * 2);
+                    len += deflater.deflate(packed, len, packed.length - len);
+                }
+                d.writeInt(len);
+                d.write(packed, 0, len);
+            }
+        }
+    }
+
+    private static void readLayer(DataInputStream d, RssiField layer, Inflater inflater) throws IOException {
+        final int tb = HeatmapGenerator.TILE_BLOCKS;
+        byte[] raw = new byte[tb * tb * 2];
+        byte[] packed = new byte[raw.length + 64];
+
+        for (int ty = 0; ty < layer.rows; ty += tb) {
+            for (int tx = 0; tx < layer.cols; tx += tb) {
+                int bx1 = Math.min(layer.cols, tx + tb);
+                int by1 = Math.min(layer.rows, ty + tb);
+                int n = (bx1 - tx) * (by1 - ty) * 2;
+
+                int len = d.readInt();
+                if (len < 0) throw new IOException("손상된 레이어 타일");
+                if (len > packed.length) packed = new byte[len];
+                d.readFully(packed, 0, len);
+
+                inflater.reset();
+                inflater.setInput(packed, 0, len);
+                try {
+                    int got = 0;
+                    while (got < n && !inflater.finished()) {
+                        int r = inflater.inflate(raw, got, n - got);
+                        if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                        got += r;
+                    }
+                    if (got != n) throw new IOException("손상된 레이어 타일");
+                } catch (DataFormatException ex) {
+                    throw new IOException("손상된 레이어 타일", ex);
+                }
+
+                int k = 0;
+                for (int by = ty; by < by1; by++) {
+                    int prev = 0;
+                    for (int bx = tx; bx < bx1; bx++) {
+                        int delta = ((raw[k] & 0xFF) << 8) | (raw[k + 1] & 0xFF);
+                        k += 2;
+                        int q = (prev + delta) & 0xFFFF;
+                        prev = q;
+                        layer.set(bx, by, dequantize(q));
+                    }
+                }
+            }
+        }
+    }
+
+    private static int quantize(float dbm) {
+        if (Float.isNaN(dbm)) return Q_NAN;
+        long q = Math.round((dbm + Q_OFFSET_DB) * Q_SCALE);
+        return (int) Math.max(0, Math.min(Q_NAN - 1, q));
+    }
+
+    private static float dequantize(int q) {
+        if (q == Q_NAN) return Float.NaN;
+        return (float) (q / Q_SCALE - Q_OFFSET_DB);
+    }
+}
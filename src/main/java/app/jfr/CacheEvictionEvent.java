@@ -0,0 +1,33 @@
+package app.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 결과 캐시(레이어/타일 등)에서 항목이 밀려남.
+ * 즉시 이벤트(구간 없음)로 기록.
+ */
+@Name("app.CacheEviction")
+@Label("Cache Eviction")
+@Category({"Wi-Fi Heatmap", "Engine"})
+@Description("An entry was evicted from a heatmap result cache")
+@StackTrace(false)
+public class CacheEvictionEvent extends jdk.jfr.Event {
+
+    @Label("Cache")
+    public String cache;
+
+    @Label("Key")
+    public String key;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Reason")
+    public String reason;
+}
@@ -0,0 +1,27 @@
+package app.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * CanvasView.render 1회(FX 스레드). UI 끊김과 엔진 작업을 맞춰 보기 위함.
+ */
+@Name("app.CanvasRender")
+@Label("Canvas Render")
+@Category({"Wi-Fi Heatmap", "UI"})
+@Description("One CanvasView.render pass on the FX thread")
+@StackTrace(false)
+public class CanvasRenderEvent extends jdk.jfr.Event {
+
+    @Label("Walls")
+    public int walls;
+
+    @Label("APs")
+    public int aps;
+
+    @Label("Has Heatmap")
+    public boolean heatmap;
+}
@@ -0,0 +1,56 @@
+package app.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+/**
+ * 앱 내부에서 JFR 기록을 시작/중지하고 파일로 덤프.
+ * - JDK "profile" 설정 + 앱 이벤트(app.*) 전부 활성화
+ * - 한 번에 기록 1개만 유지
+ */
+public final class FlightRecording {
+
+    private Recording recording;
+
+    public synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    public synchronized void start() throws IOException, ParseException {
+        if (recording != null) return;
+
+        Recording r = new Recording(Configuration.getConfiguration("profile"));
+        r.setName("wifi-heatmap");
+        r.enable(HeatmapJobEvent.class);
+        r.enable(TileCompletedEvent.class);
+        r.enable(CacheEvictionEvent.class);
+        r.enable(CanvasRenderEvent.class);
+        r.enable(FloorplanLoadEvent.class);
+        r.start();
+        recording = r;
+    }
+
+    /** 기록을 멈추고 out에 .jfr로 저장. 기록 중이 아니면 아무것도 안 함 */
+    public synchronized void stopAndDump(Path out) throws IOException {
+        if (recording == null) return;
+        Recording r = recording;
+        recording = null;
+        try {
+            r.stop();
+            r.dump(out);
+        } finally {
+            r.close();
+        }
+    }
+
+    /** 저장 없이 버림 */
+    public synchronized void discard() {
+        if (recording == null) return;
+        recording.close();
+        recording = null;
+    }
+}
@@ -0,0 +1,30 @@
+package app.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 평면도 이미지 로드(디코딩 + FX 이미지 변환).
+ */
+@Name("app.FloorplanLoad")
+@Label("Floorplan Load")
+@Category({"Wi-Fi Heatmap", "UI"})
+@Description("Decoding a floorplan image and converting it for display")
+public class FloorplanLoadEvent extends jdk.jfr.Event {
+
+    @Label("Path")
+    public String path;
+
+    @Label("File Size")
+    @DataAmount
+    public long fileBytes;
+
+    @Label("Width (px)")
+    public int width;
+
+    @Label("Height (px)")
+    public int height;
+}
@@ -0,0 +1,45 @@
+package app.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 히트맵 계산 1회(시작~끝 구간).
+ * begin()은 계산 시작 시, commit()은 격자가 완성된 뒤 호출.
+ */
+@Name("app.HeatmapJob")
+@Label("Heatmap Job")
+@Category({"Wi-Fi Heatmap", "Engine"})
+@Description("One heatmap field computation from start to finish")
+@StackTrace(false)
+public class HeatmapJobEvent extends jdk.jfr.Event {
+
+    @Label("Width (px)")
+    public int width;
+
+    @Label("Height (px)")
+    public int height;
+
+    @Label("Grid Step (px)")
+    public int gridStepPx;
+
+    @Label("Threads")
+    public int threads;
+
+    @Label("Tiles")
+    public int tiles;
+
+    @Label("Walls")
+    public int walls;
+
+    @Label("Enabled APs")
+    public int aps;
+
+    @Label("Field Size")
+    @DataAmount
+    public long fieldBytes;
+}
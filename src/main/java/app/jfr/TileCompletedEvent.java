@@ -0,0 +1,35 @@
+package app.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 워커가 타일 1개(TILE_BLOCKS x TILE_BLOCKS 블록)를 끝냄.
+ * 구간 길이 = 타일 계산 시간. 관심 영역 밖이라 계산하지 않은 타일은 skipped = true.
+ */
+@Name("app.TileCompleted")
+@Label("Heatmap Tile Completed")
+@Category({"Wi-Fi Heatmap", "Engine"})
+@Description("A worker finished computing one heatmap tile")
+@StackTrace(false)
+public class TileCompletedEvent extends jdk.jfr.Event {
+
+    @Label("Tile Index")
+    public int tile;
+
+    @Label("First Block Column")
+    public int blockX;
+
+    @Label("First Block Row")
+    public int blockY;
+
+    @Label("Blocks")
+    public int blocks;
+
+    @Label("Skipped")
+    @Description("Tile lies outside the region-of-interest mask and was not computed")
+    public boolean skipped;
+}
@@ -15,6 +15,9 @@ public class AP {
     // 밴드별 라디오
     public final Map<Band, RadioConfig> radios = new EnumMap<>(Band.class);
 
+    // 객체별 변경 버전(WifiEnvironment가 잠금 안에서 올림)
+    long version;
+
     public AP() {
         // 밴드별 SSID 기본값(원하면 규칙 바꿔도 됨)
         radios.put(Band.GHZ_24, new RadioConfig(Band.GHZ_24, name + "_24G"));
@@ -4,7 +4,7 @@ import javafx.beans.property.*;
 
 public class AppState {
 
-    public enum Tool { VIEW, SCALE, AP, WALL }
+    public enum Tool { VIEW, SCALE, AP, WALL, ROI }
 
     // 현재 도구 모드
     private final ObjectProperty<Tool> tool = new SimpleObjectProperty<>(Tool.VIEW);
@@ -27,6 +27,9 @@ public class AppState {
     private final DoubleProperty pathLossN = new SimpleDoubleProperty(2.5);
     private final IntegerProperty smoothRadiusPx = new SimpleIntegerProperty(8);
 
+    // 히트맵 계산 격자(px): 한 블록 = gridStep x gridStep
+    private final IntegerProperty gridStepPx = new SimpleIntegerProperty(8);
+
     // ===== getters / properties =====
     public ObjectProperty<Tool> toolProperty() { return tool; }
     public Tool getTool() { return tool.get(); }
@@ -53,7 +56,13 @@ public class AppState {
 
     public DoubleProperty pathLossNProperty() { return pathLossN; }
     public double getPathLossN() { return pathLossN.get(); }
+    public void setPathLossN(double v) { pathLossN.set(v); }
 
     public IntegerProperty smoothRadiusPxProperty() { return smoothRadiusPx; }
     public int getSmoothRadiusPx() { return smoothRadiusPx.get(); }
+    public void setSmoothRadiusPx(int v) { smoothRadiusPx.set(v); }
+
+    public IntegerProperty gridStepPxProperty() { return gridStepPx; }
+    public int getGridStepPx() { return gridStepPx.get(); }
+    public void setGridStepPx(int v) { gridStepPx.set(v); }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package app.model;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+/**
+ * 여러 층으로 된 건물.
+ * - floors는 아래층부터 순서대로(index 0 = 최하층)
+ * - interferenceRange: 다른 층 AP를 반영할 층 수(위/아래 각각)
+ */
+public class Building {
+
+    private final ObservableList<Floor> floors = FXCollections.observableArrayList();
+
+    private int interferenceRange = 1;
+
+    /** 수신 높이(각 층 바닥 기준, m) */
+    private double receiverHeightM = 1.0;
+
+    public ObservableList<Floor> getFloors() { return floors; }
+
+    public Floor addFloor(String name, int widthPx, int heightPx) {
+        Floor f = new Floor(name, widthPx, heightPx);
+        floors.add(f);
+        return f;
+    }
+
+    public int getInterferenceRange() { return interferenceRange; }
+    public void setInterferenceRange(int floors) { this.interferenceRange = Math.max(0, floors); }
+
+    public double getReceiverHeightM() { return receiverHeightM; }
+    public void setReceiverHeightM(double m) { this.receiverHeightM = Math.max(0.0, m); }
+
+    /** index 층 바닥의 높이(최하층 바닥 = 0, m) */
+    public double elevationM(int index) {
+        double z = 0.0;
+        for (int i = 0; i < index; i++) z += floors.get(i).heightM;
+        return z;
+    }
+
+    /** from 층과 to 층 사이 슬래브 감쇠 합(dB). 같은 층이면 0 */
+    public double slabLossDb(int from, int to, Band band) {
+        int lo = Math.min(from, to);
+        int hi = Math.max(from, to);
+        double sum = 0.0;
+        for (int i = lo + 1; i <= hi; i++) sum += floors.get(i).slabAttenuationDb(band);
+        return sum;
+    }
+}
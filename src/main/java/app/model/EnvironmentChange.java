@@ -0,0 +1,62 @@
+package app.model;
+
+/**
+ * WifiEnvironment 변경 이벤트 1건.
+ * - globalVersion: 환경 전체 버전(변경마다 1 증가)
+ * - entityVersion: 해당 AP/벽의 버전(그 객체가 바뀔 때마다 1 증가, 목록에서 빠졌다 다시 들어와도 이어짐).
+ *   설정(스케일/경로손실/관심 영역) 변경은 0
+ * - ap/wall/band는 종류에 따라 null
+ */
+public final class EnvironmentChange {
+
+    public enum Kind {
+        AP_ADDED, AP_REMOVED, AP_MOVED,
+        /** 이름/활성 등 위치/라디오 외 필드 */
+        AP_CHANGED,
+        RADIO_CHANGED,
+        WALL_ADDED, WALL_REMOVED, WALL_MOVED, WALL_MATERIAL_CHANGED,
+        /** 순서만 바뀜(정렬 등) */
+        APS_REORDERED, WALLS_REORDERED,
+        SCALE_CHANGED, PATH_LOSS_CHANGED,
+        /** 관심 영역(RoiMask) 변경 */
+        MASK_CHANGED
+    }
+
+    public final Kind kind;
+    public final long globalVersion;
+    public final long entityVersion;
+    public final AP ap;
+    public final Wall wall;
+    public final Band band;
+
+    EnvironmentChange(Kind kind, long globalVersion, long entityVersion, AP ap, Wall wall, Band band) {
+        this.kind = kind;
+        this.globalVersion = globalVersion;
+        this.entityVersion = entityVersion;
+        this.ap = ap;
+        this.wall = wall;
+        this.band = band;
+    }
+
+    /** AP 목록/내용 변경인지(벽/설정 제외) */
+    public boolean affectsAps() {
+        return switch (kind) {
+            case AP_ADDED, AP_REMOVED, AP_MOVED, AP_CHANGED, RADIO_CHANGED, APS_REORDERED -> true;
+            default -> false;
+        };
+    }
+
+    /** 벽 목록/내용 변경인지 */
+    public boolean affectsWalls() {
+        return switch (kind) {
+            case WALL_ADDED, WALL_REMOVED, WALL_MOVED, WALL_MATERIAL_CHANGED, WALLS_REORDERED -> true;
+            default -> false;
+        };
+    }
+
+    @Override
+    public String toString() {
+        String target = (ap != null) ? " " + ap.name : (wall != null) ? " " + wall : "";
+        return kind + target + (band != null ? " " + band : "") + " v" + globalVersion + "/" + entityVersion;
+    }
+}
@@ -0,0 +1,332 @@
+package app.model;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 실행 취소 가능한 환경 편집 1건.
+ * - apply: 편집 적용(다시 실행 포함), revert: 편집 전으로 되돌림
+ * - AP/벽 객체 자체는 그대로 두고 목록 위치/필드 값만 바꿈 → 다른 곳의 참조가 깨지지 않음
+ * - 속성 편집은 편집 전/후 값(ApState/WallState)을 통째로 보관하고,
+ *   적용 시 바뀐 필드만 WifiEnvironment 변경 API로 써서 종류별 변경 이벤트가 나가게 함
+ */
+public abstract class EnvironmentEdit {
+
+    private final String label;
+
+    protected EnvironmentEdit(String label) {
+        this.label = label;
+    }
+
+    /** 메뉴/툴팁 표시용 이름 */
+    public String label() { return label; }
+
+    public abstract void apply(WifiEnvironment env);
+
+    public abstract void revert(WifiEnvironment env);
+
+    // ===== AP =====
+
+    public static EnvironmentEdit addAp(AP ap) {
+        return new ListEdit<>("AP 추가: " + ap.name, WifiEnvironment::getAps, ap, -1, true);
+    }
+
+    /** 현재 목록 위치를 기억해 두었다가 되돌릴 때 같은 자리에 다시 넣음 */
+    public static EnvironmentEdit removeAp(WifiEnvironment env, AP ap) {
+        return new ListEdit<>("AP 삭제: " + ap.name, WifiEnvironment::getAps, ap, env.getAps().indexOf(ap), false);
+    }
+
+    public static EnvironmentEdit moveAp(AP ap, double x, double y) {
+        ApState before = ApState.of(ap);
+        ApState after = before.withPosition(x, y);
+        return new ApEdit("AP 이동: " + ap.name, ap, before, after);
+    }
+
+    /**
+     * 이미 바뀐 AP(편집 대화상자 등에서 직접 수정)를 기록할 때.
+     * before는 수정 전에 ApState.of(ap)로 찍어 둔 값
+     */
+    public static EnvironmentEdit apEdited(AP ap, ApState before) {
+        return new ApEdit("AP 편집: " + ap.name, ap, before, ApState.of(ap));
+    }
+
+    // ===== 벽 =====
+
+    public static EnvironmentEdit addWall(Wall wall) {
+        return new ListEdit<>("벽 추가", WifiEnvironment::getWalls, wall, -1, true);
+    }
+
+    /** 여러 벽을 한 번에 추가(자동 추출 등) */
+    public static EnvironmentEdit addWalls(List<Wall> walls) {
+        List<EnvironmentEdit> parts = new ArrayList<>(walls.size());
+        for (Wall w : walls) parts.add(addWall(w));
+        return new CompoundEdit("벽 " + walls.size() + "개 추가", parts);
+    }
+
+    public static EnvironmentEdit removeWall(WifiEnvironment env, Wall wall) {
+        return new ListEdit<>("벽 삭제", WifiEnvironment::getWalls, wall, env.getWalls().indexOf(wall), false);
+    }
+
+    public static EnvironmentEdit moveWall(Wall wall, double x1, double y1, double x2, double y2) {
+        WallState before = WallState.of(wall);
+        WallState after = new WallState(x1, y1, x2, y2, before.material, before.attn24, before.attn5);
+        return new WallEdit("벽 이동", wall, before, after);
+    }
+
+    public static EnvironmentEdit setWallMaterial(Wall wall, WallMaterial material) {
+        WallState before = WallState.of(wall);
+        WallMaterial m = (material == null) ? WallMaterial.CUSTOM : material;
+        WallState after = new WallState(before.x1, before.y1, before.x2, before.y2,
+                m, m.defaultAttenuation24Db(), m.defaultAttenuation5Db());
+        return new WallEdit("벽 재질: " + m.labelKo(), wall, before, after);
+    }
+
+    /** 이미 바뀐 벽을 기록할 때(before = 수정 전 WallState.of(wall)) */
+    public static EnvironmentEdit wallEdited(Wall wall, WallState before) {
+        return new WallEdit("벽 편집", wall, before, WallState.of(wall));
+    }
+
+    // ===== 관심 영역 =====
+
+    /** 관심 영역 교체(다각형 추가/자동 생성/지우기 모두 전후 마스크로 기록) */
+    public static EnvironmentEdit setRoiMask(WifiEnvironment env, RoiMask mask, String label) {
+        return new MaskEdit(label, env.getRoiMask(), (mask == null) ? RoiMask.EMPTY : mask);
+    }
+
+    // ===== 값 보관 =====
+
+    /** AP 필드 전체(이름/위치/활성/밴드별 라디오) */
+    public static final class ApState {
+        final String name;
+        final double x, y;
+        final boolean enabled;
+        final Map<Band, RadioState> radios;
+
+        private ApState(String name, double x, double y, boolean enabled, Map<Band, RadioState> radios) {
+            this.name = name;
+            this.x = x;
+            this.y = y;
+            this.enabled = enabled;
+            this.radios = radios;
+        }
+
+        public static ApState of(AP ap) {
+            Map<Band, RadioState> radios = new EnumMap<>(Band.class);
+            for (Map.Entry<Band, RadioConfig> e : ap.radios.entrySet()) {
+                if (e.getValue() != null) radios.put(e.getKey(), new RadioState(e.getValue()));
+            }
+            return new ApState(ap.name, ap.x, ap.y, ap.enabled, radios);
+        }
+
+        /** ap의 현재 값이 이 상태와 같은지(편집 대화상자에서 아무것도 안 바꿨는지 판단) */
+        public boolean matches(AP ap) {
+            if (!Objects.equals(ap.name, name) || ap.enabled != enabled || ap.x != x || ap.y != y) return false;
+            for (Map.Entry<Band, RadioState> e : radios.entrySet()) {
+                RadioConfig rc = ap.radios.get(e.getKey());
+                if (rc != null && !e.getValue().matches(rc)) return false;
+            }
+            return true;
+        }
+
+        ApState withPosition(double nx, double ny) {
+            return new ApState(name, nx, ny, enabled, radios);
+        }
+
+        /** 바뀐 필드만 쓰고 종류별 변경 이벤트 발생 */
+        void writeTo(WifiEnvironment env, AP ap) {
+            env.moveAp(ap, x, y);
+            if (!Objects.equals(ap.name, name) || ap.enabled != enabled) {
+                ap.name = name;
+                ap.enabled = enabled;
+                env.updateAp(ap);
+            }
+            for (Map.Entry<Band, RadioState> e : radios.entrySet()) {
+                RadioConfig rc = ap.radios.get(e.getKey());
+                if (rc == null || e.getValue().matches(rc)) continue;
+                e.getValue().writeTo(rc);
+                env.updateRadio(ap, e.getKey());
+            }
+        }
+    }
+
+    private static final class RadioState {
+        final boolean enabled;
+        final String ssid;
+        final double txPowerDbm;
+        final double antennaGain;
+        final String mode;
+        final int channel;
+        final int channelWidth;
+        final String security;
+
+        RadioState(RadioConfig rc) {
+            enabled = rc.enabled;
+            ssid = rc.ssid;
+            txPowerDbm = rc.txPowerDbm;
+            antennaGain = rc.antennaGain;
+            mode = rc.mode;
+            channel = rc.channel;
+            channelWidth = rc.channelWidth;
+            security = rc.security;
+        }
+
+        boolean matches(RadioConfig rc) {
+            return rc.enabled == enabled
+                    && Objects.equals(rc.ssid, ssid)
+                    && rc.txPowerDbm == txPowerDbm
+                    && rc.antennaGain == antennaGain
+                    && Objects.equals(rc.mode, mode)
+                    && rc.channel == channel
+                    && rc.channelWidth == channelWidth
+                    && Objects.equals(rc.security, security);
+        }
+
+        void writeTo(RadioConfig rc) {
+            rc.enabled = enabled;
+            rc.ssid = ssid;
+            rc.txPowerDbm = txPowerDbm;
+            rc.antennaGain = antennaGain;
+            rc.mode = mode;
+            rc.channel = channel;
+            rc.channelWidth = channelWidth;
+            rc.security = security;
+        }
+    }
+
+    /** 벽 좌표 + 재질 + 밴드별 감쇠 */
+    public static final class WallState {
+        final double x1, y1, x2, y2;
+        final WallMaterial material;
+        final double attn24, attn5;
+
+        WallState(double x1, double y1, double x2, double y2, WallMaterial material, double attn24, double attn5) {
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+            this.material = material;
+            this.attn24 = attn24;
+            this.attn5 = attn5;
+        }
+
+        public static WallState of(Wall w) {
+            return new WallState(w.x1, w.y1, w.x2, w.y2, w.getMaterial(), w.attenuationDb24, w.attenuationDb5);
+        }
+
+        /** 바뀐 필드만 쓰고 종류별 변경 이벤트 발생 */
+        void writeTo(WifiEnvironment env, Wall w) {
+            env.moveWall(w, x1, y1, x2, y2);
+            if (w.getMaterial() != material || w.attenuationDb24 != attn24 || w.attenuationDb5 != attn5) {
+                // setMaterial이 감쇠를 기본값으로 덮으므로 재질 → 감쇠 순서로
+                w.setMaterial(material);
+                w.attenuationDb24 = attn24;
+                w.attenuationDb5 = attn5;
+                w.attenuationDb = attn24;
+                env.updateWall(w);
+            }
+        }
+    }
+
+    // ===== 구현 =====
+
+    /** 목록에 객체 추가/삭제(index < 0이면 끝에 추가) */
+    private static final class ListEdit<T> extends EnvironmentEdit {
+        private final Function<WifiEnvironment, List<T>> list;
+        private final T item;
+        private final int index;
+        private final boolean add;
+
+        ListEdit(String label, Function<WifiEnvironment, List<T>> list, T item, int index, boolean add) {
+            super(label);
+            this.list = list;
+            this.item = item;
+            this.index = index;
+            this.add = add;
+        }
+
+        @Override
+        public void apply(WifiEnvironment env) {
+            if (add) insert(env);
+            else list.apply(env).remove(item);
+        }
+
+        @Override
+        public void revert(WifiEnvironment env) {
+            if (add) list.apply(env).remove(item);
+            else insert(env);
+        }
+
+        private void insert(WifiEnvironment env) {
+            List<T> l = list.apply(env);
+            if (index >= 0 && index <= l.size()) l.add(index, item);
+            else l.add(item);
+        }
+    }
+
+    private static final class ApEdit extends EnvironmentEdit {
+        private final AP ap;
+        private final ApState before, after;
+
+        ApEdit(String label, AP ap, ApState before, ApState after) {
+            super(label);
+            this.ap = ap;
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override public void apply(WifiEnvironment env) { after.writeTo(env, ap); }
+        @Override public void revert(WifiEnvironment env) { before.writeTo(env, ap); }
+    }
+
+    private static final class WallEdit extends EnvironmentEdit {
+        private final Wall wall;
+        private final WallState before, after;
+
+        WallEdit(String label, Wall wall, WallState before, WallState after) {
+            super(label);
+            this.wall = wall;
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override public void apply(WifiEnvironment env) { after.writeTo(env, wall); }
+        @Override public void revert(WifiEnvironment env) { before.writeTo(env, wall); }
+    }
+
+    private static final class MaskEdit extends EnvironmentEdit {
+        private final RoiMask before, after;
+
+        MaskEdit(String label, RoiMask before, RoiMask after) {
+            super(label);
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override public void apply(WifiEnvironment env) { env.setRoiMask(after); }
+        @Override public void revert(WifiEnvironment env) { env.setRoiMask(before); }
+    }
+
+    /** 여러 편집을 하나로(되돌릴 때는 역순) */
+    private static final class CompoundEdit extends EnvironmentEdit {
+        private final List<EnvironmentEdit> parts;
+
+        CompoundEdit(String label, List<EnvironmentEdit> parts) {
+            super(label);
+            this.parts = List.copyOf(parts);
+        }
+
+        @Override
+        public void apply(WifiEnvironment env) {
+            for (EnvironmentEdit e : parts) e.apply(env);
+        }
+
+        @Override
+        public void revert(WifiEnvironment env) {
+            for (int i = parts.size() - 1; i >= 0; i--) parts.get(i).revert(env);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package app.model;
+
+import app.engine.LayerCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * WifiEnvironment의 불변 스냅샷(계산 스레드 전용 입력).
+ * - AP/라디오는 기본형 배열로 복사(밴드별 [ap * BANDS + band.ordinal()])
+ * - 벽은 Wall 복사본 목록 + PackedWalls. 복사본은 스냅샷 밖에서 참조되지 않으므로
+ *   UI가 원본을 편집해도 계산 중인 값은 바뀌지 않음(복사본을 수정하지 말 것)
+ * - 이전 스냅샷과 벽/AP 내용이 같으면 해당 부분을 그대로 공유(구조 공유).
+ *   WifiEnvironment의 AP/벽 버전이 그대로면 해시도 다시 계산하지 않음
+ * - version: 내용이 바뀔 때마다 1씩 증가
+ */
+public final class EnvironmentSnapshot {
+
+    public static final int BANDS = Band.values().length;
+
+    private final long version;
+
+    // ===== 설정 =====
+    private final double scaleMPerPx;
+    private final double pathLossN;
+    private final double minDistanceM;
+    private final RoiMask roiMask;
+
+    // ===== AP (기본형 배열) =====
+    private final ApPart aps;
+
+    // ===== 벽 =====
+    private final WallPart walls;
+
+    /** AP 부분(공유 단위) */
+    private static final class ApPart {
+        final long key;
+        final long sourceVersion; // WifiEnvironment.getApsVersion() (생성 시점)
+        final int count;
+        final String[] name;
+        final double[] x, y;
+        final boolean[] enabled;
+        final long[] apKey;
+        final long[] apGainKey;
+        final boolean[] radioOn;  // [ap * BANDS + band]
+        final double[] txPowerDbm;
+        final double[] antennaGain;
+
+        ApPart(List<AP> src, long key, long sourceVersion) {
+            this.key = key;
+            this.sourceVersion = sourceVersion;
+            this.count = src.size();
+            name = new String[count];
+            x = new double[count];
+            y = new double[count];
+            enabled = new boolean[count];
+            apKey = new long[count];
+            apGainKey = new long[count];
+            radioOn = new boolean[count * BANDS];
+            txPowerDbm = new double[count * BANDS];
+            antennaGain = new double[count * BANDS];
+
+            for (int i = 0; i < count; i++) {
+                AP ap = src.get(i);
+                name[i] = ap.name;
+                x[i] = ap.x;
+                y[i] = ap.y;
+                enabled[i] = ap.enabled;
+                apKey[i] = LayerCache.apKey(ap);
+                apGainKey[i] = LayerCache.apGainKey(ap);
+                for (Band b : Band.values()) {
+                    RadioConfig rc = ap.radios.get(b);
+                    int k = i * BANDS + b.ordinal();
+                    if (rc == null) continue;
+                    radioOn[k] = rc.enabled;
+                    txPowerDbm[k] = rc.txPowerDbm;
+                    antennaGain[k] = rc.antennaGain;
+                }
+            }
+        }
+    }
+
+    /** 벽 부분(공유 단위) */
+    private static final class WallPart {
+        final long key;
+        final long sourceVersion; // WifiEnvironment.getWallsVersion() (생성 시점)
+        final List<Wall> list;
+        final PackedWalls packed;
+
+        WallPart(List<Wall> src, long key, long sourceVersion) {
+            this.key = key;
+            this.sourceVersion = sourceVersion;
+            List<Wall> copy = new ArrayList<>(src.size());
+            for (Wall w : src) copy.add(copyOf(w));
+            this.list = Collections.unmodifiableList(copy);
+            this.packed = PackedWalls.of(copy);
+        }
+    }
+
+    private EnvironmentSnapshot(long version, double scaleMPerPx, double pathLossN, double minDistanceM,
+                                RoiMask roiMask, ApPart aps, WallPart walls) {
+        this.version = version;
+        this.scaleMPerPx = scaleMPerPx;
+        this.pathLossN = pathLossN;
+        this.minDistanceM = minDistanceM;
+        this.roiMask = roiMask;
+        this.aps = aps;
+        this.walls = walls;
+    }
+
+    /**
+     * 현재 목록/설정으로 스냅샷 생성. prev와 같은 부분은 공유하고,
+     * 전부 같으면 prev 자체를 반환.
+     * apsVersion/wallsVersion이 prev 생성 때와 같으면 그 부분은 해시 없이 공유.
+     */
+    static EnvironmentSnapshot of(List<AP> apList,
+                                  List<Wall> wallList,
+                                  long apsVersion,
+                                  long wallsVersion,
+                                  double scaleMPerPx,
+                                  double pathLossN,
+                                  double minDistanceM,
+                                  RoiMask roiMask,
+                                  EnvironmentSnapshot prev) {
+        ApPart aps = (prev != null && prev.aps.sourceVersion == apsVersion) ? prev.aps : null;
+        if (aps == null) {
+            List<AP> apsCopy = new ArrayList<>(apList.size());
+            for (AP ap : apList) if (ap != null) apsCopy.add(ap);
+            long apsKey = apsKey(apsCopy);
+            aps = (prev != null && prev.aps.key == apsKey && prev.aps.count == apsCopy.size())
+                    ? prev.aps : new ApPart(apsCopy, apsKey, apsVersion);
+        }
+
+        WallPart walls = (prev != null && prev.walls.sourceVersion == wallsVersion) ? prev.walls : null;
+        if (walls == null) {
+            List<Wall> wallsCopy = new ArrayList<>(wallList.size());
+            for (Wall w : wallList) if (w != null) wallsCopy.add(w);
+            long wallsKey = LayerCache.wallsKey(wallsCopy);
+            walls = (prev != null && prev.walls.key == wallsKey && prev.walls.list.size() == wallsCopy.size())
+                    ? prev.walls : new WallPart(wallsCopy, wallsKey, wallsVersion);
+        }
+
+        if (prev != null && aps == prev.aps && walls == prev.walls
+                && same(scaleMPerPx, prev.scaleMPerPx)
+                && same(pathLossN, prev.pathLossN)
+                && same(minDistanceM, prev.minDistanceM)
+                && roiMask.key() == prev.roiMask.key()) {
+            return prev;
+        }
+
+        long version = (prev == null) ? 1 : prev.version + 1;
+        return new EnvironmentSnapshot(version, scaleMPerPx, pathLossN, minDistanceM, roiMask, aps, walls);
+    }
+
+    // ===== 설정 =====
+    public long getVersion() { return version; }
+    public double getScaleMPerPx() { return scaleMPerPx; }
+    public double getPathLossN() { return pathLossN; }
+    public double getMinDistanceM() { return minDistanceM; }
+
+    /** 관심 영역(비어 있으면 캔버스 전체 계산) */
+    public RoiMask roiMask() { return roiMask; }
+
+    // ===== AP =====
+    public int apCount() { return aps.count; }
+    public String apName(int i) { return aps.name[i]; }
+    public double apX(int i) { return aps.x[i]; }
+    public double apY(int i) { return aps.y[i]; }
+    public boolean apEnabled(int i) { return aps.enabled[i]; }
+
+    /** LayerCache.apKey(AP)와 같은 값(스냅샷 생성 시 계산) */
+    public long apKey(int i) { return aps.apKey[i]; }
+
+    /** LayerCache.apGainKey(AP)와 같은 값(레이어 캐시 키, 위치만) */
+    public long apGainKey(int i) { return aps.apGainKey[i]; }
+
+    public boolean radioEnabled(int i, Band b) { return aps.radioOn[i * BANDS + b.ordinal()]; }
+    public double txPowerDbm(int i, Band b) { return aps.txPowerDbm[i * BANDS + b.ordinal()]; }
+    public double antennaGain(int i, Band b) { return aps.antennaGain[i * BANDS + b.ordinal()]; }
+
+    /** AP 목록 전체 해시(순서/활성/이름 포함) */
+    public long apsKey() { return aps.key; }
+
+    // ===== 벽 =====
+    /** 벽 복사본(수정 불가 목록, 요소도 수정하지 말 것) */
+    public List<Wall> walls() { return walls.list; }
+    public PackedWalls packedWalls() { return walls.packed; }
+    public int wallCount() { return walls.list.size(); }
+
+    /** LayerCache.wallsKey(walls())와 같은 값 */
+    public long wallsKey() { return walls.key; }
+
+    /** 같은 벽 데이터를 공유하는지(다시 정리/색인할 필요 없음) */
+    public boolean sharesWallsWith(EnvironmentSnapshot other) {
+        return other != null && other.walls == walls;
+    }
+
+    // ===== 내부 =====
+
+    private static long apsKey(List<AP> aps) {
+        long h = 0x1157L;
+        for (AP ap : aps) {
+            h = LayerCache.mix(h, LayerCache.apKey(ap));
+            h = LayerCache.mix(h, ap.enabled ? 1 : 2);
+            h = LayerCache.mix(h, Objects.hashCode(ap.name));
+        }
+        return h;
+    }
+
+    private static boolean same(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+
+    private static Wall copyOf(Wall w) {
+        Wall c = new Wall(w.x1, w.y1, w.x2, w.y2, w.getMaterial());
+        c.attenuationDb24 = w.attenuationDb24;
+        c.attenuationDb5 = w.attenuationDb5;
+        c.attenuationDb = w.attenuationDb;
+        c.kind = w.kind;
+        return c;
+    }
+}
@@ -0,0 +1,54 @@
+package app.model;
+
+/**
+ * 건물의 한 층.
+ * - 층마다 평면도/벽/AP/스케일(= WifiEnvironment)을 따로 가짐
+ * - 좌표계(px)는 층끼리 정렬되어 있다고 가정(같은 기준점의 평면도)
+ * - 슬래브 감쇠는 "이 층 바닥" 슬래브 값(아래층과의 경계)
+ */
+public class Floor {
+
+    public String name;
+
+    /** 평면도 경로(없으면 null, 상대 경로면 건물 파일 기준) */
+    public String floorplan;
+
+    /** 히트맵 계산 캔버스 크기(보통 평면도 크기) */
+    public int widthPx;
+    public int heightPx;
+
+    public final WifiEnvironment env = new WifiEnvironment();
+
+    /** 층고(이 층 바닥 ~ 위층 바닥, m) */
+    public double heightM = 3.5;
+
+    /** 이 층 바닥 슬래브 감쇠(dB) */
+    public double slabAttenuationDb24 = 14.0;
+    public double slabAttenuationDb5 = 20.0;
+
+    /** AP 설치 높이(이 층 바닥 기준, m) */
+    public double apMountHeightM = 2.7;
+
+    public Floor() {}
+
+    public Floor(String name, int widthPx, int heightPx) {
+        this.name = name;
+        this.widthPx = widthPx;
+        this.heightPx = heightPx;
+    }
+
+    /** Wall.attenuationDb(band)와 같은 규칙(5GHz만 별도, 나머지는 2.4GHz 값) */
+    public double slabAttenuationDb(Band band) {
+        return (band == Band.GHZ_5) ? slabAttenuationDb5 : slabAttenuationDb24;
+    }
+
+    public void setSlabAttenuationDb(double a24, double a5) {
+        this.slabAttenuationDb24 = a24;
+        this.slabAttenuationDb5 = a5;
+    }
+
+    @Override
+    public String toString() {
+        return (name == null || name.isBlank()) ? "Floor" : name;
+    }
+}
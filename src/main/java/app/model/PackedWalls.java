@@ -0,0 +1,92 @@
+package app.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 벽 목록의 기본형 배열(SoA) 표현.
+ * - 대량 로드/스냅샷에서 Wall 객체 없이 좌표/재질/감쇠를 다루기 위함
+ * - 좌표는 x1,y1,x2,y2 순서로 4개씩 연속 저장
+ */
+public final class PackedWalls {
+
+    private static final WallMaterial[] MATERIALS = WallMaterial.values();
+
+    private int size;
+    private double[] coords;
+    private float[] att24;
+    private float[] att5;
+    private byte[] material;
+
+    public PackedWalls(int capacity) {
+        int cap = Math.max(4, capacity);
+        coords = new double[cap * 4];
+        att24 = new float[cap];
+        att5 = new float[cap];
+        material = new byte[cap];
+    }
+
+    /** Wall 목록을 그대로 복사(null 항목은 건너뜀) */
+    public static PackedWalls of(List<Wall> walls) {
+        PackedWalls p = new PackedWalls(walls.size());
+        for (Wall w : walls) {
+            if (w == null) continue;
+            p.add(w.x1, w.y1, w.x2, w.y2, w.getMaterial(), w.attenuationDb24, w.attenuationDb5);
+        }
+        return p;
+    }
+
+    public int size() { return size; }
+
+    public void add(double x1, double y1, double x2, double y2,
+                    WallMaterial mat, double attenuationDb24, double attenuationDb5) {
+        if (size == material.length) grow();
+        int c = size * 4;
+        coords[c] = x1;
+        coords[c + 1] = y1;
+        coords[c + 2] = x2;
+        coords[c + 3] = y2;
+        att24[size] = (float) attenuationDb24;
+        att5[size] = (float) attenuationDb5;
+        material[size] = (byte) (mat == null ? WallMaterial.CUSTOM : mat).ordinal();
+        size++;
+    }
+
+    private void grow() {
+        int cap = material.length * 2;
+        coords = Arrays.copyOf(coords, cap * 4);
+        att24 = Arrays.copyOf(att24, cap);
+        att5 = Arrays.copyOf(att5, cap);
+        material = Arrays.copyOf(material, cap);
+    }
+
+    public double x1(int i) { return coords[i * 4]; }
+    public double y1(int i) { return coords[i * 4 + 1]; }
+    public double x2(int i) { return coords[i * 4 + 2]; }
+    public double y2(int i) { return coords[i * 4 + 3]; }
+
+    public WallMaterial material(int i) { return MATERIALS[material[i]]; }
+
+    public double attenuationDb24(int i) { return att24[i]; }
+    public double attenuationDb5(int i) { return att5[i]; }
+
+    /** Wall.attenuationDb(band)와 같은 규칙(5GHz만 별도, 나머지는 2.4GHz 값) */
+    public double attenuationDb(int i, Band band) {
+        return (band == Band.GHZ_5) ? att5[i] : att24[i];
+    }
+
+    /** i번째 벽을 Wall 객체로 생성(프리셋 재질이면 프리셋 감쇠, CUSTOM이면 저장된 감쇠) */
+    public Wall toWall(int i) {
+        WallMaterial m = material(i);
+        Wall w = new Wall(x1(i), y1(i), x2(i), y2(i), m);
+        if (m == WallMaterial.CUSTOM) w.setAttenuationDb(att24[i], att5[i]);
+        return w;
+    }
+
+    public List<Wall> toWalls() {
+        List<Wall> out = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) out.add(toWall(i));
+        return out;
+    }
+}
@@ -0,0 +1,150 @@
+package app.model;
+
+import app.engine.LayerCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 관심 영역(실내) 마스크: 다각형 여러 개의 합집합(캔버스 px 좌표, 불변).
+ * - 비어 있으면 전체 캔버스를 계산
+ * - 비어 있지 않으면 어느 다각형에도 걸치지 않는 블록은 계산/색칠/블러하지 않음(주차장, 여백 등)
+ * - 다각형은 x0,y0,x1,y1,... 평면 배열(꼭짓점 3개 이상, 닫는 점 반복 없음)
+ */
+public final class RoiMask {
+
+    public static final RoiMask EMPTY = new RoiMask(List.of());
+
+    private final List<double[]> polygons;
+    private final long key;
+
+    private RoiMask(List<double[]> polygons) {
+        this.polygons = polygons;
+        long h = 0x120_1A5CL + polygons.size();
+        for (double[] p : polygons) {
+            h = LayerCache.mix(h, p.length);
+            for (double v : p) h = LayerCache.mix(h, Double.doubleToLongBits(v));
+        }
+        this.key = h;
+    }
+
+    /** 꼭짓점 3개 미만인 다각형은 버림 */
+    public static RoiMask of(Collection<double[]> polygons) {
+        List<double[]> list = new ArrayList<>(polygons.size());
+        for (double[] p : polygons) {
+            if (p != null && p.length >= 6 && p.length % 2 == 0) list.add(p.clone());
+        }
+        return list.isEmpty() ? EMPTY : new RoiMask(Collections.unmodifiableList(list));
+    }
+
+    /** 다각형 1개를 더한 새 마스크 */
+    public RoiMask withPolygon(double[] polygon) {
+        List<double[]> list = new ArrayList<>(polygons);
+        list.add(polygon);
+        return of(list);
+    }
+
+    public boolean isEmpty() { return polygons.isEmpty(); }
+
+    public int size() { return polygons.size(); }
+
+    /** i번째 다각형 좌표 복사본 */
+    public double[] polygon(int i) { return polygons.get(i).clone(); }
+
+    /** 내용 해시(레이어 캐시 geometry key에 섞음) */
+    public long key() { return key; }
+
+    /** 점이 어느 다각형 안에 있는지(짝홀 규칙). 빈 마스크면 항상 true */
+    public boolean contains(double x, double y) {
+        if (polygons.isEmpty()) return true;
+        for (double[] p : polygons) {
+            if (inside(p, x, y)) return true;
+        }
+        return false;
+    }
+
+    private static boolean inside(double[] p, double x, double y) {
+        boolean in = false;
+        int n = p.length / 2;
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            double xi = p[i * 2], yi = p[i * 2 + 1];
+            double xj = p[j * 2], yj = p[j * 2 + 1];
+            if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) in = !in;
+        }
+        return in;
+    }
+
+    /**
+     * 벽 끝점의 볼록 껍질을 marginPx만큼 바깥으로 넓힌 다각형 1개(외벽 기준 자동 영역).
+     * 벽이 3개 점도 안 되면 EMPTY
+     */
+    public static RoiMask fromWalls(Collection<Wall> walls, double marginPx) {
+        List<double[]> pts = new ArrayList<>(walls.size() * 2);
+        for (Wall w : walls) {
+            if (w == null) continue;
+            pts.add(new double[]{w.x1, w.y1});
+            pts.add(new double[]{w.x2, w.y2});
+        }
+        double[] hull = convexHull(pts);
+        if (hull.length < 6) return EMPTY;
+        return of(List.of(expand(hull, marginPx)));
+    }
+
+    /** 모노톤 체인 볼록 껍질(반시계, 평면 배열) */
+    static double[] convexHull(List<double[]> pts) {
+        double[][] a = pts.toArray(new double[0][]);
+        Arrays.sort(a, (p, q) -> p[0] != q[0] ? Double.compare(p[0], q[0]) : Double.compare(p[1], q[1]));
+        int n = a.length;
+        if (n < 3) return new double[0];
+        double[][] h = new double[n * 2][];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            while (k >= 2 && cross(h[k - 2], h[k - 1], a[i]) <= 0) k--;
+            h[k++] = a[i];
+        }
+        for (int i = n - 2, t = k + 1; i >= 0; i--) {
+            while (k >= t && cross(h[k - 2], h[k - 1], a[i]) <= 0) k--;
+            h[k++] = a[i];
+        }
+        int m = Math.max(0, k - 1);
+        double[] out = new double[m * 2];
+        for (int i = 0; i < m; i++) {
+            out[i * 2] = h[i][0];
+            out[i * 2 + 1] = h[i][1];
+        }
+        return out;
+    }
+
+    private static double cross(double[] o, double[] a, double[] b) {
+        return (a[0] - o[0]) * (b[1] - o[1]) - (a[1] - o[1]) * (b[0] - o[0]);
+    }
+
+    /** 볼록 다각형의 변을 바깥으로 margin만큼 평행 이동(꼭짓점은 이웃 변 이동선의 교점, 뾰족한 각은 3 x margin까지) */
+    private static double[] expand(double[] poly, double margin) {
+        if (margin <= 0) return poly;
+        int n = poly.length / 2;
+        double[] out = new double[poly.length];
+        for (int i = 0; i < n; i++) {
+            int prev = (i + n - 1) % n, next = (i + 1) % n;
+            // 반시계 다각형에서 변 (a→b)의 바깥 단위 법선 = (dy, -dx) / len
+            double[] n1 = outwardNormal(poly, prev, i);
+            double[] n2 = outwardNormal(poly, i, next);
+            double sx = n1[0] + n2[0], sy = n1[1] + n2[1];
+            double len2 = sx * sx + sy * sy;
+            double f = (len2 < 1e-12) ? 0.0 : Math.min(2.0 / len2, 3.0 / Math.sqrt(len2)) * margin;
+            out[i * 2] = poly[i * 2] + sx * f;
+            out[i * 2 + 1] = poly[i * 2 + 1] + sy * f;
+        }
+        return out;
+    }
+
+    private static double[] outwardNormal(double[] poly, int a, int b) {
+        double dx = poly[b * 2] - poly[a * 2];
+        double dy = poly[b * 2 + 1] - poly[a * 2 + 1];
+        double len = Math.hypot(dx, dy);
+        return (len == 0) ? new double[]{0, 0} : new double[]{dy / len, -dx / len};
+    }
+}
@@ -17,6 +17,9 @@ public class Wall {
 
     public String kind = material.kind();
 
+    // 객체별 변경 버전(WifiEnvironment가 잠금 안에서 올림)
+    long version;
+
     public Wall() {}
 
     public Wall(double x1, double y1, double x2, double y2, WallMaterial material) {
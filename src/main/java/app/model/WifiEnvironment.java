@@ -2,18 +2,59 @@ package app.model;
 
 import app.engine.WifiMath;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.geometry.Point2D;
 
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * AP/벽 목록 + 전파 설정.
+ * 변경 추적:
+ * - 목록 추가/삭제/순서 변경은 ObservableList에서 자동 감지
+ * - AP/벽 필드(public)는 직접 고치면 감지되지 않으므로 moveAp/updateRadio/setWallMaterial 등을 쓰거나,
+ *   직접 고친 뒤 updateAp/updateRadio/updateWall을 호출할 것
+ *   (스냅샷은 AP/벽 버전이 그대로면 해시 없이 이전 내용을 재사용)
+ * - 변경마다 전체/부분(AP, 벽)/객체별 버전이 단조 증가하고 EnvironmentChange를 리스너에 전달
+ */
 public class WifiEnvironment {
 
     private final ObservableList<AP> aps = FXCollections.observableArrayList();
     private final ObservableList<Wall> walls = FXCollections.observableArrayList();
 
+    // ===== 변경 추적 =====
+    private long version;
+    private long apsVersion;
+    private long wallsVersion;
+    private final List<Consumer<EnvironmentChange>> listeners = new CopyOnWriteArrayList<>();
+
+    public WifiEnvironment() {
+        aps.addListener((ListChangeListener<AP>) c -> {
+            while (c.next()) {
+                if (c.wasPermutated()) {
+                    fire(EnvironmentChange.Kind.APS_REORDERED, null, null, null);
+                    continue;
+                }
+                for (AP ap : c.getRemoved()) fire(EnvironmentChange.Kind.AP_REMOVED, ap, null, null);
+                for (AP ap : c.getAddedSubList()) fire(EnvironmentChange.Kind.AP_ADDED, ap, null, null);
+            }
+        });
+        walls.addListener((ListChangeListener<Wall>) c -> {
+            while (c.next()) {
+                if (c.wasPermutated()) {
+                    fire(EnvironmentChange.Kind.WALLS_REORDERED, null, null, null);
+                    continue;
+                }
+                for (Wall w : c.getRemoved()) fire(EnvironmentChange.Kind.WALL_REMOVED, null, w, null);
+                for (Wall w : c.getAddedSubList()) fire(EnvironmentChange.Kind.WALL_ADDED, null, w, null);
+            }
+        });
+    }
+
     private double scaleMPerPx = Double.NaN;
     private double pathLossN = 2.4;
 
@@ -24,13 +65,123 @@ public class WifiEnvironment {
     public ObservableList<Wall> getWalls() { return walls; }
 
     public double getScaleMPerPx() { return scaleMPerPx; }
-    public void setScaleMPerPx(double scaleMPerPx) { this.scaleMPerPx = scaleMPerPx; }
+
+    /** 값이 바뀔 때만 SCALE_CHANGED */
+    public void setScaleMPerPx(double scaleMPerPx) {
+        if (Double.compare(this.scaleMPerPx, scaleMPerPx) == 0) return;
+        this.scaleMPerPx = scaleMPerPx;
+        fire(EnvironmentChange.Kind.SCALE_CHANGED, null, null, null);
+    }
 
     public double getPathLossN() { return pathLossN; }
-    public void setPathLossN(double pathLossN) { this.pathLossN = pathLossN; }
+
+    /** 값이 바뀔 때만 PATH_LOSS_CHANGED */
+    public void setPathLossN(double pathLossN) {
+        if (Double.compare(this.pathLossN, pathLossN) == 0) return;
+        this.pathLossN = pathLossN;
+        fire(EnvironmentChange.Kind.PATH_LOSS_CHANGED, null, null, null);
+    }
 
     public double getMinDistanceM() { return MIN_DISTANCE_M; }
 
+    // 관심 영역(비어 있으면 캔버스 전체)
+    private RoiMask roiMask = RoiMask.EMPTY;
+
+    public RoiMask getRoiMask() { return roiMask; }
+
+    /** 내용이 바뀔 때만 MASK_CHANGED. null이면 EMPTY */
+    public void setRoiMask(RoiMask mask) {
+        RoiMask m = (mask == null) ? RoiMask.EMPTY : mask;
+        if (m.key() == roiMask.key()) return;
+        roiMask = m;
+        fire(EnvironmentChange.Kind.MASK_CHANGED, null, null, null);
+    }
+
+    // 마지막 스냅샷(바뀌지 않은 부분 공유용)
+    private EnvironmentSnapshot lastSnapshot;
+
+    /**
+     * 계산용 불변 스냅샷. 편집이 일어나는 스레드(FX)에서 호출할 것.
+     * 이전 스냅샷과 같은 벽/AP 부분은 공유하고, 아무것도 안 바뀌었으면 같은 객체를 반환.
+     */
+    public synchronized EnvironmentSnapshot snapshot() {
+        lastSnapshot = EnvironmentSnapshot.of(aps, walls, apsVersion, wallsVersion,
+                scaleMPerPx, pathLossN, MIN_DISTANCE_M, roiMask, lastSnapshot);
+        return lastSnapshot;
+    }
+
+    // ===== 변경 추적 API =====
+
+    public void addChangeListener(Consumer<EnvironmentChange> l) { listeners.add(l); }
+    public void removeChangeListener(Consumer<EnvironmentChange> l) { listeners.remove(l); }
+
+    /** 환경 전체 버전(어떤 변경이든 1 증가) */
+    public synchronized long getVersion() { return version; }
+
+    /** AP 목록/내용 버전 */
+    public synchronized long getApsVersion() { return apsVersion; }
+
+    /** 벽 목록/내용 버전 */
+    public synchronized long getWallsVersion() { return wallsVersion; }
+
+    /** AP 객체별 버전(한 번도 추적되지 않았으면 0) */
+    public synchronized long versionOf(AP ap) { return ap.version; }
+
+    /** 벽 객체별 버전(한 번도 추적되지 않았으면 0) */
+    public synchronized long versionOf(Wall wall) { return wall.version; }
+
+    public void moveAp(AP ap, double x, double y) {
+        if (ap.x == x && ap.y == y) return;
+        ap.x = x;
+        ap.y = y;
+        fire(EnvironmentChange.Kind.AP_MOVED, ap, null, null);
+    }
+
+    /** 이름/활성 등을 직접 고친 뒤 호출 */
+    public void updateAp(AP ap) {
+        fire(EnvironmentChange.Kind.AP_CHANGED, ap, null, null);
+    }
+
+    /** 라디오(RadioConfig) 필드를 직접 고친 뒤 호출 */
+    public void updateRadio(AP ap, Band band) {
+        fire(EnvironmentChange.Kind.RADIO_CHANGED, ap, null, band);
+    }
+
+    public void moveWall(Wall w, double x1, double y1, double x2, double y2) {
+        if (w.x1 == x1 && w.y1 == y1 && w.x2 == x2 && w.y2 == y2) return;
+        w.x1 = x1;
+        w.y1 = y1;
+        w.x2 = x2;
+        w.y2 = y2;
+        fire(EnvironmentChange.Kind.WALL_MOVED, null, w, null);
+    }
+
+    public void setWallMaterial(Wall w, WallMaterial material) {
+        w.setMaterial(material);
+        fire(EnvironmentChange.Kind.WALL_MATERIAL_CHANGED, null, w, null);
+    }
+
+    /** 감쇠 등 벽 필드를 직접 고친 뒤 호출 */
+    public void updateWall(Wall w) {
+        fire(EnvironmentChange.Kind.WALL_MATERIAL_CHANGED, null, w, null);
+    }
+
+    /** 버전 올리고 리스너 호출(리스너는 잠금 밖에서) */
+    private void fire(EnvironmentChange.Kind kind, AP ap, Wall wall, Band band) {
+        EnvironmentChange ev;
+        synchronized (this) {
+            version++;
+            // 객체별 버전은 객체에 보관(삭제된 객체와 함께 사라지고, 다시 넣으면 이어짐)
+            long entity = 0L;
+            if (ap != null) entity = ++ap.version;
+            else if (wall != null) entity = ++wall.version;
+            ev = new EnvironmentChange(kind, version, entity, ap, wall, band);
+            if (ev.affectsAps()) apsVersion = version;
+            if (ev.affectsWalls()) wallsVersion = version;
+        }
+        for (Consumer<EnvironmentChange> l : listeners) l.accept(ev);
+    }
+
     /** ✅ 호버용: 해당 지점에서 수신되는 (SSID, Band)별 RSSI 리스트 */
     public List<RssiResult> sampleRssiAllAt(int px, int py) {
         if (Double.isNaN(scaleMPerPx) || aps.isEmpty()) return List.of();
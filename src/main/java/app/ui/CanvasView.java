@@ -1,6 +1,12 @@
 package app.ui;
 
+import app.engine.ApIndex;
+import app.engine.RssiField;
+import app.engine.TileBoard;
+import app.engine.WifiMath;
+import app.jfr.CanvasRenderEvent;
 import app.model.*;
+import javafx.animation.AnimationTimer;
 import javafx.geometry.Point2D;
 import javafx.geometry.Pos;
 import javafx.scene.Group;
@@ -8,11 +14,14 @@ import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class CanvasView {
 
@@ -29,6 +38,34 @@ public class CanvasView {
     private final ScrollPane canvasSP;
     private final StackPane root;     // center root
 
+    // ===== 타일 스트리밍(계산 중 완성된 타일을 펄스마다 반영) =====
+    /** 펄스 1번에 타일 업로드에 쓰는 최대 시간 */
+    private static final long TILE_UPLOAD_BUDGET_NANOS = 4_000_000L;
+
+    private final AnimationTimer tilePump = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            pumpTiles();
+        }
+    };
+    private TileBoard tileBoard;
+    private WritableImage tileImage;
+    private Consumer<WritableImage> onTiles;
+    private double tileVmin, tileVmax;
+    private int[] tileArgb = new int[0];
+
+    // ===== 보이는 AP만 그리기 =====
+    /** AP 점/이름이 걸칠 수 있는 여유(px): 중심이 그리는 영역 밖이어도 이만큼 안이면 그림 */
+    private static final double AP_LABEL_MARGIN_PX = 160;
+    // 그리는 영역(캔버스 px): 보이는 영역 + 사방으로 뷰 크기 절반. 모르면 전체
+    private double drawX0 = Double.NEGATIVE_INFINITY, drawY0 = Double.NEGATIVE_INFINITY;
+    private double drawX1 = Double.POSITIVE_INFINITY, drawY1 = Double.POSITIVE_INFINITY;
+    // AP 위치 색인(AP 버전이 같으면 재사용)
+    private long apIndexVersion = -1;
+    private ApIndex apIndex;
+    private AP[] apIndexAps = new AP[0];
+    private int[] apNear = new int[0];
+
     public CanvasView() {
         baseImageView = new ImageView();
         baseImageView.setPreserveRatio(true);
@@ -72,6 +109,116 @@ public class CanvasView {
 
     public Group getFloorGroup() { return floorGroup; }
 
+    // ===== tile streaming =====
+
+    /**
+     * board에 게시되는 타일을 펄스(AnimationTimer)마다 예산 안에서 이미지에 올리고 onUpdate(image) 호출.
+     * base(nullable, 같은 크기)가 있으면 그 위에 덮어써서 아직 안 온 타일은 이전 히트맵이 보임.
+     * 새 board로 다시 부르거나 stopTileStream()을 부르면 이전 스트림은 끝남
+     */
+    public void streamTiles(TileBoard board, double vmin, double vmax, WritableImage base,
+                            Consumer<WritableImage> onUpdate) {
+        WritableImage img = new WritableImage(board.width, board.height);
+        if (base != null && (int) base.getWidth() == board.width && (int) base.getHeight() == board.height) {
+            img.getPixelWriter().setPixels(0, 0, board.width, board.height, base.getPixelReader(), 0, 0);
+        }
+        this.tileBoard = board;
+        this.tileImage = img;
+        this.onTiles = onUpdate;
+        this.tileVmin = vmin;
+        this.tileVmax = vmax;
+        tilePump.start();
+    }
+
+    /** 타일 스트림 중단(최종 이미지가 도착했거나 히트맵을 지울 때) */
+    public void stopTileStream() {
+        tilePump.stop();
+        tileBoard = null;
+        tileImage = null;
+        onTiles = null;
+    }
+
+    /** FX 펄스마다 1번: 새로 완성된 타일을 시간 예산 안에서 올림(남은 타일은 다음 펄스) */
+    private void pumpTiles() {
+        TileBoard board = tileBoard;
+        if (board == null) {
+            tilePump.stop();
+            return;
+        }
+        long deadline = System.nanoTime() + TILE_UPLOAD_BUDGET_NANOS;
+        int uploaded = 0;
+        int t;
+        while ((t = board.poll()) >= 0) {
+            uploadTile(board, t);
+            uploaded++;
+            if (System.nanoTime() >= deadline) break;
+        }
+        Consumer<WritableImage> cb = onTiles;
+        if (uploaded > 0 && cb != null) cb.accept(tileImage);
+        if (board.isDrained()) stopTileStream();
+    }
+
+    private void uploadTile(TileBoard board, int tile) {
+        RssiField f = board.field();
+        int step = f.gridStepPx;
+        int x0 = board.blockX0(tile) * step;
+        int y0 = board.blockY0(tile) * step;
+        int x1 = Math.min(f.width, board.blockX1(tile) * step);
+        int y1 = Math.min(f.height, board.blockY1(tile) * step);
+        int w = x1 - x0, h = y1 - y0;
+        if (w <= 0 || h <= 0) return;
+        if (tileArgb.length < w * h) tileArgb = new int[w * h];
+
+        for (int by = board.blockY0(tile); by < board.blockY1(tile); by++) {
+            int py0 = by * step - y0;
+            int py1 = Math.min(py0 + step, h);
+            for (int bx = board.blockX0(tile); bx < board.blockX1(tile); bx++) {
+                float v = f.get(bx, by);
+                int c = Float.isNaN(v) ? 0 : WifiMath.rssiToArgb(v, tileVmin, tileVmax);
+                int px0 = bx * step - x0;
+                int px1 = Math.min(px0 + step, w);
+                for (int y = py0; y < py1; y++) Arrays.fill(tileArgb, y * w + px0, y * w + px1, c);
+            }
+        }
+        tileImage.getPixelWriter().setPixels(x0, y0, w, h, PixelFormat.getIntArgbInstance(), tileArgb, 0, w);
+    }
+
+    // ===== visible region =====
+
+    /**
+     * 보이는 영역(캔버스 px)을 알려 줌. 그리는 영역(보이는 영역 + 여유)을 벗어났으면 새로 잡고 true
+     * → 호출자가 다시 render해야 새로 보이는 AP가 그려짐(여유 안의 스크롤은 다시 그리지 않음)
+     */
+    public boolean setVisibleRegion(double x0, double y0, double x1, double y1) {
+        if (x0 >= drawX0 && y0 >= drawY0 && x1 <= drawX1 && y1 <= drawY1) return false;
+        double padX = (x1 - x0) / 2, padY = (y1 - y0) / 2;
+        drawX0 = x0 - padX;
+        drawY0 = y0 - padY;
+        drawX1 = x1 + padX;
+        drawY1 = y1 + padY;
+        return true;
+    }
+
+    /** 그리는 영역 근처 AP를 apIndexAps 인덱스로 apNear에 채우고 개수 반환(목록 순서 = 겹칠 때 그리는 순서) */
+    private int apsInDrawRegion(WifiEnvironment env) {
+        long version = env.getApsVersion();
+        if (apIndex == null || version != apIndexVersion || apIndexAps.length != env.getAps().size()) {
+            apIndexAps = env.getAps().toArray(new AP[0]);
+            double[] x = new double[apIndexAps.length], y = new double[apIndexAps.length];
+            for (int i = 0; i < apIndexAps.length; i++) {
+                x[i] = apIndexAps[i].x;
+                y[i] = apIndexAps[i].y;
+            }
+            apIndex = ApIndex.of(x, y, null);
+            apNear = new int[apIndexAps.length];
+            apIndexVersion = version;
+        }
+        int n = apIndex.query(drawX0 - AP_LABEL_MARGIN_PX, drawY0 - AP_LABEL_MARGIN_PX,
+                drawX1 + AP_LABEL_MARGIN_PX, drawY1 + AP_LABEL_MARGIN_PX, apNear);
+        Arrays.sort(apNear, 0, n); // 색인은 버킷 순서
+        return n;
+    }
+
     // ===== render =====
     /**
      * Render everything.
@@ -81,13 +228,21 @@ public class CanvasView {
      * @param calibPts scale two points (size 0~2)
      * @param wallFirst first point for WALL/SCALE preview (nullable)
      * @param wallHover hover point for WALL/SCALE preview (nullable)
+     * @param dragAp AP being dragged (nullable)
+     * @param dragPos drawn position of dragAp while dragging (nullable)
      */
     public void render(WifiEnvironment env,
                        AppState state,
                        WritableImage heatmap,
                        List<Point2D> calibPts,
                        Point2D wallFirst,
-                       Point2D wallHover) {
+                       Point2D wallHover,
+                       AP dragAp,
+                       Point2D dragPos,
+                       List<Point2D> roiPts) {
+
+        CanvasRenderEvent ev = new CanvasRenderEvent();
+        ev.begin();
 
         g.clearRect(0, 0, drawCanvas.getWidth(), drawCanvas.getHeight());
 
@@ -109,6 +264,47 @@ public class CanvasView {
             g.strokeLine(w.x1, w.y1, w.x2, w.y2);
         }
 
+        // 관심 영역(저장된 마스크 외곽선)
+        RoiMask roi = env.getRoiMask();
+        if (!roi.isEmpty()) {
+            g.setLineDashes(6, 4);
+            g.setStroke(Color.SEAGREEN);
+            g.setLineWidth(1.5);
+            for (int i = 0; i < roi.size(); i++) {
+                double[] p = roi.polygon(i);
+                int n = p.length / 2;
+                double[] xs = new double[n];
+                double[] ys = new double[n];
+                for (int k = 0; k < n; k++) {
+                    xs[k] = p[k * 2];
+                    ys[k] = p[k * 2 + 1];
+                }
+                g.strokePolygon(xs, ys, n);
+            }
+            g.setLineDashes(null);
+        }
+
+        // 그리는 중인 관심 영역(꼭짓점 + 마우스까지)
+        if (state != null && state.getTool() == AppState.Tool.ROI && roiPts != null && !roiPts.isEmpty()) {
+            g.setStroke(Color.SEAGREEN);
+            g.setFill(Color.SEAGREEN);
+            g.setLineWidth(2.0);
+            for (int i = 0; i < roiPts.size(); i++) {
+                Point2D p = roiPts.get(i);
+                g.fillOval(p.getX() - 3, p.getY() - 3, 6, 6);
+                if (i > 0) {
+                    Point2D q = roiPts.get(i - 1);
+                    g.strokeLine(q.getX(), q.getY(), p.getX(), p.getY());
+                }
+            }
+            if (wallHover != null) {
+                Point2D last = roiPts.get(roiPts.size() - 1);
+                g.setLineDashes(8, 6);
+                g.strokeLine(last.getX(), last.getY(), wallHover.getX(), wallHover.getY());
+                g.setLineDashes(null);
+            }
+        }
+
         // preview line (WALL/SCALE)
         if (state != null && wallFirst != null && wallHover != null) {
             if (state.getTool() == AppState.Tool.WALL) {
@@ -126,18 +322,15 @@ public class CanvasView {
             }
         }
 
-        // AP
-        for (AP ap : env.getAps()) {
-            if (!ap.enabled) continue;
-            double r = 6;
-            g.setFill(Color.DODGERBLUE);
-            g.fillOval(ap.x - r, ap.y - r, 2 * r, 2 * r);
-            g.setStroke(Color.WHITE);
-            g.setLineWidth(2.0);
-            g.strokeOval(ap.x - r, ap.y - r, 2 * r, 2 * r);
-            g.setFill(Color.BLACK);
-            g.fillText(ap.name, ap.x + r + 4, ap.y - r - 2);
+        // AP(그리는 영역 근처만, 드래그 중인 AP는 드래그 위치에 마지막으로)
+        int nearCount = apsInDrawRegion(env);
+        boolean dragging = dragAp != null && dragPos != null;
+        for (int k = 0; k < nearCount; k++) {
+            AP ap = apIndexAps[apNear[k]];
+            if (!ap.enabled || (dragging && ap == dragAp)) continue;
+            drawAp(ap, ap.x, ap.y, Color.DODGERBLUE);
         }
+        if (dragging && dragAp.enabled) drawAp(dragAp, dragPos.getX(), dragPos.getY(), Color.ORANGE);
 
         // SCALE 확정선 (두 점 확정되면 실선)
         if (state != null && state.getTool() == AppState.Tool.SCALE && calibPts != null && calibPts.size() == 2) {
@@ -149,5 +342,24 @@ public class CanvasView {
                 g.strokeLine(a.getX(), a.getY(), b.getX(), b.getY());
             }
         }
+
+        ev.end();
+        if (ev.shouldCommit()) {
+            ev.walls = env.getWalls().size();
+            ev.aps = env.getAps().size();
+            ev.heatmap = heatmap != null;
+            ev.commit();
+        }
+    }
+
+    private void drawAp(AP ap, double x, double y, Color fill) {
+        double r = 6;
+        g.setFill(fill);
+        g.fillOval(x - r, y - r, 2 * r, 2 * r);
+        g.setStroke(Color.WHITE);
+        g.setLineWidth(2.0);
+        g.strokeOval(x - r, y - r, 2 * r, 2 * r);
+        g.setFill(Color.BLACK);
+        g.fillText(ap.name, x + r + 4, y - r - 2);
     }
-}
\ No newline at end of file
+}
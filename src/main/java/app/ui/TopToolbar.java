@@ -16,9 +16,18 @@ public class TopToolbar {
     private final ToolBar bar = new ToolBar();
 
     private Runnable onOpenFloorplan;
+    private Runnable onOpenProject;
+    private Runnable onSaveProject;
+    private Runnable onExtractWalls;
     private Runnable onGenerateHeatmap;
     private Runnable onClearHeatmap;
+    private Runnable onExportPng;
+    private Runnable onUndo;
+    private Runnable onRedo;
+    private Runnable onAutoRoi;
+    private Runnable onClearRoi;
     private Consumer<AppState.Tool> onToolChanged;
+    private Consumer<Boolean> onRecordToggled;
 
     // ✅ 줌 액션 콜백
     private Runnable onZoomFit;
@@ -30,22 +39,47 @@ public class TopToolbar {
     private final ToggleButton tScale = new ToggleButton("스케일");
     private final ToggleButton tAP = new ToggleButton("AP배치");
     private final ToggleButton tWall = new ToggleButton("벽그리기");
+    private final ToggleButton tRoi = new ToggleButton("영역 그리기");
 
     // ✅ 줌 UI
     private final Label zoomLabel = new Label("100%");
 
+    // JFR 기록 토글
+    private final ToggleButton tRecord = new ToggleButton("JFR 기록");
+
     public TopToolbar() {
         Button open = new Button("평면도 열기");
         Styles.styleFlatButton(open);
         open.setOnAction(e -> { if (onOpenFloorplan != null) onOpenFloorplan.run(); });
 
+        Button openProject = new Button("프로젝트 열기");
+        Styles.styleFlatButton(openProject);
+        openProject.setOnAction(e -> { if (onOpenProject != null) onOpenProject.run(); });
+
+        Button saveProject = new Button("프로젝트 저장");
+        Styles.styleFlatButton(saveProject);
+        saveProject.setOnAction(e -> { if (onSaveProject != null) onSaveProject.run(); });
+
+        Button undo = new Button("실행 취소");
+        Styles.styleFlatButton(undo);
+        undo.setTooltip(new Tooltip("Ctrl+Z"));
+        undo.setOnAction(e -> { if (onUndo != null) onUndo.run(); });
+
+        Button redo = new Button("다시 실행");
+        Styles.styleFlatButton(redo);
+        redo.setTooltip(new Tooltip("Ctrl+Y / Ctrl+Shift+Z"));
+        redo.setOnAction(e -> { if (onRedo != null) onRedo.run(); });
+
         tScale.setToggleGroup(toolGroup);
         tAP.setToggleGroup(toolGroup);
         tWall.setToggleGroup(toolGroup);
+        tRoi.setToggleGroup(toolGroup);
 
         Styles.styleToggle(tScale);
         Styles.styleToggle(tAP);
         Styles.styleToggle(tWall);
+        Styles.styleToggle(tRoi);
+        tRoi.setTooltip(new Tooltip("계산할 실내 영역: 클릭으로 꼭짓점, 첫 점을 다시 누르면 닫힘"));
 
         clearToolSelection();
 
@@ -61,6 +95,23 @@ public class TopToolbar {
             if (onToolChanged == null) return;
             onToolChanged.accept(tWall.isSelected() ? AppState.Tool.WALL : AppState.Tool.VIEW);
         });
+        tRoi.setOnAction(e -> {
+            if (onToolChanged == null) return;
+            onToolChanged.accept(tRoi.isSelected() ? AppState.Tool.ROI : AppState.Tool.VIEW);
+        });
+
+        Button autoRoi = new Button("영역 자동");
+        Styles.styleFlatButton(autoRoi);
+        autoRoi.setTooltip(new Tooltip("외벽을 감싸는 영역만 계산"));
+        autoRoi.setOnAction(e -> { if (onAutoRoi != null) onAutoRoi.run(); });
+
+        Button clearRoi = new Button("영역 지우기");
+        Styles.styleFlatButton(clearRoi);
+        clearRoi.setOnAction(e -> { if (onClearRoi != null) onClearRoi.run(); });
+
+        Button extract = new Button("벽 자동 추출");
+        Styles.styleFlatButton(extract);
+        extract.setOnAction(e -> { if (onExtractWalls != null) onExtractWalls.run(); });
 
         Button gen = new Button("히트맵 생성");
         Styles.styleAccentButton(gen);
@@ -70,6 +121,13 @@ public class TopToolbar {
         Styles.styleFlatButton(clear);
         clear.setOnAction(e -> { if (onClearHeatmap != null) onClearHeatmap.run(); });
 
+        Button export = new Button("PNG 내보내기");
+        Styles.styleFlatButton(export);
+        export.setOnAction(e -> { if (onExportPng != null) onExportPng.run(); });
+
+        Styles.styleToggle(tRecord);
+        tRecord.setOnAction(e -> { if (onRecordToggled != null) onRecordToggled.accept(tRecord.isSelected()); });
+
         // ===== ✅ Zoom box (오른쪽 정렬) =====
         HBox spacer = new HBox();
         HBox.setHgrow(spacer, Priority.ALWAYS);
@@ -77,11 +135,17 @@ public class TopToolbar {
         HBox zoomBox = buildZoomBox();
 
         bar.getItems().addAll(
-                open,
+                open, openProject, saveProject,
                 new Separator(),
-                tScale, tAP, tWall,
+                undo, redo,
                 new Separator(),
-                gen, clear,
+                tScale, tAP, tWall, extract,
+                new Separator(),
+                tRoi, autoRoi, clearRoi,
+                new Separator(),
+                gen, clear, export,
+                new Separator(),
+                tRecord,
                 spacer,
                 zoomBox
         );
@@ -128,9 +192,21 @@ public class TopToolbar {
     public Node getNode() { return bar; }
 
     public void setOnOpenFloorplan(Runnable r) { this.onOpenFloorplan = r; }
+    public void setOnOpenProject(Runnable r) { this.onOpenProject = r; }
+    public void setOnSaveProject(Runnable r) { this.onSaveProject = r; }
+    public void setOnExtractWalls(Runnable r) { this.onExtractWalls = r; }
     public void setOnGenerateHeatmap(Runnable r) { this.onGenerateHeatmap = r; }
     public void setOnClearHeatmap(Runnable r) { this.onClearHeatmap = r; }
+    public void setOnExportPng(Runnable r) { this.onExportPng = r; }
+    public void setOnUndo(Runnable r) { this.onUndo = r; }
+    public void setOnRedo(Runnable r) { this.onRedo = r; }
+    public void setOnAutoRoi(Runnable r) { this.onAutoRoi = r; }
+    public void setOnClearRoi(Runnable r) { this.onClearRoi = r; }
     public void setOnToolChanged(Consumer<AppState.Tool> c) { this.onToolChanged = c; }
+    public void setOnRecordToggled(Consumer<Boolean> c) { this.onRecordToggled = c; }
+
+    /** 기록 시작/저장 실패 시 토글 상태를 실제 상태로 되돌릴 때 사용 */
+    public void setRecordSelected(boolean selected) { tRecord.setSelected(selected); }
 
     // ✅ 줌 콜백 setter
     public void setOnZoomFit(Runnable r) { this.onZoomFit = r; }
@@ -154,5 +230,6 @@ public class TopToolbar {
         tScale.setSelected(false);
         tAP.setSelected(false);
         tWall.setSelected(false);
+        tRoi.setSelected(false);
     }
 }
\ No newline at end of file
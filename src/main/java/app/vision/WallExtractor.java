@@ -0,0 +1,470 @@
+package app.vision;
+
+import app.model.Wall;
+import app.model.WallMaterial;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgcodecs;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Scalar4i;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.bytedeco.opencv.opencv_imgproc.Vec4iVector;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * 평면도 이미지에서 벽 선분을 자동 추출(OpenCV).
+ *
+ * 파이프라인:
+ *   1) 그레이 → Otsu 이진화(어두운 선 = 벽)
+ *   2) 모폴로지 open(얇은 글자/해칭 제거) + close(끊긴 벽 잇기)
+ *   3) 타일 병렬: 모폴로지 골격(skeleton) → HoughLinesP
+ *   4) 동일 직선 병합(각도/법선거리/간격 허용치) → 벽 1개 = 긴 선분 1개
+ *   5) 끝점 스냅(끝점끼리, T자 접합은 상대 선분 위로) + 중복/짧은 선분 제거
+ *
+ * 좌표는 이미지 픽셀 = 캔버스 좌표.
+ */
+public final class WallExtractor {
+
+    /** 추출 옵션(px 단위) */
+    public static final class Options {
+        /** 이 두께보다 얇은 선은 벽이 아닌 것으로 보고 제거 */
+        public int minWallThicknessPx = 3;
+        /** 끊긴 벽을 이어 붙일 최대 간격(close) */
+        public int closeGapPx = 3;
+        /** 최종 선분 최소 길이 */
+        public double minLengthPx = 12.0;
+        /** 같은 직선으로 볼 각도 차(도) */
+        public double angleToleranceDeg = 2.0;
+        /** 같은 직선으로 볼 법선 방향 거리(벽 두께 절반 정도) */
+        public double offsetTolerancePx = 4.0;
+        /** 같은 직선 위 선분 사이를 이어 붙일 최대 간격 */
+        public double mergeGapPx = 10.0;
+        /** 수평/수직에서 이 각도 이내면 정확히 수평/수직으로 */
+        public double axisSnapDeg = 1.5;
+        /** 끝점 스냅 반경 */
+        public double snapPx = 6.0;
+        /** 타일 크기/겹침 */
+        public int tilePx = 2048;
+        public int tileMarginPx = 32;
+        /** 병렬 스레드 수 */
+        public int parallelism = Runtime.getRuntime().availableProcessors();
+        /** 추출된 벽의 재질 */
+        public WallMaterial material = WallMaterial.CONCRETE_WALL;
+    }
+
+    /** 추출 결과 */
+    public static final class Result {
+        public final List<Wall> walls;
+        public final int rawSegments;    // Hough 원본 선분 수(타일 합)
+        public final int mergedSegments; // 병합 직후 선분 수
+        public final long millis;
+
+        Result(List<Wall> walls, int rawSegments, int mergedSegments, long millis) {
+            this.walls = walls;
+            this.rawSegments = rawSegments;
+            this.mergedSegments = mergedSegments;
+            this.millis = millis;
+        }
+
+        @Override
+        public String toString() {
+            return "walls=" + walls.size() + " raw=" + rawSegments + " merged=" + mergedSegments
+                    + " (" + millis + " ms)";
+        }
+    }
+
+    private final Options opt;
+
+    public WallExtractor() {
+        this(new Options());
+    }
+
+    public WallExtractor(Options opt) {
+        this.opt = opt;
+    }
+
+    /** 이미지 파일에서 추출(큰 스캔은 ImageIO보다 imread가 빠름) */
+    public Result extract(Path image) throws IOException {
+        try (Mat gray = opencv_imgcodecs.imread(image.toAbsolutePath().toString(), opencv_imgcodecs.IMREAD_GRAYSCALE)) {
+            if (gray.empty()) throw new IOException("이미지 로드 실패: " + image);
+            return extract(gray);
+        }
+    }
+
+    /** 메모리에 있는 평면도에서 추출 */
+    public Result extract(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        byte[] px = new byte[w * h];
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            image.getRGB(0, y, w, 1, row, 0, w);
+            for (int x = 0; x < w; x++) {
+                int c = row[x];
+                int a = (c >>> 24) & 0xFF;
+                int lum = (((c >> 16) & 0xFF) * 77 + ((c >> 8) & 0xFF) * 150 + (c & 0xFF) * 29) >> 8;
+                // 투명 영역은 배경(흰색)으로
+                px[y * w + x] = (byte) (255 - ((255 - lum) * a) / 255);
+            }
+        }
+        try (Mat gray = new Mat(h, w, opencv_core.CV_8UC1)) {
+            gray.data().put(px);
+            return extract(gray);
+        }
+    }
+
+    /** 8비트 그레이 Mat에서 추출 */
+    public Result extract(Mat gray) {
+        long t0 = System.nanoTime();
+
+        // 1) 이진화(벽 = 255)
+        Mat bin = new Mat();
+        opencv_imgproc.threshold(gray, bin, 0, 255, opencv_imgproc.THRESH_BINARY_INV | opencv_imgproc.THRESH_OTSU);
+
+        // 2) 모폴로지
+        if (opt.minWallThicknessPx > 1) {
+            try (Mat k = opencv_imgproc.getStructuringElement(opencv_imgproc.MORPH_RECT,
+                    new Size(opt.minWallThicknessPx, opt.minWallThicknessPx))) {
+                opencv_imgproc.morphologyEx(bin, bin, opencv_imgproc.MORPH_OPEN, k);
+            }
+        }
+        if (opt.closeGapPx > 0) {
+            try (Mat k = opencv_imgproc.getStructuringElement(opencv_imgproc.MORPH_RECT,
+                    new Size(opt.closeGapPx * 2 + 1, opt.closeGapPx * 2 + 1))) {
+                opencv_imgproc.morphologyEx(bin, bin, opencv_imgproc.MORPH_CLOSE, k);
+            }
+        }
+
+        // 3) 타일 병렬 선분 검출
+        List<float[]> tiles;
+        try {
+            tiles = detectTiles(bin);
+        } finally {
+            bin.close();
+        }
+        int raw = 0;
+        for (float[] t : tiles) raw += t.length / 4;
+        float[] segs = new float[raw * 4];
+        int o = 0;
+        for (float[] t : tiles) {
+            System.arraycopy(t, 0, segs, o, t.length);
+            o += t.length;
+        }
+
+        // 4) 동일 직선 병합
+        double[] merged = mergeCollinear(segs);
+        int mergedCount = merged.length / 4;
+
+        // 5) 끝점 스냅 + 정리
+        List<Wall> walls = snapAndDedupe(merged);
+
+        return new Result(walls, raw, mergedCount, (System.nanoTime() - t0) / 1_000_000L);
+    }
+
+    // ===== 3) 타일 검출 =====
+
+    private List<float[]> detectTiles(Mat bin) {
+        int w = bin.cols();
+        int h = bin.rows();
+        int ts = Math.max(256, opt.tilePx);
+        int tilesX = (w + ts - 1) / ts;
+        int tilesY = (h + ts - 1) / ts;
+        int count = tilesX * tilesY;
+
+        float[][] out = new float[count][];
+        int threads = Math.max(1, Math.min(opt.parallelism, count));
+        if (threads == 1) {
+            for (int i = 0; i < count; i++) out[i] = detectTile(bin, i % tilesX, i / tilesX, ts);
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                List<ForkJoinTask<?>> tasks = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    final int tile = i;
+                    tasks.add(pool.submit(() -> { out[tile] = detectTile(bin, tile % tilesX, tile / tilesX, ts); }));
+                }
+                for (ForkJoinTask<?> t : tasks) t.join();
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return Arrays.asList(out);
+    }
+
+    /** 타일 1개(겹침 포함) 골격 + HoughLinesP → 전역 좌표 float[x1,y1,x2,y2,...] */
+    private float[] detectTile(Mat bin, int tx, int ty, int ts) {
+        int m = opt.tileMarginPx;
+        int x0 = Math.max(0, tx * ts - m);
+        int y0 = Math.max(0, ty * ts - m);
+        int x1 = Math.min(bin.cols(), (tx + 1) * ts + m);
+        int y1 = Math.min(bin.rows(), (ty + 1) * ts + m);
+
+        try (Rect roi = new Rect(x0, y0, x1 - x0, y1 - y0);
+             Mat view = bin.apply(roi);
+             Mat thin = new Mat();
+             Vec4iVector lines = new Vec4iVector()) {
+
+            if (opencv_core.countNonZero(view) == 0) return new float[0];
+
+            skeletonize(view, thin);
+            int minLen = (int) Math.max(4, Math.round(opt.minLengthPx / 2));
+            opencv_imgproc.HoughLinesP(thin, lines, 1.0, Math.PI / 180.0, 15, minLen, 3.0);
+
+            int n = (int) lines.size();
+            float[] out = new float[n * 4];
+            for (int i = 0; i < n; i++) {
+                Scalar4i l = lines.get(i);
+                out[i * 4] = l.get(0) + x0;
+                out[i * 4 + 1] = l.get(1) + y0;
+                out[i * 4 + 2] = l.get(2) + x0;
+                out[i * 4 + 3] = l.get(3) + y0;
+            }
+            return out;
+        }
+    }
+
+    /**
+     * 모폴로지 골격: skel |= img - open(img), img = erode(img) 반복.
+     * (ximgproc.thinning은 highgui/GTK 네이티브를 끌어와서 imgproc만 사용)
+     */
+    private static void skeletonize(Mat src, Mat skel) {
+        try (Mat img = src.clone();
+             Mat opened = new Mat();
+             Mat eroded = new Mat();
+             Mat k = opencv_imgproc.getStructuringElement(opencv_imgproc.MORPH_CROSS, new Size(3, 3))) {
+            skel.create(src.rows(), src.cols(), opencv_core.CV_8UC1);
+            skel.put(new Scalar(0.0));
+            while (opencv_core.countNonZero(img) > 0) {
+                opencv_imgproc.erode(img, eroded, k);
+                opencv_imgproc.dilate(eroded, opened, k);
+                opencv_core.subtract(img, opened, opened);
+                opencv_core.bitwise_or(skel, opened, skel);
+                eroded.copyTo(img);
+            }
+        }
+    }
+
+    // ===== 4) 동일 직선 병합 =====
+
+    /**
+     * 각도 → 법선거리 → 선분 방향 구간 순으로 정렬/군집해 한 직선 위 선분들을 하나로 합침.
+     * O(n log n). 결과 double[x1,y1,x2,y2,...]
+     */
+    double[] mergeCollinear(float[] segs) {
+        int n = segs.length / 4;
+        double angTol = Math.toRadians(opt.angleToleranceDeg);
+        double axisTol = Math.toRadians(opt.axisSnapDeg);
+
+        double[] theta = new double[n];
+        double[] len = new double[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            double dx = segs[i * 4 + 2] - segs[i * 4];
+            double dy = segs[i * 4 + 3] - segs[i * 4 + 1];
+            double a = Math.atan2(dy, dx);
+            if (a < 0) a += Math.PI;
+            if (a >= Math.PI) a -= Math.PI;
+            // 수평/수직 스냅(0과 π 경계 문제도 여기서 해소)
+            if (a < axisTol || Math.PI - a < axisTol) a = 0.0;
+            else if (Math.abs(a - Math.PI / 2) < axisTol) a = Math.PI / 2;
+            theta[i] = a;
+            len[i] = Math.hypot(dx, dy);
+            order[i] = i;
+        }
+        Arrays.sort(order, (p, q) -> Double.compare(theta[p], theta[q]));
+
+        List<double[]> out = new ArrayList<>();
+        int s = 0;
+        while (s < n) {
+            // 각도 그룹
+            int e = s + 1;
+            while (e < n && theta[order[e]] - theta[order[s]] <= angTol) e++;
+
+            double wSum = 0, aSum = 0;
+            for (int k = s; k < e; k++) {
+                wSum += len[order[k]];
+                aSum += theta[order[k]] * len[order[k]];
+            }
+            double a = (wSum > 0) ? aSum / wSum : theta[order[s]];
+            mergeGroup(segs, order, s, e, a, len, out);
+            s = e;
+        }
+
+        double[] res = new double[out.size() * 4];
+        for (int i = 0; i < out.size(); i++) System.arraycopy(out.get(i), 0, res, i * 4, 4);
+        return res;
+    }
+
+    /** 같은 각도 그룹: 법선거리(rho)로 군집 후 방향 구간 병합 */
+    private void mergeGroup(float[] segs, Integer[] order, int s, int e, double a,
+                            double[] len, List<double[]> out) {
+        double ux = Math.cos(a), uy = Math.sin(a);
+        double nx = -uy, ny = ux;
+
+        int m = e - s;
+        double[] rho = new double[m];
+        double[] t0 = new double[m];
+        double[] t1 = new double[m];
+        double[] w = new double[m];
+        Integer[] idx = new Integer[m];
+        for (int k = 0; k < m; k++) {
+            int i = order[s + k];
+            double mx = (segs[i * 4] + segs[i * 4 + 2]) * 0.5;
+            double my = (segs[i * 4 + 1] + segs[i * 4 + 3]) * 0.5;
+            rho[k] = nx * mx + ny * my;
+            double ta = ux * segs[i * 4] + uy * segs[i * 4 + 1];
+            double tb = ux * segs[i * 4 + 2] + uy * segs[i * 4 + 3];
+            t0[k] = Math.min(ta, tb);
+            t1[k] = Math.max(ta, tb);
+            w[k] = Math.max(1e-6, len[i]);
+            idx[k] = k;
+        }
+        Arrays.sort(idx, (p, q) -> Double.compare(rho[p], rho[q]));
+
+        int cs = 0;
+        while (cs < m) {
+            int ce = cs + 1;
+            while (ce < m && rho[idx[ce]] - rho[idx[cs]] <= opt.offsetTolerancePx) ce++;
+
+            // 군집 내에서 t 순 정렬 후 간격 mergeGap 이하끼리 연결
+            Integer[] byT = Arrays.copyOfRange(idx, cs, ce);
+            Arrays.sort(byT, (p, q) -> Double.compare(t0[p], t0[q]));
+
+            double runT0 = t0[byT[0]], runT1 = t1[byT[0]];
+            double rw = w[byT[0]], rr = rho[byT[0]] * w[byT[0]];
+            for (int k = 1; k <= byT.length; k++) {
+                boolean flush = (k == byT.length) || (t0[byT[k]] - runT1 > opt.mergeGapPx);
+                if (flush) {
+                    double r = rr / rw;
+                    out.add(new double[]{
+                            nx * r + ux * runT0, ny * r + uy * runT0,
+                            nx * r + ux * runT1, ny * r + uy * runT1});
+                    if (k == byT.length) break;
+                    runT0 = t0[byT[k]];
+                    runT1 = t1[byT[k]];
+                    rw = w[byT[k]];
+                    rr = rho[byT[k]] * w[byT[k]];
+                } else {
+                    runT1 = Math.max(runT1, t1[byT[k]]);
+                    rw += w[byT[k]];
+                    rr += rho[byT[k]] * w[byT[k]];
+                }
+            }
+            cs = ce;
+        }
+    }
+
+    // ===== 5) 스냅 + 정리 =====
+
+    /**
+     * - 가까운 끝점끼리 하나로(격자 해시)
+     * - 다른 선분 몸통 가까이 끝난 끝점은 그 선분 위로 투영(T자 접합)
+     * - 길이 minLength 미만/중복 제거
+     */
+    List<Wall> snapAndDedupe(double[] segs) {
+        int n = segs.length / 4;
+        double snap = opt.snapPx;
+        double cell = Math.max(1.0, snap);
+
+        // 끝점 군집(첫 대표점으로 스냅)
+        Map<Long, List<double[]>> grid = new HashMap<>();
+        for (int i = 0; i < n * 2; i++) {
+            double x = segs[i * 2], y = segs[i * 2 + 1];
+            long cx = (long) Math.floor(x / cell), cy = (long) Math.floor(y / cell);
+            double[] rep = null;
+            double best = snap * snap;
+            for (long gy = cy - 1; gy <= cy + 1 && rep == null; gy++) {
+                for (long gx = cx - 1; gx <= cx + 1; gx++) {
+                    List<double[]> l = grid.get(cellKey(gx, gy));
+                    if (l == null) continue;
+                    for (double[] p : l) {
+                        double dx = p[0] - x, dy = p[1] - y;
+                        double d2 = dx * dx + dy * dy;
+                        if (d2 <= best) { best = d2; rep = p; }
+                    }
+                }
+            }
+            if (rep == null) {
+                rep = new double[]{x, y};
+                grid.computeIfAbsent(cellKey(cx, cy), k -> new ArrayList<>()).add(rep);
+            }
+            segs[i * 2] = rep[0];
+            segs[i * 2 + 1] = rep[1];
+        }
+
+        // T자 접합: 선분 버킷(64px) 격자에서 가까운 선분 몸통으로 끝점 투영
+        final double bucket = 64.0;
+        Map<Long, List<Integer>> segGrid = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            long bx0 = (long) Math.floor((Math.min(segs[i * 4], segs[i * 4 + 2]) - snap) / bucket);
+            long bx1 = (long) Math.floor((Math.max(segs[i * 4], segs[i * 4 + 2]) + snap) / bucket);
+            long by0 = (long) Math.floor((Math.min(segs[i * 4 + 1], segs[i * 4 + 3]) - snap) / bucket);
+            long by1 = (long) Math.floor((Math.max(segs[i * 4 + 1], segs[i * 4 + 3]) + snap) / bucket);
+            for (long by = by0; by <= by1; by++) {
+                for (long bx = bx0; bx <= bx1; bx++) {
+                    segGrid.computeIfAbsent(cellKey(bx, by), k -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            for (int end = 0; end < 2; end++) {
+                int pi = i * 4 + end * 2;
+                double x = segs[pi], y = segs[pi + 1];
+                List<Integer> cands = segGrid.get(cellKey((long) Math.floor(x / bucket), (long) Math.floor(y / bucket)));
+                if (cands == null) continue;
+                for (int j : cands) {
+                    if (j == i) continue;
+                    double ax = segs[j * 4], ay = segs[j * 4 + 1], bx = segs[j * 4 + 2], by = segs[j * 4 + 3];
+                    double vx = bx - ax, vy = by - ay;
+                    double l2 = vx * vx + vy * vy;
+                    if (l2 < 1e-9) continue;
+                    double t = ((x - ax) * vx + (y - ay) * vy) / l2;
+                    if (t <= 0.0 || t >= 1.0) continue; // 끝점 근처는 위에서 처리
+                    double qx = ax + t * vx, qy = ay + t * vy;
+                    double dx = qx - x, dy = qy - y;
+                    if (dx * dx + dy * dy <= snap * snap) {
+                        segs[pi] = qx;
+                        segs[pi + 1] = qy;
+                        break;
+                    }
+                }
+            }
+        }
+
+        // 정리
+        double minLen2 = opt.minLengthPx * opt.minLengthPx;
+        Set<String> seen = new HashSet<>();
+        List<Wall> walls = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            double x1 = segs[i * 4], y1 = segs[i * 4 + 1], x2 = segs[i * 4 + 2], y2 = segs[i * 4 + 3];
+            double dx = x2 - x1, dy = y2 - y1;
+            if (dx * dx + dy * dy < minLen2) continue;
+
+            long a = cellKey(Math.round(x1 * 2), Math.round(y1 * 2));
+            long b = cellKey(Math.round(x2 * 2), Math.round(y2 * 2));
+            String key = (a < b) ? a + ":" + b : b + ":" + a;
+            if (!seen.add(key)) continue;
+
+            walls.add(new Wall(x1, y1, x2, y2, opt.material));
+        }
+        return walls;
+    }
+
+    private static long cellKey(long x, long y) {
+        return (x << 32) ^ (y & 0xffffffffL);
+    }
+}
@@ -0,0 +1,61 @@
+package app.engine;
+
+import app.bench.SyntheticBuildings;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AP 컬링은 이길 수 없는 AP만 건너뛰므로 합성 결과가 컬링 없이 계산한 것과 같아야 함
+ */
+class ApCullingTest {
+
+    private static final int GRID = 16;
+    private static final double TOLERANCE_DB = 1e-3;
+
+    @Test
+    void culledFieldMatchesUnculled() {
+        for (SyntheticBuildings.Kind kind : new SyntheticBuildings.Kind[] {
+                SyntheticBuildings.Kind.OFFICE, SyntheticBuildings.Kind.OPEN_PLAN}) {
+            SyntheticBuildings.Scenario b = SyntheticBuildings.generate(kind, 42, 1);
+            RssiField culled = generate(b, true);
+            RssiField unculled = generate(b, false);
+
+            for (int row = 0; row < culled.rows; row++) {
+                for (int col = 0; col < culled.cols; col++) {
+                    float c = culled.get(col, row), u = unculled.get(col, row);
+                    if (Float.isNaN(u)) {
+                        assertTrue(Float.isNaN(c), kind + " 블록 (" + col + ", " + row + ")");
+                    } else {
+                        assertEquals(u, c, TOLERANCE_DB, kind + " 블록 (" + col + ", " + row + ")");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void cullingSkipsApEvaluations() {
+        SyntheticBuildings.Scenario b = SyntheticBuildings.generate(SyntheticBuildings.Kind.OFFICE, 42, 1);
+        long culled = apEvaluations(b, true);
+        long unculled = apEvaluations(b, false);
+        assertTrue(culled < unculled, "컬링 " + culled + " / 전체 " + unculled);
+    }
+
+    private static RssiField generate(SyntheticBuildings.Scenario b, boolean culling) {
+        try (HeatmapGenerator gen = new HeatmapGenerator(b.env)) {
+            gen.setApCulling(culling);
+            return gen.generate(new HeatmapGenerator.Request(b.widthPx, b.heightPx, GRID)).field;
+        }
+    }
+
+    private static long apEvaluations(SyntheticBuildings.Scenario b, boolean culling) {
+        try (HeatmapGenerator gen = new HeatmapGenerator(b.env)) {
+            gen.setApCulling(culling);
+            GenerationReport report = new GenerationReport();
+            gen.generate(new HeatmapGenerator.Request(b.widthPx, b.heightPx, GRID).report(report));
+            return report.getApEvaluations();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package app.io;
+
+import app.bench.SyntheticBuildings;
+import app.engine.HeatmapGenerator;
+import app.engine.LayerCache;
+import app.engine.RssiField;
+import app.model.AppState;
+import app.model.WifiEnvironment;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 스냅샷 쓰기 → 읽기 왕복: 레이어 양자화/차분, 컬링 정보 복원, 손상된 타일 거부
+ */
+class ProjectSnapshotTest {
+
+    private static final int GRID = 8;
+
+    /** 양자화 오차(0.01 dB 단위 반올림) + float 여유 */
+    private static final double Q_TOLERANCE_DB = 0.0051;
+
+    @Test
+    void roundTripRestoresLayersAndCullings() throws IOException {
+        SyntheticBuildings.Scenario b = SyntheticBuildings.generate(SyntheticBuildings.Kind.OFFICE, 42, 1);
+        byte[] bytes;
+        RssiField before;
+        Map<Long, RssiField> saved;
+        int savedCullings;
+        try (HeatmapGenerator gen = new HeatmapGenerator(b.env)) {
+            before = gen.generate(new HeatmapGenerator.Request(b.widthPx, b.heightPx, GRID)).field;
+            saved = gen.getLayerCache().copyLayers();
+            savedCullings = gen.getLayerCache().copyCullings().size();
+            bytes = write(b.env, gen.getLayerCache());
+        }
+        assertTrue(savedCullings > 0, "여러 AP 사무실이면 컬링된 셀이 있어야 함");
+
+        WifiEnvironment env = new WifiEnvironment();
+        try (HeatmapGenerator gen = new HeatmapGenerator(env)) {
+            LayerCache cache = gen.getLayerCache();
+            ProjectSnapshot.Loaded loaded =
+                    ProjectSnapshot.read(new ByteArrayInputStream(bytes), env, new AppState(), cache);
+
+            assertEquals(saved.size(), loaded.layers);
+            assertEquals(savedCullings, cache.copyCullings().size());
+            Map<Long, RssiField> restored = cache.copyLayers();
+            for (Map.Entry<Long, RssiField> e : saved.entrySet()) {
+                RssiField r = restored.get(e.getKey());
+                assertNotNull(r, "밴드 레이어 키 유지");
+                assertFieldEquals(e.getValue(), r, Q_TOLERANCE_DB);
+            }
+
+            // 컬링 정보까지 복원됐으면 다시 계산할 레이어가 없음
+            assertEquals(0, gen.countStaleLayers(env.snapshot(), b.widthPx, b.heightPx, GRID, null));
+            RssiField after = gen.generate(new HeatmapGenerator.Request(b.widthPx, b.heightPx, GRID)).field;
+            assertFieldEquals(before, after, Q_TOLERANCE_DB);
+        }
+    }
+
+    @Test
+    void corruptedTileIsRejected() throws IOException {
+        SyntheticBuildings.Scenario b = SyntheticBuildings.generate(SyntheticBuildings.Kind.OFFICE, 7, 1);
+        byte[] bytes;
+        try (HeatmapGenerator gen = new HeatmapGenerator(b.env)) {
+            gen.generate(new HeatmapGenerator.Request(b.widthPx, b.heightPx, GRID));
+            bytes = write(b.env, gen.getLayerCache());
+        }
+
+        // 첫 레이어 첫 타일의 zlib 헤더를 깨뜨림
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        int envBytes = buf.getInt(4 + 2 + 8 + 4 + 4 + 4);
+        int firstTile = 4 + 2 + 8 + 4 + 4 + 4 + 4 + envBytes + 4 + 8;
+        assertTrue(buf.getInt(firstTile) > 0);
+        bytes[firstTile + 4] = (byte) 0xFF;
+        byte[] corrupted = bytes;
+
+        WifiEnvironment env = new WifiEnvironment();
+        LayerCache cache = new LayerCache();
+        assertThrows(IOException.class,
+                () -> ProjectSnapshot.read(new ByteArrayInputStream(corrupted), env, new AppState(), cache));
+        // 중간 실패 시 환경/캐시는 그대로
+        assertEquals(0, cache.size());
+        assertEquals(0, env.getAps().size());
+    }
+
+    private static byte[] write(WifiEnvironment env, LayerCache cache) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProjectSnapshot.write(out, env, new AppState(), null, cache);
+        return out.toByteArray();
+    }
+
+    private static void assertFieldEquals(RssiField expected, RssiField actual, double toleranceDb) {
+        assertEquals(expected.cols, actual.cols);
+        assertEquals(expected.rows, actual.rows);
+        for (int row = 0; row < expected.rows; row++) {
+            for (int col = 0; col < expected.cols; col++) {
+                float e = expected.get(col, row), a = actual.get(col, row);
+                if (Float.isNaN(e)) {
+                    assertTrue(Float.isNaN(a), "NaN 블록 유지 (" + col + ", " + row + ")");
+                } else {
+                    assertEquals(e, a, toleranceDb, "블록 (" + col + ", " + row + ")");
+                }
+            }
+        }
+    }
+}